@@ -1,34 +1,59 @@
 package io.github.satsuki942;
 
-import com.github.javaparser.StaticJavaParser;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.printer.YamlPrinter;
 
+import io.github.satsuki942.compiler.CompilerSession;
+import io.github.satsuki942.compiler.ParallelCompiler;
+import io.github.satsuki942.input.SourceIngestor;
+import io.github.satsuki942.library.LibraryManifest;
+import io.github.satsuki942.output.DirectorySourceSink;
+import io.github.satsuki942.output.JarSourceSink;
+import io.github.satsuki942.output.SourceSink;
+import io.github.satsuki942.pipeline.TranspilePipeline;
+import io.github.satsuki942.service.TranspileService;
+import io.github.satsuki942.symboltable.SymbolTable;
+import io.github.satsuki942.symboltable.SymbolTableSnapshot;
 import io.github.satsuki942.util.Logger;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Stream;
 
-import javax.tools.JavaCompiler;
-import javax.tools.ToolProvider;
-
 import java.util.stream.Collectors;
 
 public class App {
 
+    private static final Logger LOGGER = Logger.get(App.class);
+
     static private String INPUTPATH = "src/test/resources/mylang_samples/";
     static private String OUTPUTPATH = "target/output/";
     static private String OUTPUTPACKAGE = "sample";
     public static void main(String[] args) {
 
-        Logger.DEBUG_MODE = "true".equalsIgnoreCase(System.getProperty("debug"));
+        Logger.configure(System.getProperties());
 
-        Path inputDir = Paths.get(INPUTPATH + args[0]);
+        // With -Dserve=<port> the transpiler stays resident and handles projects sent over HTTP instead
+        String servePort = System.getProperty("serve");
+        if (servePort != null) {
+            try {
+                TranspileService.start(Integer.parseInt(servePort));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            return;
+        }
+
+        // Accept either a test case under INPUTPATH or an existing directory (e.g. a benchmark)
+        Path inputDir = Files.isDirectory(Paths.get(args[0])) ? Paths.get(args[0]) : Paths.get(INPUTPATH + args[0]);
         Path outputDir = Paths.get(OUTPUTPATH + OUTPUTPACKAGE);
 
         // Ensure the output directory exists
@@ -38,82 +63,219 @@ public class App {
             e.printStackTrace();
             return;
         }
-        Logger.successLog("Output directory created: " + outputDir);
-
-        // 1. parse Java files in the input directory to create MyLang-ASTs
-        List<CompilationUnit> MyLangASTs = new ArrayList<>();
-        try (Stream<Path> paths = Files.walk(inputDir)) {
-            List<Path> javaFiles = paths.filter(Files::isRegularFile)
-                                        .filter(path -> path.toString().endsWith(".java"))
-                                        .collect(Collectors.toList());
-            for (Path javaFile : javaFiles) {
-                MyLangASTs.add(StaticJavaParser.parse(javaFile));
-            }
+        LOGGER.success(() -> "Output directory created: " + outputDir);
+
+        // Options and separately compiled libraries are needed before the first source is transformed
+        TransformOptions options;
+        MyLangTransformer transformer;
+        try {
+            options = TransformOptions.load(inputDir);
+            transformer = new MyLangTransformer(options);
         } catch (IOException e) {
             e.printStackTrace();
             return;
         }
-        Logger.successLog("Parsed MyLang-ASTs from: " + inputDir);
-
-        // 2. call the transformer to transform the MyLang-ASTs
-        MyLangTransformer transformer = new MyLangTransformer();
-        List<CompilationUnit> transpiledAsts = transformer.transform(MyLangASTs);
-
-        // 3. output the transformed ASTs to files
-        List<String> generatedFilePaths = new ArrayList<>();
-        for (CompilationUnit cu : transpiledAsts) {
-            // For Debuging: Print the transpiled AST in YAML format
-            // YamlPrinter printer = new YamlPrinter(true);
-            // Logger.debugLog(printer.output(cu));
-            
-            String className = cu.getTypes().stream()
-                        .filter(type -> type.isPublic() && type.isClassOrInterfaceDeclaration())
-                        .findFirst()
-                        .map(type -> type.getNameAsString())
-                        .orElse("UnknownClass");
-            Path outputFile = outputDir.resolve(className + ".java");
+        List<SymbolTable> libraries = new ArrayList<>();
+        List<Path> libraryJars = new ArrayList<>();
+        String libraryPath = System.getProperty("lib.path");
+        if (libraryPath != null && !libraryPath.isBlank()) {
+            for (String jar : libraryPath.split(File.pathSeparator)) {
+                try {
+                    libraries.add(LibraryManifest.load(Paths.get(jar)));
+                    libraryJars.add(Paths.get(jar));
+                    LOGGER.success(() -> "Loaded library manifest: " + jar);
+                } catch (IOException e) {
+                    LOGGER.error(() -> "Failed to load library " + jar + ": " + e.getMessage());
+                    return;
+                }
+            }
+        }
+
+        //    With -Djar.out=<jar> the sources are kept in memory and end up in a single jar with their classes
+        String jarOut = System.getProperty("jar.out");
+        JarSourceSink jarSink = jarOut != null ? new JarSourceSink() : null;
+        DirectorySourceSink directorySink = jarOut != null ? null : new DirectorySourceSink(outputDir);
+        SourceSink sink = jarSink != null ? jarSink : directorySink;
+
+        boolean streaming = "true".equalsIgnoreCase(System.getProperty("streaming"));
+        boolean pipelined = !streaming && "true".equalsIgnoreCase(System.getProperty("pipeline"));
+        int ingestThreads = Integer.getInteger("ingest.threads", Runtime.getRuntime().availableProcessors());
+        SymbolTable symbolTable;
+        List<String> transformDiagnostics;
+        if (pipelined) {
+            // 1.-3. with -Dpipeline=true parse, analyze, rewrite, merge, print and write run as concurrent stages
+            try {
+                TranspilePipeline.Result pipelineResult = new TranspilePipeline(options, ingestThreads).run(inputDir, libraries, sink);
+                symbolTable = pipelineResult.getSymbolTable();
+                transformDiagnostics = pipelineResult.getDiagnostics();
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
+            writeSnapshot(symbolTable);
+        } else {
+            // 1. parse Java files in the input directory to create MyLang-ASTs
+            //    In streaming mode (-Dstreaming=true) files are only listed here and parsed one at a time later
+            List<Path> javaFiles;
+            List<CompilationUnit> MyLangASTs = new ArrayList<>();
             try {
-                Files.write(outputFile, cu.toString().getBytes(java.nio.charset.StandardCharsets.UTF_8));
-                generatedFilePaths.add(outputFile.toString());
+                if (streaming) {
+                    try (Stream<Path> paths = Files.walk(inputDir)) {
+                        javaFiles = paths.filter(Files::isRegularFile)
+                                         .filter(path -> path.toString().endsWith(".java"))
+                                         .collect(Collectors.toList());
+                    }
+                } else {
+                    //    Files are read on virtual threads and parsed on -Dingest.threads threads (default: one per processor)
+                    SourceIngestor.IngestionResult ingestion = new SourceIngestor(ingestThreads).ingest(inputDir);
+                    javaFiles = ingestion.getFiles();
+                    MyLangASTs.addAll(ingestion.getCompilationUnits());
+                    LOGGER.success(() -> "Parsed MyLang-ASTs from: " + inputDir);
+                }
             } catch (IOException e) {
                 e.printStackTrace();
+                return;
             }
+
+            // 2. call the transformer to transform the MyLang-ASTs
+            try {
+                symbolTable = streaming ? transformer.analyzeFiles(javaFiles) : transformer.analyze(MyLangASTs);
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
+
+            // Optionally persist the symbol table so that tools and later runs can load it without parsing
+            writeSnapshot(symbolTable);
+
+            // Make separately compiled libraries visible to the transformation
+            libraries.forEach(symbolTable::addLibrary);
+
+            // 3. output the transformed ASTs to files
+            //    In streaming mode every base class is written (and dropped) before the next one is parsed
+            try {
+                if (streaming) {
+                    transformer.transformFiles(javaFiles, symbolTable, sink);
+                } else {
+                    for (CompilationUnit cu : transformer.transform(MyLangASTs, symbolTable)) {
+                        // For Debuging: Print the transpiled AST in YAML format
+                        // YamlPrinter printer = new YamlPrinter(true);
+                        // LOGGER.debug(() -> printer.output(cu));
+                        sink.accept(cu);
+                    }
+                }
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
+            transformDiagnostics = transformer.getDiagnostics();
         }
+        //    Problems in the sources that the transformation worked around (e.g. ignored version block markers),
+        //    shown like the compiler's diagnostics
+        transformDiagnostics.forEach(diagnostic -> System.err.println("Error: " + diagnostic));
 
         // 4. compile the transpiled sources
-        Logger.debugLog("Compiling transpiled sources...");
-        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
-        int compilationResult = compiler.run(null, null, null, 
-            generatedFilePaths.toArray(new String[0]));
+        LOGGER.debug(() -> "Compiling transpiled sources...");
+        //    With several threads (-Dcompile.threads, default: 1) independent classes compile concurrently
+        int compileThreads = Integer.getInteger("compile.threads", 1);
+        CompilerSession.CompilationResult compilationResult;
+        if (jarSink == null && compileThreads > 1) {
+            Map<String, Path> sources = new LinkedHashMap<>();
+            directorySink.getWrittenFiles().forEach(file -> sources.put(file.getFileName().toString().replaceFirst("\\.java$", ""), file));
+            try {
+                compilationResult = new ParallelCompiler(compileThreads)
+                        .compile(symbolTable.getDependencyGraph(), sources, Paths.get(OUTPUTPATH), libraryJars);
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
+        } else {
+            try (CompilerSession session = new CompilerSession()) {
+                compilationResult = jarSink != null
+                        ? session.compileInMemory(jarSink.getSources(), libraryJars)
+                        : session.compile(new CompilerSession.CompilationJob(directorySink.getWrittenFiles(), libraryJars, Set.of()));
+            }
+        }
+        compilationResult.getDiagnostics().forEach(diagnostic -> System.err.println(diagnostic));
 
-        if (compilationResult == 0) {
-            Logger.successLog("Compilation Succeeded.");
+        if (compilationResult.isSuccess()) {
+            LOGGER.success(() -> String.format("Compilation Succeeded in %.1f ms.", compilationResult.getElapsedNanos() / 1_000_000.0));
         } else {
-            Logger.errorLog("Compilation Failed.");
+            LOGGER.error(() -> "Compilation Failed.");
             return;
         }
 
+        // 4'. export the compiled classes as a library instead of running them
+        String libraryOut = System.getProperty("lib.out");
+        if (libraryOut != null) {
+            try {
+                if (jarSink != null) {
+                    LibraryManifest.writeJar(Paths.get(libraryOut), compilationResult.getClassFiles(), symbolTable);
+                } else {
+                    LibraryManifest.writeJar(Paths.get(libraryOut), Paths.get(OUTPUTPATH), directorySink.getWrittenFiles(), symbolTable);
+                }
+                LOGGER.success(() -> "Library exported: " + libraryOut);
+            } catch (IOException e) {
+                LOGGER.error(() -> "Failed to export library: " + e.getMessage());
+            }
+            return;
+        }
+
+        // 4''. package the sources and classes into the output jar
+        if (jarSink != null) {
+            try {
+                jarSink.writeJar(Paths.get(jarOut), compilationResult.getClassFiles());
+                LOGGER.success(() -> "Output jar written: " + jarOut);
+            } catch (IOException e) {
+                LOGGER.error(() -> "Failed to write output jar: " + e.getMessage());
+                return;
+            }
+        }
+
         // 5. run the compiled code
-        Logger.debugLog("Running compiled code...");
+        LOGGER.debug(() -> "Running compiled code...");
         try {
             Logger.Log("\nRunning Result: ----------------------");
-            Path outputPath = Paths.get(OUTPUTPATH);
-            runProcess(outputPath, OUTPUTPACKAGE + ".Main");
+            List<Path> classpath = new ArrayList<>(libraryJars);
+            classpath.add(0, jarOut != null ? Paths.get(jarOut) : Paths.get(OUTPUTPATH));
+            // The child process writes to the same console, so write out the buffered log first
+            Logger.flush();
+            runProcess(toClasspath(classpath), OUTPUTPACKAGE + ".Main");
             Logger.Log("--------------------------------------\n");
         } catch (IOException | InterruptedException e) {
-            Logger.errorLog("Error occurred while running compiled code: " + e.getMessage());
+            LOGGER.error(() -> "Error occurred while running compiled code: " + e.getMessage());
+        }
+        LOGGER.success(() -> "Execution completed.");
+    }
+
+    // With -Dsymtab.out=<file> the symbol table is persisted so that tools and later runs can load it without parsing
+    private static void writeSnapshot(SymbolTable symbolTable) {
+        String snapshotPath = System.getProperty("symtab.out");
+        if (snapshotPath != null) {
+            try {
+                SymbolTableSnapshot.write(symbolTable, Paths.get(snapshotPath));
+                LOGGER.success(() -> "Symbol table snapshot written: " + snapshotPath);
+            } catch (IOException e) {
+                LOGGER.error(() -> "Failed to write symbol table snapshot: " + e.getMessage());
+            }
         }
-        Logger.successLog("Execution completed.");
     }
 
-    private static void runProcess(Path classpath, String mainClass) throws IOException, InterruptedException {
+    private static void runProcess(String classpath, String mainClass) throws IOException, InterruptedException {
+        // The classes were compiled by this JVM's compiler, so run them with the same JVM instead of whatever java is on PATH
         ProcessBuilder processBuilder = new ProcessBuilder(
-            "java",
-            "-cp", classpath.toAbsolutePath().toString(),
+            Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+            "-cp", classpath,
             mainClass
         );
         processBuilder.inheritIO();
         Process process = processBuilder.start();
         process.waitFor();
     }
+
+    private static String toClasspath(List<Path> entries) {
+        return entries.stream()
+                      .map(path -> path.toAbsolutePath().toString())
+                      .collect(Collectors.joining(File.pathSeparator));
+    }
 }
\ No newline at end of file
@@ -1,9 +1,7 @@
 package io.github.satsuki942;
 
 import java.util.List;
-import java.util.regex.Matcher;
 import java.util.stream.Collectors;
-import java.util.regex.Pattern;
 
 import com.github.javaparser.ast.Node;
 import com.github.javaparser.ast.NodeList;
@@ -16,49 +14,58 @@ import com.github.javaparser.ast.expr.MethodCallExpr;
 import com.github.javaparser.ast.visitor.ModifierVisitor;
 
 import io.github.satsuki942.symboltable.ClassInfo;
+import io.github.satsuki942.symboltable.FieldInfo;
 import io.github.satsuki942.symboltable.MethodInfo;
-import io.github.satsuki942.symboltable.SymbolTable;
-import io.github.satsuki942.util.AstUtil;
 
-public class FieldAccessRewriteVisitor extends ModifierVisitor<SymbolTable> {
+public class FieldAccessRewriteVisitor extends ModifierVisitor<VisitContext> {
 
-    private static final Pattern VERSIONED_CLASS_PATTERN = AstUtil.getVersionedClassPattern();
-    private ClassInfo currentClassInfo;
-    private MethodInfo currentMethodInfo;
+    private final TransformOptions options;
+
+    public FieldAccessRewriteVisitor() {
+        this(new TransformOptions());
+    }
+
+    public FieldAccessRewriteVisitor(TransformOptions options) {
+        this.options = options;
+    }
 
     @Override
-    public Node visit(ClassOrInterfaceDeclaration n, SymbolTable symbolTable) {
-        this.currentClassInfo = symbolTable.lookupClass(n.getNameAsString());
-        Node result = (Node) super.visit(n, symbolTable);
-        this.currentClassInfo = null;
+    public Node visit(ClassOrInterfaceDeclaration n, VisitContext context) {
+        context.setCurrentClassInfo(context.getSymbolTable().lookupClass(n.getNameAsString()));
+        Node result = (Node) super.visit(n, context);
+        context.setCurrentClassInfo(null);
         return result;
     }
 
     @Override
-    public Node visit(MethodDeclaration n, SymbolTable symbolTable) {
-        if (this.currentClassInfo != null) {
-            this.currentMethodInfo = findMethodInfoFor(n, this.currentClassInfo);
+    public Node visit(MethodDeclaration n, VisitContext context) {
+        if (context.getCurrentClassInfo() != null) {
+            context.setCurrentMethodInfo(findMethodInfoFor(n, context.getCurrentClassInfo()));
         }
-        Node result = (Node) super.visit(n, symbolTable);
-        this.currentMethodInfo = null;
+        Node result = (Node) super.visit(n, context);
+        context.setCurrentMethodInfo(null);
         return result;
     }
 
     @Override
-    public Node visit(AssignExpr n, SymbolTable symbolTable) {
+    public Node visit(AssignExpr n, VisitContext context) {
         com.github.javaparser.ast.expr.Expression target = n.getTarget();
 
         if (target.isFieldAccessExpr()) {
             FieldAccessExpr fieldAccess = target.asFieldAccessExpr();
-            String typeName = resolveCallerType(fieldAccess, symbolTable);
+            String typeName = resolveCallerType(fieldAccess, context);
 
             if (typeName != null) {
-                Matcher matcher = VERSIONED_CLASS_PATTERN.matcher(typeName);
-                String baseTypeName = matcher.matches() ? matcher.group(1) : typeName;
+                String baseTypeName = context.getSymbolTable().versionedName(typeName).getBaseName();
 
-                ClassInfo classInfo = symbolTable.lookupClass(baseTypeName);
+                ClassInfo classInfo = context.getSymbolTable().lookupClass(baseTypeName);
 
                 if (classInfo != null && classInfo.isVersioned() && classInfo.getFields().containsKey(fieldAccess.getNameAsString())) {
+                    if (isInlined(baseTypeName, context)) {
+                        n.setTarget(inlineFieldAccess(fieldAccess, classInfo));
+                        n.setValue((Expression) n.getValue().accept(this, context));
+                        return n;
+                    }
                     String setterName = "__set_" + fieldAccess.getNameAsString();
                     MethodCallExpr setterCall = new MethodCallExpr(
                         fieldAccess.getScope(),
@@ -70,25 +77,27 @@ public class FieldAccessRewriteVisitor extends ModifierVisitor<SymbolTable> {
                 }
             }
         }
-        return (Node) super.visit(n, symbolTable);
+        return (Node) super.visit(n, context);
     }
 
     @Override
-    public Node visit(FieldAccessExpr n, SymbolTable symbolTable) {
+    public Node visit(FieldAccessExpr n, VisitContext context) {
         if (n.getParentNode().isPresent() && n.getParentNode().get() instanceof AssignExpr &&
             ((AssignExpr) n.getParentNode().get()).getTarget() == n) {
-            return (Node) super.visit(n, symbolTable);
+            return (Node) super.visit(n, context);
         }
 
-        String typeName = resolveCallerType(n, symbolTable);
+        String typeName = resolveCallerType(n, context);
 
         if (typeName != null) {
-            Matcher matcher = VERSIONED_CLASS_PATTERN.matcher(typeName);
-            String baseTypeName = matcher.matches() ? matcher.group(1) : typeName;
+            String baseTypeName = context.getSymbolTable().versionedName(typeName).getBaseName();
 
-            ClassInfo classInfo = symbolTable.lookupClass(baseTypeName);
+            ClassInfo classInfo = context.getSymbolTable().lookupClass(baseTypeName);
 
             if (classInfo != null && classInfo.isVersioned() && classInfo.getFields().containsKey(n.getNameAsString())) {
+                if (isInlined(baseTypeName, context)) {
+                    return inlineFieldAccess(n, classInfo);
+                }
                 String getterName = "__get_" + n.getNameAsString();
                 MethodCallExpr getterCall = new MethodCallExpr(
                     n.getScope(),
@@ -98,16 +107,31 @@ public class FieldAccessRewriteVisitor extends ModifierVisitor<SymbolTable> {
                 return getterCall;
             }
         }
-        return (Node) super.visit(n, symbolTable);
+        return (Node) super.visit(n, context);
     }
 
     // -- HELPER METHODS --
-    private String resolveCallerType(FieldAccessExpr n, SymbolTable symbolTable) {
+    // Library classes are compiled with private implementations, so their fields are always reached through accessors.
+    // The flattened layout has no implementation objects and may rename hoisted fields, so it uses the accessors too.
+    private boolean isInlined(String baseTypeName, VisitContext context) {
+        return options.getFieldAccess() == TransformOptions.FieldAccess.INLINE
+            && options.getLayout() == TransformOptions.Layout.STATE_OBJECTS
+            && context.getSymbolTable().declaresClass(baseTypeName);
+    }
+
+    // obj.x -> obj.vN_instance.x, where vN is the version owning the field (the same one the accessors use)
+    private FieldAccessExpr inlineFieldAccess(FieldAccessExpr n, ClassInfo classInfo) {
+        FieldInfo field = classInfo.getFields().get(n.getNameAsString()).get(0);
+        String instanceName = "v" + field.getVersion().toLowerCase() + "_instance";
+        return new FieldAccessExpr(new FieldAccessExpr(n.getScope(), instanceName), n.getNameAsString());
+    }
+
+    private String resolveCallerType(FieldAccessExpr n, VisitContext context) {
         com.github.javaparser.ast.expr.Expression scopeExpr = n.getScope();
         if (scopeExpr.isNameExpr()) {
             String varName = scopeExpr.asNameExpr().getNameAsString();
-            if (this.currentMethodInfo != null) {
-                return this.currentMethodInfo.getVariables().get(varName);
+            if (context.getCurrentMethodInfo() != null) {
+                return context.getCurrentMethodInfo().getVariables().get(varName);
             }
         }
         return null;
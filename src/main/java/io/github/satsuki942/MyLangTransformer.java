@@ -1,64 +1,119 @@
 package io.github.satsuki942;
 
+import com.github.javaparser.StaticJavaParser;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.Node;
 
+import io.github.satsuki942.analysis.DeadCodeEliminator;
+import io.github.satsuki942.analysis.VersionStateAnalysis;
+import io.github.satsuki942.output.SourceSink;
 import io.github.satsuki942.symboltable.SymbolTable;
+import io.github.satsuki942.symboltable.VersionedName;
 import io.github.satsuki942.util.Logger;
 import io.github.satsuki942.util.AstUtil;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
 public class MyLangTransformer {
 
-    private static final Pattern VERSIONED_CLASS_PATTERN = AstUtil.getVersionedClassPattern();
+    private static final Logger LOGGER = Logger.get(MyLangTransformer.class);
+
+    private final TransformOptions options;
+    // Problems found in the sources by STEP2, from every transformation run by this transformer
+    private final List<String> diagnostics = Collections.synchronizedList(new ArrayList<>());
+
+    public MyLangTransformer() {
+        this(new TransformOptions());
+    }
+
+    public MyLangTransformer(TransformOptions options) {
+        this.options = options;
+    }
 
     public List<CompilationUnit> transform(List<CompilationUnit> MyLangASTs) {
-        Logger.debugLog("Starting transformation...");
+        return transform(MyLangASTs, analyze(MyLangASTs));
+    }
 
+    /**
+     * Runs STEP1 only: builds the symbol table for the given MyLang-ASTs.
+     *
+     * @param MyLangASTs The parsed MyLang sources.
+     * @return The {@link SymbolTable} describing all classes in the sources.
+     */
+    public SymbolTable analyze(List<CompilationUnit> MyLangASTs) {
+        // STEP1: Generate a symbol table (each CompilationUnit is analyzed independently and merged in order)
+        SymbolTable symbolTable = SymbolTableBuilderVisitor.buildConcurrently(MyLangASTs);
 
-        // STEP1: Generate a symbol table
-        SymbolTable symbolTable = new SymbolTable();
-        SymbolTableBuilderVisitor analysisVisitor = new SymbolTableBuilderVisitor();
-        for (CompilationUnit cu : MyLangASTs) {
-            analysisVisitor.visit(cu, symbolTable);
-        }
+        LOGGER.success(() -> "Generated a symbol table");
+        return symbolTable;
+    }
 
-        Logger.successLog("Generated a symbol table");
+    /**
+     * Runs STEP2 and STEP3 against a symbol table that has already been built for the given MyLang-ASTs.
+     *
+     * @param MyLangASTs  The parsed MyLang sources.
+     * @param symbolTable The symbol table built by {@link #analyze(List)}.
+     * @return The transformed ASTs, one per unified or normal class.
+     */
+    public List<CompilationUnit> transform(List<CompilationUnit> MyLangASTs, SymbolTable symbolTable) {
+        LOGGER.debug(() -> "Starting transformation...");
 
 
         // STEP2: Dispatch versions of method calls & Rewrite field accesses
         List<CompilationUnit> tempAsts = new ArrayList<>();
         StaticVersionDispatchVisitor transformVisitor = new StaticVersionDispatchVisitor();
         for (CompilationUnit cu : MyLangASTs) {
-            Node transformedNode = (Node) transformVisitor.visit(cu, symbolTable);
+            VisitContext context = new VisitContext(symbolTable);
+            Node transformedNode = (Node) transformVisitor.visit(cu, context);
+            diagnostics.addAll(context.getDiagnostics());
             if (transformedNode instanceof CompilationUnit) {
                 tempAsts.add((CompilationUnit) transformedNode);
             }
         }
 
-        FieldAccessRewriteVisitor fieldVisitor = new FieldAccessRewriteVisitor();
+        FieldAccessRewriteVisitor fieldVisitor = new FieldAccessRewriteVisitor(options);
         List<CompilationUnit> transformedAsts = new ArrayList<>(); // 最終的な変換結果を格納するリスト
         for (CompilationUnit cu : tempAsts) { // ← tempAsts (変更後のリスト) を走査
-            Node finalNode = (Node) fieldVisitor.visit(cu, symbolTable);
+            Node finalNode = (Node) fieldVisitor.visit(cu, new VisitContext(symbolTable));
             if (finalNode != null) { // フィールド変換ビジターはクラスを削除する場合があるのでnullチェック
                 transformedAsts.add((CompilationUnit) finalNode);
             }
         }
 
-        Logger.successLog("Dispatched versions of method calls & Rewrote field accesses");
+        LOGGER.success(() -> "Dispatched versions of method calls & Rewrote field accesses");
         // Print the transformed ASTs for debugging
         // transformedAsts.forEach(cu -> {
-        //     Logger.debugLog("Transformed AST: " + cu.getPrimaryTypeName().orElse("Unnamed"));
-        //     Logger.debugLog(cu.toString());
+        //     LOGGER.debug(() -> "Transformed AST: " + cu.getPrimaryTypeName().orElse("Unnamed"));
+        //     LOGGER.debug(() -> cu.toString());
         // });
 
 
+        // STEP2': Optionally remove versions and members that main cannot reach
+        DeadCodeEliminator eliminator = null;
+        SymbolTable emissionTable = symbolTable;
+        if (options.isEliminateDeadCode()) {
+            eliminator = new DeadCodeEliminator(transformedAsts, symbolTable);
+            emissionTable = eliminator.getPrunedSymbolTable();
+            String report = eliminator.getReport();
+            LOGGER.success(() -> report);
+        }
+
+        // STEP2'': Optionally call versions directly where the receiver's version is known
+        if (options.isDevirtualizing()) {
+            VersionStateAnalysis versionAnalysis = new VersionStateAnalysis(emissionTable, transformedAsts);
+            transformedAsts.forEach(versionAnalysis::devirtualize);
+            LOGGER.success(versionAnalysis::getReport);
+        }
+
+
         // STEP3: Merge versioned classes
         // Separate normal classes and versioned classes
         List<CompilationUnit> normalClassesASTs = MyLangASTs.stream()
@@ -66,31 +121,141 @@ public class MyLangTransformer {
                 .collect(Collectors.toList());
         Map<String, List<CompilationUnit>> versionedClassMap = MyLangASTs.stream()
                 .filter(AstUtil::isVersioned)
-                .collect(Collectors.groupingBy(this::getBaseName));
+                .collect(Collectors.groupingBy(AstUtil::getBaseName));
 
         // Create versioned class definitions (= transformed ASTs)
+        if (eliminator != null) {
+            for (Map.Entry<String, List<CompilationUnit>> entry : versionedClassMap.entrySet()) {
+                entry.setValue(eliminator.prune(entry.getKey(), entry.getValue()));
+            }
+        }
+        SymbolTable builderTable = emissionTable;
         List<CompilationUnit> transformedASTs = versionedClassMap.entrySet().stream()
-                .map(entry -> {
-                    UnifiedClassBuilder builder = new UnifiedClassBuilder(entry.getKey(), entry.getValue(), symbolTable);
-                    return builder.build();
+                .flatMap(entry -> {
+                    UnifiedClassBuilder builder = new UnifiedClassBuilder(entry.getKey(), entry.getValue(), builderTable, options);
+                    return builder.buildAll().stream();
                 })
                 .collect(Collectors.toList());
         
         transformedASTs.addAll(normalClassesASTs);
 
-        Logger.successLog("Merged versioned classes");
+        LOGGER.success(() -> "Merged versioned classes");
 
-        Logger.successLog("Whole transformation completed");
+        LOGGER.success(() -> "Whole transformation completed");
         return transformedASTs;
     }
 
-    // -- HELPER METHODS --
-    private String getBaseName(CompilationUnit cu) {
-        return cu.getPrimaryTypeName()
-                 .map(name -> {
-                     Matcher matcher = VERSIONED_CLASS_PATTERN.matcher(name);
-                     return matcher.matches() ? matcher.group(1) : name;
-                 })
-                 .orElse("");
+    /**
+     * Runs STEP1 over source files without keeping their ASTs: each file is parsed right before it is analyzed
+     * into a fragment table, and the fragments are merged in source order as in {@link #analyze(List)}.
+     *
+     * @param sourceFiles The MyLang source files.
+     * @return The {@link SymbolTable} describing all classes in the sources.
+     * @throws IOException If a source file cannot be read.
+     */
+    public SymbolTable analyzeFiles(List<Path> sourceFiles) throws IOException {
+        SymbolTable symbolTable;
+        try {
+            symbolTable = SymbolTableBuilderVisitor.buildConcurrently(sourceFiles, file -> {
+                try {
+                    return StaticJavaParser.parse(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        LOGGER.success(() -> "Generated a symbol table from " + sourceFiles.size() + " files");
+        return symbolTable;
+    }
+
+    /**
+     * Runs STEP2 and STEP3 in streaming mode: the sources are grouped by base class using their file names,
+     * and each group is parsed, rewritten, merged and handed to the sink before the next group is parsed.
+     * Peak memory is therefore proportional to the largest class rather than to the whole project.
+     *
+     * @param sourceFiles The MyLang source files; each file is named after its public class.
+     * @param symbolTable The symbol table of all sources, e.g. from {@link #analyzeFiles(List)} or a snapshot.
+     * @param sink        Receives every transformed CompilationUnit as soon as it is complete.
+     * Dead code elimination and devirtualization need the whole program and are skipped; a diagnostic records
+     * each of them that was asked for.
+     *
+     * @throws IOException If a source file cannot be read or the sink fails.
+     */
+    public void transformFiles(List<Path> sourceFiles, SymbolTable symbolTable, SourceSink sink) throws IOException {
+        LOGGER.debug(() -> "Starting streaming transformation...");
+        reportWholeProgramOptions("streaming");
+
+        Map<String, List<Path>> versionedFiles = new LinkedHashMap<>();
+        List<Path> normalFiles = new ArrayList<>();
+        for (Path file : sourceFiles) {
+            String className = file.getFileName().toString().replaceFirst("\\.java$", "");
+            VersionedName versionedName = symbolTable.versionedName(className);
+            if (versionedName.isVersioned()) {
+                versionedFiles.computeIfAbsent(versionedName.getBaseName(), k -> new ArrayList<>()).add(file);
+            } else {
+                normalFiles.add(file);
+            }
+        }
+
+        for (Map.Entry<String, List<Path>> group : versionedFiles.entrySet()) {
+            List<CompilationUnit> versionAsts = new ArrayList<>();
+            for (Path file : group.getValue()) {
+                versionAsts.add(rewrite(StaticJavaParser.parse(file), symbolTable));
+            }
+            for (CompilationUnit unit : new UnifiedClassBuilder(group.getKey(), versionAsts, symbolTable, options).buildAll()) {
+                sink.accept(unit);
+            }
+        }
+        for (Path file : normalFiles) {
+            sink.accept(rewrite(StaticJavaParser.parse(file), symbolTable));
+        }
+
+        LOGGER.success(() -> "Whole streaming transformation completed");
+    }
+
+    /**
+     * Runs STEP2 on a single CompilationUnit. Each call uses its own visitor contexts, so several units can be
+     * rewritten concurrently against the same (sealed) symbol table.
+     *
+     * @param cu          A parsed MyLang source; it is rewritten in place.
+     * @param symbolTable The symbol table of all sources.
+     * @return The rewritten CompilationUnit.
+     */
+    public CompilationUnit rewrite(CompilationUnit cu, SymbolTable symbolTable) {
+        VisitContext context = new VisitContext(symbolTable);
+        CompilationUnit dispatched = (CompilationUnit) new StaticVersionDispatchVisitor().visit(cu, context);
+        diagnostics.addAll(context.getDiagnostics());
+        return (CompilationUnit) new FieldAccessRewriteVisitor(options).visit(dispatched, new VisitContext(symbolTable));
+    }
+
+    /**
+     * Records a diagnostic for every enabled option that only the in-memory transformation applies, for the
+     * modes that never hold the rewritten program as a whole.
+     *
+     * @param mode The name of the mode skipping them, e.g. "streaming".
+     */
+    public void reportWholeProgramOptions(String mode) {
+        if (options.isEliminateDeadCode()) {
+            diagnostics.add("Ignored eliminateDeadCode=true: " + mode + " mode never holds the whole program.");
+        }
+        if (options.isDevirtualizing()) {
+            diagnostics.add("Ignored devirtualize=true: " + mode + " mode never holds the whole program.");
+        }
+    }
+
+    /**
+     * Returns the problems found in the sources by the transformations run so far, such as ignored version
+     * block markers. They do not stop the transformation, so callers report them next to the compiler's.
+     *
+     * @return One "File.java:line: message" entry per problem in the sources, in the order found, after the
+     *         options a mode had to skip (see {@link #reportWholeProgramOptions(String)}).
+     */
+    public List<String> getDiagnostics() {
+        synchronized (diagnostics) {
+            return List.copyOf(diagnostics);
+        }
     }
-}
\ No newline at end of file
+}
@@ -1,100 +1,169 @@
 package io.github.satsuki942;
 
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import com.github.javaparser.ast.Node;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
 import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.expr.FieldAccessExpr;
 import com.github.javaparser.ast.expr.IntegerLiteralExpr;
 import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.expr.NameExpr;
 import com.github.javaparser.ast.expr.ObjectCreationExpr;
 import com.github.javaparser.ast.stmt.BlockStmt;
+import com.github.javaparser.ast.stmt.EmptyStmt;
 import com.github.javaparser.ast.stmt.ExpressionStmt;
+import com.github.javaparser.ast.stmt.Statement;
+import com.github.javaparser.ast.stmt.TryStmt;
 import com.github.javaparser.ast.type.ClassOrInterfaceType;
 import com.github.javaparser.ast.visitor.ModifierVisitor;
 import com.github.javaparser.ast.NodeList;
 
 import io.github.satsuki942.symboltable.ClassInfo;
+import io.github.satsuki942.symboltable.FieldInfo;
 import io.github.satsuki942.symboltable.MethodInfo;
-import io.github.satsuki942.symboltable.SymbolTable;
+import io.github.satsuki942.symboltable.VersionedName;
+import io.github.satsuki942.util.Logger;
 
-public class StaticVersionDispatchVisitor extends ModifierVisitor<SymbolTable> {
+public class StaticVersionDispatchVisitor extends ModifierVisitor<VisitContext> {
 
-    private static final Pattern VERSIONED_CLASS_PATTERN = Pattern.compile("(.+)__(\\d+)__$");
-    private ClassInfo currentClassInfo;
-    private MethodInfo currentMethodInfo;
+    private static final Logger LOGGER = Logger.get(StaticVersionDispatchVisitor.class);
+
+    // Marks a version block: { obj.__pinVersion(2); ... } runs the block with obj in version 2
+    static final String PIN_METHOD = "__pinVersion";
+    private static final String SWITCH_METHOD = "__switchToVersion";
 
     @Override
-    public Node visit(ClassOrInterfaceDeclaration ClassInterfaceDecl, SymbolTable symbolTable) {
+    public Node visit(ClassOrInterfaceDeclaration ClassInterfaceDecl, VisitContext context) {
         String className = ClassInterfaceDecl.getNameAsString();
-        this.currentClassInfo = symbolTable.lookupClass(className);
-        Node result = (Node) super.visit(ClassInterfaceDecl, symbolTable);
-        this.currentClassInfo = null;
+        context.setCurrentClassInfo(context.getSymbolTable().lookupClass(className));
+        Node result = (Node) super.visit(ClassInterfaceDecl, context);
+        context.setCurrentClassInfo(null);
+        return result;
+    }
+
+    @Override
+    public Node visit(MethodDeclaration MethodDecl, VisitContext context) {
+        if (context.getCurrentClassInfo() != null) {
+            context.setCurrentMethodInfo(findMethodInfoFor(MethodDecl, context.getCurrentClassInfo()));
+        }
+        Node result = (Node) super.visit(MethodDecl, context);
+        context.setCurrentMethodInfo(null);
         return result;
     }
 
+    /**
+     * Compiles version blocks. The {@code obj.__pinVersion(n);} markers at the start of a block become a single
+     * {@code obj.__switchToVersion(n);}, and the calls inside that resolve to version n are not switched again.
+     * A call resolving to another version is switched as usual and then switched back, and a nested block
+     * pinning the same object to another version hands it back in the outer version from a {@code finally},
+     * however the nested block is left. The accessors of a field owned by another version switch the object
+     * too, so a statement reading or writing such a field is followed by a switch back to version n; the block
+     * is rejected when such a field is used anywhere but in a statement of a block. The object thus stays in
+     * version n throughout the block (as long as it is not switched by code it is passed to).
+     */
     @Override
-    public Node visit(MethodDeclaration MethodDecl, SymbolTable symbolTable) {
-        if (this.currentClassInfo != null) {
-            this.currentMethodInfo = findMethodInfoFor(MethodDecl, this.currentClassInfo);
+    public Node visit(BlockStmt block, VisitContext context) {
+        // Pinned variable -> version of the enclosing block (null for none)
+        Map<String, Integer> outerPins = new LinkedHashMap<>();
+        NodeList<Statement> statements = block.getStatements();
+        int markers = 0;
+        for (; markers < statements.size() && isPinMarker(statements.get(markers)); markers++) {
+            MethodCallExpr marker = statements.get(markers).asExpressionStmt().getExpression().asMethodCallExpr();
+            Integer version = resolvePinnedVersion(marker, block, context);
+            if (version == null) {
+                statements.remove(markers--);
+                continue;
+            }
+            String varName = marker.getScope().get().asNameExpr().getNameAsString();
+            Integer outer = context.pin(varName, version);
+            if (!outerPins.containsKey(varName)) {
+                outerPins.put(varName, outer);
+            }
+            statements.set(markers, new ExpressionStmt(switchCall(marker.getScope().get(), version)));
+            LOGGER.debug(() -> "Pinned " + varName + " to v" + version + " for a block");
+        }
+        switchBackAfterFieldAccesses(statements, markers, context);
+
+        Node result = (Node) super.visit(block, context);
+
+        BlockStmt restores = new BlockStmt();
+        outerPins.forEach((varName, outer) -> {
+            if (outer != null && !outer.equals(context.getPinnedVersion(varName))) {
+                restores.addStatement(new ExpressionStmt(switchCall(new NameExpr(varName), outer)));
+            }
+            context.unpin(varName, outer);
+        });
+        if (!restores.isEmpty()) {
+            // { obj.__switchToVersion(n); try { ... } finally { obj.__switchToVersion(outer); } }
+            BlockStmt body = new BlockStmt();
+            while (statements.size() > markers) {
+                body.addStatement(statements.remove(markers));
+            }
+            block.addStatement(new TryStmt(body, new NodeList<>(), restores));
         }
-        Node result = (Node) super.visit(MethodDecl, symbolTable);
-        this.currentMethodInfo = null;
         return result;
     }
 
     @Override
-    public Node visit(com.github.javaparser.ast.stmt.ExpressionStmt exprStmt, SymbolTable symbolTable){
+    public Node visit(com.github.javaparser.ast.stmt.ExpressionStmt exprStmt, VisitContext context){
         if (!exprStmt.getExpression().isMethodCallExpr()) {
             // If the expression is not a MethodCallExpr, we cannot resolve it
-            return (Node) super.visit(exprStmt, symbolTable);
+            return (Node) super.visit(exprStmt, context);
         }
 
         MethodCallExpr MethodCallExpr = exprStmt.getExpression().asMethodCallExpr();
 
-        if (this.currentMethodInfo == null) {
-            return (Node) super.visit(exprStmt, symbolTable);
+        if (MethodCallExpr.getNameAsString().equals(PIN_METHOD)) {
+            context.reportError(MethodCallExpr, "Ignored " + MethodCallExpr + ": it must be one of the first statements of a block.");
+            // Dropped like an invalid marker; a statement that is not in a block is left empty
+            return exprStmt.getParentNode().filter(parent -> parent instanceof BlockStmt).isPresent() ? null : new EmptyStmt();
+        }
+
+        if (context.getCurrentMethodInfo() == null) {
+            return (Node) super.visit(exprStmt, context);
         }
 
         com.github.javaparser.ast.expr.Expression scopeExpr = MethodCallExpr.getScope().orElse(null);
 
         if (scopeExpr == null || !scopeExpr.isNameExpr()) {
             // If there's no scope or it's not a NameExpr, we can't resolve it
-            return (Node) super.visit(exprStmt, symbolTable);
+            return (Node) super.visit(exprStmt, context);
         }
 
-        if (this.currentClassInfo == null) {
+        if (context.getCurrentClassInfo() == null) {
             // If we are not in a class context, we cannot resolve the method call to a versioned method
-            return (Node) super.visit(exprStmt, symbolTable); 
+            return (Node) super.visit(exprStmt, context); 
         }
         
         String varName = scopeExpr.asNameExpr().getNameAsString();
-        String typeName = currentMethodInfo.getVariables().get(varName);
+        String typeName = context.getCurrentMethodInfo().getVariables().get(varName);
 
         if (typeName == null) {
             // If the type name is not found in the current method's variables, we cannot resolve it
-            return (Node) super.visit(exprStmt, symbolTable);
+            return (Node) super.visit(exprStmt, context);
         }
 
-        ClassInfo classInfo = symbolTable.lookupClass(typeName);
+        ClassInfo classInfo = context.getSymbolTable().lookupClass(typeName);
 
         if(classInfo == null || !classInfo.isVersioned()) {
             // If the class is not found or is not versioned, we cannot resolve the method call to a versioned method
-            return (Node) super.visit(exprStmt, symbolTable);
+            return (Node) super.visit(exprStmt, context);
         }
 
         List<MethodInfo> candidates = classInfo.getMethods().get(MethodCallExpr.getNameAsString());
 
         if (candidates == null || candidates.isEmpty()) {
             // If no methods are found with the given name, we cannot resolve it
-            return (Node) super.visit(exprStmt, symbolTable);
+            return (Node) super.visit(exprStmt, context);
         }
 
-        List<String> argumentTypes = resolveArgumentTypes(MethodCallExpr.getArguments(), symbolTable);
+        List<String> argumentTypes = resolveArgumentTypes(MethodCallExpr.getArguments(), context);
 
         List<MethodInfo> matchingMethods = candidates.stream()
             .filter(m -> m.getParameterTypes().equals(argumentTypes))
@@ -104,41 +173,149 @@ public class StaticVersionDispatchVisitor extends ModifierVisitor<SymbolTable> {
             MethodInfo targetMethod = matchingMethods.get(0);
             int versionNumber = Integer.parseInt(targetMethod.getVersion());
 
+            // Inside a version block for obj, a call of the pinned version needs no switch
+            Integer pinnedVersion = context.getPinnedVersion(varName);
+            if (pinnedVersion != null && pinnedVersion == versionNumber) {
+                LOGGER.debug(() -> "Kept " + MethodCallExpr + " in pinned v" + versionNumber);
+                return (Node) super.visit(exprStmt, context);
+            }
+
             // Create a new block to switch to the correct version including the original method call expression
             BlockStmt newBlock = new BlockStmt();
-            MethodCallExpr switchCall = new MethodCallExpr(
-                MethodCallExpr.getScope().get(), // obj
-                "__switchToVersion",
-                new NodeList<>(new IntegerLiteralExpr(String.valueOf(versionNumber)))
-            );
+            MethodCallExpr switchCall = switchCall(MethodCallExpr.getScope().get(), versionNumber); // obj
             newBlock.addStatement(new ExpressionStmt(switchCall));
             newBlock.addStatement(exprStmt.clone());
+            if (pinnedVersion != null) {
+                // Back to the version of the enclosing version block
+                newBlock.addStatement(new ExpressionStmt(switchCall(MethodCallExpr.getScope().get(), pinnedVersion)));
+            }
+            LOGGER.debug(() -> "Dispatched " + MethodCallExpr + " to v" + versionNumber);
 
             return newBlock;
         }
 
-        return (Node) super.visit(exprStmt, symbolTable);
+        return (Node) super.visit(exprStmt, context);
     }
 
     @Override
-    public Node visit(ClassOrInterfaceType classInterfaceType, SymbolTable symbolTable) {
-        String typeName = classInterfaceType.getNameAsString();
-        Matcher matcher = VERSIONED_CLASS_PATTERN.matcher(typeName);
-        if (matcher.matches()) {
-            String baseName = matcher.group(1);
-            classInterfaceType.setName(baseName);
+    public Node visit(ClassOrInterfaceType classInterfaceType, VisitContext context) {
+        VersionedName typeName = context.getSymbolTable().versionedName(classInterfaceType.getNameAsString());
+        if (typeName.isVersioned()) {
+            classInterfaceType.setName(typeName.getBaseName());
         }
-        return (Node) super.visit(classInterfaceType, symbolTable);
+        return (Node) super.visit(classInterfaceType, context);
     }
 
     @Override
-    public Node visit(ObjectCreationExpr objCreationExpr, SymbolTable symbolTable) {
-        objCreationExpr.setType((ClassOrInterfaceType) visit(objCreationExpr.getType(), symbolTable));
-        return (Node) super.visit(objCreationExpr, symbolTable);
+    public Node visit(ObjectCreationExpr objCreationExpr, VisitContext context) {
+        objCreationExpr.setType((ClassOrInterfaceType) visit(objCreationExpr.getType(), context));
+        return (Node) super.visit(objCreationExpr, context);
     }
 
     // HELPERS
-    private List<String> resolveArgumentTypes(NodeList<com.github.javaparser.ast.expr.Expression> arguments, SymbolTable symbolTable) {
+    private static MethodCallExpr switchCall(com.github.javaparser.ast.expr.Expression scope, int version) {
+        return new MethodCallExpr(scope.clone(), SWITCH_METHOD, new NodeList<>(new IntegerLiteralExpr(String.valueOf(version))));
+    }
+
+    private static boolean isPinMarker(Statement statement) {
+        return statement.isExpressionStmt()
+                && statement.asExpressionStmt().getExpression().isMethodCallExpr()
+                && statement.asExpressionStmt().getExpression().asMethodCallExpr().getNameAsString().equals(PIN_METHOD);
+    }
+
+    // obj.x = ...; int y = obj.x; -> followed by obj.__switchToVersion(n); for a pinned obj, x owned by another version
+    private void switchBackAfterFieldAccesses(NodeList<Statement> statements, int from, VisitContext context) {
+        for (int i = statements.size() - 1; i >= from; i--) {
+            if (!statements.get(i).isExpressionStmt()) continue;
+            Map<String, Integer> switchBacks = new LinkedHashMap<>();
+            for (FieldAccessExpr access : statements.get(i).findAll(FieldAccessExpr.class)) {
+                if (!access.getScope().isNameExpr()) continue;
+                String varName = access.getScope().asNameExpr().getNameAsString();
+                Integer pinned = context.getPinnedVersion(varName);
+                if (pinned != null && leavesVersion(access, varName, pinned, context)) {
+                    switchBacks.put(varName, pinned);
+                }
+            }
+            int at = i + 1;
+            for (Map.Entry<String, Integer> switchBack : switchBacks.entrySet()) {
+                statements.add(at++, new ExpressionStmt(switchCall(new NameExpr(switchBack.getKey()), switchBack.getValue())));
+            }
+        }
+    }
+
+    // Whether obj.x goes through an accessor switching obj out of the version (the accessors switch to the version owning x)
+    private static boolean leavesVersion(FieldAccessExpr access, String varName, int version, VisitContext context) {
+        if (!access.getScope().isNameExpr() || !access.getScope().asNameExpr().getNameAsString().equals(varName)
+                || context.getCurrentMethodInfo() == null) {
+            return false;
+        }
+        String typeName = context.getCurrentMethodInfo().getVariables().get(varName);
+        ClassInfo classInfo = typeName != null ? context.getSymbolTable().lookupClass(typeName) : null;
+        if (classInfo == null || !classInfo.isVersioned()) return false;
+        List<FieldInfo> fields = classInfo.getFields().get(access.getNameAsString());
+        return fields != null && Integer.parseInt(fields.get(0).getVersion()) != version;
+    }
+
+    // A field access leaving the version of a block for obj outside a statement that can be followed by a switch back
+    private static FieldAccessExpr findUnrestorableFieldAccess(BlockStmt block, String varName, int version, VisitContext context) {
+        for (FieldAccessExpr access : block.findAll(FieldAccessExpr.class)) {
+            if (!leavesVersion(access, varName, version, context) || isRepinned(access, block, varName)) continue;
+            Statement statement = access.findAncestor(Statement.class).get();
+            if (!statement.isExpressionStmt() || !(statement.getParentNode().orElse(null) instanceof BlockStmt)) {
+                return access;
+            }
+        }
+        return null;
+    }
+
+    // Whether a nested block between the node and the block pins obj again (it is checked against its own version)
+    private static boolean isRepinned(Node node, BlockStmt block, String varName) {
+        for (Node parent = node.getParentNode().orElse(null); parent != null && parent != block; parent = parent.getParentNode().orElse(null)) {
+            if (parent instanceof BlockStmt nested && nested.getStatements().stream()
+                    .takeWhile(StaticVersionDispatchVisitor::isPinMarker)
+                    .map(marker -> marker.asExpressionStmt().getExpression().asMethodCallExpr().getScope().orElse(null))
+                    .anyMatch(scope -> scope != null && scope.isNameExpr() && scope.asNameExpr().getNameAsString().equals(varName))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // The version of a valid marker obj.__pinVersion(n) on a local of a versioned class, or null after reporting it
+    private Integer resolvePinnedVersion(MethodCallExpr marker, BlockStmt block, VisitContext context) {
+        com.github.javaparser.ast.expr.Expression scope = marker.getScope().orElse(null);
+        if (scope != null && scope.isNameExpr() && context.getCurrentMethodInfo() != null
+                && marker.getArguments().size() == 1 && marker.getArgument(0).isIntegerLiteralExpr()) {
+            String typeName = context.getCurrentMethodInfo().getVariables().get(scope.asNameExpr().getNameAsString());
+            ClassInfo classInfo = typeName != null ? context.getSymbolTable().lookupClass(typeName) : null;
+            if (classInfo != null && classInfo.isVersioned()) {
+                int version = marker.getArgument(0).asIntegerLiteralExpr().asNumber().intValue();
+                if (!declaresVersion(classInfo, version)) {
+                    // __switchToVersion ignores unknown versions, so the block would silently run in another one
+                    context.reportError(marker, "Ignored " + marker + ": " + classInfo.getBaseName() + " has no version " + version + ".");
+                    return null;
+                }
+                FieldAccessExpr access = findUnrestorableFieldAccess(block, scope.asNameExpr().getNameAsString(), version, context);
+                if (access != null) {
+                    context.reportError(marker, "Ignored " + marker + ": " + access + " switches to another version outside a statement of the block.");
+                    return null;
+                }
+                return version;
+            }
+        }
+        context.reportError(marker, "Ignored " + marker + ": a version block pins a local variable of a versioned class to a version number.");
+        return null;
+    }
+
+    // The symbol table knows a version by its methods and public fields
+    private static boolean declaresVersion(ClassInfo classInfo, int version) {
+        return Stream.concat(
+                classInfo.getMethods().values().stream().flatMap(List::stream).map(MethodInfo::getVersion),
+                classInfo.getFields().values().stream().flatMap(List::stream).map(FieldInfo::getVersion))
+            .anyMatch(declared -> Integer.parseInt(declared) == version);
+    }
+
+    private List<String> resolveArgumentTypes(NodeList<com.github.javaparser.ast.expr.Expression> arguments, VisitContext context) {
         if (arguments.isEmpty()) return new ArrayList<>();
         List<String> argTypes = new ArrayList<>();
         for (com.github.javaparser.ast.expr.Expression argExpr : arguments) {
@@ -150,7 +327,7 @@ public class StaticVersionDispatchVisitor extends ModifierVisitor<SymbolTable> {
             // ... (other literal types) ...
             else if (argExpr.isNameExpr()) {
                 String varName = argExpr.asNameExpr().getNameAsString();
-                String type = currentMethodInfo.getVariables().get(varName);
+                String type = context.getCurrentMethodInfo().getVariables().get(varName);
                 argTypes.add(type != null ? type : "UNKNOWN_TYPE");
             } else {
                 argTypes.add("UNKNOWN_TYPE");
@@ -1,46 +1,76 @@
 package io.github.satsuki942;
 
+import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
 import com.github.javaparser.ast.body.FieldDeclaration;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.ast.expr.ObjectCreationExpr;
 import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
 import io.github.satsuki942.symboltable.ClassInfo;
+import io.github.satsuki942.symboltable.DependencyGraph;
 import io.github.satsuki942.symboltable.MethodInfo;
 import io.github.satsuki942.symboltable.FieldInfo;
 import io.github.satsuki942.symboltable.SymbolTable;
+import io.github.satsuki942.symboltable.VersionedName;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import com.github.javaparser.ast.body.Parameter;
 
 public class SymbolTableBuilderVisitor extends VoidVisitorAdapter<SymbolTable> {
 
-    private static final Pattern VERSIONED_CLASS_PATTERN = Pattern.compile("(.+)__(\\d+)__$");
+
+    /**
+     * Builds the symbol table of all given CompilationUnits concurrently.
+     * <p>
+     * Each CompilationUnit is analyzed on its own into a fragment table, and the fragments are combined
+     * with an ordered reduction over {@link SymbolTable#merge(SymbolTable)}. Because the reduction keeps
+     * the source order, the result is identical to visiting the units one after another.
+     *
+     * @param asts The CompilationUnits to analyze.
+     * @return The combined {@link SymbolTable}.
+     */
+    public static SymbolTable buildConcurrently(List<CompilationUnit> asts) {
+        return buildConcurrently(asts, Function.identity());
+    }
+
+    /**
+     * Builds the symbol table of the given sources concurrently, parsing each source right before it is analyzed.
+     * <p>
+     * Every AST is dropped as soon as its fragment table is built, so only as many ASTs as there are worker
+     * threads are alive at any moment. The fragments are merged exactly as in {@link #buildConcurrently(List)}.
+     *
+     * @param sources The sources to analyze, in source order.
+     * @param parser  Turns a source into its CompilationUnit.
+     * @param <T>     The type of the sources, e.g. {@link java.nio.file.Path}.
+     * @return The combined {@link SymbolTable}.
+     */
+    public static <T> SymbolTable buildConcurrently(List<T> sources, Function<? super T, CompilationUnit> parser) {
+        return sources.parallelStream()
+                      .map(source -> {
+                          SymbolTable fragment = new SymbolTable();
+                          new SymbolTableBuilderVisitor().visit(parser.apply(source), fragment);
+                          return fragment;
+                      })
+                      .reduce(SymbolTable::merge)
+                      .orElseGet(SymbolTable::new);
+    }
 
     @Override
     public void visit(ClassOrInterfaceDeclaration ClassInterfaceDecl, SymbolTable symbolTable) {
         String className = ClassInterfaceDecl.getNameAsString();
-        Matcher matcher = VERSIONED_CLASS_PATTERN.matcher(className);
-
-        String baseName;
-        String version;
-        boolean isVersioned;
-
-        if (matcher.matches()) {
-            baseName = matcher.group(1); // e.g., "Test" from "Test__1__"
-            isVersioned = true;
-            version = matcher.group(2); // e.g., "1" from "Test__1__"
-        } else {
-            baseName = className;
-            isVersioned = false;
-            version = "normal"; // Default version for non-versioned classes
-        }
+        // Interning the name here lets every later pass over the table resolve it with a hash lookup
+        VersionedName versionedName = symbolTable.versionedName(className);
+
+        String baseName = versionedName.getBaseName(); // e.g., "Test" from "Test__1__"
+        boolean isVersioned = versionedName.isVersioned();
+        // e.g., "1" from "Test__1__"; "normal" is the default version for non-versioned classes
+        String version = isVersioned ? versionedName.getVersion() : "normal";
 
         // Prepare a method map depending on the class name
         ClassInfo existingClassInfo = symbolTable.lookupClass(baseName);
@@ -87,6 +117,17 @@ public class SymbolTableBuilderVisitor extends VoidVisitorAdapter<SymbolTable> {
         ClassInfo classInfo = new ClassInfo(baseName, isVersioned, methodsMap, fieldsMap);
         symbolTable.addClass(classInfo);
 
+        // --- Record which classes this class uses ---
+        DependencyGraph dependencyGraph = symbolTable.getDependencyGraph();
+        dependencyGraph.addClass(className);
+        ClassInterfaceDecl.getExtendedTypes().forEach(type -> dependencyGraph.addDependency(className, type.asString()));
+        ClassInterfaceDecl.getImplementedTypes().forEach(type -> dependencyGraph.addDependency(className, type.asString()));
+        // Fields and local variables, parameters (of constructors too), return types
+        ClassInterfaceDecl.findAll(VariableDeclarator.class).forEach(var -> dependencyGraph.addDependency(className, var.getTypeAsString()));
+        ClassInterfaceDecl.findAll(Parameter.class).forEach(parameter -> dependencyGraph.addDependency(className, parameter.getTypeAsString()));
+        ClassInterfaceDecl.getMethods().forEach(method -> dependencyGraph.addDependency(className, method.getTypeAsString()));
+        ClassInterfaceDecl.findAll(ObjectCreationExpr.class).forEach(creation -> dependencyGraph.addDependency(className, creation.getType().asString()));
+
         // Call the parent class's visit method to allow exploration of nested classes, etc.
         super.visit(ClassInterfaceDecl, symbolTable);
     }
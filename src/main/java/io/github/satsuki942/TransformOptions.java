@@ -0,0 +1,243 @@
+package io.github.satsuki942;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Properties;
+
+/**
+ * Options controlling how {@link MyLangTransformer} emits the unified classes.
+ * <p>
+ * Options can be read from a {@code transform.properties} file placed next to the MyLang sources
+ * and overridden by {@code -Dmvo.<key>=<value>} system properties.
+ */
+public class TransformOptions {
+
+    /**
+     * The name of the per-project options file.
+     */
+    public static final String OPTIONS_FILE = "transform.properties";
+
+    /**
+     * The prefix of the system properties that override the options file.
+     */
+    public static final String SYSTEM_PROPERTY_PREFIX = "mvo.";
+
+    /**
+     * How the current version of a unified object is shared between threads.
+     */
+    public enum Concurrency {
+        /** A plain field; unified objects must not be shared between threads. */
+        NONE,
+        /** A volatile field; all threads observe and switch one shared current version. */
+        VOLATILE,
+        /** A {@link ThreadLocal}; every thread switches and dispatches on its own current version. */
+        THREAD_LOCAL
+    }
+
+    /**
+     * How public fields of versioned classes are accessed from outside the unified class.
+     */
+    public enum FieldAccess {
+        /** Through {@code __get_x}/{@code __set_x}, which switch to the field's version first. */
+        SWITCHING,
+        /** Through {@code __get_x}/{@code __set_x}, which leave the current version untouched. */
+        DIRECT,
+        /** At the call site as {@code obj.vN_instance.x}, leaving the current version untouched. */
+        INLINE
+    }
+
+    /**
+     * How the versions of a unified object are laid out in memory.
+     */
+    public enum Layout {
+        /** One {@code VN_Impl} object per version behind a {@code currentState} pointer (State pattern). */
+        STATE_OBJECTS,
+        /** All versions' fields and methods hoisted into the unified object, dispatched on an int state. */
+        FLATTENED
+    }
+
+    /**
+     * Whether the current version belongs to each unified object or to the whole class.
+     */
+    public enum VersionScope {
+        /** Every object has its own current version. */
+        OBJECT,
+        /**
+         * All objects of a class share one current version. Ambiguous methods dispatch through
+         * {@link java.lang.invoke.MutableCallSite}s that are relinked when the class switches versions.
+         * Only used by the {@link Layout#STATE_OBJECTS} layout; the concurrency option does not apply.
+         */
+        CLASS
+    }
+
+    private Concurrency concurrency = Concurrency.NONE;
+    private FieldAccess fieldAccess = FieldAccess.SWITCHING;
+    private Layout layout = Layout.STATE_OBJECTS;
+    private VersionScope versionScope = VersionScope.OBJECT;
+    private boolean eliminateDeadCode = false;
+    private boolean devirtualize = false;
+    private boolean bulkContainer = false;
+    private boolean binaryCodec = false;
+
+    public Concurrency getConcurrency() {
+        return concurrency;
+    }
+
+    public TransformOptions setConcurrency(Concurrency concurrency) {
+        this.concurrency = concurrency;
+        return this;
+    }
+
+    public FieldAccess getFieldAccess() {
+        return fieldAccess;
+    }
+
+    public TransformOptions setFieldAccess(FieldAccess fieldAccess) {
+        this.fieldAccess = fieldAccess;
+        return this;
+    }
+
+    public Layout getLayout() {
+        return layout;
+    }
+
+    public TransformOptions setLayout(Layout layout) {
+        this.layout = layout;
+        return this;
+    }
+
+    public VersionScope getVersionScope() {
+        return versionScope;
+    }
+
+    public TransformOptions setVersionScope(VersionScope versionScope) {
+        this.versionScope = versionScope;
+        return this;
+    }
+
+    /**
+     * Returns whether versions and members unreachable from {@code main} are removed before the unified classes are built.
+     * Only the in-memory transformation analyzes the whole program; streaming and pipeline mode ignore this option
+     * and report it in {@link MyLangTransformer#getDiagnostics()}.
+     *
+     * @return {@code true} to run {@link io.github.satsuki942.analysis.DeadCodeEliminator}.
+     */
+    public boolean isEliminateDeadCode() {
+        return eliminateDeadCode;
+    }
+
+    public TransformOptions setEliminateDeadCode(boolean eliminateDeadCode) {
+        this.eliminateDeadCode = eliminateDeadCode;
+        return this;
+    }
+
+    /**
+     * Returns whether calls of methods defined in several versions are devirtualized where the receiver's version is known.
+     * Not supported with a class-wide version scope, where any object can switch the receiver, nor in streaming and
+     * pipeline mode (which report it in {@link MyLangTransformer#getDiagnostics()}).
+     * Not supported with {@link Concurrency#VOLATILE} or {@link Concurrency#THREAD_LOCAL} either, where another thread
+     * may switch the receiver (or the calling thread's version is not the one tracked) between two calls.
+     *
+     * @return {@code true} to run {@link io.github.satsuki942.analysis.VersionStateAnalysis}.
+     */
+    public boolean isDevirtualizing() {
+        return devirtualize && !isClassWide() && concurrency == Concurrency.NONE;
+    }
+
+    public TransformOptions setDevirtualize(boolean devirtualize) {
+        this.devirtualize = devirtualize;
+        return this;
+    }
+
+    /**
+     * Returns whether a struct-of-arrays companion (e.g. {@code TestPool}) is generated next to every unified class.
+     *
+     * @return {@code true} to run {@link io.github.satsuki942.unifiedclassbuilder.BulkContainerGenerator}.
+     */
+    public boolean isBulkContainer() {
+        return bulkContainer;
+    }
+
+    public TransformOptions setBulkContainer(boolean bulkContainer) {
+        this.bulkContainer = bulkContainer;
+        return this;
+    }
+
+    /**
+     * Returns whether every unified class gets {@code __encode(ByteBuffer)} and {@code __decode(ByteBuffer)}.
+     * Not supported with a class-wide version scope, where the current version does not belong to an object.
+     *
+     * @return {@code true} to run {@link io.github.satsuki942.unifiedclassbuilder.BinaryCodecGenerator}.
+     */
+    public boolean isBinaryCodec() {
+        return binaryCodec && !isClassWide();
+    }
+
+    public TransformOptions setBinaryCodec(boolean binaryCodec) {
+        this.binaryCodec = binaryCodec;
+        return this;
+    }
+
+    /**
+     * Returns whether the unified classes dispatch on a class-wide current version.
+     *
+     * @return {@code true} for {@link VersionScope#CLASS} with the {@link Layout#STATE_OBJECTS} layout.
+     */
+    public boolean isClassWide() {
+        return versionScope == VersionScope.CLASS && layout == Layout.STATE_OBJECTS;
+    }
+
+    /**
+     * Applies every option found in the given properties, leaving the others untouched.
+     *
+     * @param properties The properties to read.
+     * @param prefix     The prefix of the option keys (e.g. {@code "mvo."}), or an empty string.
+     * @return This options object.
+     */
+    public TransformOptions apply(Properties properties, String prefix) {
+        setConcurrency(enumOption(properties, prefix + "concurrency", Concurrency.class, concurrency));
+        setFieldAccess(enumOption(properties, prefix + "fieldAccess", FieldAccess.class, fieldAccess));
+        setLayout(enumOption(properties, prefix + "layout", Layout.class, layout));
+        setVersionScope(enumOption(properties, prefix + "versionScope", VersionScope.class, versionScope));
+        setEliminateDeadCode(booleanOption(properties, prefix + "eliminateDeadCode", eliminateDeadCode));
+        setDevirtualize(booleanOption(properties, prefix + "devirtualize", devirtualize));
+        setBulkContainer(booleanOption(properties, prefix + "bulkContainer", bulkContainer));
+        setBinaryCodec(booleanOption(properties, prefix + "binaryCodec", binaryCodec));
+        return this;
+    }
+
+    /**
+     * Loads the options for a MyLang project: the {@link #OPTIONS_FILE} in its directory, if any,
+     * overridden by {@code mvo.*} system properties.
+     *
+     * @param projectDir The directory holding the MyLang sources.
+     * @return The loaded options.
+     * @throws IOException If the options file exists but cannot be read.
+     */
+    public static TransformOptions load(Path projectDir) throws IOException {
+        TransformOptions options = new TransformOptions();
+        Path optionsFile = projectDir.resolve(OPTIONS_FILE);
+        if (Files.isRegularFile(optionsFile)) {
+            Properties properties = new Properties();
+            try (InputStream in = Files.newInputStream(optionsFile)) {
+                properties.load(in);
+            }
+            options.apply(properties, "");
+        }
+        return options.apply(System.getProperties(), SYSTEM_PROPERTY_PREFIX);
+    }
+
+    // -- HELPER METHODS --
+    private static <E extends Enum<E>> E enumOption(Properties properties, String key, Class<E> type, E current) {
+        String value = properties.getProperty(key);
+        return value == null ? current : Enum.valueOf(type, value.trim().toUpperCase(Locale.ROOT));
+    }
+
+    private static boolean booleanOption(Properties properties, String key, boolean current) {
+        String value = properties.getProperty(key);
+        return value == null ? current : Boolean.parseBoolean(value.trim());
+    }
+}
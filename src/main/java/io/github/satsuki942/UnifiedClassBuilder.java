@@ -4,13 +4,21 @@ import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
 
 import io.github.satsuki942.symboltable.SymbolTable;
+import io.github.satsuki942.unifiedclassbuilder.BinaryCodecGenerator;
+import io.github.satsuki942.unifiedclassbuilder.BulkContainerGenerator;
+import io.github.satsuki942.unifiedclassbuilder.ClassBuildContext;
 import io.github.satsuki942.unifiedclassbuilder.ConstructorGenerator;
+import io.github.satsuki942.unifiedclassbuilder.FlattenedLayoutGenerator;
 import io.github.satsuki942.unifiedclassbuilder.GetterSetterGenerator;
 import io.github.satsuki942.unifiedclassbuilder.MemberMerger;
+import io.github.satsuki942.unifiedclassbuilder.SharedMethodDetector;
 import io.github.satsuki942.unifiedclassbuilder.StateInfrastructureGenerator;
 import io.github.satsuki942.unifiedclassbuilder.StubMethodGenerator;
+import io.github.satsuki942.util.Logger;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Orchestrates the transformation of versioned classes into a single, unified class.
@@ -19,9 +27,12 @@ import java.util.List;
  * each responsible for a specific part of the final AST generation.
  */
 public class UnifiedClassBuilder {
+    private static final Logger LOGGER = Logger.get(UnifiedClassBuilder.class);
+
     private final String baseName;
     private final List<CompilationUnit> versionAsts;
     private final SymbolTable symbolTable;
+    private final TransformOptions options;
     private final ClassOrInterfaceDeclaration newCIDecl;
     private final CompilationUnit newCu;
 
@@ -33,9 +44,22 @@ public class UnifiedClassBuilder {
      * @param symbolTable The symbol table containing information about all classes in the project.
      */
     public UnifiedClassBuilder(String baseName, List<CompilationUnit> versionAsts, SymbolTable symbolTable) {
+        this(baseName, versionAsts, symbolTable, new TransformOptions());
+    }
+
+    /**
+     * Constructs a new UnifiedClassBuilder with explicit emission options.
+     *
+     * @param baseName    The base name of the class to be unified (e.g., "Test").
+     * @param versionAsts A list of CompilationUnits for each versioned class (e.g., ASTs for "Test__1__", "Test__2__").
+     * @param symbolTable The symbol table containing information about all classes in the project.
+     * @param options     The options controlling the emitted code.
+     */
+    public UnifiedClassBuilder(String baseName, List<CompilationUnit> versionAsts, SymbolTable symbolTable, TransformOptions options) {
         this.baseName = baseName;
         this.versionAsts = versionAsts;
         this.symbolTable = symbolTable;
+        this.options = options;
 
         this.newCu = new CompilationUnit();
         this.versionAsts.stream().findFirst()
@@ -44,6 +68,22 @@ public class UnifiedClassBuilder {
         this.newCIDecl = this.newCu.addClass(baseName).setPublic(true);
     }
 
+    /**
+     * Builds the unified class and, with {@link TransformOptions#isBulkContainer()}, its struct-of-arrays pool.
+     * The pool is generated first, from the untouched version ASTs.
+     *
+     * @return The unified class, followed by its pool if one could be generated.
+     */
+    public List<CompilationUnit> buildAll() {
+        List<CompilationUnit> units = new ArrayList<>();
+        if (this.options.isBulkContainer()) {
+            ClassBuildContext context = new ClassBuildContext(baseName, this.newCIDecl, this.versionAsts);
+            new BulkContainerGenerator(context, symbolTable).generate().ifPresent(units::add);
+        }
+        units.add(0, build());
+        return units;
+    }
+
     /**
      * Executes the full build process to generate the unified class AST.
      * <p>
@@ -53,25 +93,48 @@ public class UnifiedClassBuilder {
      * <li>Merges members from versioned classes into their respective implementation inner classes.</li>
      * <li>Generates public constructors for the unified class.</li>
      * <li>Generates public stub methods that handle the dispatch logic.</li>
+     * <li>Optionally generates a binary codec (see {@link BinaryCodecGenerator}).</li>
      * </ol>
+     * Methods that several versions implement identically (see {@link SharedMethodDetector}) are emitted once instead of per version.
+     * The versions are scanned once into a {@link ClassBuildContext} shared by all builders.
+     * With {@link TransformOptions.Layout#FLATTENED}, the whole class is generated by {@link FlattenedLayoutGenerator} instead,
+     * unless its versions have members that layout cannot hold.
      *
      * @return The {@link CompilationUnit} containing the newly generated, unified class.
      */
     public CompilationUnit build() {
+        ClassBuildContext context = new ClassBuildContext(baseName, this.newCIDecl, this.versionAsts);
+        SharedMethodDetector sharedMethods = new SharedMethodDetector(this.versionAsts, symbolTable.lookupClass(baseName));
+        LOGGER.debug(() -> "Shared " + sharedMethods.getSharedCount() + " identical method(s) of " + baseName);
+
+        if (this.options.getLayout() == TransformOptions.Layout.FLATTENED) {
+            Optional<String> unsupported = FlattenedLayoutGenerator.findUnsupportedMember(context);
+            if (unsupported.isEmpty()) {
+                new FlattenedLayoutGenerator(context, symbolTable, this.options, sharedMethods).generate();
+                return newCu;
+            }
+            LOGGER.debug(() -> "Kept the state-object layout for " + baseName + ": " + unsupported.get());
+        }
+
         // 1. Generate the unified class structure
-        new StateInfrastructureGenerator(this.newCIDecl, this.versionAsts).generate();
+        new StateInfrastructureGenerator(context, this.options).generate();
 
         // 2. Merge members from all versioned classes into the unified class
-        new MemberMerger(this.newCIDecl, this.versionAsts).merge();
+        new MemberMerger(context, sharedMethods).merge();
 
         // 3. Generate public stubs for methods
-        new StubMethodGenerator(newCIDecl, symbolTable, baseName).generate();
+        new StubMethodGenerator(context, symbolTable, this.options, sharedMethods).generate();
 
         // 4. Generate public constructors for the unified class
-        new ConstructorGenerator(this.newCIDecl, this.versionAsts).generate();
+        new ConstructorGenerator(context, this.options).generate();
 
         // 5. Generate getter and setter methods for all public fields
-        new GetterSetterGenerator(this.newCIDecl, symbolTable, baseName).generate();
+        new GetterSetterGenerator(this.newCIDecl, symbolTable, baseName, this.options).generate();
+
+        // 6. Optionally generate the binary codec
+        if (this.options.isBinaryCodec()) {
+            new BinaryCodecGenerator(context, this.options, (versionSuffix, fieldName) -> fieldName, false).generate();
+        }
 
         return newCu;
     }
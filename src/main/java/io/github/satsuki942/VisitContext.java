@@ -0,0 +1,109 @@
+package io.github.satsuki942;
+
+import io.github.satsuki942.symboltable.ClassInfo;
+import io.github.satsuki942.symboltable.MethodInfo;
+import io.github.satsuki942.symboltable.SymbolTable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.github.javaparser.ast.Node;
+
+/**
+ * The state of one STEP2 traversal: the symbol table it resolves against, the class and method it is in, the
+ * variables pinned to a version by the enclosing version blocks, and the problems found in the source.
+ * <p>
+ * Keeping this state out of the visitors makes them stateless, so one visitor instance can rewrite several
+ * CompilationUnits at the same time (e.g. for concurrent requests of the transpile service) as long as every
+ * traversal gets its own context.
+ */
+public final class VisitContext {
+    private final SymbolTable symbolTable;
+    private ClassInfo currentClassInfo;
+    private MethodInfo currentMethodInfo;
+    // Local variable -> version it is pinned to by the innermost enclosing version block
+    private final Map<String, Integer> pinnedVersions = new HashMap<>();
+    private final List<String> diagnostics = new ArrayList<>();
+
+    public VisitContext(SymbolTable symbolTable) {
+        this.symbolTable = symbolTable;
+    }
+
+    public SymbolTable getSymbolTable() {
+        return symbolTable;
+    }
+
+    public ClassInfo getCurrentClassInfo() {
+        return currentClassInfo;
+    }
+
+    public void setCurrentClassInfo(ClassInfo currentClassInfo) {
+        this.currentClassInfo = currentClassInfo;
+    }
+
+    public MethodInfo getCurrentMethodInfo() {
+        return currentMethodInfo;
+    }
+
+    public void setCurrentMethodInfo(MethodInfo currentMethodInfo) {
+        this.currentMethodInfo = currentMethodInfo;
+    }
+
+    /**
+     * @param variable A local variable name.
+     * @return The version the variable is pinned to, or null outside of a version block for it.
+     */
+    public Integer getPinnedVersion(String variable) {
+        return pinnedVersions.get(variable);
+    }
+
+    /**
+     * Pins a variable to a version while a version block is visited.
+     *
+     * @param variable The local variable named by the block.
+     * @param version  The version it runs in throughout the block.
+     * @return The version of the enclosing block, to be passed to {@link #unpin}, or null.
+     */
+    public Integer pin(String variable, int version) {
+        return pinnedVersions.put(variable, version);
+    }
+
+    /**
+     * Ends a version block.
+     *
+     * @param variable The local variable named by the block.
+     * @param outer    The value returned by {@link #pin}.
+     */
+    public void unpin(String variable, Integer outer) {
+        if (outer == null) {
+            pinnedVersions.remove(variable);
+        } else {
+            pinnedVersions.put(variable, outer);
+        }
+    }
+
+    /**
+     * Records a problem in the source that the traversal worked around, e.g. an ignored version block marker.
+     *
+     * @param node    The offending node, which locates the problem.
+     * @param message What was wrong and what was done about it.
+     */
+    public void reportError(Node node, String message) {
+        String file = node.findCompilationUnit()
+                .flatMap(cu -> cu.getStorage())
+                .map(storage -> storage.getFileName())
+                .orElse("-");
+        String line = node.getBegin().map(position -> String.valueOf(position.line)).orElse("-");
+        diagnostics.add(file + ":" + line + ": " + message);
+    }
+
+    /**
+     * @return The problems reported so far, each as "File.java:line: message".
+     */
+    public List<String> getDiagnostics() {
+        return Collections.unmodifiableList(diagnostics);
+    }
+}
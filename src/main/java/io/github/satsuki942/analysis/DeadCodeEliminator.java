@@ -0,0 +1,427 @@
+package io.github.satsuki942.analysis;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.BodyDeclaration;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.ConstructorDeclaration;
+import com.github.javaparser.ast.body.FieldDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.ast.expr.AssignExpr;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.FieldAccessExpr;
+import com.github.javaparser.ast.expr.LambdaExpr;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.expr.MethodReferenceExpr;
+import com.github.javaparser.ast.expr.ObjectCreationExpr;
+import com.github.javaparser.ast.expr.UnaryExpr;
+import com.github.javaparser.ast.stmt.ExplicitConstructorInvocationStmt;
+
+import io.github.satsuki942.symboltable.ClassInfo;
+import io.github.satsuki942.symboltable.FieldInfo;
+import io.github.satsuki942.symboltable.MethodInfo;
+import io.github.satsuki942.symboltable.SymbolTable;
+import io.github.satsuki942.util.AstUtil;
+
+/**
+ * A whole-program reachability analysis that removes unused versions and members before the unified classes are built.
+ * <p>
+ * The analysis runs on the ASTs rewritten by STEP2 and starts from the {@code main} methods of the normal classes.
+ * It is name-based and therefore conservative: a call of {@code m} on any receiver keeps every method named {@code m}.
+ * A version is kept when the program can reach it:
+ * <ul>
+ * <li>a reached {@code new B(...)} call matches a constructor owned by the version,</li>
+ * <li>a reached method exists in this version only (STEP2 switches to the version before calling it),</li>
+ * <li>a reached field accessor or inlined field access refers to a field of the version, or</li>
+ * <li>the class is instantiated and creating the version's implementation may have side effects, i.e. it calls
+ * a method or constructor, creates a lambda or method reference, or writes anything but its own instance fields
+ * and local variables (e.g. a static field or an array element).</li>
+ * </ul>
+ * Methods of kept versions that are never called are removed as well, together with their stubs, and accessors are
+ * only generated for fields accessed from outside. Overriding methods (e.g. {@code toString}) are always kept.
+ */
+public final class DeadCodeEliminator {
+
+    private static final Pattern INSTANCE_FIELD_PATTERN = Pattern.compile("v(\\d+)_instance");
+    private static final Set<String> OBJECT_METHODS = Set.of("toString", "equals", "hashCode", "finalize", "clone");
+
+    // A body that becomes reachable as a whole: a method, a constructor or the field/initializer part of a type
+    private static class Unit {
+        final Node node;
+        final String baseName;
+        final String version; // e.g. "v1", or null for normal classes
+        Unit(Node node, String baseName, String version) {
+            this.node = node;
+            this.baseName = baseName;
+            this.version = version;
+        }
+    }
+
+    private final SymbolTable symbolTable;
+    private final List<Unit> methods = new ArrayList<>();
+    private final List<Unit> constructors = new ArrayList<>();
+    private final List<Unit> initializers = new ArrayList<>();
+    // base name -> version -> whether creating the version's implementation is free of side effects
+    private final Map<String, Map<String, Boolean>> versions = new LinkedHashMap<>();
+    // base name -> constructor parameter types -> owner version (the first version declaring them)
+    private final Map<String, Map<List<String>, String>> constructorOwners = new HashMap<>();
+    private final Set<String> rootMethods = new HashSet<>();
+
+    private final Set<String> reachedMethods = new HashSet<>();
+    private final Set<String> reachedFields = new HashSet<>();
+    private final Set<String> reachedVersions = new HashSet<>();
+    private final Set<String> constructedClasses = new HashSet<>();
+    private final Map<String, Set<Integer>> constructedArities = new HashMap<>();
+    private final Set<Node> scanned = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    /**
+     * Analyzes the given program.
+     *
+     * @param asts        All CompilationUnits of the program, after STEP2.
+     * @param symbolTable The symbol table of the program.
+     */
+    public DeadCodeEliminator(List<CompilationUnit> asts, SymbolTable symbolTable) {
+        this.symbolTable = symbolTable;
+        asts.forEach(this::index);
+        solve();
+    }
+
+    /**
+     * Returns whether a version of a unified class is reachable.
+     *
+     * @param baseName The base name of the class (e.g. "Test").
+     * @param version  The version suffix (e.g. "v1").
+     * @return {@code true} if the version has to be kept.
+     */
+    public boolean isVersionReachable(String baseName, String version) {
+        return reachedVersions.contains(key(baseName, version));
+    }
+
+    /**
+     * Returns whether a method of a version has to be kept.
+     *
+     * @param baseName The base name of the class (e.g. "Test").
+     * @param version  The version suffix (e.g. "v1").
+     * @param name     The name of the method.
+     * @return {@code true} if the version is reachable and the method may be called.
+     */
+    public boolean isMethodReachable(String baseName, String version, String name) {
+        return isVersionReachable(baseName, version)
+            && (reachedMethods.contains(name) || rootMethods.contains(key(baseName, version) + "#" + name));
+    }
+
+    /**
+     * Removes the unreachable versions of a unified class and the unreachable methods of the others.
+     * If no version is reachable, the first one is kept so that the class itself still exists.
+     * Like STEP2, this modifies the given CompilationUnits in place.
+     *
+     * @param baseName    The base name of the class.
+     * @param versionAsts The versions of the class.
+     * @return The reachable versions.
+     */
+    public List<CompilationUnit> prune(String baseName, List<CompilationUnit> versionAsts) {
+        List<CompilationUnit> kept = versionAsts.stream()
+                .filter(cu -> isVersionReachable(baseName, versionOf(cu)))
+                .collect(Collectors.toList());
+        if (kept.isEmpty() && !versionAsts.isEmpty()) {
+            kept.add(versionAsts.get(0));
+        }
+
+        for (CompilationUnit cu : kept) {
+            String version = versionOf(cu);
+            cu.getPrimaryType().ifPresent(type -> type.getMethods().stream()
+                    .filter(method -> !isMethodReachable(baseName, version, method.getNameAsString()))
+                    .collect(Collectors.toList())
+                    .forEach(MethodDeclaration::remove));
+        }
+        return kept;
+    }
+
+    /**
+     * Returns a copy of the symbol table without the unreachable versions, methods and accessed-from-outside fields,
+     * for generating the stubs and accessors of the pruned classes. The original symbol table is not modified.
+     *
+     * @return The pruned symbol table.
+     */
+    public SymbolTable getPrunedSymbolTable() {
+        SymbolTable pruned = new SymbolTable();
+        for (ClassInfo classInfo : symbolTable.getClasses()) {
+            if (!classInfo.isVersioned()) {
+                pruned.addClass(classInfo);
+                continue;
+            }
+            String baseName = classInfo.getBaseName();
+            Map<String, List<MethodInfo>> methods = filter(classInfo.getMethods(),
+                    method -> isMethodReachable(baseName, "v" + method.getVersion(), method.getName()));
+            Map<String, List<FieldInfo>> fields = filter(classInfo.getFields(),
+                    field -> isVersionReachable(baseName, "v" + field.getVersion()) && reachedFields.contains(field.getName()));
+            pruned.addClass(new ClassInfo(baseName, true, methods, fields));
+        }
+        return pruned;
+    }
+
+    /**
+     * @return A one-line summary of what was removed.
+     */
+    public String getReport() {
+        int versionCount = 0;
+        int prunedVersions = 0;
+        for (Map.Entry<String, Map<String, Boolean>> entry : versions.entrySet()) {
+            for (String version : entry.getValue().keySet()) {
+                versionCount++;
+                if (!isVersionReachable(entry.getKey(), version)) prunedVersions++;
+            }
+        }
+        int methodCount = 0;
+        int prunedMethods = 0;
+        for (Unit unit : methods) {
+            if (unit.version == null) continue;
+            methodCount++;
+            if (!isMethodReachable(unit.baseName, unit.version, ((MethodDeclaration) unit.node).getNameAsString())) prunedMethods++;
+        }
+        return String.format("Dead code elimination removed %d of %d versions and %d of %d versioned methods",
+                prunedVersions, versionCount, prunedMethods, methodCount);
+    }
+
+    // -- INDEXING --
+    private void index(CompilationUnit cu) {
+        String baseName = AstUtil.getBaseName(cu);
+        String version = AstUtil.isVersioned(cu) ? versionOf(cu) : null;
+
+        for (TypeDeclaration<?> type : cu.findAll(TypeDeclaration.class, t -> t.getParentNode().map(p -> p instanceof CompilationUnit || p instanceof TypeDeclaration).orElse(false))) {
+            boolean overridesSupertypes = type instanceof ClassOrInterfaceDeclaration
+                    && (!((ClassOrInterfaceDeclaration) type).getExtendedTypes().isEmpty()
+                        || !((ClassOrInterfaceDeclaration) type).getImplementedTypes().isEmpty());
+
+            for (BodyDeclaration<?> member : type.getMembers()) {
+                if (member.isMethodDeclaration()) {
+                    MethodDeclaration method = member.asMethodDeclaration();
+                    methods.add(new Unit(method, baseName, version));
+                    if (overridesSupertypes || method.isAnnotationPresent("Override") || OBJECT_METHODS.contains(method.getNameAsString())
+                            || (version == null && method.isStatic() && method.getNameAsString().equals("main"))) {
+                        rootMethods.add(key(baseName, version) + "#" + method.getNameAsString());
+                    }
+                } else if (member.isConstructorDeclaration()) {
+                    constructors.add(new Unit(member, baseName, version));
+                } else if (!member.isTypeDeclaration()) {
+                    initializers.add(new Unit(member, baseName, version));
+                }
+            }
+        }
+
+        if (version != null) {
+            cu.getPrimaryType().ifPresent(type -> {
+                versions.computeIfAbsent(baseName, k -> new LinkedHashMap<>()).put(version, isSideEffectFree(type));
+                Map<List<String>, String> owners = constructorOwners.computeIfAbsent(baseName, k -> new LinkedHashMap<>());
+                for (ConstructorDeclaration ctor : type.getConstructors()) {
+                    owners.putIfAbsent(parameterList(ctor), version);
+                }
+            });
+        }
+    }
+
+    // Creating the implementation only runs field initializers, initializer blocks and the no-arg constructor
+    private static boolean isSideEffectFree(TypeDeclaration<?> type) {
+        Set<String> ownFields = type.getFields().stream()
+                .filter(field -> !field.isStatic())
+                .flatMap(field -> field.getVariables().stream())
+                .map(VariableDeclarator::getNameAsString)
+                .collect(Collectors.toSet());
+        List<Node> construction = new ArrayList<>();
+        for (BodyDeclaration<?> member : type.getMembers()) {
+            if (member.isFieldDeclaration() || member.isInitializerDeclaration()) {
+                construction.add(member);
+            } else if (member.isConstructorDeclaration() && member.asConstructorDeclaration().getParameters().isEmpty()) {
+                construction.add(member);
+            }
+        }
+        return construction.stream().noneMatch(node -> node.findFirst(MethodCallExpr.class).isPresent()
+                || node.findFirst(ObjectCreationExpr.class).isPresent()
+                || node.findFirst(ExplicitConstructorInvocationStmt.class).isPresent()
+                // A lambda or method reference may be stored and run later by anyone holding it
+                || node.findFirst(LambdaExpr.class).isPresent()
+                || node.findFirst(MethodReferenceExpr.class).isPresent()
+                || node.findFirst(AssignExpr.class, assign -> !isLocalTarget(assign.getTarget(), node, ownFields)).isPresent()
+                || node.findFirst(UnaryExpr.class, unary -> isIncrementOrDecrement(unary)
+                        && !isLocalTarget(unary.getExpression(), node, ownFields)).isPresent());
+    }
+
+    // Whether writing the target only changes the version's own instance fields or the body's local variables
+    private static boolean isLocalTarget(Expression target, Node body, Set<String> ownFields) {
+        if (target.isNameExpr()) {
+            String name = target.asNameExpr().getNameAsString();
+            return ownFields.contains(name)
+                || body.findFirst(VariableDeclarator.class, var -> var.getNameAsString().equals(name)
+                        && !(var.getParentNode().orElse(null) instanceof FieldDeclaration)).isPresent();
+        }
+        if (target.isFieldAccessExpr()) {
+            FieldAccessExpr access = target.asFieldAccessExpr();
+            return access.getScope().isThisExpr() && ownFields.contains(access.getNameAsString());
+        }
+        // Array elements, fields of other objects and static fields are visible outside the version
+        return false;
+    }
+
+    private static boolean isIncrementOrDecrement(UnaryExpr unary) {
+        UnaryExpr.Operator operator = unary.getOperator();
+        return operator == UnaryExpr.Operator.PREFIX_INCREMENT || operator == UnaryExpr.Operator.PREFIX_DECREMENT
+            || operator == UnaryExpr.Operator.POSTFIX_INCREMENT || operator == UnaryExpr.Operator.POSTFIX_DECREMENT;
+    }
+
+    // -- SOLVING --
+    // Scans every live body until no new body becomes live
+    private void solve() {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Unit unit : methods) {
+                String name = ((MethodDeclaration) unit.node).getNameAsString();
+                boolean live = unit.version == null
+                        ? reachedMethods.contains(name) || rootMethods.contains(key(unit.baseName, null) + "#" + name)
+                        : isMethodReachable(unit.baseName, unit.version, name);
+                changed |= live && scan(unit);
+            }
+            for (Unit unit : constructors) {
+                changed |= isConstructorLive(unit) && scan(unit);
+            }
+            for (Unit unit : initializers) {
+                changed |= (unit.version == null || isVersionReachable(unit.baseName, unit.version)) && scan(unit);
+            }
+            for (String baseName : constructedClasses) {
+                for (Map.Entry<String, Boolean> version : versions.getOrDefault(baseName, Map.of()).entrySet()) {
+                    if (!version.getValue()) {
+                        changed |= reachedVersions.add(key(baseName, version.getKey()));
+                    }
+                }
+            }
+        }
+    }
+
+    private boolean isConstructorLive(Unit unit) {
+        ConstructorDeclaration ctor = (ConstructorDeclaration) unit.node;
+        if (unit.version == null) {
+            return constructedClasses.contains(unit.baseName);
+        }
+        // The unified constructors create every version, the non-owners through their no-arg constructors
+        return isVersionReachable(unit.baseName, unit.version)
+            && (ctor.getParameters().isEmpty()
+                || constructedArities.getOrDefault(unit.baseName, Set.of()).contains(ctor.getParameters().size()));
+    }
+
+    private boolean scan(Unit unit) {
+        if (!scanned.add(unit.node)) {
+            return false;
+        }
+        for (MethodCallExpr call : unit.node.findAll(MethodCallExpr.class)) {
+            String name = call.getNameAsString();
+            if (name.startsWith("__get_") || name.startsWith("__set_")) {
+                reachField(name.substring("__get_".length()), null);
+            } else {
+                reachMethod(name);
+            }
+        }
+        for (MethodReferenceExpr reference : unit.node.findAll(MethodReferenceExpr.class)) {
+            reachMethod(reference.getIdentifier());
+        }
+        for (ObjectCreationExpr creation : unit.node.findAll(ObjectCreationExpr.class)) {
+            reachConstructor(creation.getType().getNameAsString(), creation.getArguments().size());
+        }
+        // Inlined field accesses: obj.vN_instance.x
+        for (FieldAccessExpr access : unit.node.findAll(FieldAccessExpr.class)) {
+            if (access.getScope().isFieldAccessExpr()) {
+                Matcher matcher = INSTANCE_FIELD_PATTERN.matcher(access.getScope().asFieldAccessExpr().getNameAsString());
+                if (matcher.matches()) {
+                    reachField(access.getNameAsString(), "v" + matcher.group(1));
+                }
+            }
+        }
+        return true;
+    }
+
+    private void reachMethod(String name) {
+        if (!reachedMethods.add(name)) {
+            return;
+        }
+        // Methods defined in a single version are called after switching to that version
+        for (ClassInfo classInfo : symbolTable.getClasses()) {
+            if (!classInfo.isVersioned() || !classInfo.getMethods().containsKey(name)) continue;
+            Map<String, List<MethodInfo>> bySignature = classInfo.getMethods().get(name).stream()
+                    .collect(Collectors.groupingBy(method -> method.getParameterTypes().toString()));
+            bySignature.values().stream()
+                    .filter(overloads -> overloads.size() == 1)
+                    .forEach(overloads -> reachedVersions.add(key(classInfo.getBaseName(), "v" + overloads.get(0).getVersion())));
+        }
+    }
+
+    private void reachField(String name, String version) {
+        reachedFields.add(name);
+        for (ClassInfo classInfo : symbolTable.getClasses()) {
+            if (!classInfo.isVersioned()) continue;
+            for (FieldInfo field : classInfo.getFields().getOrDefault(name, List.of())) {
+                if (version == null || version.equals("v" + field.getVersion())) {
+                    reachedVersions.add(key(classInfo.getBaseName(), "v" + field.getVersion()));
+                }
+            }
+        }
+    }
+
+    private void reachConstructor(String baseName, int arity) {
+        constructedClasses.add(baseName);
+        constructedArities.computeIfAbsent(baseName, k -> new HashSet<>()).add(arity);
+        Map<String, Boolean> classVersions = versions.get(baseName);
+        if (classVersions == null) {
+            return;
+        }
+        Map<List<String>, String> owners = constructorOwners.getOrDefault(baseName, Map.of());
+        if (owners.isEmpty()) {
+            // The generated default constructor starts in the first version
+            reachedVersions.add(key(baseName, "v1"));
+            return;
+        }
+        owners.forEach((parameters, owner) -> {
+            if (parameters.size() == arity) {
+                reachedVersions.add(key(baseName, owner));
+            }
+        });
+    }
+
+    // -- HELPER METHODS --
+    private static <T> Map<String, List<T>> filter(Map<String, List<T>> members, Predicate<T> keep) {
+        Map<String, List<T>> filtered = new HashMap<>();
+        members.forEach((name, list) -> {
+            List<T> kept = list.stream().filter(keep).collect(Collectors.toList());
+            if (!kept.isEmpty()) {
+                filtered.put(name, kept);
+            }
+        });
+        return filtered;
+    }
+
+    private static List<String> parameterList(ConstructorDeclaration ctor) {
+        return ctor.getParameters().stream().map(p -> p.getType().asString()).collect(Collectors.toList());
+    }
+
+    private static String versionOf(CompilationUnit cu) {
+        return AstUtil.getVersionedName(cu).getVersionSuffix();
+    }
+
+    private static String key(String baseName, String version) {
+        return baseName + ":" + version;
+    }
+}
@@ -0,0 +1,368 @@
+package io.github.satsuki942.analysis;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.CallableDeclaration;
+import com.github.javaparser.ast.body.ConstructorDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.ast.expr.AssignExpr;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.LambdaExpr;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.expr.NameExpr;
+import com.github.javaparser.ast.expr.ObjectCreationExpr;
+import com.github.javaparser.ast.expr.VariableDeclarationExpr;
+import com.github.javaparser.ast.stmt.BlockStmt;
+import com.github.javaparser.ast.stmt.IfStmt;
+import com.github.javaparser.ast.stmt.LocalClassDeclarationStmt;
+import com.github.javaparser.ast.stmt.Statement;
+
+import io.github.satsuki942.symboltable.ClassInfo;
+import io.github.satsuki942.symboltable.MethodInfo;
+import io.github.satsuki942.symboltable.SymbolTable;
+import io.github.satsuki942.unifiedclassbuilder.ClassBuildContext;
+import io.github.satsuki942.util.AstUtil;
+
+/**
+ * Tracks the current version of local unified objects through each method body and devirtualizes the calls
+ * of ambiguous methods whose receiver can only be in one version.
+ * <p>
+ * The version of a local variable becomes known when it is assigned a new object (the version owning the
+ * constructor) or when STEP2 switches it with {@code v.__switchToVersion(n)}. A call {@code v.m(...)} of a method
+ * defined in several versions is then rewritten to {@code v.__vN_m(...)}, a direct entry generated on the
+ * unified class that skips the {@code currentState} dispatch.
+ * <p>
+ * The analysis is deliberately per-method and conservative. Only locals whose object no other code can reach are
+ * tracked: once the value of a local escapes (it is assigned to another variable, passed as an argument, stored or
+ * returned) or the local is assigned anything but a new object, its version stays unknown for the rest of the method.
+ * Parameters, locals initialized from another reference and locals captured by a lambda or inner class are never
+ * tracked. A tracked variable keeps its version while it is used as the receiver of
+ * calls, which run in the current version, except for field accessors and methods whose bodies may switch the object
+ * (they call {@code __switchToVersion}, directly or through other methods of the class). Loops, switches and try
+ * blocks forget the versions of all variables switched inside them.
+ */
+public class VersionStateAnalysis {
+
+    private static final String SWITCH_METHOD = "__switchToVersion";
+
+    private final SymbolTable symbolTable;
+    // base name -> constructor arity -> versions owning a constructor with that arity
+    private final Map<String, Map<Integer, Set<String>>> constructorOwners = new HashMap<>();
+    // base name -> methods whose bodies may switch the version of their object
+    private final Map<String, Set<String>> switchingMethods = new HashMap<>();
+    private int ambiguousCalls = 0;
+    private int devirtualizedCalls = 0;
+
+    /**
+     * @param symbolTable The symbol table of the program.
+     * @param asts        All CompilationUnits of the program; the constructors and method bodies of the versioned
+     *                    classes are read from them.
+     */
+    public VersionStateAnalysis(SymbolTable symbolTable, List<CompilationUnit> asts) {
+        this.symbolTable = symbolTable;
+        Map<String, List<CompilationUnit>> versionAsts = asts.stream()
+                .filter(AstUtil::isVersioned)
+                .collect(Collectors.groupingBy(AstUtil::getBaseName, LinkedHashMap::new, Collectors.toList()));
+        versionAsts.forEach((baseName, versions) -> {
+            // The same owners as the generated constructors
+            ClassBuildContext context = new ClassBuildContext(baseName, null, versions);
+            Map<Integer, Set<String>> ownersByArity = constructorOwners.computeIfAbsent(baseName, k -> new HashMap<>());
+            for (ConstructorDeclaration ctor : context.getConstructorsBySignature().values()) {
+                ownersByArity.computeIfAbsent(ctor.getParameters().size(), k -> new HashSet<>()).add(context.getConstructorOwner(ctor));
+            }
+            if (ownersByArity.isEmpty()) {
+                ownersByArity.put(0, Set.of(context.getDefaultConstructorOwner()));
+            }
+            switchingMethods.put(baseName, findSwitchingMethods(versions));
+        });
+    }
+
+    /**
+     * Returns the name of the direct entry generated for one version of an ambiguous method.
+     *
+     * @param versionSuffix The version suffix (e.g. "v1").
+     * @param methodName    The name of the method.
+     * @return The name of the direct entry, e.g. {@code __v1_m}.
+     */
+    public static String directEntryName(String versionSuffix, String methodName) {
+        return "__" + versionSuffix.toLowerCase() + "_" + methodName;
+    }
+
+    /**
+     * Devirtualizes the ambiguous calls in all method and constructor bodies of a CompilationUnit, in place.
+     *
+     * @param cu A CompilationUnit rewritten by STEP2.
+     */
+    public void devirtualize(CompilationUnit cu) {
+        for (CallableDeclaration<?> callable : cu.findAll(CallableDeclaration.class)) {
+            Optional<BlockStmt> body = callable instanceof MethodDeclaration
+                    ? ((MethodDeclaration) callable).getBody()
+                    : Optional.of(((ConstructorDeclaration) callable).getBody());
+            body.ifPresent(block -> {
+                Map<String, ClassInfo> tracked = findTrackedVariables(callable);
+                if (!tracked.isEmpty()) {
+                    walk(block, new HashMap<>(), tracked);
+                }
+            });
+        }
+    }
+
+    /**
+     * @return A one-line summary of the devirtualized call sites.
+     */
+    public String getReport() {
+        return String.format("Devirtualized %d of %d ambiguous call sites on local unified objects", devirtualizedCalls, ambiguousCalls);
+    }
+
+    public int getDevirtualizedCalls() {
+        return devirtualizedCalls;
+    }
+
+    // -- TRACKED VARIABLES --
+    // Locals of a unified class type, declared once, initialized with a new object (if at all) and never captured
+    private Map<String, ClassInfo> findTrackedVariables(CallableDeclaration<?> callable) {
+        Map<String, ClassInfo> tracked = new HashMap<>();
+        Set<String> excluded = new HashSet<>();
+        // The caller still holds the object of a parameter and may switch it
+        callable.getParameters().forEach(parameter -> excluded.add(parameter.getNameAsString()));
+        for (VariableDeclarator declarator : callable.findAll(VariableDeclarator.class)) {
+            if (declarator.getParentNode().map(p -> p instanceof VariableDeclarationExpr).orElse(false)) {
+                String type = declarator.getTypeAsString();
+                if (type.equals("var")) {
+                    type = declarator.getInitializer()
+                            .filter(Expression::isObjectCreationExpr)
+                            .map(init -> init.asObjectCreationExpr().getType().getNameAsString())
+                            .orElse("var");
+                }
+                declare(tracked, excluded, declarator.getNameAsString(), type);
+                if (declarator.getInitializer().filter(init -> !isFreshValue(init)).isPresent()) {
+                    excluded.add(declarator.getNameAsString()); // an alias of another reference
+                }
+            }
+        }
+        for (Node capturing : findCapturingNodes(callable)) {
+            capturing.findAll(NameExpr.class).forEach(name -> excluded.add(name.getNameAsString()));
+        }
+        excluded.forEach(tracked::remove);
+        return tracked;
+    }
+
+    private void declare(Map<String, ClassInfo> tracked, Set<String> excluded, String name, String type) {
+        if (tracked.containsKey(name) || excluded.contains(name)) {
+            excluded.add(name); // shadowed or redeclared
+            return;
+        }
+        ClassInfo classInfo = symbolTable.lookupClass(type);
+        if (classInfo != null && classInfo.isVersioned()) {
+            tracked.put(name, classInfo);
+        }
+    }
+
+    // Whether a use of a variable may let another reference reach its object, or make it an alias of one
+    private static boolean escapes(NameExpr name) {
+        Node parent = name.getParentNode().orElse(null);
+        if (parent instanceof MethodCallExpr) {
+            return !((MethodCallExpr) parent).getScope().map(scope -> scope == name).orElse(false);
+        }
+        if (parent instanceof AssignExpr) {
+            AssignExpr assign = (AssignExpr) parent;
+            return assign.getTarget() != name || !isFreshValue(assign.getValue());
+        }
+        return true;
+    }
+
+    // A value no other reference can point to
+    private static boolean isFreshValue(Expression value) {
+        return value.isObjectCreationExpr() || value.isNullLiteralExpr();
+    }
+
+    private static List<Node> findCapturingNodes(Node node) {
+        return node.findAll(Node.class, n -> n instanceof LambdaExpr
+                || n instanceof LocalClassDeclarationStmt
+                || (n instanceof ObjectCreationExpr && ((ObjectCreationExpr) n).getAnonymousClassBody().isPresent()));
+    }
+
+    // Methods calling __switchToVersion, directly or through unqualified or this-qualified calls of other such methods
+    private static Set<String> findSwitchingMethods(List<CompilationUnit> versions) {
+        Map<String, Set<String>> callees = new HashMap<>();
+        Set<String> switching = new HashSet<>();
+        for (CompilationUnit cu : versions) {
+            for (MethodDeclaration method : cu.findAll(MethodDeclaration.class)) {
+                Set<String> methodCallees = callees.computeIfAbsent(method.getNameAsString(), k -> new HashSet<>());
+                for (MethodCallExpr call : method.findAll(MethodCallExpr.class)) {
+                    if (call.getNameAsString().equals(SWITCH_METHOD)) {
+                        switching.add(method.getNameAsString());
+                    } else if (call.getScope().map(Expression::isThisExpr).orElse(true)) {
+                        methodCallees.add(call.getNameAsString());
+                    }
+                }
+            }
+        }
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Map.Entry<String, Set<String>> entry : callees.entrySet()) {
+                if (!switching.contains(entry.getKey()) && entry.getValue().stream().anyMatch(switching::contains)) {
+                    changed |= switching.add(entry.getKey());
+                }
+            }
+        }
+        return switching;
+    }
+
+    // -- FLOW --
+    // Walks a statement with the known versions of the tracked variables (absent = unknown)
+    private void walk(Statement statement, Map<String, Integer> state, Map<String, ClassInfo> tracked) {
+        if (statement.isBlockStmt()) {
+            for (Statement child : statement.asBlockStmt().getStatements()) {
+                walk(child, state, tracked);
+            }
+        } else if (statement.isExpressionStmt()) {
+            handleExpression(statement.asExpressionStmt().getExpression(), state, tracked);
+        } else if (statement.isIfStmt()) {
+            IfStmt ifStmt = statement.asIfStmt();
+            handleExpression(ifStmt.getCondition(), state, tracked);
+            Map<String, Integer> thenState = new HashMap<>(state);
+            walk(ifStmt.getThenStmt(), thenState, tracked);
+            Map<String, Integer> elseState = new HashMap<>(state);
+            ifStmt.getElseStmt().ifPresent(elseStmt -> walk(elseStmt, elseState, tracked));
+            state.clear();
+            thenState.forEach((name, version) -> {
+                if (version.equals(elseState.get(name))) {
+                    state.put(name, version);
+                }
+            });
+        } else if (statement.isReturnStmt() || statement.isThrowStmt()) {
+            statement.getChildNodes().stream()
+                    .filter(child -> child instanceof Expression)
+                    .forEach(child -> handleExpression((Expression) child, state, tracked));
+        } else {
+            // Loops, switches, try blocks, ...: forget every variable used there other than as a receiver of
+            // ambiguous calls, then devirtualize inside with the versions that hold throughout the statement
+            forget(statement, state, tracked);
+            rewriteCalls(statement, state, tracked);
+        }
+    }
+
+    private void handleExpression(Expression expression, Map<String, Integer> state, Map<String, ClassInfo> tracked) {
+        // v.__switchToVersion(n);
+        if (expression.isMethodCallExpr()) {
+            MethodCallExpr call = expression.asMethodCallExpr();
+            Optional<String> receiver = trackedReceiver(call, tracked);
+            if (receiver.isPresent() && call.getNameAsString().equals(SWITCH_METHOD)
+                    && call.getArguments().size() == 1 && call.getArgument(0).isIntegerLiteralExpr()) {
+                state.put(receiver.get(), call.getArgument(0).asIntegerLiteralExpr().asNumber().intValue());
+                return;
+            }
+        }
+
+        forget(expression, state, tracked);
+        rewriteCalls(expression, state, tracked);
+
+        // v = new T(...); / T v = new T(...);
+        if (expression.isVariableDeclarationExpr()) {
+            for (VariableDeclarator declarator : expression.asVariableDeclarationExpr().getVariables()) {
+                declarator.getInitializer().ifPresent(init -> assign(declarator.getNameAsString(), init, state, tracked));
+            }
+        } else if (expression.isAssignExpr() && expression.asAssignExpr().getOperator() == AssignExpr.Operator.ASSIGN
+                && expression.asAssignExpr().getTarget().isNameExpr()) {
+            assign(expression.asAssignExpr().getTarget().asNameExpr().getNameAsString(), expression.asAssignExpr().getValue(), state, tracked);
+        }
+    }
+
+    private void assign(String name, Expression value, Map<String, Integer> state, Map<String, ClassInfo> tracked) {
+        ClassInfo classInfo = tracked.get(name);
+        if (classInfo == null) {
+            return;
+        }
+        state.remove(name);
+        if (value.isObjectCreationExpr() && value.asObjectCreationExpr().getType().getNameAsString().equals(classInfo.getBaseName())) {
+            constructorVersion(classInfo, value.asObjectCreationExpr()).ifPresent(version -> state.put(name, version));
+        }
+    }
+
+    // Stops tracking variables that escape in the node for the rest of the method, and forgets the versions of
+    // variables that are switched or assigned there
+    private void forget(Node node, Map<String, Integer> state, Map<String, ClassInfo> tracked) {
+        for (NameExpr name : node.findAll(NameExpr.class)) {
+            String variable = name.getNameAsString();
+            if (!tracked.containsKey(variable)) continue;
+            if (escapes(name)) {
+                tracked.remove(variable);
+                state.remove(variable);
+                continue;
+            }
+            Set<String> switching = switchingMethods.getOrDefault(tracked.get(variable).getBaseName(), Set.of());
+            boolean stableReceiver = name.getParentNode()
+                    .filter(parent -> parent instanceof MethodCallExpr)
+                    .map(parent -> (MethodCallExpr) parent)
+                    .filter(call -> !switchesVersion(call.getNameAsString()) && !switching.contains(call.getNameAsString()))
+                    .isPresent();
+            if (!stableReceiver) {
+                state.remove(variable);
+            }
+        }
+    }
+
+    private void rewriteCalls(Node node, Map<String, Integer> state, Map<String, ClassInfo> tracked) {
+        for (MethodCallExpr call : node.findAll(MethodCallExpr.class)) {
+            Optional<String> receiver = trackedReceiver(call, tracked);
+            if (receiver.isEmpty()) continue;
+            Optional<List<MethodInfo>> overloads = ambiguousSignature(tracked.get(receiver.get()), call);
+            if (overloads.isEmpty()) continue;
+
+            ambiguousCalls++;
+            Integer version = state.get(receiver.get());
+            if (version != null && overloads.get().stream().anyMatch(m -> m.getVersion().equals(String.valueOf(version)))) {
+                call.setName(directEntryName("v" + version, call.getNameAsString()));
+                devirtualizedCalls++;
+            }
+        }
+    }
+
+    // -- HELPER METHODS --
+    // Calls on a unified object run in its current version; only switches and (possibly switching) accessors change it
+    private static boolean switchesVersion(String methodName) {
+        return methodName.equals(SWITCH_METHOD) || methodName.startsWith("__get_") || methodName.startsWith("__set_");
+    }
+
+    private static Optional<String> trackedReceiver(MethodCallExpr call, Map<String, ClassInfo> tracked) {
+        return call.getScope()
+                .filter(Expression::isNameExpr)
+                .map(scope -> scope.asNameExpr().getNameAsString())
+                .filter(tracked::containsKey);
+    }
+
+    // The versions of the ambiguous method a call resolves to, if the call's arity identifies a single signature
+    private static Optional<List<MethodInfo>> ambiguousSignature(ClassInfo classInfo, MethodCallExpr call) {
+        List<MethodInfo> candidates = classInfo.getMethods().getOrDefault(call.getNameAsString(), List.of()).stream()
+                .filter(method -> method.getParameterTypes().size() == call.getArguments().size())
+                .collect(Collectors.toList());
+        Map<String, List<MethodInfo>> bySignature = candidates.stream()
+                .collect(Collectors.groupingBy(method -> method.getParameterTypes().toString()));
+        if (bySignature.size() != 1) {
+            return Optional.empty();
+        }
+        List<MethodInfo> overloads = bySignature.values().iterator().next();
+        return overloads.size() > 1 ? Optional.of(overloads) : Optional.empty();
+    }
+
+    // The generated constructors start in the version that first declares the constructor (see ClassBuildContext)
+    private Optional<Integer> constructorVersion(ClassInfo classInfo, ObjectCreationExpr creation) {
+        Set<String> owners = constructorOwners.getOrDefault(classInfo.getBaseName(), Map.of()).get(creation.getArguments().size());
+        if (owners == null || owners.size() != 1) {
+            return Optional.empty();
+        }
+        return Optional.of(Integer.parseInt(owners.iterator().next().substring(1)));
+    }
+}
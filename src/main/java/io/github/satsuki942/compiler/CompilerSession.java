@@ -0,0 +1,307 @@
+package io.github.satsuki942.compiler;
+
+import io.github.satsuki942.util.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+/**
+ * A warm Java compiler that keeps one {@link StandardJavaFileManager} open across compilations.
+ * <p>
+ * Reusing the file manager avoids re-opening and re-indexing the JDK platform classes for every
+ * compilation. The session is not thread-safe; use one session per thread.
+ */
+public class CompilerSession implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.get(CompilerSession.class);
+
+    /**
+     * The sources to compile together with the classpath they need.
+     * The class files are written next to the sources, as {@code javac} does without {@code -d}.
+     */
+    public static class CompilationJob {
+        private final List<Path> sources;
+        private final List<Path> classpath;
+        private final Set<String> classNames;
+
+        /**
+         * @param sources    The source files to compile.
+         * @param classpath  The classpath entries the sources depend on (e.g. library jars).
+         * @param classNames The fully qualified names of the top-level classes declared by the sources.
+         *                   Jobs declaring the same class are never compiled in the same task.
+         */
+        public CompilationJob(List<Path> sources, List<Path> classpath, Set<String> classNames) {
+            this.sources = sources;
+            this.classpath = classpath;
+            this.classNames = classNames;
+        }
+
+        public List<Path> getSources() {
+            return sources;
+        }
+
+        public List<Path> getClasspath() {
+            return classpath;
+        }
+
+        public Set<String> getClassNames() {
+            return classNames;
+        }
+    }
+
+    /**
+     * The outcome of compiling one job.
+     */
+    public static class CompilationResult {
+        private final boolean success;
+        private final List<Diagnostic<? extends JavaFileObject>> diagnostics;
+        private final long elapsedNanos;
+        private final SortedMap<String, byte[]> classFiles;
+
+        CompilationResult(boolean success, List<Diagnostic<? extends JavaFileObject>> diagnostics, long elapsedNanos) {
+            this(success, diagnostics, elapsedNanos, new TreeMap<>());
+        }
+
+        CompilationResult(boolean success, List<Diagnostic<? extends JavaFileObject>> diagnostics, long elapsedNanos,
+                          SortedMap<String, byte[]> classFiles) {
+            this.success = success;
+            this.diagnostics = diagnostics;
+            this.elapsedNanos = elapsedNanos;
+            this.classFiles = Collections.unmodifiableSortedMap(classFiles);
+        }
+
+        public boolean isSuccess() {
+            return success;
+        }
+
+        public List<Diagnostic<? extends JavaFileObject>> getDiagnostics() {
+            return diagnostics;
+        }
+
+        /**
+         * @return The wall-clock time of the compilation task that compiled this job.
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * @return The class files of an in-memory compilation keyed by entry name (e.g. "sample/Test.class");
+         *         empty when the class files were written to disk.
+         */
+        public SortedMap<String, byte[]> getClassFiles() {
+            return classFiles;
+        }
+    }
+
+    private final JavaCompiler compiler;
+    private final StandardJavaFileManager fileManager;
+    private int taskCount = 0;
+
+    public CompilerSession() {
+        this.compiler = ToolProvider.getSystemJavaCompiler();
+        this.fileManager = compiler.getStandardFileManager(null, Locale.ROOT, null);
+    }
+
+    /**
+     * Compiles a single job in one compilation task.
+     *
+     * @param job The job to compile.
+     * @return The result of the compilation.
+     */
+    public CompilationResult compile(CompilationJob job) {
+        return runTask(job.getSources(), job.getClasspath(), List.of(), null);
+    }
+
+    /**
+     * Compiles a job into its own class output directory instead of next to the sources.
+     * Types the job uses but does not declare are looked up on the classpath, then read from the source path
+     * for type checking only ({@code -implicit:none}), so no class file is written outside {@code classOutput}.
+     *
+     * @param job         The job to compile.
+     * @param sourcePath  The roots of sources that may be read but are not compiled.
+     * @param classOutput The directory receiving the class files of the job.
+     * @return The result of the compilation.
+     */
+    public CompilationResult compileInto(CompilationJob job, List<Path> sourcePath, Path classOutput) {
+        return runTask(job.getSources(), job.getClasspath(), sourcePath, classOutput);
+    }
+
+    /**
+     * Compiles sources held in memory without touching the file system; the class files are returned in the result.
+     *
+     * @param sources   The source texts keyed by their path relative to the package root (e.g. "sample/Test.java").
+     * @param classpath The classpath entries the sources depend on (e.g. library jars).
+     * @return The result of the compilation, including the class files.
+     */
+    public CompilationResult compileInMemory(Map<String, String> sources, List<Path> classpath) {
+        long start = System.nanoTime();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        SortedMap<String, byte[]> classFiles = new TreeMap<>();
+        List<JavaFileObject> units = new ArrayList<>();
+        sources.forEach((name, text) -> units.add(new SourceText(name, text)));
+        boolean success;
+        try {
+            fileManager.setLocationFromPaths(StandardLocation.CLASS_PATH, classpath);
+            fileManager.setLocationFromPaths(StandardLocation.SOURCE_PATH, List.of());
+            success = compiler.getTask(null, new ClassCollector(fileManager, classFiles), diagnostics, null, null, units).call();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        long elapsed = System.nanoTime() - start;
+        int task = ++taskCount;
+        LOGGER.debug(() -> String.format("Compilation task #%d: %d in-memory source(s) in %.1f ms (%s)",
+                task, sources.size(), elapsed / 1_000_000.0, success ? "ok" : "failed"));
+        return new CompilationResult(success, diagnostics.getDiagnostics(), elapsed, classFiles);
+    }
+
+    /**
+     * Compiles several jobs, sharing one compilation task between jobs whenever their classes do not collide
+     * and they use the same classpath. If a shared task fails, its jobs are recompiled one by one so that
+     * every job reports its own diagnostics.
+     *
+     * @param jobs The jobs to compile.
+     * @return The results, in the order of {@code jobs}.
+     */
+    public List<CompilationResult> compileAll(List<CompilationJob> jobs) {
+        List<List<Integer>> batches = new ArrayList<>();
+        List<Set<String>> batchClassNames = new ArrayList<>();
+        for (int i = 0; i < jobs.size(); i++) {
+            CompilationJob job = jobs.get(i);
+            int target = -1;
+            for (int b = 0; b < batches.size() && target < 0; b++) {
+                CompilationJob first = jobs.get(batches.get(b).get(0));
+                if (first.getClasspath().equals(job.getClasspath())
+                        && job.getClassNames().stream().noneMatch(batchClassNames.get(b)::contains)) {
+                    target = b;
+                }
+            }
+            if (target < 0) {
+                batches.add(new ArrayList<>());
+                batchClassNames.add(new HashSet<>());
+                target = batches.size() - 1;
+            }
+            batches.get(target).add(i);
+            batchClassNames.get(target).addAll(job.getClassNames());
+        }
+
+        CompilationResult[] results = new CompilationResult[jobs.size()];
+        for (List<Integer> batch : batches) {
+            if (batch.size() == 1) {
+                results[batch.get(0)] = compile(jobs.get(batch.get(0)));
+                continue;
+            }
+            List<Path> sources = new ArrayList<>();
+            batch.forEach(i -> sources.addAll(jobs.get(i).getSources()));
+            CompilationResult shared = runTask(sources, jobs.get(batch.get(0)).getClasspath(), List.of(), null);
+            for (int i : batch) {
+                results[i] = shared.isSuccess() ? shared : compile(jobs.get(i));
+            }
+        }
+        return List.of(results);
+    }
+
+    @Override
+    public void close() {
+        try {
+            fileManager.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // -- HELPER METHODS --
+    private CompilationResult runTask(List<Path> sources, List<Path> classpath, List<Path> sourcePath, Path classOutput) {
+        long start = System.nanoTime();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        boolean success;
+        try {
+            // Locations persist in the shared file manager, so every task sets its own
+            fileManager.setLocationFromPaths(StandardLocation.CLASS_PATH, classpath);
+            fileManager.setLocationFromPaths(StandardLocation.SOURCE_PATH, sourcePath);
+            if (classOutput == null) {
+                // Back to the default: class files next to their sources
+                fileManager.setLocation(StandardLocation.CLASS_OUTPUT, null);
+            } else {
+                fileManager.setLocationFromPaths(StandardLocation.CLASS_OUTPUT, List.of(classOutput));
+            }
+            List<String> options = sourcePath.isEmpty() ? List.of() : List.of("-implicit:none");
+            Iterable<? extends JavaFileObject> units = fileManager.getJavaFileObjectsFromPaths(sources);
+            success = compiler.getTask(null, fileManager, diagnostics, options, null, units).call();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        long elapsed = System.nanoTime() - start;
+        int task = ++taskCount;
+        LOGGER.debug(() -> String.format("Compilation task #%d: %d source(s) in %.1f ms (%s)",
+                task, sources.size(), elapsed / 1_000_000.0, success ? "ok" : "failed"));
+        return new CompilationResult(success, diagnostics.getDiagnostics(), elapsed);
+    }
+
+    // A source file whose text is kept in memory
+    private static class SourceText extends SimpleJavaFileObject {
+        private final String text;
+
+        SourceText(String name, String text) {
+            super(URI.create("string:///" + name), Kind.SOURCE);
+            this.text = text;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return text;
+        }
+    }
+
+    // Captures the class files written by the compiler instead of writing them next to the sources
+    private static class ClassCollector extends ForwardingJavaFileManager<StandardJavaFileManager> {
+        private final Map<String, byte[]> classFiles;
+
+        ClassCollector(StandardJavaFileManager fileManager, Map<String, byte[]> classFiles) {
+            super(fileManager);
+            this.classFiles = classFiles;
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(JavaFileManager.Location location, String className,
+                                                   JavaFileObject.Kind kind, FileObject sibling) {
+            String entryName = className.replace('.', '/') + kind.extension;
+            return new SimpleJavaFileObject(URI.create("mem:///" + entryName), kind) {
+                @Override
+                public OutputStream openOutputStream() {
+                    return new ByteArrayOutputStream() {
+                        @Override
+                        public void close() {
+                            classFiles.put(entryName, toByteArray());
+                        }
+                    };
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package io.github.satsuki942.compiler;
+
+import io.github.satsuki942.symboltable.DependencyGraph;
+import io.github.satsuki942.util.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Compiles generated sources on several threads, along the groups of mutually dependent classes.
+ * <p>
+ * The groups are the strongly connected components of a {@link DependencyGraph}, ordered into levels by their
+ * longest dependency chain, so the groups of one level never depend on each other. The groups of a level are
+ * packed into at most one compilation task per thread, and all tasks of a level run concurrently once the
+ * previous level is done. Each task writes into its own staging directory and sees the staging directories of
+ * the earlier levels on its classpath. A type the graph missed is read from the sources for type checking only,
+ * so a wrong graph costs time but never correctness, and no task ever reads a class file another task is still
+ * writing. When all tasks are done, the class files are moved next to their sources, as
+ * {@link CompilerSession#compile} leaves them. Once a level fails, the later levels are skipped: their tasks
+ * would only report the failed level's errors again.
+ */
+public class ParallelCompiler {
+
+    private static final Logger LOGGER = Logger.get(ParallelCompiler.class);
+    // The result of a task skipped because an earlier level failed
+    private static final CompilerSession.CompilationResult SKIPPED = new CompilerSession.CompilationResult(false, List.of(), 0);
+
+    private final int threads;
+
+    /**
+     * @param threads The number of compilation tasks that may run at the same time.
+     */
+    public ParallelCompiler(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Compiles the sources of the classes in the graph.
+     *
+     * @param graph      The dependency graph of the classes.
+     * @param sources    The generated source of each class, keyed by class name. Sources of classes missing from
+     *                   the graph are compiled as groups of their own.
+     * @param sourceRoot The package root of the sources.
+     * @param classpath  The classpath entries the sources depend on (e.g. library jars).
+     * @return The combined result of all tasks; the elapsed time is the wall-clock time of the whole compilation.
+     * @throws IOException If the staging directories cannot be created or the class files cannot be moved.
+     */
+    public CompilerSession.CompilationResult compile(DependencyGraph graph, Map<String, Path> sources, Path sourceRoot,
+                                                     List<Path> classpath) throws IOException {
+        long start = System.nanoTime();
+        List<List<String>> groups = group(graph, sources);
+        Map<String, Integer> groupOf = new HashMap<>();
+        for (int i = 0; i < groups.size(); i++) {
+            for (String className : groups.get(i)) {
+                groupOf.put(className, i);
+            }
+        }
+
+        Path stagingRoot = Files.createTempDirectory(sourceRoot.toAbsolutePath().getParent(), "mvo-classes-");
+        List<CompilerSession> sessions = new ArrayList<>();
+        ThreadLocal<CompilerSession> session = ThreadLocal.withInitial(() -> {
+            CompilerSession created = new CompilerSession();
+            synchronized (sessions) {
+                sessions.add(created);
+            }
+            return created;
+        });
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+
+        List<CompletableFuture<CompilerSession.CompilationResult>> tasks = new ArrayList<>();
+        try {
+            // Every level waits for the previous one; its batches see the class files of all earlier levels
+            List<Path> compiledDirs = new ArrayList<>();
+            CompletableFuture<Boolean> previousLevel = CompletableFuture.completedFuture(true);
+            for (List<List<String>> level : levels(graph, groups, groupOf)) {
+                List<CompletableFuture<CompilerSession.CompilationResult>> levelTasks = new ArrayList<>();
+                List<Path> levelDirs = new ArrayList<>();
+                for (List<String> batch : batches(level)) {
+                    Path classOutput = Files.createDirectories(stagingRoot.resolve(String.valueOf(tasks.size() + levelTasks.size())));
+                    List<Path> taskClasspath = new ArrayList<>(classpath);
+                    taskClasspath.addAll(compiledDirs);
+                    List<Path> batchSources = batch.stream().map(sources::get).collect(Collectors.toList());
+                    CompilerSession.CompilationJob job = new CompilerSession.CompilationJob(batchSources, taskClasspath, Set.copyOf(batch));
+                    levelTasks.add(previousLevel.thenApplyAsync(succeeded -> succeeded
+                            ? session.get().compileInto(job, List.of(sourceRoot), classOutput)
+                            : SKIPPED, pool));
+                    levelDirs.add(classOutput);
+                }
+                tasks.addAll(levelTasks);
+                compiledDirs.addAll(levelDirs);
+                previousLevel = CompletableFuture.allOf(levelTasks.toArray(new CompletableFuture<?>[0]))
+                        .thenApply(ignored -> levelTasks.stream().allMatch(task -> task.join().isSuccess()));
+            }
+
+            boolean success = true;
+            int skipped = 0;
+            List<Diagnostic<? extends JavaFileObject>> diagnostics = new ArrayList<>();
+            for (CompletableFuture<CompilerSession.CompilationResult> task : tasks) {
+                CompilerSession.CompilationResult result = task.join();
+                success &= result.isSuccess();
+                skipped += result == SKIPPED ? 1 : 0;
+                diagnostics.addAll(result.getDiagnostics());
+            }
+            publish(stagingRoot, sourceRoot);
+
+            long elapsed = System.nanoTime() - start;
+            int skippedTasks = skipped;
+            LOGGER.debug(() -> String.format("Compiled %d group(s) of %d source(s) in %d task(s) (%d skipped) on %d thread(s) in %.1f ms",
+                    groups.size(), sources.size(), tasks.size(), skippedTasks, threads, elapsed / 1_000_000.0));
+            return new CompilerSession.CompilationResult(success, diagnostics, elapsed);
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw e;
+        } finally {
+            pool.shutdown();
+            sessions.forEach(CompilerSession::close);
+            deleteRecursively(stagingRoot);
+        }
+    }
+
+    // -- HELPER METHODS --
+    // The components of the graph that have sources, followed by the sources the graph does not know
+    private static List<List<String>> group(DependencyGraph graph, Map<String, Path> sources) {
+        List<List<String>> groups = new ArrayList<>();
+        for (List<String> component : graph.getStronglyConnectedComponents()) {
+            List<String> withSources = component.stream().filter(sources::containsKey).collect(Collectors.toList());
+            if (!withSources.isEmpty()) {
+                groups.add(withSources);
+            }
+        }
+        new TreeMap<>(sources).keySet().stream()
+                .filter(className -> !graph.getClasses().contains(className))
+                .forEach(className -> groups.add(List.of(className)));
+        return groups;
+    }
+
+    // Groups by the length of their longest dependency chain: a group only depends on groups of lower levels
+    private static List<List<List<String>>> levels(DependencyGraph graph, List<List<String>> groups, Map<String, Integer> groupOf) {
+        int[] levelOf = new int[groups.size()];
+        List<List<List<String>>> levels = new ArrayList<>();
+        // Groups come in dependency order, so the levels of a group's dependencies are already known
+        for (int i = 0; i < groups.size(); i++) {
+            int level = 0;
+            for (String className : groups.get(i)) {
+                for (String dependency : graph.getDependencies(className)) {
+                    Integer target = groupOf.get(dependency);
+                    if (target != null && target != i) {
+                        level = Math.max(level, levelOf[target] + 1);
+                    }
+                }
+            }
+            levelOf[i] = level;
+            while (levels.size() <= level) {
+                levels.add(new ArrayList<>());
+            }
+            levels.get(level).add(groups.get(i));
+        }
+        return levels;
+    }
+
+    // Packs the independent groups of one level into at most one batch per thread, balancing their source counts
+    private List<List<String>> batches(List<List<String>> level) {
+        List<List<String>> batches = new ArrayList<>();
+        for (int i = 0; i < Math.min(threads, level.size()); i++) {
+            batches.add(new ArrayList<>());
+        }
+        List<List<String>> largestFirst = new ArrayList<>(level);
+        largestFirst.sort(Comparator.comparingInt((List<String> group) -> group.size()).reversed());
+        for (List<String> group : largestFirst) {
+            batches.stream().min(Comparator.comparingInt(List::size)).get().addAll(group);
+        }
+        return batches;
+    }
+
+    // Moves every staged class file to the same relative path under the source root
+    private static void publish(Path stagingRoot, Path sourceRoot) throws IOException {
+        try (Stream<Path> groupDirs = Files.list(stagingRoot)) {
+            for (Path groupDir : groupDirs.collect(Collectors.toList())) {
+                try (Stream<Path> files = Files.walk(groupDir)) {
+                    for (Path classFile : files.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                        Path target = sourceRoot.resolve(groupDir.relativize(classFile).toString());
+                        Files.createDirectories(target.getParent());
+                        Files.move(classFile, target, StandardCopyOption.REPLACE_EXISTING);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void deleteRecursively(Path root) throws IOException {
+        if (!Files.exists(root)) return;
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,329 @@
+package io.github.satsuki942.input;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ParseProblemException;
+import com.github.javaparser.ast.CompilationUnit;
+
+import io.github.satsuki942.util.BlockingQueues;
+import io.github.satsuki942.util.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Discovers, reads and parses the {@code .java} files of a directory tree, overlapping I/O with parsing.
+ * <p>
+ * Every directory is listed and every file is read on its own virtual thread. Small files are read into one of
+ * a few reusable buffers, larger ones are memory-mapped, and the decoded text is put on a bounded parse queue as
+ * soon as it is complete. Parser threads take from that queue while other files are still being read, so on
+ * large trees reading mostly hides behind parsing. The results are ordered by path, independent of the order
+ * in which reads and parses finish.
+ */
+public class SourceIngestor {
+
+    private static final Logger LOGGER = Logger.get(SourceIngestor.class);
+
+    // Files up to this size are read into a pooled buffer; larger files are memory-mapped
+    static final int BUFFER_SIZE = 64 * 1024;
+    private static final int BUFFER_COUNT = 16;
+    private static final int QUEUE_CAPACITY = 256;
+
+    private final int parseThreads;
+
+    /**
+     * @param parseThreads The number of threads parsing at the same time.
+     */
+    public SourceIngestor(int parseThreads) {
+        this.parseThreads = Math.max(1, parseThreads);
+    }
+
+    /**
+     * The parsed sources of a directory tree and how fast they were ingested.
+     */
+    public static class IngestionResult {
+        private final List<Path> files;
+        private final List<CompilationUnit> compilationUnits;
+        private final long bytes;
+        private final int mappedFiles;
+        private final long elapsedNanos;
+
+        IngestionResult(List<Path> files, List<CompilationUnit> compilationUnits, long bytes, int mappedFiles, long elapsedNanos) {
+            this.files = files;
+            this.compilationUnits = compilationUnits;
+            this.bytes = bytes;
+            this.mappedFiles = mappedFiles;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        /**
+         * @return The source files, sorted by path.
+         */
+        public List<Path> getFiles() {
+            return files;
+        }
+
+        /**
+         * @return The parsed sources, in the order of {@link #getFiles()}.
+         */
+        public List<CompilationUnit> getCompilationUnits() {
+            return compilationUnits;
+        }
+
+        public long getBytes() {
+            return bytes;
+        }
+
+        public int getMappedFiles() {
+            return mappedFiles;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double getFilesPerSecond() {
+            return files.size() / seconds();
+        }
+
+        public double getMegabytesPerSecond() {
+            return bytes / (1024.0 * 1024.0) / seconds();
+        }
+
+        /**
+         * @return e.g. "401 files (1.2 MB, 0 mapped) in 310.5 ms: 1291 files/s, 3.9 MB/s".
+         */
+        @Override
+        public String toString() {
+            return String.format("%d files (%.1f MB, %d mapped) in %.1f ms: %.0f files/s, %.1f MB/s",
+                    files.size(), bytes / (1024.0 * 1024.0), mappedFiles, elapsedNanos / 1_000_000.0,
+                    getFilesPerSecond(), getMegabytesPerSecond());
+        }
+
+        private double seconds() {
+            return Math.max(elapsedNanos, 1) / 1_000_000_000.0;
+        }
+    }
+
+    // A decoded file on its way to the parsers
+    private static final class SourceText {
+        static final SourceText END = new SourceText(null, null);
+
+        final Path path;
+        final String text;
+
+        SourceText(Path path, String text) {
+            this.path = path;
+            this.text = text;
+        }
+    }
+
+    /**
+     * Parses every {@code .java} file under a directory.
+     *
+     * @param root The directory to ingest.
+     * @return The parsed sources with throughput metrics.
+     * @throws IOException           If a directory cannot be listed or a file cannot be read.
+     * @throws ParseProblemException If a file is not valid Java, as {@code StaticJavaParser.parse} would.
+     */
+    public IngestionResult ingest(Path root) throws IOException {
+        return ingest(root, cu -> { });
+    }
+
+    /**
+     * Parses every {@code .java} file under a directory and hands each source to a listener as soon as it is
+     * parsed, e.g. to start analyzing it while other files are still being read.
+     *
+     * @param root     The directory to ingest.
+     * @param listener Called on a parser thread for every parsed source, in no particular order. While it
+     *                 blocks, that parser takes no further source, so a slow listener holds back the readers.
+     * @return The parsed sources with throughput metrics.
+     * @throws IOException           If a directory cannot be listed or a file cannot be read.
+     * @throws ParseProblemException If a file is not valid Java, as {@code StaticJavaParser.parse} would.
+     */
+    public IngestionResult ingest(Path root, Consumer<CompilationUnit> listener) throws IOException {
+        long start = System.nanoTime();
+        BlockingQueue<ByteBuffer> buffers = new ArrayBlockingQueue<>(BUFFER_COUNT);
+        for (int i = 0; i < BUFFER_COUNT; i++) {
+            buffers.add(ByteBuffer.allocate(BUFFER_SIZE));
+        }
+        BlockingQueue<SourceText> parseQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        Map<Path, CompilationUnit> parsed = new ConcurrentSkipListMap<>();
+        AtomicLong bytes = new AtomicLong();
+        AtomicLong mappedFiles = new AtomicLong();
+        AtomicReference<IOException> readFailure = new AtomicReference<>();
+        AtomicReference<RuntimeException> parseFailure = new AtomicReference<>();
+
+        ExecutorService parsers = Executors.newFixedThreadPool(parseThreads);
+        List<Future<?>> parseTasks = new ArrayList<>();
+        for (int i = 0; i < parseThreads; i++) {
+            parseTasks.add(parsers.submit(() -> parseAll(parseQueue, parsed, listener, parseFailure)));
+        }
+
+        // The phaser counts the discovery and read tasks that have not finished yet
+        Phaser pending = new Phaser(1);
+        try (ExecutorService readers = Executors.newVirtualThreadPerTaskExecutor()) {
+            Reader reader = new Reader(readers, pending, buffers, parseQueue, bytes, mappedFiles, readFailure);
+            reader.submit(() -> reader.discover(root));
+            pending.arriveAndAwaitAdvance();
+        } finally {
+            for (int i = 0; i < parseThreads; i++) {
+                BlockingQueues.putUninterruptibly(parseQueue, SourceText.END);
+            }
+            parsers.shutdown();
+        }
+
+        for (Future<?> task : parseTasks) {
+            try {
+                task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while parsing " + root, e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Parser thread failed", e.getCause());
+            }
+        }
+        if (readFailure.get() != null) {
+            throw readFailure.get();
+        }
+        if (parseFailure.get() != null) {
+            throw parseFailure.get();
+        }
+
+        IngestionResult result = new IngestionResult(
+                Collections.unmodifiableList(new ArrayList<>(parsed.keySet())),
+                Collections.unmodifiableList(new ArrayList<>(parsed.values())),
+                bytes.get(), (int) mappedFiles.get(), System.nanoTime() - start);
+        LOGGER.debug(() -> "Ingested " + result);
+        return result;
+    }
+
+    // -- HELPER METHODS --
+    // Runs on a parser thread until the end marker; each thread keeps its own (not thread-safe) parser.
+    // After a failure the queue is still drained, so that no reader blocks on it.
+    private static void parseAll(BlockingQueue<SourceText> parseQueue, Map<Path, CompilationUnit> parsed,
+                                 Consumer<CompilationUnit> listener, AtomicReference<RuntimeException> failure) {
+        JavaParser parser = new JavaParser();
+        while (true) {
+            SourceText source = BlockingQueues.takeUninterruptibly(parseQueue);
+            if (source == SourceText.END) return;
+            if (failure.get() != null) continue;
+            ParseResult<CompilationUnit> result = parser.parse(source.text);
+            if (!result.isSuccessful() || result.getResult().isEmpty()) {
+                failure.compareAndSet(null, new ParseProblemException(result.getProblems()));
+                continue;
+            }
+            CompilationUnit cu = result.getResult().get();
+            cu.setStorage(source.path, StandardCharsets.UTF_8);
+            parsed.put(source.path, cu);
+            try {
+                listener.accept(cu);
+            } catch (RuntimeException e) {
+                failure.compareAndSet(null, e);
+            }
+        }
+    }
+
+    // The discovery and read tasks, all running on virtual threads
+    private static final class Reader {
+        private final ExecutorService executor;
+        private final Phaser pending;
+        private final BlockingQueue<ByteBuffer> buffers;
+        private final BlockingQueue<SourceText> parseQueue;
+        private final AtomicLong bytes;
+        private final AtomicLong mappedFiles;
+        private final AtomicReference<IOException> failure;
+
+        Reader(ExecutorService executor, Phaser pending, BlockingQueue<ByteBuffer> buffers, BlockingQueue<SourceText> parseQueue,
+               AtomicLong bytes, AtomicLong mappedFiles, AtomicReference<IOException> failure) {
+            this.executor = executor;
+            this.pending = pending;
+            this.buffers = buffers;
+            this.parseQueue = parseQueue;
+            this.bytes = bytes;
+            this.mappedFiles = mappedFiles;
+            this.failure = failure;
+        }
+
+        interface IoTask {
+            void run() throws IOException;
+        }
+
+        void submit(IoTask task) {
+            pending.register();
+            executor.execute(() -> {
+                try {
+                    if (failure.get() == null) {
+                        task.run();
+                    }
+                } catch (IOException e) {
+                    failure.compareAndSet(null, e);
+                } catch (UncheckedIOException e) {
+                    failure.compareAndSet(null, e.getCause());
+                } finally {
+                    pending.arriveAndDeregister();
+                }
+            });
+        }
+
+        void discover(Path directory) throws IOException {
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                for (Path entry : entries) {
+                    if (Files.isDirectory(entry)) {
+                        submit(() -> discover(entry));
+                    } else if (Files.isRegularFile(entry) && entry.toString().endsWith(".java")) {
+                        submit(() -> read(entry));
+                    }
+                }
+            }
+        }
+
+        void read(Path file) throws IOException {
+            String text;
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (size > BUFFER_SIZE) {
+                    MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                    text = StandardCharsets.UTF_8.decode(mapped).toString();
+                    mappedFiles.incrementAndGet();
+                } else {
+                    ByteBuffer buffer = BlockingQueues.takeUninterruptibly(buffers);
+                    try {
+                        buffer.clear();
+                        while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                            // Keep reading until the file is exhausted
+                        }
+                        text = new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+                    } finally {
+                        buffers.add(buffer);
+                    }
+                }
+                bytes.addAndGet(size);
+            }
+            BlockingQueues.putUninterruptibly(parseQueue, new SourceText(file, text));
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package io.github.satsuki942.library;
+
+import io.github.satsuki942.symboltable.SymbolTable;
+import io.github.satsuki942.symboltable.SymbolTableSnapshot;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Stream;
+
+/**
+ * Packages a separately compiled library of versioned classes and loads it back.
+ * <p>
+ * A library jar contains the compiled unified classes together with a symbol manifest, which is a
+ * {@link SymbolTableSnapshot} of the library's sources. Downstream projects register the manifest with
+ * {@link SymbolTable#addLibrary(SymbolTable)} so that calls and field accesses on library classes are
+ * rewritten without re-parsing or re-generating the library.
+ */
+public final class LibraryManifest {
+
+    /**
+     * The jar entry holding the symbol manifest.
+     */
+    public static final String MANIFEST_ENTRY = "META-INF/mvo/symtab.bin";
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private LibraryManifest() {}
+
+    /**
+     * Writes a library jar from the compiled classes of the given generated sources and the library's symbol table.
+     * Entries are written in sorted order so the jar is reproducible.
+     *
+     * @param jarFile     The jar to create.
+     * @param classesRoot The root directory of the compiled classes (the package root).
+     * @param sourceFiles The generated sources; their class files (including nested classes) are expected next to them.
+     * @param symbolTable The symbol table built from the library's sources.
+     * @throws IOException If the classes cannot be read or the jar cannot be written.
+     */
+    public static void writeJar(Path jarFile, Path classesRoot, List<Path> sourceFiles, SymbolTable symbolTable) throws IOException {
+        List<Path> classFiles = new ArrayList<>();
+        for (Path sourceFile : sourceFiles) {
+            String className = sourceFile.getFileName().toString().replaceFirst("\\.java$", "");
+            try (Stream<Path> siblings = Files.list(sourceFile.toAbsolutePath().getParent())) {
+                siblings.filter(path -> {
+                            String fileName = path.getFileName().toString();
+                            return fileName.equals(className + ".class")
+                                || (fileName.startsWith(className + "$") && fileName.endsWith(".class"));
+                        })
+                        .forEach(classFiles::add);
+            }
+        }
+
+        SortedMap<String, byte[]> entries = new TreeMap<>();
+        for (Path classFile : classFiles) {
+            String entryName = classesRoot.toAbsolutePath().relativize(classFile).toString().replace('\\', '/');
+            entries.put(entryName, Files.readAllBytes(classFile));
+        }
+        writeJar(jarFile, entries, symbolTable);
+    }
+
+    /**
+     * Writes a library jar from class files held in memory (see {@code CompilerSession#compileInMemory}) and the library's symbol table.
+     * Entries are written in sorted order so the jar is reproducible.
+     *
+     * @param jarFile     The jar to create.
+     * @param classFiles  The compiled classes keyed by entry name (e.g. "sample/Test.class").
+     * @param symbolTable The symbol table built from the library's sources.
+     * @throws IOException If the jar cannot be written.
+     */
+    public static void writeJar(Path jarFile, SortedMap<String, byte[]> classFiles, SymbolTable symbolTable) throws IOException {
+        if (jarFile.getParent() != null) {
+            Files.createDirectories(jarFile.getParent());
+        }
+        try (OutputStream out = Files.newOutputStream(jarFile);
+             JarOutputStream jar = new JarOutputStream(out)) {
+            ByteBuffer manifest = SymbolTableSnapshot.encode(symbolTable);
+            putEntry(jar, MANIFEST_ENTRY, manifest.array(), manifest.arrayOffset(), manifest.remaining());
+
+            for (Map.Entry<String, byte[]> classFile : classFiles.entrySet()) {
+                putEntry(jar, classFile.getKey(), classFile.getValue(), 0, classFile.getValue().length);
+            }
+        }
+    }
+
+    /**
+     * Reads the symbol manifest of a library jar.
+     *
+     * @param jarFile The library jar written by {@link #writeJar(Path, Path, List, SymbolTable)}.
+     * @return The library's {@link SymbolTable}.
+     * @throws IOException If the jar cannot be read or does not contain a manifest.
+     */
+    public static SymbolTable load(Path jarFile) throws IOException {
+        try (JarFile jar = new JarFile(jarFile.toFile())) {
+            JarEntry entry = jar.getJarEntry(MANIFEST_ENTRY);
+            if (entry == null) {
+                throw new IOException("No symbol manifest in library: " + jarFile);
+            }
+            try (InputStream in = jar.getInputStream(entry)) {
+                return SymbolTableSnapshot.load(ByteBuffer.wrap(in.readAllBytes()));
+            }
+        }
+    }
+
+    // -- HELPER METHODS --
+    private static void putEntry(JarOutputStream jar, String name, byte[] bytes, int offset, int length) throws IOException {
+        JarEntry entry = new JarEntry(name);
+        entry.setTime(0L);
+        jar.putNextEntry(entry);
+        jar.write(bytes, offset, length);
+        jar.closeEntry();
+    }
+}
@@ -0,0 +1,44 @@
+package io.github.satsuki942.output;
+
+import com.github.javaparser.ast.CompilationUnit;
+
+import io.github.satsuki942.util.AstUtil;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Prints every transformed CompilationUnit to {@code <outputDir>/<ClassName>.java} as soon as it is received.
+ */
+public class DirectorySourceSink implements SourceSink {
+    private final Path outputDir;
+    private final List<Path> writtenFiles = new ArrayList<>();
+
+    public DirectorySourceSink(Path outputDir) {
+        this.outputDir = outputDir;
+    }
+
+    @Override
+    public void accept(CompilationUnit cu) throws IOException {
+        accept(cu, cu.toString());
+    }
+
+    @Override
+    public void accept(CompilationUnit cu, String source) throws IOException {
+        Path outputFile = outputDir.resolve(AstUtil.getPublicClassName(cu) + ".java");
+        Files.write(outputFile, source.getBytes(StandardCharsets.UTF_8));
+        writtenFiles.add(outputFile);
+    }
+
+    /**
+     * @return The files written so far, in the order they were received.
+     */
+    public List<Path> getWrittenFiles() {
+        return Collections.unmodifiableList(writtenFiles);
+    }
+}
@@ -0,0 +1,87 @@
+package io.github.satsuki942.output;
+
+import com.github.javaparser.ast.CompilationUnit;
+
+import io.github.satsuki942.util.AstUtil;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Keeps every transformed CompilationUnit as source text, to be compiled in memory and packaged into one jar.
+ * <p>
+ * Nothing is written to the file system until {@link #writeJar(Path, Map)}, which stores the sources and the
+ * compiled classes as entries of a single jar. Entries are sorted by name and carry no timestamps, so the same
+ * input always produces the same jar.
+ */
+public class JarSourceSink implements SourceSink {
+    // Entry name (e.g. "sample/Test.java") -> source text
+    private final SortedMap<String, String> sources = new TreeMap<>();
+
+    @Override
+    public void accept(CompilationUnit cu) {
+        accept(cu, cu.toString());
+    }
+
+    @Override
+    public void accept(CompilationUnit cu, String source) {
+        String packagePath = cu.getPackageDeclaration()
+                               .map(pd -> pd.getNameAsString().replace('.', '/') + "/")
+                               .orElse("");
+        sources.put(packagePath + AstUtil.getPublicClassName(cu) + ".java", source);
+    }
+
+    /**
+     * @return The sources received so far, keyed by their jar entry name.
+     */
+    public SortedMap<String, String> getSources() {
+        return Collections.unmodifiableSortedMap(sources);
+    }
+
+    /**
+     * Writes the sources and the given class files into a jar.
+     *
+     * @param jarFile    The jar to create.
+     * @param classFiles The compiled classes keyed by entry name (e.g. "sample/Test$V1_Impl.class").
+     * @throws IOException If the jar cannot be written.
+     */
+    public void writeJar(Path jarFile, Map<String, byte[]> classFiles) throws IOException {
+        if (jarFile.getParent() != null) {
+            Files.createDirectories(jarFile.getParent());
+        }
+        try (OutputStream out = Files.newOutputStream(jarFile)) {
+            writeJar(out, classFiles);
+        }
+    }
+
+    /**
+     * Writes the sources and the given class files as a jar to a stream, e.g. a network response.
+     *
+     * @param out        The stream to write to. It is not closed.
+     * @param classFiles The compiled classes (and any other entries) keyed by entry name.
+     * @throws IOException If the stream cannot be written.
+     */
+    public void writeJar(OutputStream out, Map<String, byte[]> classFiles) throws IOException {
+        SortedMap<String, byte[]> entries = new TreeMap<>(classFiles);
+        sources.forEach((name, source) -> entries.put(name, source.getBytes(StandardCharsets.UTF_8)));
+
+        JarOutputStream jar = new JarOutputStream(out);
+        for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+            JarEntry jarEntry = new JarEntry(entry.getKey());
+            jarEntry.setTime(0L);
+            jar.putNextEntry(jarEntry);
+            jar.write(entry.getValue());
+            jar.closeEntry();
+        }
+        jar.finish();
+    }
+}
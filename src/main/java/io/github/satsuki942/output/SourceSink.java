@@ -0,0 +1,43 @@
+package io.github.satsuki942.output;
+
+import com.github.javaparser.ast.CompilationUnit;
+
+import java.io.IOException;
+
+/**
+ * A destination for the transformed ASTs.
+ * <p>
+ * The transformer hands every generated CompilationUnit to the sink as soon as it is complete,
+ * so the sink decides whether sources are kept in memory or written out immediately.
+ */
+public interface SourceSink extends AutoCloseable {
+
+    /**
+     * Receives one transformed CompilationUnit.
+     *
+     * @param cu The generated CompilationUnit. The sink must not rely on it staying unmodified after returning.
+     * @throws IOException If the source cannot be stored.
+     */
+    void accept(CompilationUnit cu) throws IOException;
+
+    /**
+     * Receives one transformed CompilationUnit that has already been printed, so that printing can happen
+     * elsewhere (e.g. on another pipeline stage) than storing.
+     *
+     * @param cu     The generated CompilationUnit, used for its name and package.
+     * @param source The printed source of {@code cu}.
+     * @throws IOException If the source cannot be stored.
+     */
+    default void accept(CompilationUnit cu, String source) throws IOException {
+        accept(cu);
+    }
+
+    /**
+     * Flushes and releases the resources of the sink.
+     *
+     * @throws IOException If pending output cannot be written.
+     */
+    @Override
+    default void close() throws IOException {
+    }
+}
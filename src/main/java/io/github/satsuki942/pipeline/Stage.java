@@ -0,0 +1,188 @@
+package io.github.satsuki942.pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.github.satsuki942.util.BlockingQueues;
+
+/**
+ * One stage of a {@link TranspilePipeline}: a bounded input queue drained by a fixed number of worker threads.
+ * <p>
+ * {@link #submit(Object)} blocks while the queue is full, so a slow stage holds back the stages feeding it
+ * instead of letting work pile up in memory. Every stage records how many items it handled, how long its
+ * workers were busy, how deep its queue got and how long producers were blocked on it; the stage whose
+ * workers were busy the longest (per thread) is the bottleneck, which blocks the producers of the stages
+ * before it.
+ * <p>
+ * After the first failure of any stage sharing the same failure slot, workers keep draining their queue
+ * without handling the items, so that no producer blocks forever; the failure is rethrown by {@link #finish()}.
+ *
+ * @param <T> The type of the items flowing into this stage.
+ */
+public class Stage<T> {
+
+    /**
+     * Handles one item, usually by submitting its result to the next stage.
+     */
+    @FunctionalInterface
+    public interface Handler<T> {
+        void handle(T item) throws Exception;
+    }
+
+    // Tells a worker to stop; one per worker is queued behind the last item
+    private static final Object END = new Object();
+
+    private final String name;
+    private final int capacity;
+    private final BlockingQueue<Object> queue;
+    private final Handler<T> handler;
+    private final AtomicReference<Exception> failure;
+    private final List<Thread> workers = new ArrayList<>();
+
+    private final AtomicLong items = new AtomicLong();
+    private final AtomicLong busyNanos = new AtomicLong();
+    private final AtomicLong blockedNanos = new AtomicLong();
+    private final AtomicLong depthSum = new AtomicLong();
+    private final AtomicLong submissions = new AtomicLong();
+    private final AtomicInteger maxDepth = new AtomicInteger();
+
+    /**
+     * @param name     The name used for the worker threads and the metrics.
+     * @param threads  The number of worker threads.
+     * @param capacity The number of items the input queue holds before {@link #submit(Object)} blocks.
+     * @param handler  Handles every item on a worker thread.
+     * @param failure  The failure slot shared by all stages of the pipeline.
+     */
+    public Stage(String name, int threads, int capacity, Handler<T> handler, AtomicReference<Exception> failure) {
+        this.name = name;
+        this.capacity = capacity;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.handler = handler;
+        this.failure = failure;
+        for (int i = 0; i < Math.max(1, threads); i++) {
+            Thread worker = new Thread(this::work, "mvo-" + name + "-" + i);
+            worker.setDaemon(true);
+            workers.add(worker);
+        }
+    }
+
+    /**
+     * Starts the worker threads.
+     *
+     * @return This stage.
+     */
+    public Stage<T> start() {
+        workers.forEach(Thread::start);
+        return this;
+    }
+
+    /**
+     * Queues an item, waiting while the queue is full.
+     *
+     * @param item The item to handle.
+     */
+    public void submit(T item) {
+        long depth = queue.size();
+        depthSum.addAndGet(depth);
+        submissions.incrementAndGet();
+        maxDepth.accumulateAndGet((int) depth, Math::max);
+        if (!queue.offer(item)) {
+            long waitStart = System.nanoTime();
+            BlockingQueues.putUninterruptibly(queue, item);
+            blockedNanos.addAndGet(System.nanoTime() - waitStart);
+        }
+    }
+
+    /**
+     * Waits until every queued item has been handled and stops the workers. Call it only after the last
+     * {@link #submit(Object)} of every producer.
+     *
+     * @throws Exception The first failure of any stage of the pipeline.
+     */
+    public void finish() throws Exception {
+        for (int i = 0; i < workers.size(); i++) {
+            BlockingQueues.putUninterruptibly(queue, END);
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getThreads() {
+        return workers.size();
+    }
+
+    public long getItems() {
+        return items.get();
+    }
+
+    public long getBusyNanos() {
+        return busyNanos.get();
+    }
+
+    /**
+     * @return The total time producers waited because the queue of this stage was full.
+     */
+    public long getBlockedNanos() {
+        return blockedNanos.get();
+    }
+
+    /**
+     * @return The largest number of items already queued when an item was submitted.
+     */
+    public int getMaxDepth() {
+        return maxDepth.get();
+    }
+
+    /**
+     * @return The mean number of queued items seen by {@link #submit(Object)}.
+     */
+    public double getMeanDepth() {
+        long count = submissions.get();
+        return count == 0 ? 0 : (double) depthSum.get() / count;
+    }
+
+    /**
+     * @return e.g. "rewrite: 401 items, busy 120.3 ms (3333 items/s), queue max 64/64 mean 41.2, producers blocked 88.0 ms".
+     */
+    @Override
+    public String toString() {
+        double busyMillis = busyNanos.get() / 1_000_000.0;
+        return String.format("%s: %d items, busy %.1f ms (%.0f items/s), queue max %d/%d mean %.1f, producers blocked %.1f ms",
+                name, items.get(), busyMillis, items.get() / Math.max(busyMillis, 0.001) * 1000.0,
+                maxDepth.get(), capacity, getMeanDepth(), blockedNanos.get() / 1_000_000.0);
+    }
+
+    // -- HELPER METHODS --
+    @SuppressWarnings("unchecked")
+    private void work() {
+        while (true) {
+            Object item = BlockingQueues.takeUninterruptibly(queue);
+            if (item == END) return;
+            if (failure.get() != null) continue;
+            long start = System.nanoTime();
+            try {
+                handler.handle((T) item);
+                items.incrementAndGet();
+            } catch (Exception e) {
+                failure.compareAndSet(null, e);
+            } catch (Error e) {
+                failure.compareAndSet(null, new IllegalStateException("Stage " + name + " failed", e));
+            } finally {
+                busyNanos.addAndGet(System.nanoTime() - start);
+            }
+        }
+    }
+}
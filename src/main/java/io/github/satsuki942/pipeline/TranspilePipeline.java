@@ -0,0 +1,286 @@
+package io.github.satsuki942.pipeline;
+
+import com.github.javaparser.ast.CompilationUnit;
+
+import io.github.satsuki942.MyLangTransformer;
+import io.github.satsuki942.SymbolTableBuilderVisitor;
+import io.github.satsuki942.TransformOptions;
+import io.github.satsuki942.UnifiedClassBuilder;
+import io.github.satsuki942.input.SourceIngestor;
+import io.github.satsuki942.output.SourceSink;
+import io.github.satsuki942.symboltable.SymbolTable;
+import io.github.satsuki942.util.AstUtil;
+import io.github.satsuki942.util.Logger;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs parse → analyze → rewrite → merge → print → write as concurrent stages connected by bounded queues.
+ * <p>
+ * Each source is analyzed into its own symbol table fragment as soon as it is parsed, while other files are
+ * still being read and parsed. Rewriting needs the symbol table of the whole program, so the fragments are
+ * merged (in path order, as {@link MyLangTransformer#analyze} does) once the last source is analyzed; this is
+ * the only barrier. From then on a base class is merged as soon as its last version is rewritten, printed while
+ * other classes are still being rewritten, and written while others are printed. Every queue is bounded, so a
+ * slow stage throttles the stages feeding it; the {@link Stage} metrics show which stage that is.
+ * <p>
+ * Like streaming mode, the pipeline never holds the rewritten program as a whole, so dead code elimination and
+ * devirtualization are not applied; {@link Result#getDiagnostics()} names each of them that was asked for.
+ */
+public class TranspilePipeline {
+
+    private static final Logger LOGGER = Logger.get(TranspilePipeline.class);
+
+    static final int QUEUE_CAPACITY = 64;
+
+    private final TransformOptions options;
+    private final int threads;
+
+    /**
+     * @param options The transformation options of the project.
+     * @param threads The number of threads of the parse stage and of every CPU-bound stage; the write stage
+     *                always has one, as sinks are not thread-safe.
+     */
+    public TranspilePipeline(TransformOptions options, int threads) {
+        this.options = options;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * The outcome of a pipeline run: the symbol table and the metrics of every stage.
+     */
+    public static class Result {
+        private final SymbolTable symbolTable;
+        private final SourceIngestor.IngestionResult ingestion;
+        private final List<Stage<?>> stages;
+        private final long elapsedNanos;
+        private final List<String> diagnostics;
+
+        Result(SymbolTable symbolTable, SourceIngestor.IngestionResult ingestion, List<Stage<?>> stages, long elapsedNanos,
+               List<String> diagnostics) {
+            this.symbolTable = symbolTable;
+            this.ingestion = ingestion;
+            this.stages = stages;
+            this.elapsedNanos = elapsedNanos;
+            this.diagnostics = diagnostics;
+        }
+
+        /**
+         * @return The sealed symbol table of all sources, with the libraries registered.
+         */
+        public SymbolTable getSymbolTable() {
+            return symbolTable;
+        }
+
+        public SourceIngestor.IngestionResult getIngestion() {
+            return ingestion;
+        }
+
+        /**
+         * @return The problems found in the sources while rewriting them (see {@link MyLangTransformer#getDiagnostics()}).
+         */
+        public List<String> getDiagnostics() {
+            return diagnostics;
+        }
+
+        /**
+         * @return The stages after parsing, in pipeline order.
+         */
+        public List<Stage<?>> getStages() {
+            return stages;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * @return The stage whose workers were busy the longest, i.e. the stage limiting the throughput.
+         */
+        public Stage<?> getBottleneck() {
+            return stages.stream()
+                         .max(Comparator.comparingDouble(stage -> (double) stage.getBusyNanos() / stage.getThreads()))
+                         .orElseThrow();
+        }
+
+        /**
+         * @return One line for parsing and one per stage, followed by the bottleneck.
+         */
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            sb.append(String.format("Pipeline completed in %.1f ms%n", elapsedNanos / 1_000_000.0));
+            sb.append("  parse: ").append(ingestion).append(System.lineSeparator());
+            stages.forEach(stage -> sb.append("  ").append(stage).append(System.lineSeparator()));
+            sb.append("  bottleneck: ").append(getBottleneck().getName());
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Transpiles every {@code .java} file under a directory into a sink.
+     *
+     * @param inputDir  The directory holding the MyLang sources.
+     * @param libraries The symbol tables of separately compiled libraries.
+     * @param sink      Receives every transformed CompilationUnit, always from the same thread.
+     * @return The symbol table and the stage metrics.
+     * @throws IOException If a source cannot be read or the sink fails.
+     */
+    public Result run(Path inputDir, List<SymbolTable> libraries, SourceSink sink) throws IOException {
+        long start = System.nanoTime();
+        AtomicReference<Exception> failure = new AtomicReference<>();
+
+        // parse → analyze: every parsed source becomes a symbol table fragment
+        Map<Path, SymbolTable> fragments = new ConcurrentSkipListMap<>();
+        Stage<CompilationUnit> analyze = new Stage<CompilationUnit>("analyze", threads, QUEUE_CAPACITY, cu -> {
+            SymbolTable fragment = new SymbolTable();
+            new SymbolTableBuilderVisitor().visit(cu, fragment);
+            fragments.put(cu.getStorage().get().getPath(), fragment);
+        }, failure).start();
+        SourceIngestor.IngestionResult ingestion;
+        try {
+            ingestion = new SourceIngestor(threads).ingest(inputDir, analyze::submit);
+        } catch (IOException | RuntimeException e) {
+            try {
+                finishAll(List.of(analyze));
+            } catch (IOException | RuntimeException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            throw e;
+        }
+        finishAll(List.of(analyze));
+
+        // The barrier: rewriting needs the classes of every source
+        SymbolTable symbolTable = new SymbolTable();
+        fragments.values().forEach(symbolTable::merge);
+        libraries.forEach(symbolTable::addLibrary);
+        symbolTable.seal();
+        LOGGER.success(() -> "Generated a symbol table");
+
+        // rewrite → merge → print → write, declared from the end so every stage can feed the next one
+        List<CompilationUnit> units = ingestion.getCompilationUnits();
+        MyLangTransformer transformer = new MyLangTransformer(options);
+        transformer.reportWholeProgramOptions("pipeline");
+        VersionGroup[] groupOf = groupVersions(units);
+        Stage<PrintedSource> write = new Stage<PrintedSource>("write", 1, QUEUE_CAPACITY,
+                printed -> sink.accept(printed.cu, printed.source), failure);
+        Stage<CompilationUnit> print = new Stage<CompilationUnit>("print", threads, QUEUE_CAPACITY,
+                cu -> write.submit(new PrintedSource(cu, cu.toString())), failure);
+        Stage<VersionGroup> merge = new Stage<VersionGroup>("merge", threads, QUEUE_CAPACITY,
+                group -> new UnifiedClassBuilder(group.baseName, Arrays.asList(group.versions), symbolTable, options)
+                        .buildAll().forEach(print::submit),
+                failure);
+        Stage<Integer> rewrite = new Stage<Integer>("rewrite", threads, QUEUE_CAPACITY, index -> {
+            CompilationUnit rewritten = transformer.rewrite(units.get(index), symbolTable);
+            VersionGroup group = groupOf[index];
+            if (group == null) {
+                print.submit(rewritten);
+            } else if (group.complete(index, rewritten)) {
+                merge.submit(group);
+            }
+        }, failure);
+        List<Stage<?>> stages = List.of(analyze, rewrite, merge, print, write);
+        write.start();
+        print.start();
+        merge.start();
+        rewrite.start();
+        try {
+            for (int i = 0; i < units.size(); i++) {
+                rewrite.submit(i);
+            }
+        } finally {
+            finishAll(stages.subList(1, stages.size()));
+        }
+
+        Result result = new Result(symbolTable, ingestion, stages, System.nanoTime() - start, transformer.getDiagnostics());
+        LOGGER.debug(result::toString);
+        LOGGER.success(() -> "Whole pipelined transformation completed");
+        return result;
+    }
+
+    // -- HELPER METHODS --
+    // The versions of one base class, filled in by the rewrite stage in any order
+    private static final class VersionGroup {
+        final String baseName;
+        final CompilationUnit[] versions;
+        // Source index -> position among the versions, in path order like the in-memory transformation
+        final Map<Integer, Integer> positions = new HashMap<>();
+        final AtomicInteger remaining;
+
+        VersionGroup(String baseName, List<Integer> indices) {
+            this.baseName = baseName;
+            this.versions = new CompilationUnit[indices.size()];
+            for (int i = 0; i < indices.size(); i++) {
+                positions.put(indices.get(i), i);
+            }
+            this.remaining = new AtomicInteger(indices.size());
+        }
+
+        // True for the call that completes the group; the atomic decrement publishes the earlier versions
+        boolean complete(int index, CompilationUnit rewritten) {
+            versions[positions.get(index)] = rewritten;
+            return remaining.decrementAndGet() == 0;
+        }
+    }
+
+    private static final class PrintedSource {
+        final CompilationUnit cu;
+        final String source;
+
+        PrintedSource(CompilationUnit cu, String source) {
+            this.cu = cu;
+            this.source = source;
+        }
+    }
+
+    // The group of every versioned source, or null for normal classes
+    private static VersionGroup[] groupVersions(List<CompilationUnit> units) {
+        Map<String, List<Integer>> indicesByBase = new LinkedHashMap<>();
+        for (int i = 0; i < units.size(); i++) {
+            if (AstUtil.isVersioned(units.get(i))) {
+                indicesByBase.computeIfAbsent(AstUtil.getBaseName(units.get(i)), k -> new ArrayList<>()).add(i);
+            }
+        }
+        VersionGroup[] groupOf = new VersionGroup[units.size()];
+        indicesByBase.forEach((baseName, indices) -> {
+            VersionGroup group = new VersionGroup(baseName, indices);
+            indices.forEach(index -> groupOf[index] = group);
+        });
+        return groupOf;
+    }
+
+    // Stops the stages in pipeline order, so every stage has received its last item before it is finished
+    private static void finishAll(List<Stage<?>> stages) throws IOException {
+        Exception first = null;
+        for (Stage<?> stage : stages) {
+            try {
+                stage.finish();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (first == null) first = e;
+            } catch (Exception e) {
+                if (first == null) first = e;
+            }
+        }
+        if (first instanceof IOException) {
+            throw (IOException) first;
+        }
+        if (first instanceof RuntimeException) {
+            throw (RuntimeException) first;
+        }
+        if (first != null) {
+            throw new IOException("Pipeline stage failed", first);
+        }
+    }
+}
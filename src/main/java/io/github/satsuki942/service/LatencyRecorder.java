@@ -0,0 +1,82 @@
+package io.github.satsuki942.service;
+
+import java.util.Arrays;
+
+/**
+ * Keeps the latencies of the most recent requests and reports their percentiles.
+ * <p>
+ * Samples go into a fixed-size ring, so memory stays constant however long the service runs, and the
+ * percentiles describe the last {@link #WINDOW} requests. Recording is a short synchronized store; the
+ * sorting needed for percentiles happens only when they are read.
+ */
+public class LatencyRecorder {
+    static final int WINDOW = 4096;
+
+    private final long[] samples = new long[WINDOW];
+    private long count;
+    private long failures;
+
+    /**
+     * @param nanos  The latency of one request.
+     * @param failed Whether the request failed.
+     */
+    public synchronized void record(long nanos, boolean failed) {
+        samples[(int) (count % WINDOW)] = nanos;
+        count++;
+        if (failed) failures++;
+    }
+
+    public synchronized long getCount() {
+        return count;
+    }
+
+    public synchronized long getFailures() {
+        return failures;
+    }
+
+    /**
+     * @param percentile A percentile between 0 and 100.
+     * @return The latency in nanoseconds below which that share of the recent requests finished, or 0 without requests.
+     */
+    public long percentile(double percentile) {
+        return at(window(), percentile);
+    }
+
+    /**
+     * @return e.g. "requests=42 failures=1 p50=12.3ms p90=20.1ms p99=35.0ms max=40.2ms".
+     */
+    @Override
+    public String toString() {
+        long[] window = window();
+        long total;
+        long failed;
+        synchronized (this) {
+            total = count;
+            failed = failures;
+        }
+        return String.format("requests=%d failures=%d p50=%s p90=%s p99=%s max=%s", total, failed,
+                millis(window, 50), millis(window, 90), millis(window, 99), millis(window, 100));
+    }
+
+    // -- HELPER METHODS --
+    // The recent samples, sorted
+    private long[] window() {
+        long[] window;
+        synchronized (this) {
+            window = Arrays.copyOf(samples, (int) Math.min(count, WINDOW));
+        }
+        Arrays.sort(window);
+        return window;
+    }
+
+    // Nearest-rank percentile of sorted samples
+    private static long at(long[] window, double percentile) {
+        if (window.length == 0) return 0;
+        int rank = (int) Math.ceil(percentile / 100.0 * window.length);
+        return window[Math.max(0, Math.min(window.length - 1, rank - 1))];
+    }
+
+    private static String millis(long[] window, double percentile) {
+        return String.format("%.1fms", at(window, percentile) / 1_000_000.0);
+    }
+}
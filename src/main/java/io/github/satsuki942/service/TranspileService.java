@@ -0,0 +1,278 @@
+package io.github.satsuki942.service;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseProblemException;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ast.CompilationUnit;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import io.github.satsuki942.MyLangTransformer;
+import io.github.satsuki942.TransformOptions;
+import io.github.satsuki942.compiler.CompilerSession;
+import io.github.satsuki942.output.JarSourceSink;
+import io.github.satsuki942.symboltable.SymbolTable;
+import io.github.satsuki942.util.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Runs the transpiler as a resident service on a loopback HTTP port, so that every project skips JVM startup
+ * and warm-up.
+ * <p>
+ * {@code POST /transpile} takes a zip of MyLang sources (and optionally a {@code transform.properties}) and
+ * answers with a jar holding the generated sources, the compiled classes and the compiler diagnostics
+ * ({@value #DIAGNOSTICS_ENTRY}); the status is 200 when the sources compiled, 422 when they did not and 400
+ * when the request could not be parsed. {@code GET /metrics} reports the request count and latency percentiles.
+ * <p>
+ * Every request runs on its own virtual thread with its own parser, transformer, symbol table (sealed once it
+ * is built) and visitor contexts, so requests never share mutable state. Only warm compiler sessions are
+ * shared, one request at a time. Compilation is CPU-bound, so at most one request per processor compiles at
+ * a time; the others wait for a permit, which also caps the number of sessions (and their file managers).
+ */
+public class TranspileService implements AutoCloseable {
+
+    private static final Logger LOGGER = Logger.get(TranspileService.class);
+
+    static final String DIAGNOSTICS_ENTRY = "META-INF/mvo/diagnostics.txt";
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ConcurrentLinkedDeque<CompilerSession> idleSessions = new ConcurrentLinkedDeque<>();
+    private final Semaphore compilePermits = new Semaphore(Runtime.getRuntime().availableProcessors());
+    private final LatencyRecorder latencies = new LatencyRecorder();
+
+    private TranspileService(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(executor);
+        server.createContext("/transpile", this::handleTranspile);
+        server.createContext("/metrics", this::handleMetrics);
+    }
+
+    /**
+     * Starts the service on the loopback interface.
+     *
+     * @param port The port to listen on, or 0 for any free port.
+     * @return The running service.
+     * @throws IOException If the port cannot be bound.
+     */
+    public static TranspileService start(int port) throws IOException {
+        TranspileService service = new TranspileService(port);
+        service.server.start();
+        LOGGER.success(() -> "Transpile service listening on http://localhost:" + service.getPort());
+        return service;
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public LatencyRecorder getLatencies() {
+        return latencies;
+    }
+
+    /**
+     * The outcome of one transpilation: the generated sources, their classes, and the diagnostics of the
+     * transformation and the compiler.
+     */
+    public static class Result {
+        private final JarSourceSink sources;
+        private final CompilerSession.CompilationResult compilation;
+        private final List<String> transformDiagnostics;
+
+        Result(JarSourceSink sources, CompilerSession.CompilationResult compilation, List<String> transformDiagnostics) {
+            this.sources = sources;
+            this.compilation = compilation;
+            this.transformDiagnostics = transformDiagnostics;
+        }
+
+        public boolean isSuccess() {
+            return compilation.isSuccess();
+        }
+
+        public SortedMap<String, String> getSources() {
+            return sources.getSources();
+        }
+
+        public SortedMap<String, byte[]> getClassFiles() {
+            return compilation.getClassFiles();
+        }
+
+        /**
+         * @return One line per diagnostic, e.g. "ERROR sample/Main.java:3: cannot find symbol". The problems found
+         *         by the transformation come first, located by file name only (e.g. "ERROR Main.java:5: Ignored ...").
+         */
+        public String getDiagnostics() {
+            StringBuilder sb = new StringBuilder();
+            for (String diagnostic : transformDiagnostics) {
+                sb.append(Diagnostic.Kind.ERROR).append(' ').append(diagnostic).append('\n');
+            }
+            for (Diagnostic<? extends JavaFileObject> diagnostic : compilation.getDiagnostics()) {
+                sb.append(diagnostic.getKind()).append(' ')
+                  .append(diagnostic.getSource() != null ? diagnostic.getSource().getName().replaceFirst("^/", "") : "-")
+                  .append(':').append(diagnostic.getLineNumber()).append(": ")
+                  .append(diagnostic.getMessage(Locale.ROOT)).append('\n');
+            }
+            return sb.toString();
+        }
+
+        void writeJar(OutputStream out) throws IOException {
+            SortedMap<String, byte[]> entries = new TreeMap<>(compilation.getClassFiles());
+            entries.put(DIAGNOSTICS_ENTRY, getDiagnostics().getBytes(StandardCharsets.UTF_8));
+            sources.writeJar(out, entries);
+        }
+    }
+
+    /**
+     * Transpiles and compiles one project. Safe to call from many threads at once.
+     *
+     * @param sources The MyLang sources keyed by file name (e.g. "Test__1__.java"), which names their class.
+     * @param options The transformation options of the project.
+     * @return The generated sources, classes and diagnostics.
+     * @throws ParseProblemException If a source is not valid Java.
+     */
+    public Result transpile(Map<String, String> sources, TransformOptions options) {
+        JavaParser parser = new JavaParser();
+        List<CompilationUnit> asts = new ArrayList<>();
+        for (Map.Entry<String, String> source : new TreeMap<>(sources).entrySet()) {
+            ParseResult<CompilationUnit> parsed = parser.parse(source.getValue());
+            if (!parsed.isSuccessful() || parsed.getResult().isEmpty()) {
+                throw new ParseProblemException(parsed.getProblems());
+            }
+            // The versioned class name is read from the storage file name, as for sources parsed from files
+            CompilationUnit cu = parsed.getResult().get();
+            cu.setStorage(Paths.get(source.getKey()).toAbsolutePath(), StandardCharsets.UTF_8);
+            asts.add(cu);
+        }
+
+        MyLangTransformer transformer = new MyLangTransformer(options);
+        SymbolTable symbolTable = transformer.analyze(asts).seal();
+        JarSourceSink sink = new JarSourceSink();
+        transformer.transform(asts, symbolTable).forEach(sink::accept);
+
+        compilePermits.acquireUninterruptibly();
+        try {
+            CompilerSession session = idleSessions.pollFirst();
+            if (session == null) {
+                session = new CompilerSession();
+            }
+            try {
+                return new Result(sink, session.compileInMemory(sink.getSources(), List.of()), transformer.getDiagnostics());
+            } finally {
+                idleSessions.addFirst(session);
+            }
+        } finally {
+            compilePermits.release();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.close();
+        CompilerSession session;
+        while ((session = idleSessions.pollFirst()) != null) {
+            session.close();
+        }
+    }
+
+    /**
+     * Runs the service until the process is stopped.
+     *
+     * @param args The port to listen on (default 7942).
+     * @throws IOException If the port cannot be bound.
+     */
+    public static void main(String[] args) throws IOException {
+        Logger.configure(System.getProperties());
+        start(args.length > 0 ? Integer.parseInt(args[0]) : 7942);
+    }
+
+    // -- HELPER METHODS --
+    private void handleTranspile(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        boolean failed = true;
+        try (exchange) {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                sendText(exchange, 405, "Error: use POST with a zip of sources");
+                return;
+            }
+            Result result;
+            try {
+                Map<String, String> sources = new TreeMap<>();
+                Properties properties = new Properties();
+                readProject(exchange.getRequestBody(), sources, properties);
+                result = transpile(sources, new TransformOptions().apply(properties, ""));
+            } catch (ParseProblemException | IllegalArgumentException e) {
+                sendText(exchange, 400, "Error: " + e.getMessage());
+                return;
+            }
+            ByteArrayOutputStream jar = new ByteArrayOutputStream();
+            result.writeJar(jar);
+            exchange.getResponseHeaders().set("Content-Type", "application/java-archive");
+            exchange.sendResponseHeaders(result.isSuccess() ? 200 : 422, jar.size());
+            exchange.getResponseBody().write(jar.toByteArray());
+            failed = !result.isSuccess();
+        } catch (RuntimeException e) {
+            LOGGER.error(() -> "Transpile request failed: " + e);
+            throw e;
+        } finally {
+            latencies.record(System.nanoTime() - start, failed);
+        }
+    }
+
+    private void handleMetrics(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            sendText(exchange, 200, latencies.toString());
+        }
+    }
+
+    // The .java entries become sources; a transform.properties entry supplies the options
+    private static void readProject(InputStream body, Map<String, String> sources, Properties properties) throws IOException {
+        try (ZipInputStream zip = new ZipInputStream(body, StandardCharsets.UTF_8)) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                String name = entry.getName();
+                if (entry.isDirectory()) continue;
+                if (name.endsWith(".java")) {
+                    sources.put(name, new String(zip.readAllBytes(), StandardCharsets.UTF_8));
+                } else if (name.endsWith(TransformOptions.OPTIONS_FILE)) {
+                    properties.load(new ByteArrayInputStream(zip.readAllBytes()));
+                }
+            }
+        }
+        if (sources.isEmpty()) {
+            throw new IllegalArgumentException("the request holds no .java file");
+        }
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+    }
+}
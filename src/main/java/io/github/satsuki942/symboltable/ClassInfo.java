@@ -1,7 +1,12 @@
 package io.github.satsuki942.symboltable;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.UnaryOperator;
 
 public class ClassInfo {
     private final String baseName;
@@ -31,4 +36,44 @@ public class ClassInfo {
     public Map<String, List<MethodInfo>> getMethods() {
         return methods;
     }
+
+    /**
+     * Returns a copy whose member maps, member lists and {@link MethodInfo}s cannot be modified,
+     * as handed out by a sealed {@link SymbolTable}. The iteration order of the members is kept.
+     *
+     * @return The read-only copy.
+     */
+    public ClassInfo asReadOnly() {
+        return new ClassInfo(baseName, isVersioned, readOnly(methods, MethodInfo::asReadOnly), readOnly(fields, UnaryOperator.identity()));
+    }
+
+    /**
+     * Combines two fragments of the same class, e.g. two versions analyzed independently.
+     * The members of {@code second} are appended after those of {@code first}; neither argument is modified.
+     *
+     * @param first  The fragment that comes first in source order.
+     * @param second The fragment that comes second in source order.
+     * @return A new {@link ClassInfo} holding the members of both fragments.
+     */
+    public static ClassInfo merge(ClassInfo first, ClassInfo second) {
+        return new ClassInfo(
+            second.getBaseName(),
+            second.isVersioned(),
+            mergeMembers(first.getMethods(), second.getMethods()),
+            mergeMembers(first.getFields(), second.getFields())
+        );
+    }
+
+    private static <T> Map<String, List<T>> readOnly(Map<String, List<T>> members, UnaryOperator<T> copy) {
+        Map<String, List<T>> readOnly = new LinkedHashMap<>();
+        members.forEach((name, list) -> readOnly.put(name, list.stream().map(copy).toList()));
+        return Collections.unmodifiableMap(readOnly);
+    }
+
+    private static <T> Map<String, List<T>> mergeMembers(Map<String, List<T>> first, Map<String, List<T>> second) {
+        Map<String, List<T>> merged = new HashMap<>();
+        first.forEach((name, members) -> merged.put(name, new ArrayList<>(members)));
+        second.forEach((name, members) -> merged.computeIfAbsent(name, k -> new ArrayList<>()).addAll(members));
+        return merged;
+    }
 }
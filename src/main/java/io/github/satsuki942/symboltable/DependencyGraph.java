@@ -0,0 +1,253 @@
+package io.github.satsuki942.symboltable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * The "uses" relation between the classes declared in the sources, recorded by the SymbolTableBuilderVisitor
+ * while it builds a {@link SymbolTable}.
+ * <p>
+ * Class A depends on class B when B appears in the type of one of A's fields, in the return, parameter or
+ * local variable types of one of its methods, in one of its {@code new} expressions, or in its supertypes.
+ * Versioned type names count as their unified base class, so a change to {@code Point__2__} affects every
+ * class using any version of {@code Point}. Edges are kept in both directions, so the direct dependencies
+ * and the direct dependents of a class are each one lookup away. Edges to types that are not declared in the
+ * sources (library or JDK classes) are recorded but never reported. The graph is not part of symbol table
+ * snapshots, so a loaded snapshot has an empty graph.
+ */
+public class DependencyGraph {
+    private static final Pattern TYPE_NAME_SEPARATOR = Pattern.compile("[^A-Za-z0-9_$]+");
+
+    // Sorted, so that components and their members come out in a reproducible order
+    private final Set<String> classes = new TreeSet<>();
+    // Base name -> base names of the types it uses, and the reverse
+    private final Map<String, Set<String>> dependencies = new TreeMap<>();
+    private final Map<String, Set<String>> dependents = new HashMap<>();
+    private volatile boolean sealed;
+
+    /**
+     * Registers a class declared in the sources.
+     *
+     * @param typeName The name of the class, versioned or not.
+     */
+    public synchronized void addClass(String typeName) {
+        checkNotSealed();
+        String baseName = baseName(typeName);
+        classes.add(baseName);
+        dependencies.computeIfAbsent(baseName, k -> new TreeSet<>());
+    }
+
+    /**
+     * Records that a class uses every type named in a type such as {@code Map<String, Point__1__>[]}.
+     *
+     * @param className The name of the using class, versioned or not.
+     * @param type      The type as written in the source.
+     */
+    public synchronized void addDependency(String className, String type) {
+        checkNotSealed();
+        if (type == null) return;
+        String from = baseName(className);
+        for (String token : TYPE_NAME_SEPARATOR.split(type)) {
+            if (token.isEmpty()) continue;
+            String to = baseName(token);
+            if (!to.equals(from) && dependencies.computeIfAbsent(from, k -> new TreeSet<>()).add(to)) {
+                dependents.computeIfAbsent(to, k -> new HashSet<>()).add(from);
+            }
+        }
+    }
+
+    /**
+     * Adds all classes and edges of another graph to this one.
+     *
+     * @param other The graph to merge into this one. It is not modified.
+     * @return This graph.
+     */
+    public DependencyGraph merge(DependencyGraph other) {
+        checkNotSealed();
+        Set<String> otherClasses;
+        Map<String, Set<String>> otherDependencies = new HashMap<>();
+        synchronized (other) {
+            otherClasses = new HashSet<>(other.classes);
+            other.dependencies.forEach((from, uses) -> otherDependencies.put(from, new HashSet<>(uses)));
+        }
+        synchronized (this) {
+            otherClasses.forEach(this::addClass);
+            otherDependencies.forEach((from, uses) -> uses.forEach(to -> addDependency(from, to)));
+        }
+        return this;
+    }
+
+    /**
+     * @return The base names of all classes declared in the sources, sorted.
+     */
+    public synchronized Set<String> getClasses() {
+        return Collections.unmodifiableSet(new TreeSet<>(classes));
+    }
+
+    /**
+     * @param typeName The name of a class, versioned or not.
+     * @return The base names of the declared classes it uses directly, sorted.
+     */
+    public synchronized Set<String> getDependencies(String typeName) {
+        return declared(dependencies.get(baseName(typeName)));
+    }
+
+    /**
+     * @param typeName The name of a class, versioned or not.
+     * @return The base names of the declared classes that use it directly, sorted.
+     */
+    public synchronized Set<String> getDependents(String typeName) {
+        return declared(dependents.get(baseName(typeName)));
+    }
+
+    /**
+     * Answers "what must be redone if this class changes": the class itself and every declared class that
+     * uses it, directly or not. Each edge is followed at most once. For a type not declared in the sources
+     * (e.g. a library class), only the declared classes using it are returned.
+     *
+     * @param typeName The name of the changed class, e.g. {@code Point__2__}.
+     * @return The base names of the affected classes, in the order they were reached.
+     */
+    public synchronized Set<String> getAffectedClasses(String typeName) {
+        String changed = baseName(typeName);
+        Set<String> affected = new LinkedHashSet<>();
+        Deque<String> pending = new ArrayDeque<>();
+        if (classes.contains(changed)) {
+            affected.add(changed);
+        }
+        pending.add(changed);
+        while (!pending.isEmpty()) {
+            for (String dependent : dependents.getOrDefault(pending.poll(), Set.of())) {
+                if (classes.contains(dependent) && affected.add(dependent)) {
+                    pending.add(dependent);
+                }
+            }
+        }
+        return Collections.unmodifiableSet(affected);
+    }
+
+    /**
+     * Orders the declared classes so that every class comes after the classes it uses. Classes that use
+     * each other (see {@link #getStronglyConnectedComponents()}) are adjacent, sorted by name.
+     *
+     * @return The base names of all declared classes.
+     */
+    public List<String> getTopologicalOrder() {
+        return getStronglyConnectedComponents().stream().flatMap(List::stream).collect(Collectors.toList());
+    }
+
+    /**
+     * Groups the classes into strongly connected components (classes that use each other, directly or not).
+     * Every component comes after all components it depends on, so compiling them in this order never needs
+     * a class of a later component.
+     *
+     * @return The components in dependency order; each component is sorted by name.
+     */
+    public synchronized List<List<String>> getStronglyConnectedComponents() {
+        // Tarjan's algorithm, iterative so that long dependency chains cannot overflow the stack
+        Map<String, Integer> index = new HashMap<>();
+        Map<String, Integer> lowLink = new HashMap<>();
+        Deque<String> stack = new ArrayDeque<>();
+        Set<String> onStack = new HashSet<>();
+        List<List<String>> components = new ArrayList<>();
+
+        for (String root : classes) {
+            if (index.containsKey(root)) continue;
+            Deque<Frame> work = new ArrayDeque<>();
+            work.push(new Frame(root, getDependencies(root).iterator()));
+            index.put(root, index.size());
+            lowLink.put(root, index.get(root));
+            stack.push(root);
+            onStack.add(root);
+
+            while (!work.isEmpty()) {
+                Frame frame = work.peek();
+                String node = frame.node;
+                if (frame.next.hasNext()) {
+                    String dependency = frame.next.next();
+                    if (!index.containsKey(dependency)) {
+                        index.put(dependency, index.size());
+                        lowLink.put(dependency, index.get(dependency));
+                        stack.push(dependency);
+                        onStack.add(dependency);
+                        work.push(new Frame(dependency, getDependencies(dependency).iterator()));
+                    } else if (onStack.contains(dependency)) {
+                        lowLink.put(node, Math.min(lowLink.get(node), index.get(dependency)));
+                    }
+                    continue;
+                }
+                work.pop();
+                if (!work.isEmpty()) {
+                    String parent = work.peek().node;
+                    lowLink.put(parent, Math.min(lowLink.get(parent), lowLink.get(node)));
+                }
+                if (lowLink.get(node).equals(index.get(node))) {
+                    List<String> component = new ArrayList<>();
+                    String member;
+                    do {
+                        member = stack.pop();
+                        onStack.remove(member);
+                        component.add(member);
+                    } while (!member.equals(node));
+                    Collections.sort(component);
+                    components.add(component);
+                }
+            }
+        }
+        return components;
+    }
+
+    /**
+     * Makes this graph read-only: adding classes, dependencies or merging afterwards throws an
+     * {@link IllegalStateException}. Sealed together with its {@link SymbolTable}.
+     */
+    void seal() {
+        sealed = true;
+    }
+
+    // -- HELPER METHODS --
+    private void checkNotSealed() {
+        if (sealed) {
+            throw new IllegalStateException("The dependency graph is sealed");
+        }
+    }
+
+    // A class being visited and the dependencies it has left to visit
+    private static final class Frame {
+        final String node;
+        final Iterator<String> next;
+
+        Frame(String node, Iterator<String> next) {
+            this.node = node;
+            this.next = next;
+        }
+    }
+
+    private static String baseName(String typeName) {
+        return VersionedName.of(typeName).getBaseName();
+    }
+
+    private Set<String> declared(Set<String> names) {
+        if (names == null) return Set.of();
+        Set<String> declared = new TreeSet<>();
+        for (String name : names) {
+            if (classes.contains(name)) {
+                declared.add(name);
+            }
+        }
+        return Collections.unmodifiableSet(declared);
+    }
+}
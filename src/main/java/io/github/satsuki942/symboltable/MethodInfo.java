@@ -1,5 +1,7 @@
 package io.github.satsuki942.symboltable;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -37,4 +39,12 @@ public class MethodInfo {
     public String getVersion() {
         return version;
     }
+
+    /**
+     * @return A copy whose parameter types and variables cannot be modified.
+     */
+    public MethodInfo asReadOnly() {
+        return new MethodInfo(name, returnType, List.copyOf(parameterTypes), version,
+                Collections.unmodifiableMap(new LinkedHashMap<>(variables)));
+    }
 }
@@ -1,26 +1,157 @@
 package io.github.satsuki942.symboltable;
 
-import java.util.HashMap;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 public class SymbolTable {
-    private final Map<String, ClassInfo> classTable = new HashMap<>();
+    private final Map<String, ClassInfo> classTable = new ConcurrentHashMap<>();
+    private final List<SymbolTable> libraries = new CopyOnWriteArrayList<>();
+    private final DependencyGraph dependencyGraph = new DependencyGraph();
+    // Versioned type names parsed by the passes over this table; normal names are not kept
+    private final Map<String, VersionedName> versionedNames = new ConcurrentHashMap<>();
+    private volatile boolean sealed;
 
     // Class information
     public void addClass(ClassInfo classInfo) {
-        classTable.put(classInfo.getBaseName(), classInfo);
+        checkNotSealed();
+        cacheClass(classInfo);
+    }
+
+    // Also used by lazily decoded tables, which keep filling their cache after being sealed; returns the stored class
+    ClassInfo cacheClass(ClassInfo classInfo) {
+        ClassInfo stored = sealed ? classInfo.asReadOnly() : classInfo;
+        classTable.put(classInfo.getBaseName(), stored);
+        return stored;
     }
 
     public ClassInfo lookupClass(String baseName) {
-        return classTable.get(baseName);
+        ClassInfo classInfo = classTable.get(baseName);
+        if (classInfo != null) {
+            return classInfo;
+        }
+        for (SymbolTable library : libraries) {
+            classInfo = library.lookupClass(baseName);
+            if (classInfo != null) {
+                return classInfo;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Checks whether a class is declared in the sources of this symbol table rather than in a library.
+     *
+     * @param baseName The base name of the class.
+     * @return {@code true} if the class will be generated together with the current sources.
+     */
+    public boolean declaresClass(String baseName) {
+        return classTable.containsKey(baseName);
+    }
+
+    /**
+     * Merges all classes and dependencies of another symbol table into this one.
+     * <p>
+     * Classes present in both tables are combined with {@link ClassInfo#merge(ClassInfo, ClassInfo)},
+     * with the members of {@code other} appended after the members of this table. Merging the tables of
+     * individual CompilationUnits in source order therefore yields the same table as a serial analysis.
+     *
+     * @param other The symbol table to merge into this one. It is not modified.
+     * @return This symbol table.
+     */
+    public SymbolTable merge(SymbolTable other) {
+        checkNotSealed();
+        other.classTable.values().forEach(classInfo -> classTable.merge(classInfo.getBaseName(), classInfo, ClassInfo::merge));
+        dependencyGraph.merge(other.dependencyGraph);
+        other.versionedNames.forEach(versionedNames::putIfAbsent);
+        return this;
+    }
+
+    /**
+     * Returns the parse of a raw type name, shared by every pass working on this table.
+     * <p>
+     * Versioned names are parsed once and kept for the lifetime of the table; normal names, which are
+     * cheap to parse, are not kept. The names therefore never outlive the analysis that uses them.
+     *
+     * @param rawName A type name such as "Test__1__" or "Test".
+     * @return The VersionedName of {@code rawName}.
+     */
+    public VersionedName versionedName(String rawName) {
+        VersionedName name = versionedNames.get(rawName);
+        if (name != null) {
+            return name;
+        }
+        VersionedName parsed = VersionedName.of(rawName);
+        return parsed.isVersioned() ? versionedNames.computeIfAbsent(rawName, k -> parsed) : parsed;
+    }
+
+    /**
+     * Registers the symbol table of a separately compiled library.
+     * <p>
+     * Classes of the library are visible through {@link #lookupClass(String)} but are not
+     * part of {@link #getClasses()}, so they are neither regenerated nor re-exported.
+     *
+     * @param library The symbol table loaded from the library's manifest.
+     */
+    public void addLibrary(SymbolTable library) {
+        checkNotSealed();
+        libraries.add(library);
+    }
+
+    /**
+     * Returns all classes declared in the sources of this symbol table, excluding library classes.
+     *
+     * @return An unmodifiable view of the registered {@link ClassInfo}s.
+     */
+    public Collection<ClassInfo> getClasses() {
+        return Collections.unmodifiableCollection(classTable.values());
+    }
+
+    /**
+     * Makes this symbol table read-only: adding classes, merging or registering libraries afterwards throws
+     * an {@link IllegalStateException}, and so does changing its {@link DependencyGraph}. Its classes are replaced
+     * with read-only copies ({@link ClassInfo#asReadOnly()}); ClassInfos obtained before sealing stay mutable.
+     * A sealed table can be shared by concurrent transformations.
+     *
+     * @return This symbol table.
+     */
+    public synchronized SymbolTable seal() {
+        if (!sealed) {
+            sealed = true;
+            classTable.replaceAll((baseName, classInfo) -> classInfo.asReadOnly());
+            dependencyGraph.seal();
+        }
+        return this;
+    }
+
+    public boolean isSealed() {
+        return sealed;
+    }
+
+    /**
+     * Returns the graph of which declared classes use which, as recorded while the sources were analyzed.
+     *
+     * @return The {@link DependencyGraph} of this symbol table; read-only once the table is sealed.
+     */
+    public DependencyGraph getDependencyGraph() {
+        return dependencyGraph;
+    }
+
+    private void checkNotSealed() {
+        if (sealed) {
+            throw new IllegalStateException("The symbol table is sealed");
+        }
     }
 
     // For Debugging: Print the symbol table contents
     public void print() {
         System.out.println("Symbol Table:");
 
-        classTable.forEach((name, info) -> {
-            System.out.println("    Class: " + name + " (Versioned: " + info.isVersioned() + ")");
+        getClasses().forEach(info -> {
+            System.out.println("    Class: " + info.getBaseName() + " (Versioned: " + info.isVersioned() + ")");
             info.getMethods().forEach((methodName, overloads) -> {
                 overloads.forEach(methodInfo -> {
                     System.out.println(String.format("      - Method: %s, Version: %s, Params: %s",
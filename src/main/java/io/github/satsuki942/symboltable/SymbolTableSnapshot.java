@@ -0,0 +1,324 @@
+package io.github.satsuki942.symboltable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes a compact binary snapshot of a {@link SymbolTable}.
+ * <p>
+ * The snapshot consists of a string table followed by fixed-width records for classes,
+ * methods and fields. All names and types are stored once in the string table and referenced
+ * by index, so a snapshot can be memory-mapped and decoded lazily, one class at a time,
+ * without re-parsing any source file.
+ *
+ * <pre>
+ * header       : MAGIC, FORMAT_VERSION, stringCount, classCount, methodCount, fieldCount, poolSize
+ * string index : stringCount x int (offset of each string, relative to the string data section)
+ * string data  : stringCount x (int byteLength, UTF-8 bytes)
+ * class table  : classCount  x (name, flags, firstMethod, methodCount, firstField, fieldCount)
+ * method table : methodCount x (name, returnType, version, paramStart, paramCount, varStart, varCount)
+ * field table  : fieldCount  x (name, type, version)
+ * int pool     : poolSize    x int (parameter type ids, variable name/type id pairs)
+ * </pre>
+ */
+public final class SymbolTableSnapshot {
+
+    static final int MAGIC = 0x4D564F53; // "MVOS"
+    static final int FORMAT_VERSION = 1;
+
+    static final int HEADER_SIZE = 7 * Integer.BYTES;
+    static final int CLASS_RECORD_SIZE = 6 * Integer.BYTES;
+    static final int METHOD_RECORD_SIZE = 7 * Integer.BYTES;
+    static final int FIELD_RECORD_SIZE = 3 * Integer.BYTES;
+
+    static final int FLAG_VERSIONED = 1;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private SymbolTableSnapshot() {}
+
+    /**
+     * Writes the given symbol table to a snapshot file.
+     *
+     * @param symbolTable The symbol table to serialize.
+     * @param file        The destination file. It is created or truncated.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void write(SymbolTable symbolTable, Path file) throws IOException {
+        ByteBuffer buffer = encode(symbolTable);
+        try (FileChannel channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Memory-maps a snapshot file and returns a symbol table backed by it.
+     * <p>
+     * Only the class names are decoded eagerly; the methods and fields of a class are decoded
+     * on its first lookup.
+     *
+     * @param file The snapshot file written by {@link #write(SymbolTable, Path)}.
+     * @return A {@link SymbolTable} that decodes its classes lazily from the mapped file.
+     * @throws IOException If the file cannot be read or is not a valid snapshot.
+     */
+    public static SymbolTable load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return load(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Returns a symbol table backed by an already loaded snapshot buffer.
+     *
+     * @param buffer A buffer holding a complete snapshot, starting at position 0.
+     * @return A {@link SymbolTable} that decodes its classes lazily from the buffer.
+     * @throws IOException If the buffer does not contain a valid snapshot.
+     */
+    public static SymbolTable load(ByteBuffer buffer) throws IOException {
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a symbol table snapshot");
+        }
+        if (buffer.getInt(Integer.BYTES) != FORMAT_VERSION) {
+            throw new IOException("Unsupported symbol table snapshot version: " + buffer.getInt(Integer.BYTES));
+        }
+        return new MappedSymbolTable(buffer);
+    }
+
+    /**
+     * Serializes the given symbol table into a new heap buffer.
+     *
+     * @param symbolTable The symbol table to serialize.
+     * @return A buffer holding the snapshot, flipped for reading.
+     */
+    public static ByteBuffer encode(SymbolTable symbolTable) {
+        Map<String, Integer> strings = new LinkedHashMap<>();
+        List<int[]> classRecords = new ArrayList<>();
+        List<int[]> methodRecords = new ArrayList<>();
+        List<int[]> fieldRecords = new ArrayList<>();
+        List<Integer> pool = new ArrayList<>();
+
+        for (ClassInfo classInfo : symbolTable.getClasses()) {
+            int firstMethod = methodRecords.size();
+            for (List<MethodInfo> overloads : classInfo.getMethods().values()) {
+                for (MethodInfo method : overloads) {
+                    int paramStart = pool.size();
+                    method.getParameterTypes().forEach(type -> pool.add(intern(strings, type)));
+                    int varStart = pool.size();
+                    method.getVariables().forEach((name, type) -> {
+                        pool.add(intern(strings, name));
+                        pool.add(intern(strings, type));
+                    });
+                    methodRecords.add(new int[] {
+                        intern(strings, method.getName()),
+                        intern(strings, method.getReturnType()),
+                        intern(strings, method.getVersion()),
+                        paramStart, method.getParameterTypes().size(),
+                        varStart, method.getVariables().size()
+                    });
+                }
+            }
+            int firstField = fieldRecords.size();
+            for (List<FieldInfo> fields : classInfo.getFields().values()) {
+                for (FieldInfo field : fields) {
+                    fieldRecords.add(new int[] {
+                        intern(strings, field.getName()),
+                        intern(strings, field.getType()),
+                        intern(strings, field.getVersion())
+                    });
+                }
+            }
+            classRecords.add(new int[] {
+                intern(strings, classInfo.getBaseName()),
+                classInfo.isVersioned() ? FLAG_VERSIONED : 0,
+                firstMethod, methodRecords.size() - firstMethod,
+                firstField, fieldRecords.size() - firstField
+            });
+        }
+
+        List<byte[]> encodedStrings = new ArrayList<>(strings.size());
+        int stringDataSize = 0;
+        for (String s : strings.keySet()) {
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            encodedStrings.add(bytes);
+            stringDataSize += Integer.BYTES + bytes.length;
+        }
+
+        int size = HEADER_SIZE
+                + strings.size() * Integer.BYTES + stringDataSize
+                + classRecords.size() * CLASS_RECORD_SIZE
+                + methodRecords.size() * METHOD_RECORD_SIZE
+                + fieldRecords.size() * FIELD_RECORD_SIZE
+                + pool.size() * Integer.BYTES;
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+
+        buffer.putInt(MAGIC).putInt(FORMAT_VERSION)
+              .putInt(strings.size()).putInt(classRecords.size())
+              .putInt(methodRecords.size()).putInt(fieldRecords.size()).putInt(pool.size());
+
+        int offset = 0;
+        for (byte[] bytes : encodedStrings) {
+            buffer.putInt(offset);
+            offset += Integer.BYTES + bytes.length;
+        }
+        for (byte[] bytes : encodedStrings) {
+            buffer.putInt(bytes.length).put(bytes);
+        }
+        classRecords.forEach(record -> putRecord(buffer, record));
+        methodRecords.forEach(record -> putRecord(buffer, record));
+        fieldRecords.forEach(record -> putRecord(buffer, record));
+        pool.forEach(buffer::putInt);
+
+        return buffer.flip();
+    }
+
+    // -- HELPER METHODS --
+    private static int intern(Map<String, Integer> strings, String s) {
+        return strings.computeIfAbsent(s, k -> strings.size());
+    }
+
+    private static void putRecord(ByteBuffer buffer, int[] record) {
+        for (int value : record) {
+            buffer.putInt(value);
+        }
+    }
+
+    /**
+     * A {@link SymbolTable} whose classes are decoded on demand from a snapshot buffer.
+     * Decoded classes are cached in the regular class table of the parent class.
+     */
+    private static final class MappedSymbolTable extends SymbolTable {
+        private final ByteBuffer buffer;
+        private final String[] strings;
+        private final Map<String, Integer> classIndex;
+
+        private final int stringIndexOffset;
+        private final int stringDataOffset;
+        private final int classTableOffset;
+        private final int methodTableOffset;
+        private final int fieldTableOffset;
+        private final int poolOffset;
+
+        MappedSymbolTable(ByteBuffer buffer) {
+            this.buffer = buffer;
+            int stringCount = buffer.getInt(2 * Integer.BYTES);
+            int classCount = buffer.getInt(3 * Integer.BYTES);
+            int methodCount = buffer.getInt(4 * Integer.BYTES);
+            int fieldCount = buffer.getInt(5 * Integer.BYTES);
+
+            this.strings = new String[stringCount];
+            this.stringIndexOffset = HEADER_SIZE;
+            this.stringDataOffset = stringIndexOffset + stringCount * Integer.BYTES;
+            int lastString = stringCount == 0 ? 0 : buffer.getInt(stringIndexOffset + (stringCount - 1) * Integer.BYTES);
+            int stringDataSize = stringCount == 0 ? 0 : lastString + Integer.BYTES + buffer.getInt(stringDataOffset + lastString);
+            this.classTableOffset = stringDataOffset + stringDataSize;
+            this.methodTableOffset = classTableOffset + classCount * CLASS_RECORD_SIZE;
+            this.fieldTableOffset = methodTableOffset + methodCount * METHOD_RECORD_SIZE;
+            this.poolOffset = fieldTableOffset + fieldCount * FIELD_RECORD_SIZE;
+
+            this.classIndex = new HashMap<>(classCount * 2);
+            for (int i = 0; i < classCount; i++) {
+                classIndex.put(string(buffer.getInt(classTableOffset + i * CLASS_RECORD_SIZE)), i);
+            }
+        }
+
+        @Override
+        public ClassInfo lookupClass(String baseName) {
+            ClassInfo decoded = super.lookupClass(baseName);
+            if (decoded != null) {
+                return decoded;
+            }
+            Integer index = classIndex.get(baseName);
+            if (index == null) {
+                return null;
+            }
+            return cacheClass(decodeClass(index));
+        }
+
+        @Override
+        public Collection<ClassInfo> getClasses() {
+            classIndex.keySet().forEach(this::lookupClass);
+            return super.getClasses();
+        }
+
+        private ClassInfo decodeClass(int index) {
+            int record = classTableOffset + index * CLASS_RECORD_SIZE;
+            String baseName = string(buffer.getInt(record));
+            boolean isVersioned = (buffer.getInt(record + 4) & FLAG_VERSIONED) != 0;
+            int firstMethod = buffer.getInt(record + 8);
+            int methodCount = buffer.getInt(record + 12);
+            int firstField = buffer.getInt(record + 16);
+            int fieldCount = buffer.getInt(record + 20);
+
+            Map<String, List<MethodInfo>> methods = new HashMap<>();
+            for (int i = firstMethod; i < firstMethod + methodCount; i++) {
+                MethodInfo method = decodeMethod(i);
+                methods.computeIfAbsent(method.getName(), k -> new ArrayList<>()).add(method);
+            }
+            Map<String, List<FieldInfo>> fields = new HashMap<>();
+            for (int i = firstField; i < firstField + fieldCount; i++) {
+                int fieldRecord = fieldTableOffset + i * FIELD_RECORD_SIZE;
+                FieldInfo field = new FieldInfo(
+                    string(buffer.getInt(fieldRecord)),
+                    string(buffer.getInt(fieldRecord + 4)),
+                    string(buffer.getInt(fieldRecord + 8))
+                );
+                fields.computeIfAbsent(field.getName(), k -> new ArrayList<>()).add(field);
+            }
+            return new ClassInfo(baseName, isVersioned, methods, fields);
+        }
+
+        private MethodInfo decodeMethod(int index) {
+            int record = methodTableOffset + index * METHOD_RECORD_SIZE;
+            int paramStart = buffer.getInt(record + 12);
+            int paramCount = buffer.getInt(record + 16);
+            int varStart = buffer.getInt(record + 20);
+            int varCount = buffer.getInt(record + 24);
+
+            List<String> parameterTypes = new ArrayList<>(paramCount);
+            for (int i = 0; i < paramCount; i++) {
+                parameterTypes.add(string(poolInt(paramStart + i)));
+            }
+            Map<String, String> variables = new HashMap<>();
+            for (int i = 0; i < varCount; i++) {
+                variables.put(string(poolInt(varStart + 2 * i)), string(poolInt(varStart + 2 * i + 1)));
+            }
+            return new MethodInfo(
+                string(buffer.getInt(record)),
+                string(buffer.getInt(record + 4)),
+                parameterTypes,
+                string(buffer.getInt(record + 8)),
+                variables
+            );
+        }
+
+        private int poolInt(int index) {
+            return buffer.getInt(poolOffset + index * Integer.BYTES);
+        }
+
+        private String string(int id) {
+            String s = strings[id];
+            if (s == null) {
+                int offset = stringDataOffset + buffer.getInt(stringIndexOffset + id * Integer.BYTES);
+                byte[] bytes = new byte[buffer.getInt(offset)];
+                buffer.get(offset + Integer.BYTES, bytes);
+                s = new String(bytes, StandardCharsets.UTF_8);
+                strings[id] = s;
+            }
+            return s;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package io.github.satsuki942.symboltable;
+
+/**
+ * The parsed form of a type name: "Test__2__" has the base name "Test" and the version 2,
+ * while a normal name like "String" is its own base name.<p>
+ *
+ * The version suffixes used to name generated members ("v2", "V2") are precomputed. Passes working on a
+ * symbol table share one parse per versioned name through {@link SymbolTable#versionedName(String)}, which
+ * lives and dies with the table; {@link #of(String)} parses without keeping anything.
+ */
+public final class VersionedName {
+
+    private final String rawName;
+    private final String baseName;
+    private final int ordinal;
+    private final String version;
+    private final String versionSuffix;
+    private final String stateSuffix;
+
+    private VersionedName(String rawName, String baseName, int ordinal, String version) {
+        this.rawName = rawName;
+        this.baseName = baseName;
+        this.ordinal = ordinal;
+        this.version = version;
+        this.versionSuffix = version.isEmpty() ? "" : "v" + version;
+        this.stateSuffix = version.isEmpty() ? "" : "V" + version;
+    }
+
+    /**
+     * Parses a raw type name. A version that does not fit an {@code int} (e.g. "Test__99999999999__")
+     * is rejected: the name is then a normal name.
+     * @param rawName A type name such as "Test__1__" or "Test".
+     * @return The VersionedName of {@code rawName}.
+     */
+    public static VersionedName of(String rawName) {
+        // Equivalent to matching "(.+)__(\d+)__$" without a regex
+        int length = rawName.length();
+        if (length >= 6 && rawName.endsWith("__")) {
+            int digitsStart = length - 2;
+            while (digitsStart > 0 && Character.isDigit(rawName.charAt(digitsStart - 1))) {
+                digitsStart--;
+            }
+            boolean hasDigits = digitsStart < length - 2;
+            if (hasDigits && digitsStart >= 3 && rawName.startsWith("__", digitsStart - 2)) {
+                String version = rawName.substring(digitsStart, length - 2);
+                try {
+                    return new VersionedName(rawName, rawName.substring(0, digitsStart - 2), Integer.parseInt(version), version);
+                } catch (NumberFormatException e) {
+                    // Out of range: not a versioned name
+                }
+            }
+        }
+        return new VersionedName(rawName, rawName, 0, "");
+    }
+
+    public String getRawName() {
+        return rawName;
+    }
+
+    /**
+     * @return "Test" for "Test__1__"; the raw name itself for a normal name.
+     */
+    public String getBaseName() {
+        return baseName;
+    }
+
+    public boolean isVersioned() {
+        return !version.isEmpty();
+    }
+
+    /**
+     * @return The version number (1 for "Test__1__"), or 0 for a normal name.
+     */
+    public int getOrdinal() {
+        return ordinal;
+    }
+
+    /**
+     * @return The version as written in the name ("1" for "Test__1__", as in {@link MethodInfo#getVersion()}), or "".
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * @return The lower-case suffix naming per-version members ("v1" as in {@code v1_instance}), or "".
+     */
+    public String getVersionSuffix() {
+        return versionSuffix;
+    }
+
+    /**
+     * @return The upper-case suffix naming per-version state classes ("V1" as in {@code V1_Impl}), or "".
+     */
+    public String getStateSuffix() {
+        return stateSuffix;
+    }
+
+    @Override
+    public String toString() {
+        return rawName;
+    }
+}
@@ -0,0 +1,306 @@
+package io.github.satsuki942.unifiedclassbuilder;
+
+import io.github.satsuki942.TransformOptions;
+import io.github.satsuki942.util.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BiFunction;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.Modifier;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.ConstructorDeclaration;
+import com.github.javaparser.ast.body.FieldDeclaration;
+import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.ast.stmt.BlockStmt;
+
+/**
+ * Generates a reflection-free binary codec for a unified class (see {@link TransformOptions#isBinaryCodec()}).
+ * <p>
+ * {@code __encode(ByteBuffer)} writes the current version followed by the fields of every version, in version
+ * and declaration order; {@code static __decode(ByteBuffer)} reads them back into a new object without running
+ * any constructor body. The version takes one byte (two with version numbers above 127), primitives their
+ * natural size, boxed primitives one more byte for null, and strings an int length (-1 for null) followed by
+ * their UTF-8 bytes. Static and transient fields, and final fields with an initializer, are not written.
+ * <p>
+ * Fields of any other type cannot be written without reflection, so such classes get no codec.
+ */
+public class BinaryCodecGenerator {
+    private static final Logger LOGGER = Logger.get(BinaryCodecGenerator.class);
+
+    // Primitive type -> ByteBuffer accessor suffix, e.g. "Int" for putInt/getInt ("" for put/get)
+    private static final Map<String, String> ACCESSORS = Map.of(
+            "byte", "", "short", "Short", "char", "Char", "int", "Int",
+            "long", "Long", "float", "Float", "double", "Double", "boolean", "");
+    private static final Map<String, String> BOXES = Map.of(
+            "Byte", "byte", "Short", "short", "Character", "char", "Integer", "int",
+            "Long", "long", "Float", "float", "Double", "double", "Boolean", "boolean");
+
+    private final ClassOrInterfaceDeclaration targetClass;
+    private final ClassBuildContext context;
+    private final TransformOptions options;
+    private final BiFunction<String, String, String> fieldNames;
+    private final boolean flattened;
+
+    /**
+     * @param fieldNames Maps a version suffix (e.g. "v1") and a field name to the name of that field in the
+     *                   generated class: unchanged in the implementation classes, possibly prefixed when flattened.
+     * @param flattened  Whether the class is generated in the flattened layout, which a class may not be
+     *                   although {@link TransformOptions#getLayout()} asks for it.
+     */
+    public BinaryCodecGenerator(ClassBuildContext context, TransformOptions options, BiFunction<String, String, String> fieldNames,
+                                boolean flattened) {
+        this.targetClass = context.getTargetClass();
+        this.context = context;
+        this.options = options;
+        this.fieldNames = fieldNames;
+        this.flattened = flattened;
+    }
+
+    /**
+     * Generates the codec methods, and the constructors they need, on the unified class.
+     * Must be called after the state fields and the implementation classes have been created.
+     */
+    public void generate() {
+        Optional<String> unsupported = findUnsupportedField();
+        if (unsupported.isPresent()) {
+            LOGGER.debug(() -> "No binary codec for " + context.getBaseName() + ": " + unsupported.get());
+            return;
+        }
+        targetClass.findCompilationUnit().ifPresent(cu -> {
+            cu.addImport("java.nio.ByteBuffer");
+            cu.addImport("java.nio.charset.StandardCharsets");
+        });
+
+        createEncodeMethod();
+        if (flattened) {
+            createFlattenedDecodeConstructor();
+        } else {
+            createImplDecodeConstructors();
+            createStateDecodeConstructor();
+        }
+        targetClass.addMethod("__decode", Modifier.Keyword.PUBLIC, Modifier.Keyword.STATIC)
+                   .setType(targetClass.getNameAsString())
+                   .addParameter("ByteBuffer", "in")
+                   .setBody(new BlockStmt().addStatement("return new " + targetClass.getNameAsString() + "(in);"));
+        createStringHelpers();
+    }
+
+    // -- ANALYSIS --
+    private Optional<String> findUnsupportedField() {
+        for (int i = 0; i < context.getVersionCount(); i++) {
+            for (ConstructorDeclaration ctor : context.getConstructors(i)) {
+                if (ctor.getParameters().size() == 1 && ctor.getParameter(0).getType().asString().endsWith("ByteBuffer")) {
+                    return Optional.of("a constructor takes a ByteBuffer");
+                }
+            }
+            for (VariableDeclarator var : encodedFields(i)) {
+                if (!ACCESSORS.containsKey(typeName(var)) && !BOXES.containsKey(typeName(var)) && !typeName(var).equals("String")) {
+                    return Optional.of("field " + var.getNameAsString() + " of type " + var.getTypeAsString());
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    private List<VariableDeclarator> encodedFields(int versionIndex) {
+        List<VariableDeclarator> fields = new ArrayList<>();
+        context.getVersionAsts().get(versionIndex).getPrimaryType().ifPresent(type -> {
+            for (FieldDeclaration field : type.getFields()) {
+                if (field.isStatic() || field.isTransient()) continue;
+                field.getVariables().stream()
+                     .filter(var -> !(field.isFinal() && var.getInitializer().isPresent()))
+                     .forEach(fields::add);
+            }
+        });
+        return fields;
+    }
+
+    // -- ENCODING --
+    private void createEncodeMethod() {
+        BlockStmt body = new BlockStmt();
+        if (flattened) {
+            String state = options.getConcurrency() == TransformOptions.Concurrency.THREAD_LOCAL ? "(int) this.__state.get()" : "this.__state";
+            body.addStatement(writeVersion(state));
+        } else {
+            body.addStatement("IVersionBehavior state = " + StateInfrastructureGenerator.readCurrentState(options) + ";");
+            body.addStatement(writeVersion(versionChoice(
+                    i -> "state == this." + versionSuffix(i) + "_instance", i -> String.valueOf(ordinal(i)))));
+        }
+        for (int i = 0; i < context.getVersionCount(); i++) {
+            String holder = flattened ? "this" : "this." + versionSuffix(i) + "_instance";
+            for (VariableDeclarator var : encodedFields(i)) {
+                writeField(body, holder + "." + fieldNames.apply(versionSuffix(i), var.getNameAsString()), typeName(var));
+            }
+        }
+        targetClass.addMethod("__encode", Modifier.Keyword.PUBLIC)
+                   .setType("void")
+                   .addParameter("ByteBuffer", "out")
+                   .setBody(body);
+    }
+
+    private String writeVersion(String version) {
+        return isWideVersion() ? "out.putShort((short) (" + version + "));" : "out.put((byte) (" + version + "));";
+    }
+
+    private static void writeField(BlockStmt body, String field, String type) {
+        if (type.equals("String")) {
+            body.addStatement("__putString(out, " + field + ");");
+        } else if (BOXES.containsKey(type)) {
+            BlockStmt present = new BlockStmt().addStatement("out.put((byte) 1);");
+            writeField(present, field, BOXES.get(type));
+            body.addStatement("if (" + field + " == null) { out.put((byte) 0); } else " + present);
+        } else if (type.equals("boolean")) {
+            body.addStatement("out.put((byte) (" + field + " ? 1 : 0));");
+        } else {
+            body.addStatement("out.put" + ACCESSORS.get(type) + "(" + field + ");");
+        }
+    }
+
+    // -- DECODING --
+    private String readVersion() {
+        List<String> checks = new ArrayList<>();
+        for (int i = 0; i < context.getVersionCount(); i++) {
+            checks.add("version != " + ordinal(i));
+        }
+        return "{ int version = " + (isWideVersion() ? "in.getShort()" : "in.get()") + ";"
+                + " if (" + String.join(" && ", checks) + ") {"
+                + " throw new IllegalArgumentException(\"Unknown version \" + version + \" of " + context.getBaseName() + "\"); } }";
+    }
+
+    // VN_Impl(ByteBuffer in) reads the fields of one version; field initializers run, constructor bodies do not
+    private void createImplDecodeConstructors() {
+        for (int i = 0; i < context.getVersionCount(); i++) {
+            String implName = context.getVersionName(i).getStateSuffix() + "_Impl";
+            Optional<ClassOrInterfaceDeclaration> impl = context.getInnerClass(implName);
+            if (impl.isEmpty()) {
+                System.err.println("Error: Could not find implementation class: " + implName);
+                continue;
+            }
+            BlockStmt body = new BlockStmt();
+            for (VariableDeclarator var : encodedFields(i)) {
+                body.addStatement("this." + var.getNameAsString() + " = " + readField(typeName(var)) + ";");
+            }
+            // Blank final transient fields still have to be assigned
+            context.getVersionAsts().get(i).getPrimaryType().ifPresent(type -> type.getFields().stream()
+                    .filter(f -> f.isFinal() && f.isTransient() && !f.isStatic())
+                    .flatMap(f -> f.getVariables().stream())
+                    .filter(var -> var.getInitializer().isEmpty())
+                    .forEach(var -> body.addStatement("this." + var.getNameAsString() + " = " + defaultValue(var.getTypeAsString()) + ";")));
+            impl.get().addConstructor(Modifier.Keyword.PRIVATE)
+                .addParameter("ByteBuffer", "in")
+                .setBody(body);
+        }
+    }
+
+    private void createStateDecodeConstructor() {
+        BlockStmt body = blockOf(readVersion());
+        for (int i = 0; i < context.getVersionCount(); i++) {
+            String stateSuffix = context.getVersionName(i).getStateSuffix();
+            body.addStatement("this." + versionSuffix(i) + "_instance = new " + stateSuffix + "_Impl(in);");
+        }
+        body.addStatement("IVersionBehavior initial = " + versionChoice(
+                i -> "version == " + ordinal(i), i -> "this." + versionSuffix(i) + "_instance") + ";");
+        if (options.getConcurrency() == TransformOptions.Concurrency.THREAD_LOCAL) {
+            body.addStatement("this.currentState = ThreadLocal.withInitial(() -> initial);");
+        } else {
+            body.addStatement("this.currentState = initial;");
+        }
+        targetClass.addConstructor(Modifier.Keyword.PRIVATE)
+                   .addParameter("ByteBuffer", "in")
+                   .setBody(body);
+    }
+
+    private void createFlattenedDecodeConstructor() {
+        BlockStmt body = blockOf(readVersion());
+        for (int i = 0; i < context.getVersionCount(); i++) {
+            for (VariableDeclarator var : encodedFields(i)) {
+                body.addStatement("this." + fieldNames.apply(versionSuffix(i), var.getNameAsString()) + " = " + readField(typeName(var)) + ";");
+            }
+        }
+        if (options.getConcurrency() == TransformOptions.Concurrency.THREAD_LOCAL) {
+            body.addStatement("this.__state = ThreadLocal.withInitial(() -> version);");
+        } else {
+            body.addStatement("this.__state = version;");
+        }
+        targetClass.addConstructor(Modifier.Keyword.PRIVATE)
+                   .addParameter("ByteBuffer", "in")
+                   .setBody(body);
+    }
+
+    private static String readField(String type) {
+        if (type.equals("String")) {
+            return "__getString(in)";
+        }
+        if (BOXES.containsKey(type)) {
+            return "in.get() == 0 ? null : " + type + ".valueOf(" + readField(BOXES.get(type)) + ")";
+        }
+        if (type.equals("boolean")) {
+            return "in.get() != 0";
+        }
+        return "in.get" + ACCESSORS.get(type) + "()";
+    }
+
+    private void createStringHelpers() {
+        targetClass.addMethod("__putString", Modifier.Keyword.PRIVATE, Modifier.Keyword.STATIC)
+                   .setType("void")
+                   .addParameter("ByteBuffer", "out")
+                   .addParameter("String", "value")
+                   .setBody(blockOf("{ if (value == null) { out.putInt(-1); return; }"
+                           + " byte[] bytes = value.getBytes(StandardCharsets.UTF_8);"
+                           + " out.putInt(bytes.length);"
+                           + " out.put(bytes); }"));
+        targetClass.addMethod("__getString", Modifier.Keyword.PRIVATE, Modifier.Keyword.STATIC)
+                   .setType("String")
+                   .addParameter("ByteBuffer", "in")
+                   .setBody(blockOf("{ int length = in.getInt();"
+                           + " if (length < 0) { return null; }"
+                           + " byte[] bytes = new byte[length];"
+                           + " in.get(bytes);"
+                           + " return new String(bytes, StandardCharsets.UTF_8); }"));
+    }
+
+    // -- HELPER METHODS --
+    private static BlockStmt blockOf(String block) {
+        return StaticJavaParser.parseBlock(block);
+    }
+
+    // c1 ? v1 : c2 ? v2 : ... : vN, the last version being the fallback
+    private String versionChoice(IntFunction<String> condition, IntFunction<String> value) {
+        int last = context.getVersionCount() - 1;
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < last; i++) {
+            sb.append(condition.apply(i)).append(" ? ").append(value.apply(i)).append(" : ");
+        }
+        return sb.append(value.apply(last)).toString();
+    }
+
+    private boolean isWideVersion() {
+        return IntStream.range(0, context.getVersionCount()).anyMatch(i -> ordinal(i) > Byte.MAX_VALUE);
+    }
+
+    private String versionSuffix(int index) {
+        return context.getVersionName(index).getVersionSuffix();
+    }
+
+    private int ordinal(int index) {
+        return context.getVersionName(index).getOrdinal();
+    }
+
+    private static String defaultValue(String type) {
+        if (type.equals("boolean")) {
+            return "false";
+        }
+        return ACCESSORS.containsKey(type) ? "(" + type + ") 0" : "null";
+    }
+
+    private static String typeName(VariableDeclarator var) {
+        String type = var.getTypeAsString();
+        return type.startsWith("java.lang.") ? type.substring("java.lang.".length()) : type;
+    }
+}
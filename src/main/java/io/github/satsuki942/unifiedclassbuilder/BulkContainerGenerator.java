@@ -0,0 +1,787 @@
+package io.github.satsuki942.unifiedclassbuilder;
+
+import io.github.satsuki942.symboltable.SymbolTable;
+import io.github.satsuki942.util.AstUtil;
+import io.github.satsuki942.util.Logger;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.github.javaparser.ast.ArrayCreationLevel;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.ImportDeclaration;
+import com.github.javaparser.ast.Modifier;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.NodeList;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.ConstructorDeclaration;
+import com.github.javaparser.ast.body.FieldDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.Parameter;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.ast.expr.ArrayAccessExpr;
+import com.github.javaparser.ast.expr.ArrayCreationExpr;
+import com.github.javaparser.ast.expr.ArrayInitializerExpr;
+import com.github.javaparser.ast.expr.AssignExpr;
+import com.github.javaparser.ast.expr.BinaryExpr;
+import com.github.javaparser.ast.expr.BooleanLiteralExpr;
+import com.github.javaparser.ast.expr.CastExpr;
+import com.github.javaparser.ast.expr.CharLiteralExpr;
+import com.github.javaparser.ast.expr.EnclosedExpr;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.FieldAccessExpr;
+import com.github.javaparser.ast.expr.IntegerLiteralExpr;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.expr.NameExpr;
+import com.github.javaparser.ast.expr.NullLiteralExpr;
+import com.github.javaparser.ast.expr.ObjectCreationExpr;
+import com.github.javaparser.ast.expr.StringLiteralExpr;
+import com.github.javaparser.ast.expr.SuperExpr;
+import com.github.javaparser.ast.expr.ThisExpr;
+import com.github.javaparser.ast.expr.UnaryExpr;
+import com.github.javaparser.ast.expr.VariableDeclarationExpr;
+import com.github.javaparser.ast.nodeTypes.NodeWithModifiers;
+import com.github.javaparser.ast.stmt.BlockStmt;
+import com.github.javaparser.ast.stmt.ExplicitConstructorInvocationStmt;
+import com.github.javaparser.ast.stmt.ExpressionStmt;
+import com.github.javaparser.ast.stmt.ForStmt;
+import com.github.javaparser.ast.stmt.IfStmt;
+import com.github.javaparser.ast.stmt.LocalClassDeclarationStmt;
+import com.github.javaparser.ast.stmt.ReturnStmt;
+import com.github.javaparser.ast.stmt.Statement;
+import com.github.javaparser.ast.stmt.SwitchEntry;
+import com.github.javaparser.ast.stmt.SwitchStmt;
+import com.github.javaparser.ast.stmt.ThrowStmt;
+import com.github.javaparser.ast.type.ArrayType;
+import com.github.javaparser.ast.type.ClassOrInterfaceType;
+import com.github.javaparser.ast.type.PrimitiveType;
+import com.github.javaparser.ast.type.Type;
+
+/**
+ * Generates the struct-of-arrays companion of a unified class (e.g. {@code TestPool} for {@code Test}), see
+ * {@link io.github.satsuki942.TransformOptions#isBulkContainer()}.
+ * <p>
+ * A pool holds any number of elements without allocating an object per element: the instance fields of all
+ * versions become arrays indexed by element (prefixed with their version, e.g. {@code v1_x}, when several
+ * versions declare the same name, as in the flattened layout), and the current version of every element is
+ * kept in a {@code byte[]}. Every version constructor becomes an initializer behind an {@code add(...)}
+ * overload returning the new element's index, every version method becomes a private {@code vN_m(int, ...)},
+ * and every public method gets a per-element entry {@code m(int index, ...)} that dispatches on the element's
+ * version, plus a bulk {@code mAll(...)} for void methods that scans the elements version by version.
+ * <p>
+ * Members are translated syntactically. A member that uses {@code this} other than to reach its own fields
+ * and methods, {@code super}, static members or inherited methods, or that declares a local or anonymous class
+ * (where {@code this} and the names are those of the inner class), is left out, together with every member
+ * calling it; when no {@code add(...)} overload can be translated, no pool is generated.
+ */
+public class BulkContainerGenerator {
+    private static final Logger LOGGER = Logger.get(BulkContainerGenerator.class);
+
+    static final String POOL_SUFFIX = "Pool";
+    private static final String INDEX = "__index";
+    private static final String VERSIONS = "__versions";
+    private static final String SIZE = "__size";
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private final ClassBuildContext context;
+    private final SymbolTable symbolTable;
+    private final String poolName;
+    private CompilationUnit poolCu;
+    private ClassOrInterfaceDeclaration pool;
+
+    // version suffix (e.g. "v1") -> original field name -> array name
+    private final Map<String, Map<String, String>> fieldNames = new HashMap<>();
+    // version suffix -> names of the instance methods and of the static members of that version
+    private final Map<String, Set<String>> methodNames = new HashMap<>();
+    private final Map<String, Set<String>> staticNames = new HashMap<>();
+
+    private final List<FieldSlot> slots = new ArrayList<>();
+    private final List<Callable> callables = new ArrayList<>();
+    private final Set<String> fieldInitializerCalls = new HashSet<>();
+    private boolean switchesVersions;
+
+    /**
+     * @param context     The versions of the unified class, before {@link io.github.satsuki942.UnifiedClassBuilder#build()}.
+     * @param symbolTable The symbol table, used to avoid a clash with an existing class of the pool's name.
+     */
+    public BulkContainerGenerator(ClassBuildContext context, SymbolTable symbolTable) {
+        this.context = context;
+        this.symbolTable = symbolTable;
+        this.poolName = poolName(context.getBaseName());
+    }
+
+    /**
+     * @param baseName The base name of a unified class, e.g. "Test".
+     * @return The name of its pool, e.g. "TestPool".
+     */
+    public static String poolName(String baseName) {
+        return baseName + POOL_SUFFIX;
+    }
+
+    /**
+     * Generates the pool of the unified class.
+     *
+     * @return The CompilationUnit of the pool, or empty if the class cannot be laid out as arrays.
+     */
+    public Optional<CompilationUnit> generate() {
+        Optional<String> unsupported = findUnsupportedShape();
+        if (unsupported.isPresent()) {
+            LOGGER.debug(() -> "No " + poolName + ": " + unsupported.get());
+            return Optional.empty();
+        }
+
+        poolCu = new CompilationUnit();
+        context.getVersionAsts().get(0).getPackageDeclaration().ifPresent(pd -> poolCu.setPackageDeclaration(pd.clone()));
+        for (CompilationUnit cu : context.getVersionAsts()) {
+            for (ImportDeclaration importDecl : cu.getImports()) {
+                poolCu.addImport(importDecl.clone());
+            }
+        }
+        poolCu.addImport("java.util.Arrays");
+        poolCu.addImport("java.util.Objects");
+        pool = poolCu.addClass(poolName).setPublic(true);
+
+        assignNames();
+        if (!translateFields()) {
+            return Optional.empty();
+        }
+        translateCallables();
+        dropUntranslatableCallers();
+
+        createStorage();
+        if (!createAddMethods()) {
+            LOGGER.debug(() -> "No " + poolName + ": no constructor of " + context.getBaseName() + " can be translated");
+            return Optional.empty();
+        }
+        createVersionMethods();
+        callables.stream().filter(c -> c.translated).forEach(c -> pool.addMember(c.declaration));
+        createEntries();
+        createAccessors();
+
+        LOGGER.debug(() -> "Generated " + poolName + " with " + slots.size() + " array(s), "
+                + callables.stream().filter(c -> !c.translated).count() + " member(s) left out");
+        return Optional.of(poolCu);
+    }
+
+    // -- ANALYSIS --
+    private Optional<String> findUnsupportedShape() {
+        if (symbolTable.lookupClass(poolName) != null) {
+            return Optional.of("a class of that name already exists");
+        }
+        for (int i = 0; i < context.getVersionCount(); i++) {
+            Optional<TypeDeclaration<?>> type = context.getVersionAsts().get(i).getPrimaryType();
+            if (type.isEmpty() || !type.get().isClassOrInterfaceDeclaration()) {
+                return Optional.of("a version is not a class");
+            }
+            ClassOrInterfaceDeclaration decl = type.get().asClassOrInterfaceDeclaration();
+            if (decl.isInterface() || !decl.getTypeParameters().isEmpty()) {
+                return Optional.of("a version is an interface or generic");
+            }
+            if (context.getVersionName(i).getOrdinal() > Byte.MAX_VALUE) {
+                return Optional.of("version numbers above " + Byte.MAX_VALUE + " do not fit the version array");
+            }
+        }
+        return Optional.empty();
+    }
+
+    // Instance field names declared by more than one version are prefixed with their version
+    private void assignNames() {
+        Map<String, Integer> declarations = new HashMap<>();
+        for (int i = 0; i < context.getVersionCount(); i++) {
+            primaryType(i).getFields().stream().filter(f -> !f.isStatic()).forEach(field ->
+                    field.getVariables().forEach(var -> declarations.merge(var.getNameAsString(), 1, Integer::sum)));
+        }
+        for (int i = 0; i < context.getVersionCount(); i++) {
+            String versionSuffix = versionSuffix(i);
+            ClassOrInterfaceDeclaration type = primaryType(i);
+            Map<String, String> names = new LinkedHashMap<>();
+            Set<String> statics = new HashSet<>();
+            for (FieldDeclaration field : type.getFields()) {
+                for (VariableDeclarator var : field.getVariables()) {
+                    String name = var.getNameAsString();
+                    if (field.isStatic()) {
+                        statics.add(name);
+                    } else {
+                        names.put(name, declarations.get(name) > 1 ? versionSuffix + "_" + name : name);
+                    }
+                }
+            }
+            Set<String> methods = new HashSet<>();
+            for (MethodDeclaration method : type.getMethods()) {
+                (method.isStatic() ? statics : methods).add(method.getNameAsString());
+            }
+            fieldNames.put(versionSuffix, names);
+            methodNames.put(versionSuffix, methods);
+            staticNames.put(versionSuffix, statics);
+        }
+    }
+
+    private boolean translateFields() {
+        for (int i = 0; i < context.getVersionCount(); i++) {
+            String versionSuffix = versionSuffix(i);
+            for (FieldDeclaration field : primaryType(i).getFields()) {
+                if (field.isStatic()) continue;
+                for (VariableDeclarator var : field.getVariables()) {
+                    Expression initializer = null;
+                    if (var.getInitializer().isPresent()) {
+                        ExpressionStmt holder = new ExpressionStmt(toExpression(var.getInitializer().get().clone(), var.getType()));
+                        if (!translate(holder, versionSuffix, fieldInitializerCalls)) {
+                            LOGGER.debug(() -> "No " + poolName + ": the initializer of " + var.getNameAsString() + " cannot be translated");
+                            return false;
+                        }
+                        initializer = holder.getExpression();
+                    }
+                    slots.add(new FieldSlot(fieldNames.get(versionSuffix).get(var.getNameAsString()), var.getType().clone(),
+                            initializer, field.isPublic() ? var.getNameAsString() : null));
+                }
+            }
+        }
+        return true;
+    }
+
+    private void translateCallables() {
+        for (int i = 0; i < context.getVersionCount(); i++) {
+            String versionSuffix = versionSuffix(i);
+            ClassOrInterfaceDeclaration type = primaryType(i);
+            for (MethodDeclaration original : type.getMethods()) {
+                if (original.isStatic() || original.getBody().isEmpty()) continue;
+                MethodDeclaration method = original.clone();
+                method.setName(versionSuffix + "_" + method.getNameAsString());
+                makePrivate(method);
+                method.getAnnotations().removeIf(a -> a.getNameAsString().equals("Override"));
+                method.getParameters().addFirst(new Parameter(PrimitiveType.intType(), INDEX));
+                addCallable(new Callable(versionSuffix, original, method));
+            }
+            for (ConstructorDeclaration ctor : context.getConstructors(i)) {
+                if (ctor.getParentNode().orElse(null) != type) continue;
+                MethodDeclaration init = new MethodDeclaration()
+                        .setName(initializerName(versionSuffix))
+                        .setType("void")
+                        .setPrivate(true);
+                init.addParameter(PrimitiveType.intType(), INDEX);
+                ctor.getParameters().forEach(p -> init.addParameter(p.clone()));
+                BlockStmt body = ctor.getBody().clone();
+                for (ExplicitConstructorInvocationStmt call : body.findAll(ExplicitConstructorInvocationStmt.class)) {
+                    if (call.isThis()) {
+                        NodeList<Expression> arguments = new NodeList<>(new NameExpr(INDEX));
+                        call.getArguments().forEach(a -> arguments.add(a.clone()));
+                        call.replace(new ExpressionStmt(new MethodCallExpr(null, initializerName(versionSuffix), arguments)));
+                    } else {
+                        call.remove();
+                    }
+                }
+                init.setBody(body);
+                Callable callable = new Callable(versionSuffix, null, init);
+                callable.calls.addAll(body.findAll(MethodCallExpr.class).stream()
+                        .filter(c -> c.getScope().isEmpty() && c.getNameAsString().equals(initializerName(versionSuffix)))
+                        .map(MethodCallExpr::getNameAsString)
+                        .collect(Collectors.toSet()));
+                addCallable(callable);
+            }
+        }
+    }
+
+    private void addCallable(Callable callable) {
+        callable.translated = callable.declaration.getBody()
+                .map(body -> translate(body, callable.versionSuffix, callable.calls))
+                .orElse(false);
+        callables.add(callable);
+    }
+
+    // Members calling a member that was left out are left out as well
+    private void dropUntranslatableCallers() {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Callable callable : callables) {
+                if (callable.translated && callable.calls.stream().anyMatch(name -> isDropped(callable.versionSuffix, name))) {
+                    callable.translated = false;
+                    changed = true;
+                }
+            }
+        }
+        callables.stream().filter(c -> !c.translated).forEach(c ->
+                LOGGER.debug(() -> poolName + " leaves out " + c.declaration.getNameAsString() + c.declaration.getParameters()));
+    }
+
+    private boolean isDropped(String versionSuffix, String name) {
+        return callables.stream().anyMatch(c -> !c.translated && c.versionSuffix.equals(versionSuffix)
+                && c.declaration.getNameAsString().equals(name));
+    }
+
+    /**
+     * Retargets the own fields and calls of one version inside a member to the element at {@code __index}.
+     *
+     * @param calls Receives the names of the translated members called.
+     * @return {@code false} if the member depends on the object identity or on members the pool does not have.
+     */
+    private boolean translate(Node node, String versionSuffix, Set<String> calls) {
+        Map<String, String> names = fieldNames.get(versionSuffix);
+        Set<String> methods = methodNames.get(versionSuffix);
+        if (!node.findAll(SuperExpr.class).isEmpty() || !node.findAll(LocalClassDeclarationStmt.class).isEmpty()
+                || node.findAll(ObjectCreationExpr.class).stream().anyMatch(creation -> creation.getAnonymousClassBody().isPresent())) {
+            return false;
+        }
+        for (ThisExpr thisExpr : node.findAll(ThisExpr.class)) {
+            Node parent = thisExpr.getParentNode().orElse(null);
+            boolean ownField = parent instanceof FieldAccessExpr && ((FieldAccessExpr) parent).getScope() == thisExpr
+                    && names.containsKey(((FieldAccessExpr) parent).getNameAsString());
+            boolean ownCall = parent instanceof MethodCallExpr && ((MethodCallExpr) parent).getScope().orElse(null) == thisExpr;
+            if (thisExpr.getTypeName().isPresent() || !(ownField || ownCall)) {
+                return false;
+            }
+        }
+
+        for (FieldAccessExpr access : node.findAll(FieldAccessExpr.class)) {
+            if (access.getScope().isThisExpr() && names.containsKey(access.getNameAsString())) {
+                access.replace(element(names.get(access.getNameAsString())));
+            }
+        }
+        for (NameExpr name : node.findAll(NameExpr.class)) {
+            String fieldName = name.getNameAsString();
+            if (AstUtil.isLocalVariable(name)) {
+                continue;
+            }
+            if (names.containsKey(fieldName)) {
+                name.replace(element(names.get(fieldName)));
+            } else if (staticNames.get(versionSuffix).contains(fieldName)) {
+                return false;
+            }
+        }
+        for (MethodCallExpr call : node.findAll(MethodCallExpr.class)) {
+            boolean ownCall = call.getScope().map(Expression::isThisExpr).orElse(true);
+            if (!ownCall || call.getNameAsString().equals(initializerName(versionSuffix))) {
+                continue;
+            }
+            if (call.getNameAsString().equals("__switchToVersion") && call.getArguments().size() == 1) {
+                call.replace(new AssignExpr(element(VERSIONS),
+                        new CastExpr(PrimitiveType.byteType(), new EnclosedExpr(call.getArgument(0))), AssignExpr.Operator.ASSIGN));
+                switchesVersions = true;
+                continue;
+            }
+            if (!methods.contains(call.getNameAsString())) {
+                return false;
+            }
+            String translatedName = versionSuffix + "_" + call.getNameAsString();
+            call.removeScope();
+            call.setName(translatedName);
+            call.getArguments().addFirst(new NameExpr(INDEX));
+            calls.add(translatedName);
+        }
+        return true;
+    }
+
+    // -- STORAGE --
+    private void createStorage() {
+        pool.addField(new ArrayType(PrimitiveType.byteType()), VERSIONS).setPrivate(true);
+        pool.addField(PrimitiveType.intType(), SIZE).setPrivate(true);
+        for (FieldSlot slot : slots) {
+            pool.addField(new ArrayType(slot.type.clone()), slot.arrayName).setPrivate(true);
+        }
+
+        pool.addConstructor(Modifier.Keyword.PUBLIC)
+            .setBody(new BlockStmt().addStatement("this(" + DEFAULT_CAPACITY + ");"));
+        BlockStmt body = new BlockStmt();
+        body.addStatement(new ExpressionStmt(new AssignExpr(thisField(VERSIONS),
+                newArray(PrimitiveType.byteType(), new NameExpr("capacity")), AssignExpr.Operator.ASSIGN)));
+        for (FieldSlot slot : slots) {
+            body.addStatement(new ExpressionStmt(new AssignExpr(thisField(slot.arrayName),
+                    newArray(slot.type, new NameExpr("capacity")), AssignExpr.Operator.ASSIGN)));
+        }
+        pool.addConstructor(Modifier.Keyword.PUBLIC)
+            .addParameter("int", "capacity")
+            .setBody(body);
+
+        pool.addMethod("size", Modifier.Keyword.PUBLIC).setType("int")
+            .setBody(new BlockStmt().addStatement(new ReturnStmt(new NameExpr(SIZE))));
+
+        // Drops every element; references are cleared so that the elements' objects can be collected
+        BlockStmt clear = new BlockStmt();
+        for (FieldSlot slot : slots) {
+            if (!slot.type.isPrimitiveType()) {
+                clear.addStatement(String.format("Arrays.fill(this.%s, 0, %s, null);", slot.arrayName, SIZE));
+            }
+        }
+        clear.addStatement(SIZE + " = 0;");
+        pool.addMethod("clear", Modifier.Keyword.PUBLIC).setType("void").setBody(clear);
+
+        BlockStmt allocate = new BlockStmt();
+        BlockStmt grow = new BlockStmt();
+        grow.addStatement("int capacity = Math.max(" + DEFAULT_CAPACITY + ", " + VERSIONS + ".length * 2);");
+        grow.addStatement(VERSIONS + " = Arrays.copyOf(" + VERSIONS + ", capacity);");
+        for (FieldSlot slot : slots) {
+            grow.addStatement(String.format("this.%1$s = Arrays.copyOf(this.%1$s, capacity);", slot.arrayName));
+        }
+        allocate.addStatement(new IfStmt(new BinaryExpr(new NameExpr(SIZE), new FieldAccessExpr(new NameExpr(VERSIONS), "length"),
+                BinaryExpr.Operator.EQUALS), grow, null));
+        allocate.addStatement("return " + SIZE + "++;");
+        pool.addMethod("__allocate", Modifier.Keyword.PRIVATE).setType("int").setBody(allocate);
+    }
+
+    // One add(...) per distinct constructor parameter list, owned by the first version declaring it
+    private boolean createAddMethods() {
+        Map<String, ConstructorDeclaration> constructorsBySignature = new LinkedHashMap<>();
+        Map<String, String> ownerBySignature = new HashMap<>();
+        Set<String> versionsWithDefaultCtor = new HashSet<>();
+        for (int i = 0; i < context.getVersionCount(); i++) {
+            for (ConstructorDeclaration ctor : context.getConstructors(i)) {
+                if (ctor.getParentNode().orElse(null) != primaryType(i)) continue;
+                String signature = parameterTypes(ctor.getParameters());
+                constructorsBySignature.putIfAbsent(signature, ctor);
+                ownerBySignature.putIfAbsent(signature, versionSuffix(i));
+                if (ctor.getParameters().isEmpty()) {
+                    versionsWithDefaultCtor.add(versionSuffix(i));
+                }
+            }
+        }
+        if (constructorsBySignature.isEmpty()) {
+            constructorsBySignature.put("", new ConstructorDeclaration());
+        }
+        boolean fieldsTranslated = fieldInitializerCalls.stream().noneMatch(name -> callables.stream()
+                .anyMatch(c -> !c.translated && c.declaration.getNameAsString().equals(name)));
+
+        int added = 0;
+        for (Map.Entry<String, ConstructorDeclaration> entry : constructorsBySignature.entrySet()) {
+            String ownerVersion = ownerBySignature.getOrDefault(entry.getKey(), versionSuffix(0));
+            List<Callable> initializers = new ArrayList<>();
+            BlockStmt body = new BlockStmt();
+            body.addStatement("int " + INDEX + " = __allocate();");
+            for (FieldSlot slot : slots) {
+                Expression value = slot.initializer != null ? slot.initializer.clone() : defaultValue(slot.type);
+                body.addStatement(new ExpressionStmt(new AssignExpr(element(slot.arrayName), value, AssignExpr.Operator.ASSIGN)));
+            }
+            // Initialize every version in source order, as the unified class constructs every version
+            for (int i = 0; i < context.getVersionCount(); i++) {
+                String versionSuffix = versionSuffix(i);
+                MethodCallExpr init = new MethodCallExpr(initializerName(versionSuffix), new NameExpr(INDEX));
+                if (versionSuffix.equals(ownerVersion) && ownerBySignature.containsKey(entry.getKey())) {
+                    entry.getValue().getParameters().forEach(p -> init.addArgument(p.getNameAsExpression()));
+                    findInitializer(versionSuffix, entry.getKey()).ifPresent(initializers::add);
+                } else if (versionsWithDefaultCtor.contains(versionSuffix)) {
+                    findInitializer(versionSuffix, "").ifPresent(initializers::add);
+                } else {
+                    continue;
+                }
+                body.addStatement(init);
+            }
+            if (!fieldsTranslated || initializers.stream().anyMatch(c -> !c.translated)) {
+                LOGGER.debug(() -> poolName + " has no add(" + entry.getKey() + ")");
+                continue;
+            }
+            body.addStatement(new ExpressionStmt(new AssignExpr(element(VERSIONS),
+                    versionByte(versionNumber(ownerVersion)), AssignExpr.Operator.ASSIGN)));
+            body.addStatement(new ReturnStmt(new NameExpr(INDEX)));
+
+            MethodDeclaration add = pool.addMethod("add", Modifier.Keyword.PUBLIC).setType("int");
+            entry.getValue().getParameters().forEach(p -> add.addParameter(p.clone()));
+            add.setBody(body);
+            added++;
+        }
+        return added > 0;
+    }
+
+    private Optional<Callable> findInitializer(String versionSuffix, String signature) {
+        return callables.stream()
+                .filter(c -> c.original == null && c.versionSuffix.equals(versionSuffix))
+                .filter(c -> parameterTypes(c.declaration.getParameters().subList(1, c.declaration.getParameters().size())).equals(signature))
+                .findFirst();
+    }
+
+    private void createVersionMethods() {
+        pool.addMethod("getVersion", Modifier.Keyword.PUBLIC).setType("int")
+            .addParameter("int", "index")
+            .setBody(new BlockStmt()
+                .addStatement(checkIndex())
+                .addStatement(new ReturnStmt(new ArrayAccessExpr(new NameExpr(VERSIONS), new NameExpr("index")))));
+
+        SwitchStmt switchStmt = new SwitchStmt();
+        switchStmt.setSelector(new NameExpr("version"));
+        for (int i = 0; i < context.getVersionCount(); i++) {
+            SwitchEntry switchEntry = new SwitchEntry();
+            switchEntry.getLabels().add(new IntegerLiteralExpr(String.valueOf(context.getVersionName(i).getOrdinal())));
+            switchEntry.getStatements().add(new ExpressionStmt(new AssignExpr(
+                    new ArrayAccessExpr(new NameExpr(VERSIONS), new NameExpr("index")),
+                    new CastExpr(PrimitiveType.byteType(), new NameExpr("version")), AssignExpr.Operator.ASSIGN)));
+            switchEntry.getStatements().add(new ReturnStmt());
+            switchStmt.getEntries().add(switchEntry);
+        }
+        pool.addMethod("switchToVersion", Modifier.Keyword.PUBLIC).setType("void")
+            .addParameter("int", "index")
+            .addParameter("int", "version")
+            .setBody(new BlockStmt()
+                .addStatement(checkIndex())
+                .addStatement(switchStmt)
+                .addStatement(new ThrowStmt(new ObjectCreationExpr(null, new ClassOrInterfaceType(null, "IllegalArgumentException"),
+                        new NodeList<>(new BinaryExpr(new StringLiteralExpr("No version "), new NameExpr("version"), BinaryExpr.Operator.PLUS))))));
+
+        BlockStmt count = new BlockStmt();
+        count.addStatement("int count = 0;");
+        count.addStatement(scan(new IfStmt(isVersion(new NameExpr("version")),
+                new ExpressionStmt(new UnaryExpr(new NameExpr("count"), UnaryExpr.Operator.POSTFIX_INCREMENT)), null)));
+        count.addStatement("return count;");
+        pool.addMethod("countVersion", Modifier.Keyword.PUBLIC).setType("int")
+            .addParameter("int", "version")
+            .setBody(count);
+    }
+
+    // -- ENTRIES --
+    private void createEntries() {
+        Map<String, List<Callable>> implementationsBySignature = new LinkedHashMap<>();
+        for (Callable callable : callables) {
+            if (callable.original != null && callable.original.isPublic()) {
+                String signature = callable.original.getNameAsString() + "(" + parameterTypes(callable.original.getParameters()) + ")";
+                implementationsBySignature.computeIfAbsent(signature, k -> new ArrayList<>()).add(callable);
+            }
+        }
+        for (List<Callable> implementations : implementationsBySignature.values()) {
+            if (implementations.stream().anyMatch(c -> !c.translated)) continue;
+            MethodDeclaration first = implementations.get(0).original;
+            String name = first.getNameAsString();
+            List<String> types = new ArrayList<>();
+            types.add("int");
+            first.getParameters().forEach(p -> types.add(p.getType().asString()));
+            if (!pool.getMethodsBySignature(name, types.toArray(new String[0])).isEmpty()) {
+                LOGGER.debug(() -> poolName + " has no entry for " + name + ", which clashes with its own methods");
+                continue;
+            }
+            createEntry(first, implementations);
+            if (first.getType().isVoidType()) {
+                createBulkOperation(first, implementations);
+            }
+        }
+    }
+
+    // m(index, args): a method of a single version switches the element to it, as a call of it does on an object
+    private void createEntry(MethodDeclaration first, List<Callable> implementations) {
+        MethodDeclaration entry = pool.addMethod(first.getNameAsString(), Modifier.Keyword.PUBLIC).setType(first.getType().clone());
+        entry.addParameter("int", "index");
+        for (int i = 0; i < first.getParameters().size(); i++) {
+            entry.addParameter(first.getParameter(i).getType().clone(), "arg" + i);
+        }
+        boolean isVoid = first.getType().isVoidType();
+        BlockStmt body = new BlockStmt().addStatement(checkIndex());
+
+        if (implementations.size() == 1) {
+            String versionSuffix = implementations.get(0).versionSuffix;
+            body.addStatement(new ExpressionStmt(new AssignExpr(new ArrayAccessExpr(new NameExpr(VERSIONS), new NameExpr("index")),
+                    versionByte(versionNumber(versionSuffix)), AssignExpr.Operator.ASSIGN)));
+            MethodCallExpr call = versionCall(entry, first.getNameAsString(), versionSuffix, new NameExpr("index"));
+            body.addStatement(isVoid ? new ExpressionStmt(call) : new ReturnStmt(call));
+            entry.setBody(body);
+            return;
+        }
+
+        SwitchStmt switchStmt = new SwitchStmt();
+        switchStmt.setSelector(new ArrayAccessExpr(new NameExpr(VERSIONS), new NameExpr("index")));
+        for (Callable implementation : implementations) {
+            MethodCallExpr call = versionCall(entry, first.getNameAsString(), implementation.versionSuffix, new NameExpr("index"));
+            SwitchEntry switchEntry = new SwitchEntry();
+            switchEntry.getLabels().add(new IntegerLiteralExpr(String.valueOf(versionNumber(implementation.versionSuffix))));
+            if (isVoid) {
+                switchEntry.getStatements().add(new ExpressionStmt(call));
+                switchEntry.getStatements().add(new ReturnStmt());
+            } else {
+                switchEntry.getStatements().add(new ReturnStmt(call));
+            }
+            switchStmt.getEntries().add(switchEntry);
+        }
+        body.addStatement(switchStmt);
+        body.addStatement("throw new IllegalStateException(\"No version of " + first.getNameAsString()
+                + " for version \" + " + VERSIONS + "[index]);");
+        entry.setBody(body);
+    }
+
+    // mAll(args): one pass per version over the version array, so every pass runs a single implementation.
+    // If any member switches versions, an element could move to a later pass, so the elements are visited once in index order.
+    private void createBulkOperation(MethodDeclaration first, List<Callable> implementations) {
+        String name = first.getNameAsString() + "All";
+        List<String> types = first.getParameters().stream().map(p -> p.getType().asString()).collect(Collectors.toList());
+        if (!pool.getMethodsBySignature(name, types.toArray(new String[0])).isEmpty()) {
+            LOGGER.debug(() -> poolName + " has no " + name + ", which clashes with its own methods");
+            return;
+        }
+        MethodDeclaration bulk = pool.addMethod(name, Modifier.Keyword.PUBLIC).setType("void");
+        for (int i = 0; i < first.getParameters().size(); i++) {
+            bulk.addParameter(first.getParameter(i).getType().clone(), "arg" + i);
+        }
+
+        BlockStmt body = new BlockStmt();
+        if (implementations.size() == 1 || switchesVersions) {
+            MethodCallExpr call = new MethodCallExpr(first.getNameAsString(), new NameExpr("i"));
+            bulk.getParameters().forEach(p -> call.addArgument(p.getNameAsExpression()));
+            body.addStatement(scan(new ExpressionStmt(call)));
+        } else {
+            for (Callable implementation : implementations) {
+                MethodCallExpr call = versionCall(bulk, first.getNameAsString(), implementation.versionSuffix, new NameExpr("i"));
+                body.addStatement(scan(new IfStmt(isVersion(new IntegerLiteralExpr(String.valueOf(versionNumber(implementation.versionSuffix)))),
+                        new ExpressionStmt(call), null)));
+            }
+        }
+        bulk.setBody(body);
+    }
+
+    // __get_x(index) / __set_x(index, value) for the public fields, without switching versions
+    private void createAccessors() {
+        Set<String> seen = new HashSet<>();
+        for (FieldSlot slot : slots) {
+            if (slot.publicName == null || !seen.add(slot.publicName)) continue;
+            ArrayAccessExpr target = new ArrayAccessExpr(thisField(slot.arrayName), new NameExpr("index"));
+            pool.addMethod("__get_" + slot.publicName, Modifier.Keyword.PUBLIC)
+                .setType(slot.type.clone())
+                .addParameter("int", "index")
+                .setBody(new BlockStmt().addStatement(checkIndex()).addStatement(new ReturnStmt(target.clone())));
+            pool.addMethod("__set_" + slot.publicName, Modifier.Keyword.PUBLIC)
+                .setType("void")
+                .addParameter("int", "index")
+                .addParameter(slot.type.clone(), "value")
+                .setBody(new BlockStmt().addStatement(checkIndex())
+                    .addStatement(new ExpressionStmt(new AssignExpr(target, new NameExpr("value"), AssignExpr.Operator.ASSIGN))));
+        }
+    }
+
+    // -- HELPER METHODS --
+    private static final class FieldSlot {
+        final String arrayName;
+        final Type type;
+        final Expression initializer;
+        final String publicName;
+
+        FieldSlot(String arrayName, Type type, Expression initializer, String publicName) {
+            this.arrayName = arrayName;
+            this.type = type;
+            this.initializer = initializer;
+            this.publicName = publicName;
+        }
+    }
+
+    // A version method (original is null for constructors) and its translation
+    private static final class Callable {
+        final String versionSuffix;
+        final MethodDeclaration original;
+        final MethodDeclaration declaration;
+        final Set<String> calls = new HashSet<>();
+        boolean translated;
+
+        Callable(String versionSuffix, MethodDeclaration original, MethodDeclaration declaration) {
+            this.versionSuffix = versionSuffix;
+            this.original = original;
+            this.declaration = declaration;
+        }
+    }
+
+    private ClassOrInterfaceDeclaration primaryType(int index) {
+        return context.getVersionAsts().get(index).getPrimaryType().orElseThrow().asClassOrInterfaceDeclaration();
+    }
+
+    private String versionSuffix(int index) {
+        return context.getVersionName(index).getVersionSuffix();
+    }
+
+    // vN_m(index, arg0, ...), passing on the argN parameters of the caller
+    private static MethodCallExpr versionCall(MethodDeclaration caller, String methodName, String versionSuffix, Expression index) {
+        MethodCallExpr call = new MethodCallExpr(versionSuffix + "_" + methodName, index);
+        caller.getParameters().stream()
+              .filter(p -> p.getNameAsString().startsWith("arg"))
+              .forEach(p -> call.addArgument(p.getNameAsExpression()));
+        return call;
+    }
+
+    // for (int i = 0; i < __size; i++) { statement }
+    private static ForStmt scan(Statement statement) {
+        return new ForStmt(
+                new NodeList<>(new VariableDeclarationExpr(new VariableDeclarator(PrimitiveType.intType(), "i", new IntegerLiteralExpr("0")))),
+                new BinaryExpr(new NameExpr("i"), new NameExpr(SIZE), BinaryExpr.Operator.LESS),
+                new NodeList<>(new UnaryExpr(new NameExpr("i"), UnaryExpr.Operator.POSTFIX_INCREMENT)),
+                new BlockStmt().addStatement(statement));
+    }
+
+    private static Expression isVersion(Expression version) {
+        return new BinaryExpr(new ArrayAccessExpr(new NameExpr(VERSIONS), new NameExpr("i")), version, BinaryExpr.Operator.EQUALS);
+    }
+
+    private static ExpressionStmt checkIndex() {
+        return new ExpressionStmt(new MethodCallExpr(new NameExpr("Objects"), "checkIndex",
+                new NodeList<>(new NameExpr("index"), new NameExpr(SIZE))));
+    }
+
+    private static Expression element(String arrayName) {
+        return new ArrayAccessExpr(thisField(arrayName), new NameExpr(INDEX));
+    }
+
+    private static FieldAccessExpr thisField(String name) {
+        return new FieldAccessExpr(new ThisExpr(), name);
+    }
+
+    private static Expression versionByte(int version) {
+        return new CastExpr(PrimitiveType.byteType(), new IntegerLiteralExpr(String.valueOf(version)));
+    }
+
+    // new T[length] for any field type; generic element types are created raw
+    private static ArrayCreationExpr newArray(Type type, Expression length) {
+        Type element = type;
+        NodeList<ArrayCreationLevel> levels = new NodeList<>(new ArrayCreationLevel(length));
+        while (element.isArrayType()) {
+            element = element.asArrayType().getComponentType();
+            levels.add(new ArrayCreationLevel());
+        }
+        Type erased = element.clone();
+        if (erased.isClassOrInterfaceType()) {
+            erased.asClassOrInterfaceType().removeTypeArguments();
+        }
+        return new ArrayCreationExpr(erased, levels, null);
+    }
+
+    // Array initializers of fields ({1, 2}) are only valid in declarations
+    private static Expression toExpression(Expression initializer, Type type) {
+        if (!(initializer instanceof ArrayInitializerExpr) || !type.isArrayType()) {
+            return initializer;
+        }
+        Type element = type;
+        NodeList<ArrayCreationLevel> levels = new NodeList<>();
+        while (element.isArrayType()) {
+            element = element.asArrayType().getComponentType();
+            levels.add(new ArrayCreationLevel());
+        }
+        return new ArrayCreationExpr(element.clone(), levels, initializer.asArrayInitializerExpr());
+    }
+
+    // Elements are reused after clear(), so fields without initializer are reset explicitly
+    private static Expression defaultValue(Type type) {
+        if (!type.isPrimitiveType()) {
+            return new NullLiteralExpr();
+        }
+        switch (type.asPrimitiveType().getType()) {
+            case BOOLEAN:
+                return new BooleanLiteralExpr(false);
+            case CHAR:
+                return new CharLiteralExpr("\\0");
+            default:
+                return new IntegerLiteralExpr("0");
+        }
+    }
+
+    private static String parameterTypes(List<Parameter> parameters) {
+        return parameters.stream().map(p -> p.getType().asString()).collect(Collectors.joining(","));
+    }
+
+    private static void makePrivate(NodeWithModifiers<?> member) {
+        member.removeModifier(Modifier.Keyword.PUBLIC, Modifier.Keyword.PROTECTED);
+        member.addModifier(Modifier.Keyword.PRIVATE);
+    }
+
+    private static String initializerName(String versionSuffix) {
+        return "__" + versionSuffix + "_init";
+    }
+
+    private static int versionNumber(String versionSuffix) {
+        return Integer.parseInt(versionSuffix.toLowerCase().replace("v", ""));
+    }
+}
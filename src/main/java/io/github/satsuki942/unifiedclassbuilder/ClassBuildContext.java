@@ -0,0 +1,158 @@
+package io.github.satsuki942.unifiedclassbuilder;
+
+import io.github.satsuki942.symboltable.VersionedName;
+import io.github.satsuki942.util.AstUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.ConstructorDeclaration;
+
+/**
+ * What the generators of one unified class share: the versions with their names and constructors, and the
+ * inner types generated so far.
+ * <p>
+ * Everything derived from the version ASTs is computed once when the context is created, so that the
+ * generators only look it up; building a class stays linear in the number of versions and constructors.
+ * The inner implementation classes and the behavior interface are registered by
+ * {@link StateInfrastructureGenerator} when it creates them, for the generators running after it.
+ */
+public class ClassBuildContext {
+    private final String baseName;
+    private final ClassOrInterfaceDeclaration targetClass;
+    private final List<CompilationUnit> versionAsts;
+    private final List<VersionedName> versionNames = new ArrayList<>();
+    private final List<List<ConstructorDeclaration>> constructors = new ArrayList<>();
+
+    // Constructor signature -> first declaration and the suffix of its version (e.g. "v1")
+    private final Map<String, ConstructorDeclaration> constructorsBySignature = new HashMap<>();
+    private final Map<String, String> constructorOwners = new HashMap<>();
+
+    // Inner class name (e.g. "V1_Impl") -> declaration on the target class
+    private final Map<String, ClassOrInterfaceDeclaration> innerClasses = new HashMap<>();
+    private ClassOrInterfaceDeclaration behaviorInterface;
+
+    /**
+     * @param baseName    The base name of the unified class (e.g., "Test").
+     * @param targetClass The unified class being generated.
+     * @param versionAsts The CompilationUnits of the versions, in source order.
+     */
+    public ClassBuildContext(String baseName, ClassOrInterfaceDeclaration targetClass, List<CompilationUnit> versionAsts) {
+        this.baseName = baseName;
+        this.targetClass = targetClass;
+        this.versionAsts = Collections.unmodifiableList(new ArrayList<>(versionAsts));
+        for (CompilationUnit cu : this.versionAsts) {
+            VersionedName versionedName = AstUtil.getVersionedName(cu);
+            List<ConstructorDeclaration> versionConstructors = cu.findAll(ConstructorDeclaration.class);
+            versionNames.add(versionedName);
+            constructors.add(Collections.unmodifiableList(versionConstructors));
+            for (ConstructorDeclaration ctor : versionConstructors) {
+                String signature = ctor.getSignature().asString();
+                if (constructorsBySignature.putIfAbsent(signature, ctor) == null) {
+                    constructorOwners.put(signature, versionedName.isVersioned() ? versionedName.getVersionSuffix() : "v1");
+                }
+            }
+        }
+    }
+
+    public String getBaseName() {
+        return baseName;
+    }
+
+    public ClassOrInterfaceDeclaration getTargetClass() {
+        return targetClass;
+    }
+
+    /**
+     * @return The CompilationUnits of the versions, in source order.
+     */
+    public List<CompilationUnit> getVersionAsts() {
+        return versionAsts;
+    }
+
+    public int getVersionCount() {
+        return versionAsts.size();
+    }
+
+    /**
+     * @param index The position of the version in {@link #getVersionAsts()}.
+     * @return The parsed name of that version, e.g. "Test__1__".
+     */
+    public VersionedName getVersionName(int index) {
+        return versionNames.get(index);
+    }
+
+    /**
+     * @param index The position of the version in {@link #getVersionAsts()}.
+     * @return Every constructor declared in that version, including those of nested classes.
+     */
+    public List<ConstructorDeclaration> getConstructors(int index) {
+        return constructors.get(index);
+    }
+
+    /**
+     * @return The first declaration of every constructor signature across the versions.
+     */
+    public Map<String, ConstructorDeclaration> getConstructorsBySignature() {
+        return Collections.unmodifiableMap(constructorsBySignature);
+    }
+
+    /**
+     * @param ctor A constructor declared in one of the versions.
+     * @return The suffix of the first version declaring its signature (e.g. "v2"),
+     *         or {@link #getDefaultConstructorOwner()} if none does.
+     */
+    public String getConstructorOwner(ConstructorDeclaration ctor) {
+        return constructorOwners.getOrDefault(ctor.getSignature().asString(), getDefaultConstructorOwner());
+    }
+
+    /**
+     * @return The suffix of the version the generated default constructor starts in: the lowest declared version
+     *         (e.g. "v1"), or "v1" if there are no versions.
+     */
+    public String getDefaultConstructorOwner() {
+        return versionNames.stream()
+                .filter(VersionedName::isVersioned)
+                .min(Comparator.comparingInt(VersionedName::getOrdinal))
+                .map(VersionedName::getVersionSuffix)
+                .orElse("v1");
+    }
+
+    /**
+     * Adds an inner class to the target class and makes it available by name.
+     *
+     * @param innerClass The inner class, e.g. "V1_Impl".
+     */
+    public void addInnerClass(ClassOrInterfaceDeclaration innerClass) {
+        targetClass.addMember(innerClass);
+        innerClasses.put(innerClass.getNameAsString(), innerClass);
+    }
+
+    public Optional<ClassOrInterfaceDeclaration> getInnerClass(String name) {
+        return Optional.ofNullable(innerClasses.get(name));
+    }
+
+    /**
+     * @return The {@code IVersionBehavior} interface, or null before it was generated.
+     */
+    public ClassOrInterfaceDeclaration getBehaviorInterface() {
+        return behaviorInterface;
+    }
+
+    /**
+     * Adds the behavior interface to the target class.
+     *
+     * @param behaviorInterface The {@code IVersionBehavior} interface.
+     */
+    public void setBehaviorInterface(ClassOrInterfaceDeclaration behaviorInterface) {
+        targetClass.addMember(behaviorInterface);
+        this.behaviorInterface = behaviorInterface;
+    }
+}
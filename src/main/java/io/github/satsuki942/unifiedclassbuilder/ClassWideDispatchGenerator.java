@@ -0,0 +1,196 @@
+package io.github.satsuki942.unifiedclassbuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.Modifier;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.Parameter;
+import com.github.javaparser.ast.stmt.BlockStmt;
+
+import io.github.satsuki942.symboltable.MethodInfo;
+
+/**
+ * Generates the dispatch of ambiguous methods for a class-wide current version
+ * (see {@link io.github.satsuki942.TransformOptions.VersionScope#CLASS}).
+ * <p>
+ * Every ambiguous method gets a {@link java.lang.invoke.MutableCallSite} whose target is a static bridge
+ * into the current version's implementation, e.g. {@code __link_v2_m(self, args)}. The stubs invoke the call
+ * site through a constant {@code MethodHandle}, which the JIT compiles to a direct call of the current target.
+ * Switching the class to another version relinks all call sites at once and deoptimizes the dependent code;
+ * switching to the version already current is a single volatile read.
+ */
+public class ClassWideDispatchGenerator {
+    private final ClassOrInterfaceDeclaration targetClass;
+    private final List<List<MethodInfo>> sites = new ArrayList<>();
+
+    public ClassWideDispatchGenerator(ClassOrInterfaceDeclaration targetClass) {
+        this.targetClass = targetClass;
+    }
+
+    /**
+     * Creates the body of a stub for an ambiguous method, invoking a new call site.
+     *
+     * @param stub      The stub, with its final name, return type and parameters.
+     * @param overloads The versions of the method (one per version defining it).
+     * @return The stub's body.
+     */
+    public BlockStmt createDispatchBody(MethodDeclaration stub, List<MethodInfo> overloads) {
+        int site = sites.size();
+        sites.add(overloads);
+
+        String arguments = stub.getParameters().stream()
+                .map(Parameter::getNameAsString)
+                .map(name -> ", " + name)
+                .collect(Collectors.joining());
+        String returnType = stub.getTypeAsString();
+        String invocation = String.format("__invoker_%d.invokeExact(this%s);", site, arguments);
+        if (!returnType.equals("void")) {
+            invocation = String.format("return (%s) %s", returnType, invocation);
+        }
+        return StaticJavaParser.parseBlock(
+                "{ try { " + invocation + " }"
+                + " catch (RuntimeException | Error e) { throw e; }"
+                + " catch (Throwable t) { throw new java.lang.reflect.UndeclaredThrowableException(t); } }");
+    }
+
+    /**
+     * Generates the call sites, their bridges and the static {@code __switchClassToVersion(int)} method.
+     * Must be called after all stubs have been created.
+     */
+    public void generate() {
+        targetClass.findCompilationUnit().ifPresent(cu -> {
+            cu.addImport("java.lang.invoke.MethodHandle");
+            cu.addImport("java.lang.invoke.MethodHandles");
+            cu.addImport("java.lang.invoke.MethodType");
+            cu.addImport("java.lang.invoke.MutableCallSite");
+        });
+        String className = targetClass.getNameAsString();
+
+        // Static fields are initialized in declaration order, so the lookup has to come first
+        targetClass.addFieldWithInitializer("MethodHandles.Lookup", "__LOOKUP",
+                StaticJavaParser.parseExpression("MethodHandles.lookup()"),
+                Modifier.Keyword.PRIVATE, Modifier.Keyword.STATIC, Modifier.Keyword.FINAL);
+        targetClass.addField("int", "__classVersion", Modifier.Keyword.PRIVATE, Modifier.Keyword.STATIC, Modifier.Keyword.VOLATILE);
+
+        for (int site = 0; site < sites.size(); site++) {
+            List<MethodInfo> overloads = sites.get(site);
+            MethodInfo first = overloads.get(0);
+            String methodType = createMethodType(first);
+
+            targetClass.addFieldWithInitializer("MutableCallSite", "__site_" + site,
+                    StaticJavaParser.parseExpression(String.format("new MutableCallSite(__link(\"%s\", %s))",
+                            bridgeName(first), methodType)),
+                    Modifier.Keyword.PRIVATE, Modifier.Keyword.STATIC, Modifier.Keyword.FINAL);
+            targetClass.addFieldWithInitializer("MethodHandle", "__invoker_" + site,
+                    StaticJavaParser.parseExpression(String.format("__site_%d.dynamicInvoker()", site)),
+                    Modifier.Keyword.PRIVATE, Modifier.Keyword.STATIC, Modifier.Keyword.FINAL);
+
+            for (MethodInfo overload : overloads) {
+                createBridge(className, overload);
+            }
+        }
+
+        createSwitchClassToVersionMethod();
+        createRelinkMethod();
+        createLinkMethod(className);
+    }
+
+    // static R __link_v1_m(Test self, P0 arg0) { return self.v1_instance.m(arg0); }
+    private void createBridge(String className, MethodInfo overload) {
+        MethodDeclaration bridge = targetClass.addMethod(bridgeName(overload), Modifier.Keyword.PRIVATE, Modifier.Keyword.STATIC)
+                .setType(overload.getReturnType())
+                .addParameter(className, "self");
+        List<String> arguments = new ArrayList<>();
+        for (int i = 0; i < overload.getParameterTypes().size(); i++) {
+            bridge.addParameter(overload.getParameterTypes().get(i), "arg" + i);
+            arguments.add("arg" + i);
+        }
+        String call = String.format("self.v%s_instance.%s(%s);",
+                overload.getVersion().toLowerCase(), overload.getName(), String.join(", ", arguments));
+        bridge.setBody(new BlockStmt().addStatement(overload.getReturnType().equals("void") ? call : "return " + call));
+    }
+
+    private void createSwitchClassToVersionMethod() {
+        MethodDeclaration method = targetClass.addMethod("__switchClassToVersion", Modifier.Keyword.PRIVATE, Modifier.Keyword.STATIC)
+                .setType("void")
+                .addParameter("int", "version");
+        BlockStmt body = new BlockStmt();
+        body.addStatement("if (version != __classVersion) { __relink(version); }");
+        method.setBody(body);
+    }
+
+    private void createRelinkMethod() {
+        MethodDeclaration method = targetClass.addMethod("__relink", Modifier.Keyword.PRIVATE, Modifier.Keyword.STATIC, Modifier.Keyword.SYNCHRONIZED)
+                .setType("void")
+                .addParameter("int", "version");
+
+        TreeSet<Integer> versions = new TreeSet<>();
+        sites.forEach(overloads -> overloads.forEach(o -> versions.add(versionNumber(o))));
+
+        StringBuilder code = new StringBuilder("{ if (version == __classVersion) { return; }");
+        if (!sites.isEmpty()) {
+            code.append(" switch (version) {");
+            for (int version : versions) {
+                code.append(" case ").append(version).append(":");
+                for (int site = 0; site < sites.size(); site++) {
+                    for (MethodInfo overload : sites.get(site)) {
+                        if (versionNumber(overload) == version) {
+                            code.append(String.format(" __site_%d.setTarget(__link(\"%s\", __site_%d.type()));",
+                                    site, bridgeName(overload), site));
+                        }
+                    }
+                }
+                code.append(" break;");
+            }
+            code.append(" default: return; }");
+        }
+        code.append(" __classVersion = version;");
+        if (!sites.isEmpty()) {
+            String allSites = IntStream.range(0, sites.size())
+                    .mapToObj(site -> "__site_" + site)
+                    .collect(Collectors.joining(", "));
+            code.append(" MutableCallSite.syncAll(new MutableCallSite[] { ").append(allSites).append(" });");
+        }
+        code.append(" }");
+        method.setBody(StaticJavaParser.parseBlock(code.toString()));
+    }
+
+    private void createLinkMethod(String className) {
+        targetClass.addMethod("__link", Modifier.Keyword.PRIVATE, Modifier.Keyword.STATIC)
+                .setType("MethodHandle")
+                .addParameter("String", "name")
+                .addParameter("MethodType", "type")
+                .setBody(StaticJavaParser.parseBlock(String.format(
+                        "{ try { return __LOOKUP.findStatic(%s.class, name, type); }"
+                        + " catch (ReflectiveOperationException e) { throw new IllegalStateException(e); } }",
+                        className)));
+    }
+
+    // -- HELPER METHODS --
+    private String createMethodType(MethodInfo method) {
+        StringBuilder type = new StringBuilder("MethodType.methodType(")
+                .append(classLiteral(method.getReturnType()))
+                .append(", ").append(targetClass.getNameAsString()).append(".class");
+        method.getParameterTypes().forEach(p -> type.append(", ").append(classLiteral(p)));
+        return type.append(")").toString();
+    }
+
+    // Method handles work on erased types
+    private static String classLiteral(String type) {
+        return type.replaceAll("<.*>", "") + ".class";
+    }
+
+    private static String bridgeName(MethodInfo method) {
+        return "__link_v" + method.getVersion().toLowerCase() + "_" + method.getName();
+    }
+
+    private static int versionNumber(MethodInfo method) {
+        return Integer.parseInt(method.getVersion().replace("v", ""));
+    }
+}
@@ -1,11 +1,7 @@
 package io.github.satsuki942.unifiedclassbuilder;
-import io.github.satsuki942.util.AstUtil;
+import io.github.satsuki942.TransformOptions;
+import io.github.satsuki942.symboltable.VersionedName;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-
-import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.Modifier;
 import com.github.javaparser.ast.NodeList;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
@@ -28,36 +24,31 @@ import com.github.javaparser.ast.type.ClassOrInterfaceType;
  */
 public class ConstructorGenerator {
     private final ClassOrInterfaceDeclaration targetClass;
-    private final List<CompilationUnit> versionAsts;
+    private final ClassBuildContext context;
+    private final TransformOptions options;
 
-    public ConstructorGenerator(ClassOrInterfaceDeclaration targetClass, List<CompilationUnit> versionAsts) {
-        this.targetClass = targetClass;
-        this.versionAsts = versionAsts;
+    public ConstructorGenerator(ClassBuildContext context, TransformOptions options) {
+        this.targetClass = context.getTargetClass();
+        this.context = context;
+        this.options = options;
     }
 
     /**
      * Executes the generation of all public constructors.
      */
     public void generate() {
-        // 1. Collect all constructors from all versioned classes
-        Map<String, ConstructorDeclaration> constructorsBySignature = new HashMap<>();
-        for (CompilationUnit cu : versionAsts) {
-            cu.findAll(ConstructorDeclaration.class).forEach(ctor -> {
-                constructorsBySignature.putIfAbsent(ctor.getSignature().asString(), ctor);
-            });
-        }
-
-        // 2. When no constructors are found, create a default constructor
-        if (constructorsBySignature.isEmpty()) {
+        // 1. When no version declares a constructor, create a default constructor
+        if (context.getConstructorsBySignature().isEmpty()) {
             ConstructorDeclaration defaultCtor = new ConstructorDeclaration(
                 new NodeList<>(new Modifier(Modifier.Keyword.PUBLIC)), 
                 this.targetClass.getNameAsString()
             );
-            constructorsBySignature.put(defaultCtor.getSignature().asString(), defaultCtor);
+            generateVersionedConstructor(defaultCtor);
+            return;
         }
 
-        // 3. Generate public constructors corresponding to the collected constructors
-        for (ConstructorDeclaration originalCtor : constructorsBySignature.values()) {
+        // 2. Generate public constructors corresponding to the constructors collected from all versions
+        for (ConstructorDeclaration originalCtor : context.getConstructorsBySignature().values()) {
             generateVersionedConstructor(originalCtor);
         }
     }
@@ -67,11 +58,12 @@ public class ConstructorGenerator {
         originalCtor.getParameters().forEach(p -> publicCtor.addParameter(p.clone()));
         
         BlockStmt body = new BlockStmt();
-        String ctorOwnerVersion = getVersionForConstructor(originalCtor).toLowerCase();
+        String ctorOwnerVersion = context.getConstructorOwner(originalCtor);
 
-        for (CompilationUnit cu : versionAsts) {
-            String currentVersionSuffix = AstUtil.getVersionSuffix(cu).orElse("").toLowerCase();
-            String implClassName = AstUtil.getVersionSuffix(cu).orElse("").toUpperCase() + "_Impl";
+        for (int i = 0; i < context.getVersionCount(); i++) {
+            VersionedName versionName = context.getVersionName(i);
+            String currentVersionSuffix = versionName.getVersionSuffix();
+            String implClassName = versionName.getStateSuffix() + "_Impl";
             String instanceName = currentVersionSuffix + "_instance";
 
             ObjectCreationExpr newExpr = new ObjectCreationExpr(null, new ClassOrInterfaceType(null,implClassName), new NodeList<>());
@@ -88,17 +80,14 @@ public class ConstructorGenerator {
             body.addStatement(new ExpressionStmt(assignExpr));
         }
 
-        body.addStatement(String.format("this.currentState = this.%s_instance;", ctorOwnerVersion));
-        publicCtor.setBody(body);
-    }
-
-    // -- HELPER METHODS --
-    private String getVersionForConstructor(ConstructorDeclaration ctor) {
-        for (CompilationUnit cu : versionAsts) {
-            if (cu.findAll(ConstructorDeclaration.class).stream().anyMatch(c -> c.getSignature().equals(ctor.getSignature()))) {
-                return AstUtil.getVersionSuffix(cu).orElse("v1");
-            }
+        if (options.isClassWide()) {
+            // Creating an object moves the whole class to the constructor's version
+            body.addStatement(String.format("__switchClassToVersion(%s);", ctorOwnerVersion.replace("v", "")));
+        } else if (options.getConcurrency() == TransformOptions.Concurrency.THREAD_LOCAL) {
+            body.addStatement(String.format("this.currentState = ThreadLocal.withInitial(() -> this.%s_instance);", ctorOwnerVersion));
+        } else {
+            body.addStatement(String.format("this.currentState = this.%s_instance;", ctorOwnerVersion));
         }
-        return "v1";
+        publicCtor.setBody(body);
     }
 }
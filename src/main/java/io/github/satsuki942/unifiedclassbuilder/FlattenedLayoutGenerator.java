@@ -0,0 +1,416 @@
+package io.github.satsuki942.unifiedclassbuilder;
+import io.github.satsuki942.TransformOptions;
+import io.github.satsuki942.analysis.VersionStateAnalysis;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Modifier;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.NodeList;
+import com.github.javaparser.ast.body.BodyDeclaration;
+import com.github.javaparser.ast.body.ConstructorDeclaration;
+import com.github.javaparser.ast.body.FieldDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.expr.AssignExpr;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.FieldAccessExpr;
+import com.github.javaparser.ast.expr.IntegerLiteralExpr;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.expr.NameExpr;
+import com.github.javaparser.ast.expr.ThisExpr;
+import com.github.javaparser.ast.nodeTypes.NodeWithModifiers;
+import com.github.javaparser.ast.stmt.BlockStmt;
+import com.github.javaparser.ast.stmt.BreakStmt;
+import com.github.javaparser.ast.stmt.ExplicitConstructorInvocationStmt;
+import com.github.javaparser.ast.stmt.ExpressionStmt;
+import com.github.javaparser.ast.stmt.ReturnStmt;
+import com.github.javaparser.ast.stmt.SwitchEntry;
+import com.github.javaparser.ast.stmt.SwitchStmt;
+
+import io.github.satsuki942.symboltable.ClassInfo;
+import io.github.satsuki942.symboltable.MethodInfo;
+import io.github.satsuki942.symboltable.SymbolTable;
+import io.github.satsuki942.util.AstUtil;
+
+/**
+ * Generates the flattened layout of a unified class (see {@link TransformOptions.Layout#FLATTENED}).
+ * <p>
+ * Instead of one implementation object per version, the fields of all versions are hoisted into the unified
+ * class itself (prefixed with their version, e.g. {@code v1_x}, when several versions declare the same name),
+ * every version method becomes a private method (e.g. {@code v1_display}), and every version constructor becomes
+ * a private initializer (e.g. {@code __v1_init}). The public stubs dispatch on a small int state.
+ * <p>
+ * Versions declaring nested types or initializer blocks are not flattened (see {@link #findUnsupportedMember}):
+ * their members would clash or run outside the initializers, so such classes keep the state-object layout.
+ */
+public class FlattenedLayoutGenerator {
+    private final ClassOrInterfaceDeclaration targetClass;
+    private final ClassBuildContext context;
+    private final List<CompilationUnit> versionAsts;
+    private final SymbolTable symbolTable;
+    private final String baseName;
+    private final TransformOptions options;
+    private final SharedMethodDetector sharedMethods;
+
+    // version suffix (e.g. "v1") -> original field name -> hoisted field name
+    private final Map<String, Map<String, String>> fieldNames = new HashMap<>();
+
+    public FlattenedLayoutGenerator(ClassBuildContext context, SymbolTable symbolTable, TransformOptions options,
+                                    SharedMethodDetector sharedMethods) {
+        this.targetClass = context.getTargetClass();
+        this.context = context;
+        this.versionAsts = context.getVersionAsts();
+        this.symbolTable = symbolTable;
+        this.baseName = context.getBaseName();
+        this.options = options;
+        this.sharedMethods = sharedMethods;
+    }
+
+    /**
+     * Checks whether the versions of a class can be flattened.
+     *
+     * @param context The versions of the class.
+     * @return Why the class cannot be flattened, or empty if it can.
+     */
+    public static Optional<String> findUnsupportedMember(ClassBuildContext context) {
+        for (int i = 0; i < context.getVersionCount(); i++) {
+            TypeDeclaration<?> versionType = context.getVersionAsts().get(i).getPrimaryType().orElse(null);
+            if (versionType == null) continue;
+            for (BodyDeclaration<?> member : versionType.getMembers()) {
+                if (member.isTypeDeclaration()) {
+                    return Optional.of(versionType.getNameAsString() + " declares the nested type " + member.asTypeDeclaration().getNameAsString());
+                }
+                if (member.isInitializerDeclaration()) {
+                    return Optional.of(versionType.getNameAsString() + " declares an initializer block");
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Executes the generation of the whole flattened unified class.
+     */
+    public void generate() {
+        ClassInfo classInfo = symbolTable.lookupClass(baseName);
+        if (classInfo == null) return;
+
+        assignFieldNames();
+        createStateField();
+        for (int i = 0; i < context.getVersionCount(); i++) {
+            String versionSuffix = context.getVersionName(i).getVersionSuffix();
+            versionAsts.get(i).getPrimaryType().ifPresent(type -> hoistMembers(type, versionSuffix));
+        }
+        createSwitchToVersionMethod();
+        createStubs(classInfo);
+        createConstructors();
+
+        new GetterSetterGenerator(targetClass, symbolTable, baseName, options, field -> {
+            String versionSuffix = "v" + field.getVersion().toLowerCase();
+            return new FieldAccessExpr(new ThisExpr(), hoistedFieldName(versionSuffix, field.getName()));
+        }).generate();
+
+        if (options.isBinaryCodec()) {
+            new BinaryCodecGenerator(context, options, this::hoistedFieldName, true).generate();
+        }
+    }
+
+    // -- STATE --
+    private void createStateField() {
+        switch (options.getConcurrency()) {
+            case VOLATILE:
+                targetClass.addField("int", "__state").setPrivate(true).setVolatile(true);
+                break;
+            case THREAD_LOCAL:
+                targetClass.addField("ThreadLocal<Integer>", "__state").setPrivate(true).setFinal(true);
+                break;
+            default:
+                targetClass.addField("int", "__state").setPrivate(true);
+        }
+    }
+
+    private Expression readState() {
+        FieldAccessExpr field = new FieldAccessExpr(new ThisExpr(), "__state");
+        if (options.getConcurrency() == TransformOptions.Concurrency.THREAD_LOCAL) {
+            return new MethodCallExpr(field, "get");
+        }
+        return field;
+    }
+
+    private ExpressionStmt writeState(int version) {
+        if (options.getConcurrency() == TransformOptions.Concurrency.THREAD_LOCAL) {
+            return new ExpressionStmt(new MethodCallExpr(new FieldAccessExpr(new ThisExpr(), "__state"), "set",
+                    new NodeList<>(new IntegerLiteralExpr(String.valueOf(version)))));
+        }
+        return new ExpressionStmt(new AssignExpr(
+                new FieldAccessExpr(new ThisExpr(), "__state"),
+                new IntegerLiteralExpr(String.valueOf(version)),
+                AssignExpr.Operator.ASSIGN));
+    }
+
+    private void createSwitchToVersionMethod() {
+        SwitchStmt switchStmt = new SwitchStmt();
+        switchStmt.setSelector(new NameExpr("version"));
+        for (int i = 0; i < context.getVersionCount(); i++) {
+            int versionNumber = context.getVersionName(i).getOrdinal();
+            SwitchEntry switchEntry = new SwitchEntry();
+            switchEntry.getLabels().add(new IntegerLiteralExpr(String.valueOf(versionNumber)));
+            switchEntry.getStatements().add(writeState(versionNumber));
+            switchEntry.getStatements().add(new BreakStmt());
+            switchStmt.getEntries().add(switchEntry);
+        }
+        targetClass.addMethod("__switchToVersion", Modifier.Keyword.PUBLIC)
+                   .setType("void")
+                   .addParameter("int", "version")
+                   .setBody(new BlockStmt().addStatement(switchStmt));
+    }
+
+    // -- FIELDS & MEMBERS --
+    // Field names declared by more than one version are prefixed with their version
+    private void assignFieldNames() {
+        Map<String, Integer> declarations = new HashMap<>();
+        for (CompilationUnit cu : versionAsts) {
+            cu.getPrimaryType().ifPresent(type -> type.getFields().forEach(field ->
+                    field.getVariables().forEach(var -> declarations.merge(var.getNameAsString(), 1, Integer::sum))));
+        }
+        for (int i = 0; i < context.getVersionCount(); i++) {
+            String versionSuffix = context.getVersionName(i).getVersionSuffix();
+            Map<String, String> names = new LinkedHashMap<>();
+            versionAsts.get(i).getPrimaryType().ifPresent(type -> type.getFields().forEach(field -> field.getVariables().forEach(var -> {
+                String name = var.getNameAsString();
+                names.put(name, declarations.get(name) > 1 ? versionSuffix + "_" + name : name);
+            })));
+            fieldNames.put(versionSuffix, names);
+        }
+    }
+
+    private String hoistedFieldName(String versionSuffix, String fieldName) {
+        return fieldNames.getOrDefault(versionSuffix, Map.of()).getOrDefault(fieldName, fieldName);
+    }
+
+    private void hoistMembers(TypeDeclaration<?> versionType, String versionSuffix) {
+        Set<String> methodNames = versionType.getMethods().stream()
+                .map(MethodDeclaration::getNameAsString)
+                .collect(Collectors.toSet());
+
+        for (BodyDeclaration<?> original : versionType.getMembers()) {
+            if (original.isMethodDeclaration() && sharedMethods.isShared(original.asMethodDeclaration())) {
+                // Emitted once as __shared_m by createStubs
+                continue;
+            }
+            BodyDeclaration<?> member = original.clone();
+            sharedMethods.redirectCalls(member);
+            if (member.isFieldDeclaration()) {
+                FieldDeclaration field = member.asFieldDeclaration();
+                field.getVariables().forEach(var -> var.setName(hoistedFieldName(versionSuffix, var.getNameAsString())));
+                if (!field.isStatic()) {
+                    // Constructors become initializer methods, which cannot assign final fields
+                    field.setFinal(false);
+                    makePrivate(field);
+                }
+                renameInBody(field, versionSuffix, methodNames);
+                targetClass.addMember(field);
+            } else if (member.isMethodDeclaration()) {
+                MethodDeclaration method = member.asMethodDeclaration();
+                method.setName(versionSuffix + "_" + method.getNameAsString());
+                makePrivate(method);
+                method.getAnnotations().removeIf(a -> a.getNameAsString().equals("Override"));
+                renameInBody(method, versionSuffix, methodNames);
+                targetClass.addMember(method);
+            } else if (member.isConstructorDeclaration()) {
+                targetClass.addMember(createInitializer(member.asConstructorDeclaration(), versionSuffix, methodNames));
+            } else {
+                targetClass.addMember(member);
+            }
+        }
+    }
+
+    private MethodDeclaration createInitializer(ConstructorDeclaration ctor, String versionSuffix, Set<String> methodNames) {
+        MethodDeclaration init = new MethodDeclaration()
+                .setName(initializerName(versionSuffix))
+                .setType("void")
+                .setPrivate(true);
+        ctor.getParameters().forEach(p -> init.addParameter(p.clone()));
+        BlockStmt body = ctor.getBody().clone();
+        for (ExplicitConstructorInvocationStmt call : body.findAll(ExplicitConstructorInvocationStmt.class)) {
+            if (call.isThis()) {
+                call.replace(new ExpressionStmt(new MethodCallExpr(null, initializerName(versionSuffix), call.getArguments())));
+            } else {
+                call.remove();
+            }
+        }
+        init.setBody(body);
+        renameInBody(init, versionSuffix, methodNames);
+        return init;
+    }
+
+    // Retargets field references and calls of the own version inside a hoisted member
+    private void renameInBody(Node node, String versionSuffix, Set<String> methodNames) {
+        Map<String, String> names = fieldNames.getOrDefault(versionSuffix, Map.of());
+        for (FieldAccessExpr access : node.findAll(FieldAccessExpr.class)) {
+            if (access.getScope().isThisExpr() && names.containsKey(access.getNameAsString())) {
+                access.setName(names.get(access.getNameAsString()));
+            }
+        }
+        for (NameExpr name : node.findAll(NameExpr.class)) {
+            if (names.containsKey(name.getNameAsString()) && !AstUtil.isLocalVariable(name)) {
+                name.setName(names.get(name.getNameAsString()));
+            }
+        }
+        for (MethodCallExpr call : node.findAll(MethodCallExpr.class)) {
+            boolean ownCall = call.getScope().map(Expression::isThisExpr).orElse(true);
+            if (ownCall && methodNames.contains(call.getNameAsString())) {
+                call.setName(versionSuffix + "_" + call.getNameAsString());
+            }
+        }
+    }
+
+    // -- STUBS & CONSTRUCTORS --
+    private void createStubs(ClassInfo classInfo) {
+        Map<String, List<MethodInfo>> methodsBySignature = classInfo.getMethods().values().stream()
+                .flatMap(List::stream)
+                .collect(Collectors.groupingBy(
+                        method -> method.getName() + method.getParameterTypes().toString()
+                ));
+
+        for (List<MethodInfo> overloads : methodsBySignature.values()) {
+            MethodInfo first = overloads.get(0);
+            MethodDeclaration stub = targetClass.addMethod(first.getName(), Modifier.Keyword.PUBLIC).setType(first.getReturnType());
+            for (int i = 0; i < first.getParameterTypes().size(); i++) {
+                stub.addParameter(first.getParameterTypes().get(i), "arg" + i);
+            }
+            boolean isVoid = first.getReturnType().equals("void");
+
+            if (sharedMethods.isShared(first)) {
+                targetClass.addMember(sharedMethods.createSharedImplementation(first));
+                MethodCallExpr call = new MethodCallExpr(SharedMethodDetector.sharedName(first.getName()));
+                stub.getParameters().forEach(p -> call.addArgument(p.getNameAsExpression()));
+                if (options.isDevirtualizing()) {
+                    for (MethodInfo overload : overloads) {
+                        String versionSuffix = "v" + overload.getVersion().toLowerCase();
+                        MethodDeclaration entry = stub.clone().setName(VersionStateAnalysis.directEntryName(versionSuffix, stub.getNameAsString()));
+                        entry.setBody(new BlockStmt().addStatement(isVoid ? new ExpressionStmt(call.clone()) : new ReturnStmt(call.clone())));
+                        targetClass.addMember(entry);
+                    }
+                }
+                stub.setBody(new BlockStmt().addStatement(isVoid ? new ExpressionStmt(call) : new ReturnStmt(call)));
+                continue;
+            }
+
+            if (overloads.size() == 1) {
+                MethodCallExpr call = createVersionCall(stub, "v" + first.getVersion().toLowerCase());
+                stub.setBody(new BlockStmt().addStatement(isVoid ? new ExpressionStmt(call) : new ReturnStmt(call)));
+                continue;
+            }
+
+            SwitchStmt switchStmt = new SwitchStmt();
+            switchStmt.setSelector(readState());
+            for (MethodInfo overload : overloads) {
+                String versionSuffix = "v" + overload.getVersion().toLowerCase();
+                MethodCallExpr call = createVersionCall(stub, versionSuffix);
+                if (options.isDevirtualizing()) {
+                    // Direct entry for devirtualized calls: __v1_m(args) { return this.v1_m(args); }
+                    MethodDeclaration entry = stub.clone().setName(VersionStateAnalysis.directEntryName(versionSuffix, stub.getNameAsString()));
+                    entry.setBody(new BlockStmt().addStatement(isVoid ? new ExpressionStmt(call.clone()) : new ReturnStmt(call.clone())));
+                    targetClass.addMember(entry);
+                }
+                SwitchEntry switchEntry = new SwitchEntry();
+                switchEntry.getLabels().add(new IntegerLiteralExpr(String.valueOf(versionNumber(versionSuffix))));
+                if (isVoid) {
+                    switchEntry.getStatements().add(new ExpressionStmt(call));
+                    switchEntry.getStatements().add(new ReturnStmt());
+                } else {
+                    switchEntry.getStatements().add(new ReturnStmt(call));
+                }
+                switchStmt.getEntries().add(switchEntry);
+            }
+            BlockStmt body = new BlockStmt().addStatement(switchStmt);
+            body.addStatement("throw new IllegalStateException(\"No version of " + first.getName() + " for state \" + " + readState() + ");");
+            stub.setBody(body);
+        }
+    }
+
+    private MethodCallExpr createVersionCall(MethodDeclaration stub, String versionSuffix) {
+        MethodCallExpr call = new MethodCallExpr(new ThisExpr(), versionSuffix + "_" + stub.getNameAsString());
+        stub.getParameters().forEach(p -> call.addArgument(p.getNameAsExpression()));
+        return call;
+    }
+
+    private void createConstructors() {
+        // One public constructor per distinct parameter list, owned by the first version declaring it
+        Map<String, ConstructorDeclaration> constructorsBySignature = new LinkedHashMap<>();
+        Map<String, String> ownerBySignature = new HashMap<>();
+        Set<String> versionsWithDefaultCtor = new HashSet<>();
+        for (int i = 0; i < context.getVersionCount(); i++) {
+            String versionSuffix = context.getVersionName(i).getVersionSuffix();
+            for (ConstructorDeclaration ctor : context.getConstructors(i)) {
+                String signature = ctor.getParameters().stream()
+                        .map(p -> p.getType().asString())
+                        .collect(Collectors.joining(","));
+                constructorsBySignature.putIfAbsent(signature, ctor);
+                ownerBySignature.putIfAbsent(signature, versionSuffix);
+                if (ctor.getParameters().isEmpty()) {
+                    versionsWithDefaultCtor.add(versionSuffix);
+                }
+            }
+        }
+        if (constructorsBySignature.isEmpty()) {
+            ConstructorDeclaration defaultCtor = new ConstructorDeclaration(
+                new NodeList<>(new Modifier(Modifier.Keyword.PUBLIC)),
+                this.targetClass.getNameAsString()
+            );
+            constructorsBySignature.put("", defaultCtor);
+        }
+
+        for (Map.Entry<String, ConstructorDeclaration> entry : constructorsBySignature.entrySet()) {
+            ConstructorDeclaration originalCtor = entry.getValue();
+            String ownerVersion = ownerBySignature.getOrDefault(entry.getKey(), "v1");
+            ConstructorDeclaration publicCtor = targetClass.addConstructor(Modifier.Keyword.PUBLIC);
+            originalCtor.getParameters().forEach(p -> publicCtor.addParameter(p.clone()));
+
+            BlockStmt body = new BlockStmt();
+            if (options.getConcurrency() == TransformOptions.Concurrency.THREAD_LOCAL) {
+                body.addStatement(String.format("this.__state = ThreadLocal.withInitial(() -> %d);", versionNumber(ownerVersion)));
+            }
+            // Initialize every version in source order, as the state-object layout constructs every implementation
+            for (int i = 0; i < context.getVersionCount(); i++) {
+                String versionSuffix = context.getVersionName(i).getVersionSuffix();
+                if (versionSuffix.equals(ownerVersion) && ownerBySignature.containsKey(entry.getKey())) {
+                    MethodCallExpr init = new MethodCallExpr(new ThisExpr(), initializerName(versionSuffix));
+                    originalCtor.getParameters().forEach(p -> init.addArgument(p.getNameAsExpression()));
+                    body.addStatement(init);
+                } else if (versionsWithDefaultCtor.contains(versionSuffix)) {
+                    body.addStatement(new MethodCallExpr(new ThisExpr(), initializerName(versionSuffix)));
+                }
+            }
+            if (options.getConcurrency() != TransformOptions.Concurrency.THREAD_LOCAL) {
+                body.addStatement(writeState(versionNumber(ownerVersion)));
+            }
+            publicCtor.setBody(body);
+        }
+    }
+
+    // -- HELPER METHODS --
+    private static void makePrivate(NodeWithModifiers<?> member) {
+        member.removeModifier(Modifier.Keyword.PUBLIC, Modifier.Keyword.PROTECTED);
+        member.addModifier(Modifier.Keyword.PRIVATE);
+    }
+
+    private static String initializerName(String versionSuffix) {
+        return "__" + versionSuffix + "_init";
+    }
+
+    private static int versionNumber(String versionSuffix) {
+        return Integer.parseInt(versionSuffix.toLowerCase().replace("v", ""));
+    }
+}
@@ -1,14 +1,17 @@
 package io.github.satsuki942.unifiedclassbuilder;
 
-import java.lang.reflect.Field;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import com.github.javaparser.ast.NodeList;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
 import com.github.javaparser.ast.body.FieldDeclaration;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.ast.expr.AssignExpr;
+import com.github.javaparser.ast.expr.Expression;
 import com.github.javaparser.ast.expr.FieldAccessExpr;
 import com.github.javaparser.ast.expr.IntegerLiteralExpr;
 import com.github.javaparser.ast.expr.MethodCallExpr;
@@ -18,18 +21,47 @@ import com.github.javaparser.ast.stmt.BlockStmt;
 import com.github.javaparser.ast.stmt.ReturnStmt;
 import com.github.javaparser.ast.Modifier;
 
+import io.github.satsuki942.TransformOptions;
+import io.github.satsuki942.symboltable.ClassInfo;
 import io.github.satsuki942.symboltable.FieldInfo;
+import io.github.satsuki942.symboltable.MethodInfo;
 import io.github.satsuki942.symboltable.SymbolTable;
 
+/**
+ * Generates the {@code __get_x}/{@code __set_x} accessors for the public fields of the versioned classes.
+ * <p>
+ * By default an accessor switches to the version owning the field before touching it. The switch is left out
+ * when {@link TransformOptions.FieldAccess} asks for direct access, and also when nothing reads the current
+ * version, so that switching is unobservable: the class has no method defined in more than one version, and
+ * neither the binary codec (which writes the current version) nor the bulk pool (which mirrors the class's
+ * API with per-element versions) is generated.
+ */
 public class GetterSetterGenerator {
     private final ClassOrInterfaceDeclaration targetClass;
     private final SymbolTable symbolTable;
     private final String baseName;
+    private final TransformOptions options;
+    private final Function<FieldInfo, Expression> fieldTarget;
+    private boolean switching;
 
-    public GetterSetterGenerator(ClassOrInterfaceDeclaration targetClass, SymbolTable symbolTable, String baseName) {
+    public GetterSetterGenerator(ClassOrInterfaceDeclaration targetClass, SymbolTable symbolTable, String baseName, TransformOptions options) {
+        this(targetClass, symbolTable, baseName, options, field -> new FieldAccessExpr(
+            new FieldAccessExpr(new ThisExpr(), "v" + field.getVersion().toLowerCase() + "_instance"),
+            field.getName()
+        ));
+    }
+
+    /**
+     * @param fieldTarget Builds the expression that reads or writes a field inside the unified class
+     *                    (by default {@code this.vN_instance.x}).
+     */
+    public GetterSetterGenerator(ClassOrInterfaceDeclaration targetClass, SymbolTable symbolTable, String baseName,
+                                 TransformOptions options, Function<FieldInfo, Expression> fieldTarget) {
         this.targetClass = targetClass;
         this.symbolTable = symbolTable;
         this.baseName = baseName;
+        this.options = options;
+        this.fieldTarget = fieldTarget;
     }
 
     public void generate() {
@@ -37,6 +69,8 @@ public class GetterSetterGenerator {
         if (classInfo == null || !classInfo.isVersioned()) {
             return;
         }
+        this.switching = options.getFieldAccess() == TransformOptions.FieldAccess.SWITCHING
+                && (hasAmbiguousMethods(classInfo) || options.isBinaryCodec() || options.isBulkContainer());
 
         // Collect all public fields
         Map<String, FieldInfo> publicFields = new HashMap<>();
@@ -52,42 +86,52 @@ public class GetterSetterGenerator {
 
     private void createGetterFor(FieldInfo field) {
         String methodName = "__get_" + field.getName();
-        String instanceName = "v" + field.getVersion().toLowerCase() + "_instance";
 
         MethodDeclaration getter = targetClass.addMethod(methodName, Modifier.Keyword.PUBLIC)
             .setType(field.getType());
 
-        FieldAccessExpr fieldAccess = new FieldAccessExpr(
-            new FieldAccessExpr(new ThisExpr(), instanceName), 
-            field.getName()
-        );
+        Expression fieldAccess = fieldTarget.apply(field);
         
         BlockStmt body = new BlockStmt();
-        int versionNumber = Integer.parseInt(field.getVersion().replace("v", ""));
-        body.addStatement(new MethodCallExpr(new NameExpr("this"), "__switchToVersion", new NodeList<>(new IntegerLiteralExpr(String.valueOf(versionNumber)))));
+        if (this.switching) {
+            body.addStatement(createSwitchCall(field));
+        }
         body.addStatement(new ReturnStmt(fieldAccess));
         getter.setBody(body);
     }
 
     private void createSetterFor(FieldInfo field) {
         String methodName = "__set_" + field.getName();
-        String instanceName = "v" + field.getVersion().toLowerCase() + "_instance";
         
         MethodDeclaration setter = targetClass.addMethod(methodName, Modifier.Keyword.PUBLIC)
             .setType("void")
             .addParameter(field.getType(), "value");
 
         AssignExpr assignment = new AssignExpr(
-            new FieldAccessExpr(new FieldAccessExpr(new ThisExpr(), instanceName), field.getName()),
+            fieldTarget.apply(field),
             new NameExpr("value"),
             AssignExpr.Operator.ASSIGN
         );
         
         // メソッド本体: this.__switchToVersion(1); this.v1_instance.x = value;
         BlockStmt body = new BlockStmt();
-        int versionNumber = Integer.parseInt(field.getVersion().replace("v", ""));
-        body.addStatement(new MethodCallExpr(new NameExpr("this"), "__switchToVersion", new NodeList<>(new IntegerLiteralExpr(String.valueOf(versionNumber)))));
+        if (this.switching) {
+            body.addStatement(createSwitchCall(field));
+        }
         body.addStatement(assignment);
         setter.setBody(body);
     }
+
+    // -- HELPER METHODS --
+    private MethodCallExpr createSwitchCall(FieldInfo field) {
+        int versionNumber = Integer.parseInt(field.getVersion().replace("v", ""));
+        return new MethodCallExpr(new NameExpr("this"), "__switchToVersion", new NodeList<>(new IntegerLiteralExpr(String.valueOf(versionNumber))));
+    }
+
+    private static boolean hasAmbiguousMethods(ClassInfo classInfo) {
+        Map<String, List<MethodInfo>> methodsBySignature = classInfo.getMethods().values().stream()
+                .flatMap(List::stream)
+                .collect(Collectors.groupingBy(method -> method.getName() + method.getParameterTypes().toString()));
+        return methodsBySignature.values().stream().anyMatch(overloads -> overloads.size() > 1);
+    }
 }
@@ -1,7 +1,4 @@
 package io.github.satsuki942.unifiedclassbuilder;
-import io.github.satsuki942.util.AstUtil;
-
-import java.util.List;
 import java.util.Optional;
 
 import com.github.javaparser.ast.CompilationUnit;
@@ -14,27 +11,28 @@ import com.github.javaparser.ast.body.ConstructorDeclaration;
  * into their corresponding inner implementation classes (e.g., V1_Impl, V2_Impl).
  */
 public class MemberMerger {
-    private final ClassOrInterfaceDeclaration targetClass;
-    private final List<CompilationUnit> versionAsts;
+    private final ClassBuildContext context;
+    private final SharedMethodDetector sharedMethods;
 
     
-    public MemberMerger(ClassOrInterfaceDeclaration targetClass, List<CompilationUnit> versionAsts) {
-        this.targetClass = targetClass;
-        this.versionAsts = versionAsts;
+    public MemberMerger(ClassBuildContext context, SharedMethodDetector sharedMethods) {
+        this.context = context;
+        this.sharedMethods = sharedMethods;
     }
 
     /**
      * Executes the merging process.
      */
     public void merge() {
-        for (CompilationUnit versionCu : versionAsts) {
-            String versionSuffix = AstUtil.getVersionSuffix(versionCu).orElse("").toUpperCase();
+        for (int i = 0; i < context.getVersionCount(); i++) {
+            CompilationUnit versionCu = context.getVersionAsts().get(i);
+            String versionSuffix = context.getVersionName(i).getStateSuffix();
             if (versionSuffix.isEmpty()) continue;
             
             String implClassName = versionSuffix + "_Impl";
 
             // Find the corresponding inner implementation class (e.g., V1_Impl)
-            Optional<ClassOrInterfaceDeclaration> implClassOpt = findInnerClass(implClassName);
+            Optional<ClassOrInterfaceDeclaration> implClassOpt = context.getInnerClass(implClassName);
             if (implClassOpt.isEmpty()) {
                 System.err.println("Error: Could not find implementation class: " + implClassName);
                 continue;
@@ -48,10 +46,15 @@ public class MemberMerger {
                         // Constructors: rename to match the implementation class
                         ConstructorDeclaration constructor = member.asConstructorDeclaration().clone();
                         constructor.setName(implClassName);
+                        this.sharedMethods.redirectCalls(constructor);
                         implClass.addMember(constructor);
+                    } else if (member.isMethodDeclaration() && this.sharedMethods.isShared(member.asMethodDeclaration())) {
+                        // Shared methods: emitted once on the unified class by StubMethodGenerator
                     } else {
                         // Others: copied as is
-                        implClass.addMember(member.clone());
+                        BodyDeclaration<?> copy = member.clone();
+                        this.sharedMethods.redirectCalls(copy);
+                        implClass.addMember(copy);
                     }
                 });
             });
@@ -64,17 +67,4 @@ public class MemberMerger {
             }
         }
     }
-
-    // -- HELPER METHODS --
-    private Optional<ClassOrInterfaceDeclaration> findInnerClass(String name) {
-        for (BodyDeclaration<?> member : this.targetClass.getMembers()) {
-            if (member.isClassOrInterfaceDeclaration()) {
-                ClassOrInterfaceDeclaration cid = member.asClassOrInterfaceDeclaration();
-                if (!cid.isInterface() && name.equals(cid.getNameAsString())) {
-                    return Optional.of(cid);
-                }
-            }
-        }
-        return Optional.empty();
-    }
 }
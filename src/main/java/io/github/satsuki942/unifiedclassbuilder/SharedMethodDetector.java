@@ -0,0 +1,206 @@
+package io.github.satsuki942.unifiedclassbuilder;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Modifier;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.Parameter;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.ast.comments.Comment;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.expr.NameExpr;
+import com.github.javaparser.ast.expr.SuperExpr;
+import com.github.javaparser.ast.expr.ThisExpr;
+import com.github.javaparser.ast.type.ClassOrInterfaceType;
+
+import io.github.satsuki942.symboltable.ClassInfo;
+import io.github.satsuki942.symboltable.MethodInfo;
+import io.github.satsuki942.symboltable.VersionedName;
+import io.github.satsuki942.util.AstUtil;
+
+/**
+ * Finds methods that several versions implement identically, so the unified class can emit them once.
+ * <p>
+ * Two implementations are identical when their ASTs are structurally equal after comments and annotations
+ * are dropped and versioned type names are reduced to their base names. Such a method is only shared if it
+ * cannot observe which version runs it: it must not use {@code this}, {@code super}, fields, nested types or
+ * other methods of its class, and must not be synchronized. It is then emitted as a private static
+ * {@code __shared_m} on the unified class, and calls of {@code m} inside the versions are redirected to it.
+ */
+public class SharedMethodDetector {
+    private static final String SHARED_PREFIX = "__shared_";
+
+    // Signature key (as grouped by the stub generators) -> normalized implementation
+    private final Map<String, MethodDeclaration> sharedMethods = new LinkedHashMap<>();
+    // Name and parameter types as declared after type names were reduced to base names, for matching declarations
+    private final Set<String> sharedDeclarations = new HashSet<>();
+    // Method name -> arities of its shared overloads, for redirecting calls
+    private final Map<String, Set<Integer>> sharedArities = new HashMap<>();
+
+    public SharedMethodDetector(List<CompilationUnit> versionAsts, ClassInfo classInfo) {
+        if (classInfo == null || versionAsts.size() < 2) return;
+
+        Map<String, TypeDeclaration<?>> typesByVersion = new HashMap<>();
+        Set<String> memberNames = new HashSet<>();
+        for (CompilationUnit cu : versionAsts) {
+            cu.getPrimaryType().ifPresent(type -> {
+                typesByVersion.put(AstUtil.getVersionedName(cu).getVersion(), type);
+                type.getFields().forEach(field -> field.getVariables().forEach(var -> memberNames.add(var.getNameAsString())));
+                type.getMembers().stream().filter(m -> m.isTypeDeclaration())
+                        .forEach(m -> memberNames.add(m.asTypeDeclaration().getNameAsString()));
+            });
+        }
+
+        Map<String, List<MethodInfo>> methodsBySignature = classInfo.getMethods().values().stream()
+                .flatMap(List::stream)
+                .collect(Collectors.groupingBy(SharedMethodDetector::signatureKey));
+        Map<String, Long> overloadsByArity = methodsBySignature.values().stream()
+                .map(overloads -> overloads.get(0))
+                .collect(Collectors.groupingBy(m -> m.getName() + "/" + m.getParameterTypes().size(), Collectors.counting()));
+
+        for (Map.Entry<String, List<MethodInfo>> group : methodsBySignature.entrySet()) {
+            List<MethodInfo> overloads = group.getValue();
+            MethodInfo first = overloads.get(0);
+            // Redirected calls are matched by name and arity, which must identify the method
+            if (overloads.size() < 2 || overloadsByArity.get(first.getName() + "/" + first.getParameterTypes().size()) > 1) continue;
+
+            findIdenticalImplementation(overloads, typesByVersion)
+                    .filter(method -> isVersionIndependent(method, memberNames))
+                    .ifPresent(method -> {
+                        sharedMethods.put(group.getKey(), method);
+                        sharedDeclarations.add(declarationKey(method));
+                        sharedArities.computeIfAbsent(first.getName(), k -> new HashSet<>()).add(first.getParameterTypes().size());
+                    });
+        }
+    }
+
+    /**
+     * @return The key the stub generators group methods by: the name followed by the parameter types.
+     */
+    public static String signatureKey(MethodInfo method) {
+        return method.getName() + method.getParameterTypes().toString();
+    }
+
+    /**
+     * @return The name of the static implementation shared by all versions of {@code methodName}.
+     */
+    public static String sharedName(String methodName) {
+        return SHARED_PREFIX + methodName;
+    }
+
+    public boolean isShared(MethodInfo method) {
+        return sharedMethods.containsKey(signatureKey(method));
+    }
+
+    public boolean isShared(MethodDeclaration method) {
+        return sharedDeclarations.contains(declarationKey(method));
+    }
+
+    public int getSharedCount() {
+        return sharedMethods.size();
+    }
+
+    /**
+     * Creates the single static implementation of a shared method, to be added to the unified class.
+     * @param method Any version of the shared method.
+     * @return {@code private static <T> __shared_m(params) { body }}.
+     */
+    public MethodDeclaration createSharedImplementation(MethodInfo method) {
+        MethodDeclaration shared = sharedMethods.get(signatureKey(method)).clone();
+        shared.setName(sharedName(shared.getNameAsString()));
+        shared.getModifiers().removeIf(m -> m.getKeyword() != Modifier.Keyword.FINAL);
+        shared.addModifier(Modifier.Keyword.PRIVATE, Modifier.Keyword.STATIC);
+        return shared;
+    }
+
+    /**
+     * Redirects the calls of shared methods on the own object ({@code m(..)} or {@code this.m(..)}) to their static implementation.
+     * @param node A member copied from one of the versions.
+     */
+    public void redirectCalls(Node node) {
+        if (sharedArities.isEmpty()) return;
+        for (MethodCallExpr call : node.findAll(MethodCallExpr.class)) {
+            boolean ownCall = call.getScope().map(Expression::isThisExpr).orElse(true);
+            Set<Integer> arities = sharedArities.get(call.getNameAsString());
+            if (ownCall && arities != null && arities.contains(call.getArguments().size())) {
+                call.removeScope();
+                call.setName(sharedName(call.getNameAsString()));
+            }
+        }
+    }
+
+    // -- HELPER METHODS --
+    private static Optional<MethodDeclaration> findIdenticalImplementation(List<MethodInfo> overloads, Map<String, TypeDeclaration<?>> typesByVersion) {
+        MethodDeclaration reference = null;
+        for (MethodInfo overload : overloads) {
+            TypeDeclaration<?> type = typesByVersion.get(overload.getVersion());
+            if (type == null) return Optional.empty();
+            List<String> parameterTypes = overload.getParameterTypes().stream().map(SharedMethodDetector::baseName).collect(Collectors.toList());
+            Optional<MethodDeclaration> declaration = type.getMethodsByName(overload.getName()).stream()
+                    .filter(m -> parameterTypesOf(m).equals(parameterTypes))
+                    .findFirst();
+            if (declaration.isEmpty() || declaration.get().getBody().isEmpty()) return Optional.empty();
+
+            MethodDeclaration normalized = normalize(declaration.get());
+            if (reference == null) {
+                reference = normalized;
+            } else if (reference.hashCode() != normalized.hashCode() || !reference.equals(normalized)) {
+                return Optional.empty();
+            }
+        }
+        return Optional.ofNullable(reference);
+    }
+
+    private static String declarationKey(MethodDeclaration method) {
+        return method.getNameAsString() + parameterTypesOf(method).toString();
+    }
+
+    private static List<String> parameterTypesOf(MethodDeclaration method) {
+        return method.getParameters().stream().map(p -> baseName(p.getType().asString())).collect(Collectors.toList());
+    }
+
+    private static String baseName(String typeName) {
+        return VersionedName.of(typeName).getBaseName();
+    }
+
+    // Drops what does not affect behavior, so that equals/hashCode compare the structure only
+    private static MethodDeclaration normalize(MethodDeclaration method) {
+        MethodDeclaration normalized = method.clone();
+        normalized.getAllContainedComments().forEach(Comment::remove);
+        normalized.removeComment();
+        normalized.getAnnotations().clear();
+        normalized.getParameters().forEach(p -> p.getAnnotations().clear());
+        for (ClassOrInterfaceType type : normalized.findAll(ClassOrInterfaceType.class)) {
+            type.setName(VersionedName.of(type.getNameAsString()).getBaseName());
+        }
+        return normalized;
+    }
+
+    private static boolean isVersionIndependent(MethodDeclaration method, Set<String> memberNames) {
+        if (method.isSynchronized()
+                || !method.findAll(ThisExpr.class).isEmpty()
+                || !method.findAll(SuperExpr.class).isEmpty()
+                || method.findAll(MethodCallExpr.class).stream().anyMatch(call -> call.getScope().isEmpty())) {
+            return false;
+        }
+        Set<String> localNames = new HashSet<>();
+        method.findAll(Parameter.class).forEach(p -> localNames.add(p.getNameAsString()));
+        method.findAll(VariableDeclarator.class).forEach(v -> localNames.add(v.getNameAsString()));
+        boolean usesMembers = method.findAll(NameExpr.class).stream()
+                .anyMatch(name -> memberNames.contains(name.getNameAsString()) && !localNames.contains(name.getNameAsString()));
+        boolean usesNestedTypes = method.findAll(ClassOrInterfaceType.class).stream()
+                .anyMatch(type -> memberNames.contains(type.getNameAsString()));
+        return !usesMembers && !usesNestedTypes;
+    }
+}
@@ -1,14 +1,14 @@
 package io.github.satsuki942.unifiedclassbuilder;
-import io.github.satsuki942.util.AstUtil;
+import io.github.satsuki942.TransformOptions;
 
-import java.util.List;
-
-import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.NodeList;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.ast.expr.AssignExpr;
+import com.github.javaparser.ast.expr.Expression;
 import com.github.javaparser.ast.expr.FieldAccessExpr;
 import com.github.javaparser.ast.expr.IntegerLiteralExpr;
+import com.github.javaparser.ast.expr.MethodCallExpr;
 import com.github.javaparser.ast.expr.NameExpr;
 import com.github.javaparser.ast.expr.ThisExpr;
 import com.github.javaparser.ast.stmt.BlockStmt;
@@ -26,11 +26,42 @@ import com.github.javaparser.ast.stmt.SwitchStmt;
 public class StateInfrastructureGenerator {
 
     private final ClassOrInterfaceDeclaration targetClass;
-    private final List<CompilationUnit> versionAsts;
+    private final ClassBuildContext context;
+    private final TransformOptions options;
+
+    public StateInfrastructureGenerator(ClassBuildContext context, TransformOptions options) {
+        this.targetClass = context.getTargetClass();
+        this.context = context;
+        this.options = options;
+    }
+
+    /**
+     * Builds the expression reading the current state of the unified object, e.g. {@code this.currentState}.
+     *
+     * @param options The emission options of the unified class.
+     * @return The expression evaluating to the current {@code IVersionBehavior}.
+     */
+    public static Expression readCurrentState(TransformOptions options) {
+        FieldAccessExpr field = new FieldAccessExpr(new ThisExpr(), "currentState");
+        if (options.getConcurrency() == TransformOptions.Concurrency.THREAD_LOCAL) {
+            return new MethodCallExpr(field, "get");
+        }
+        return field;
+    }
 
-    public StateInfrastructureGenerator(ClassOrInterfaceDeclaration targetClass, List<CompilationUnit> versionAsts) {
-        this.targetClass = targetClass;
-        this.versionAsts = versionAsts;
+    /**
+     * Builds the expression replacing the current state of the unified object, e.g. {@code this.currentState = value}.
+     *
+     * @param options The emission options of the unified class.
+     * @param value   The expression evaluating to the new {@code IVersionBehavior}.
+     * @return The expression storing {@code value} as the current state.
+     */
+    public static Expression writeCurrentState(TransformOptions options, Expression value) {
+        FieldAccessExpr field = new FieldAccessExpr(new ThisExpr(), "currentState");
+        if (options.getConcurrency() == TransformOptions.Concurrency.THREAD_LOCAL) {
+            return new MethodCallExpr(field, "set", new NodeList<>(value));
+        }
+        return new AssignExpr(field, value, AssignExpr.Operator.ASSIGN);
     }
 
     /**
@@ -48,29 +79,45 @@ public class StateInfrastructureGenerator {
         behaviorInterface.setInterface(true);
         behaviorInterface.setName("IVersionBehavior");
         behaviorInterface.setPrivate(true);
-        this.targetClass.addMember(behaviorInterface);
+        this.context.setBehaviorInterface(behaviorInterface);
         return behaviorInterface;
     }
 
     private void createImplClasses(ClassOrInterfaceDeclaration behaviorInterface) {
-        versionAsts.forEach(cu -> {
-            String versionSuffix = AstUtil.getVersionSuffix(cu).orElse("").toUpperCase();
+        for (int i = 0; i < context.getVersionCount(); i++) {
+            String versionSuffix = context.getVersionName(i).getStateSuffix();
             ClassOrInterfaceDeclaration implClass = new ClassOrInterfaceDeclaration();
             implClass.setName(versionSuffix + "_Impl");
-            implClass.setPrivate(true);
+            // Inlined field accesses reach into the implementations from other classes of the package
+            implClass.setPrivate(options.getFieldAccess() != TransformOptions.FieldAccess.INLINE);
             implClass.setStatic(true);
             implClass.addImplementedType(behaviorInterface.getNameAsString());
-            this.targetClass.addMember(implClass);
-        });
+            this.context.addInnerClass(implClass);
+        }
     }
 
     private void createStateFields() {
-        for (CompilationUnit versionCu : versionAsts) {
-            String versionSuffix = AstUtil.getVersionSuffix(versionCu).orElse("").toUpperCase();
+        for (int i = 0; i < context.getVersionCount(); i++) {
+            String versionSuffix = context.getVersionName(i).getStateSuffix();
             this.targetClass.addField(versionSuffix + "_Impl", versionSuffix.toLowerCase() + "_instance")
-                    .setPrivate(true).setFinal(true);
+                    .setPrivate(options.getFieldAccess() != TransformOptions.FieldAccess.INLINE).setFinal(true);
+        }
+        if (options.isClassWide()) {
+            // The current version is kept by ClassWideDispatchGenerator for the whole class
+            return;
+        }
+        switch (options.getConcurrency()) {
+            case VOLATILE:
+                // Volatile publishes the state written in the constructor and every switch to all threads
+                this.targetClass.addField("IVersionBehavior", "currentState").setPrivate(true).setVolatile(true);
+                break;
+            case THREAD_LOCAL:
+                // Each thread sees its own current version; initialized to the constructor's version on first use
+                this.targetClass.addField("ThreadLocal<IVersionBehavior>", "currentState").setPrivate(true).setFinal(true);
+                break;
+            default:
+                this.targetClass.addField("IVersionBehavior", "currentState").setPrivate(true);
         }
-        this.targetClass.addField("IVersionBehavior", "currentState").setPrivate(true);
     }
 
     private void createSwitchToVersionMethod() {
@@ -80,18 +127,23 @@ public class StateInfrastructureGenerator {
                 .setType("void")
                 .addParameter("int", "version");
 
+        if (options.isClassWide()) {
+            switchMethod.setBody(new BlockStmt().addStatement("__switchClassToVersion(version);"));
+            this.targetClass.addMember(switchMethod);
+            return;
+        }
+
         SwitchStmt switchStmt = new SwitchStmt();
         switchStmt.setSelector(new NameExpr("version"));
 
-        for (int i = 0; i < versionAsts.size(); i++) {
-            String versionSuffix = AstUtil.getVersionSuffix(versionAsts.get(i)).orElse("v" + (i + 1)).toLowerCase();
+        for (int i = 0; i < context.getVersionCount(); i++) {
+            String versionSuffix = context.getVersionName(i).isVersioned() ? context.getVersionName(i).getVersionSuffix() : "v" + (i + 1);
             int versionNumber = Integer.parseInt(versionSuffix.replace("v", ""));
 
             // this.currentState = this.vX_instance; という代入式
-            AssignExpr assignExpr = new AssignExpr(
-                    new FieldAccessExpr(new ThisExpr(), "currentState"),
-                    new FieldAccessExpr(new ThisExpr(), versionSuffix + "_instance"),
-                    AssignExpr.Operator.ASSIGN
+            Expression assignExpr = writeCurrentState(
+                    this.options,
+                    new FieldAccessExpr(new ThisExpr(), versionSuffix + "_instance")
             );
 
             // case X: ... break;
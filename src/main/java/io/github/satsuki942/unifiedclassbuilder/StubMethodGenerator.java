@@ -6,15 +6,17 @@ import java.util.stream.Collectors;
 
 import com.github.javaparser.ast.Modifier;
 import com.github.javaparser.ast.NodeList;
-import com.github.javaparser.ast.body.BodyDeclaration;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.ast.expr.FieldAccessExpr;
 import com.github.javaparser.ast.expr.MethodCallExpr;
 import com.github.javaparser.ast.expr.ThisExpr;
 import com.github.javaparser.ast.stmt.BlockStmt;
+import com.github.javaparser.ast.stmt.ExpressionStmt;
 import com.github.javaparser.ast.stmt.ReturnStmt;
 
+import io.github.satsuki942.TransformOptions;
+import io.github.satsuki942.analysis.VersionStateAnalysis;
 import io.github.satsuki942.symboltable.ClassInfo;
 import io.github.satsuki942.symboltable.MethodInfo;
 import io.github.satsuki942.symboltable.SymbolTable;
@@ -27,13 +29,21 @@ import io.github.satsuki942.symboltable.SymbolTable;
  */
 public class StubMethodGenerator {
     private final ClassOrInterfaceDeclaration targetClass;
+    private final ClassBuildContext context;
     private final SymbolTable symbolTable;
     private final String baseName;
+    private final TransformOptions options;
+    private final SharedMethodDetector sharedMethods;
+    private ClassWideDispatchGenerator classWideDispatch;
 
-    public StubMethodGenerator(ClassOrInterfaceDeclaration targetClass, SymbolTable symbolTable, String baseName) {
-        this.targetClass = targetClass;
+    public StubMethodGenerator(ClassBuildContext context, SymbolTable symbolTable,
+                               TransformOptions options, SharedMethodDetector sharedMethods) {
+        this.targetClass = context.getTargetClass();
+        this.context = context;
         this.symbolTable = symbolTable;
-        this.baseName = baseName;
+        this.baseName = context.getBaseName();
+        this.options = options;
+        this.sharedMethods = sharedMethods;
     }
 
     /**
@@ -43,8 +53,11 @@ public class StubMethodGenerator {
         ClassInfo classInfo = symbolTable.lookupClass(baseName);
         if (classInfo == null) return;
 
-        ClassOrInterfaceDeclaration behaviorInterface = findBehaviorInterface();
-        if (behaviorInterface == null) return;
+        ClassOrInterfaceDeclaration behaviorInterface = context.getBehaviorInterface();
+        if (behaviorInterface == null) {
+            System.err.println("Error: Could not find IVersionBehavior interface.");
+            return;
+        }
 
         // 1. Group all methods by their signature
         Map<String, List<MethodInfo>> methodsBySignature = classInfo.getMethods().values().stream()
@@ -54,9 +67,15 @@ public class StubMethodGenerator {
                 ));
 
         // 2. Generate stubs for each group
+        if (this.options.isClassWide()) {
+            this.classWideDispatch = new ClassWideDispatchGenerator(this.targetClass);
+        }
         for (List<MethodInfo> overloads : methodsBySignature.values()) {
             generateStubFor(overloads, behaviorInterface);
         }
+        if (this.classWideDispatch != null) {
+            this.classWideDispatch.generate();
+        }
     }
 
     private void generateStubFor(List<MethodInfo> overloads, ClassOrInterfaceDeclaration behaviorInterface) {
@@ -64,10 +83,27 @@ public class StubMethodGenerator {
         MethodDeclaration stub = createMethodStubSignature(firstOverload);
         MethodCallExpr callExpr;
 
-        if (overloads.size() > 1) { // Ambiguous method defined in along multiple versions
+        if (this.sharedMethods.isShared(firstOverload)) { // Identical in all its versions: no dispatch needed
+            this.targetClass.addMember(this.sharedMethods.createSharedImplementation(firstOverload));
+            MethodCallExpr sharedCall = new MethodCallExpr(SharedMethodDetector.sharedName(stub.getNameAsString()));
+            if (this.options.isDevirtualizing()) {
+                // Devirtualized calls were resolved against the symbol table, which still lists every version
+                overloads.forEach(overload -> generateDirectEntryFor(overload, sharedCall));
+            }
+            callExpr = sharedCall;
+        } else if (overloads.size() > 1) { // Ambiguous method defined in along multiple versions
             behaviorInterface.addMember(createMethodStubSignature(firstOverload).setBody(null));
+            if (this.classWideDispatch != null) {
+                stub.setBody(this.classWideDispatch.createDispatchBody(stub, overloads));
+                this.targetClass.addMember(stub);
+                return;
+            }
+            if (this.options.isDevirtualizing()) {
+                overloads.forEach(overload -> generateDirectEntryFor(overload, new MethodCallExpr(
+                        new FieldAccessExpr(new ThisExpr(), "v" + overload.getVersion().toLowerCase() + "_instance"), overload.getName())));
+            }
             callExpr = new MethodCallExpr(
-                    new FieldAccessExpr(new ThisExpr(), "currentState"),
+                    StateInfrastructureGenerator.readCurrentState(this.options),
                     stub.getNameAsString()
             );
         } else { // Unambiguous method defined in a single version
@@ -89,20 +125,18 @@ public class StubMethodGenerator {
         this.targetClass.addMember(stub);
     }
 
-    // -- HELPER METHODS --
-    private ClassOrInterfaceDeclaration findBehaviorInterface() {
-        for (BodyDeclaration<?> member : this.targetClass.getMembers()) {
-            if (member.isClassOrInterfaceDeclaration()) {
-                ClassOrInterfaceDeclaration cid = member.asClassOrInterfaceDeclaration();
-                if (cid.isInterface() && "IVersionBehavior".equals(cid.getNameAsString())) {
-                    return cid;
-                }
-            }
-        }
-        System.err.println("Error: Could not find IVersionBehavior interface.");
-        return null;
+    // Direct entry for devirtualized calls: __v1_m(args) { return this.v1_instance.m(args); }
+    private void generateDirectEntryFor(MethodInfo overload, MethodCallExpr target) {
+        String versionSuffix = "v" + overload.getVersion().toLowerCase();
+        MethodDeclaration entry = createMethodStubSignature(overload);
+        entry.setName(VersionStateAnalysis.directEntryName(versionSuffix, overload.getName()));
+        MethodCallExpr callExpr = target.clone();
+        entry.getParameters().forEach(p -> callExpr.addArgument(p.getNameAsExpression()));
+        entry.setBody(new BlockStmt().addStatement(overload.getReturnType().equals("void") ? new ExpressionStmt(callExpr) : new ReturnStmt(callExpr)));
+        this.targetClass.addMember(entry);
     }
 
+    // -- HELPER METHODS --
     private MethodDeclaration createMethodStubSignature(MethodInfo methodInfo) {
         MethodDeclaration method = new MethodDeclaration();
         method.setName(methodInfo.getName());
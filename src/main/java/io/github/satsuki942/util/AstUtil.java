@@ -1,21 +1,30 @@
 package io.github.satsuki942.util;
 
 import java.util.Optional;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.NodeList;
+import com.github.javaparser.ast.body.CallableDeclaration;
+import com.github.javaparser.ast.body.Parameter;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.LambdaExpr;
+import com.github.javaparser.ast.expr.NameExpr;
+import com.github.javaparser.ast.expr.VariableDeclarationExpr;
+import com.github.javaparser.ast.stmt.BlockStmt;
+import com.github.javaparser.ast.stmt.CatchClause;
+import com.github.javaparser.ast.stmt.ForEachStmt;
+import com.github.javaparser.ast.stmt.ForStmt;
+import com.github.javaparser.ast.stmt.LocalClassDeclarationStmt;
+import com.github.javaparser.ast.stmt.Statement;
+import com.github.javaparser.ast.stmt.SwitchEntry;
+import com.github.javaparser.ast.stmt.TryStmt;
 
-public class AstUtil {
+import io.github.satsuki942.symboltable.VersionedName;
 
-    /**
-     * The regex pattern to identify and capture the base name and version number
-     * from a versioned class name (e.g., "MyClass__1__").<p>
-     * 
-     * - Group 1: (.+) captures the base name (e.g., "MyClass").<p>
-     * - Group 2: (\\d+) captures the version number (e.g., "1").
-     */
-    private static final Pattern VERSIONED_CLASS_PATTERN = Pattern.compile("(.+)__(\\d+)__$");
+public class AstUtil {
 
     /**
      * Private constructor to prevent instantiation.
@@ -24,16 +33,13 @@ public class AstUtil {
 
     /**
      * Checks if the primary type in a given CompilationUnit is a versioned class.
-     * A class is considered versioned if its name matches the VERSIONED_CLASS_PATTERN.
+     * A class is considered versioned if its name has the form "MyClass__1__".
      *
      * @param cu The CompilationUnit to check.
      * @return {@code true} if the primary type is versioned, {@code false} otherwise.
      */
     public static boolean isVersioned(CompilationUnit cu) {
-        return cu.getPrimaryType()
-                 .map(t -> t.getNameAsString())
-                 .map(name -> VERSIONED_CLASS_PATTERN.matcher(name).matches())
-                 .orElse(false);
+        return getVersionedName(cu).isVersioned();
     }
 
     /**
@@ -43,29 +49,112 @@ public class AstUtil {
      * @return An {@link Optional} containing the version suffix (like "v1") if found, otherwise an empty Optional.
      */
     public static Optional<String> getVersionSuffix(CompilationUnit cu) {
-        return getGroupName(cu, 2).map(numStr -> "v" + numStr);
+        VersionedName name = getVersionedName(cu);
+        return name.isVersioned() ? Optional.of(name.getVersionSuffix()) : Optional.empty();
+    }
+
+    /**
+     * Returns the base name of the primary type: "MyClass" for "MyClass__1__", or the type name itself for a normal class.
+     *
+     * @param cu The CompilationUnit to inspect.
+     * @return The base name, or an empty string if the CompilationUnit has no primary type.
+     */
+    public static String getBaseName(CompilationUnit cu) {
+        return getVersionedName(cu).getBaseName();
+    }
+
+    /**
+     * Returns the name of the public class declared in a CompilationUnit, which names its source file.
+     *
+     * @param cu The CompilationUnit to inspect.
+     * @return The name of the first public class, or {@code "UnknownClass"} if there is none.
+     */
+    public static String getPublicClassName(CompilationUnit cu) {
+        return cu.getTypes().stream()
+                 .filter(type -> type.isPublic() && type.isClassOrInterfaceDeclaration())
+                 .findFirst()
+                 .map(type -> type.getNameAsString())
+                 .orElse("UnknownClass");
     }
 
     /**
-     * Returns the compiled regex pattern used for identifying versioned classes.
+     * Returns the parsed {@link VersionedName} of the primary type.
      *
-     * @return The static {@link Pattern} instance.
+     * @param cu The CompilationUnit to inspect.
+     * @return The parsed name of the primary type; the name "" (not versioned) if there is no primary type.
      */
-    public static Pattern getVersionedClassPattern() {
-        return VERSIONED_CLASS_PATTERN;
+    public static VersionedName getVersionedName(CompilationUnit cu) {
+        return VersionedName.of(cu.getPrimaryTypeName().orElse(""));
     }
 
     /**
-     * A private helper to extract a specific capture group from the versioned class name.
+     * Checks whether a simple name refers to a local variable or parameter rather than to a field, by looking for
+     * a declaration of that name in the scopes enclosing it: earlier statements of the enclosing blocks and switch
+     * entries, for, for-each, try-with-resources and catch variables, and lambda, method and constructor parameters.
+     * The search goes on through local and anonymous classes, whose code can use the locals around them, and
+     * stops at the first class that is not local.
      *
-     * @param cu    The CompilationUnit to inspect.
-     * @param group The capture group number to extract (1 for base name, 2 for version number).
-     * @return An {@link Optional} containing the captured string group if the pattern matches, otherwise an empty Optional.
+     * @param name The name to resolve.
+     * @return {@code true} if a local variable or parameter of that name is in scope at {@code name}.
      */
-    private static Optional<String> getGroupName(CompilationUnit cu, int group) {
-        return cu.getPrimaryType().map(t -> t.getNameAsString()).flatMap(name -> {
-            Matcher matcher = VERSIONED_CLASS_PATTERN.matcher(name);
-            return Optional.ofNullable(matcher.matches() ? matcher.group(group) : null);
-        });
+    public static boolean isLocalVariable(NameExpr name) {
+        String id = name.getNameAsString();
+        Node child = name;
+        for (Node parent = name.getParentNode().orElse(null); parent != null; child = parent, parent = parent.getParentNode().orElse(null)) {
+            if (parent instanceof BlockStmt block && declaresBefore(block.getStatements(), child, id)) {
+                return true;
+            }
+            if (parent instanceof SwitchEntry entry && declaresBefore(entry.getStatements(), child, id)) {
+                return true;
+            }
+            if (parent instanceof VariableDeclarationExpr declaration && declaresBefore(declaration.getVariables(), child, id)) {
+                return true;
+            }
+            if (parent instanceof ForStmt forStmt && forStmt.getInitialization().stream().anyMatch(init -> declares(init, id))) {
+                return true;
+            }
+            if (parent instanceof ForEachStmt forEach && child != forEach.getIterable() && declares(forEach.getVariable(), id)) {
+                return true;
+            }
+            if (parent instanceof TryStmt tryStmt && tryStmt.getResources().stream().anyMatch(resource -> declares(resource, id))) {
+                return true;
+            }
+            if (parent instanceof CatchClause catchClause && catchClause.getParameter().getNameAsString().equals(id)) {
+                return true;
+            }
+            if (parent instanceof LambdaExpr lambda && hasParameter(lambda.getParameters(), id)) {
+                return true;
+            }
+            if (parent instanceof CallableDeclaration<?> callable && hasParameter(callable.getParameters(), id)) {
+                return true;
+            }
+            if (parent instanceof TypeDeclaration<?> && !(parent.getParentNode().orElse(null) instanceof LocalClassDeclarationStmt)) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    // Whether one of the nodes before the given child declares the name (for the variables of a declaration, itself too)
+    private static boolean declaresBefore(NodeList<? extends Node> nodes, Node child, String id) {
+        for (Node node : nodes) {
+            if (node instanceof VariableDeclarator var) {
+                if (var.getNameAsString().equals(id)) return true;
+            } else if (node instanceof Statement statement && statement.isExpressionStmt()
+                    && declares(statement.asExpressionStmt().getExpression(), id)) {
+                return true;
+            }
+            if (node == child) break;
+        }
+        return false;
+    }
+
+    private static boolean declares(Expression expression, String id) {
+        return expression.isVariableDeclarationExpr() && expression.asVariableDeclarationExpr().getVariables().stream()
+                .anyMatch(var -> var.getNameAsString().equals(id));
+    }
+
+    private static boolean hasParameter(NodeList<Parameter> parameters, String id) {
+        return parameters.stream().anyMatch(parameter -> parameter.getNameAsString().equals(id));
     }
 }
@@ -0,0 +1,175 @@
+package io.github.satsuki942.util;
+
+import java.io.PrintStream;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Writes log messages to the console for {@link Logger}.<p>
+ *
+ * The asynchronous sink copies each message into a bounded ring buffer and returns; a daemon thread
+ * drains the buffer in batches and does the actual console I/O. A full buffer blocks the logging
+ * thread instead of dropping messages. {@link #DIRECT} writes on the calling thread. A stopped sink
+ * writes its remaining messages, ends its writer thread and then writes on the calling thread.
+ */
+class AsyncLogSink {
+
+    /** A sink that writes on the calling thread. */
+    static final AsyncLogSink DIRECT = new AsyncLogSink(0);
+
+    private static final int CAPACITY = 1024;
+
+    private final String[] messages;
+    private final boolean[] toError;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final Condition drained = lock.newCondition();
+
+    // Sequence numbers of the next slot to publish and the next slot to write; slot = sequence % capacity
+    private long published;
+    private long written;
+    private boolean stopped;
+
+    private Thread writer;
+    private Thread flushHook;
+
+    private AsyncLogSink(int capacity) {
+        this.messages = new String[capacity];
+        this.toError = new boolean[capacity];
+    }
+
+    /**
+     * Creates an asynchronous sink and starts its writer thread.
+     * Messages still buffered when the JVM exits are written by a shutdown hook.
+     * @return The started sink
+     */
+    static AsyncLogSink start() {
+        AsyncLogSink sink = new AsyncLogSink(CAPACITY);
+        sink.writer = new Thread(sink::drainLoop, "mvo-log-writer");
+        sink.writer.setDaemon(true);
+        sink.writer.start();
+        sink.flushHook = new Thread(sink::flush, "mvo-log-flush");
+        Runtime.getRuntime().addShutdownHook(sink.flushHook);
+        return sink;
+    }
+
+    /**
+     * Writes every buffered message, then ends the writer thread and removes the shutdown hook.
+     * Messages written afterwards go to the console on the calling thread.
+     */
+    void stop() {
+        if (this == DIRECT) {
+            return;
+        }
+        lock.lock();
+        try {
+            stopped = true;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(flushHook);
+        } catch (IllegalStateException e) {
+            // Already shutting down: the hook flushes a sink that is empty by now
+        }
+    }
+
+    /**
+     * Writes a message, or enqueues it for the writer thread.
+     * @param error {@code true} to write to {@code System.err} instead of {@code System.out}
+     * @param message The complete line to write
+     */
+    void write(boolean error, String message) {
+        if (this == DIRECT) {
+            (error ? System.err : System.out).println(message);
+            return;
+        }
+        lock.lock();
+        try {
+            if (stopped) {
+                (error ? System.err : System.out).println(message);
+                return;
+            }
+            while (published - written == messages.length) {
+                notFull.awaitUninterruptibly();
+            }
+            int slot = (int) (published % messages.length);
+            messages[slot] = message;
+            toError[slot] = error;
+            published++;
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Blocks until every message enqueued before the call has been written.
+     */
+    void flush() {
+        if (this == DIRECT) {
+            return;
+        }
+        lock.lock();
+        try {
+            long target = published;
+            while (written < target) {
+                drained.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+        System.out.flush();
+        System.err.flush();
+    }
+
+    private void drainLoop() {
+        String[] batch = new String[messages.length];
+        boolean[] batchToError = new boolean[messages.length];
+        while (true) {
+            int count;
+            lock.lock();
+            try {
+                while (published == written && !stopped) {
+                    notEmpty.awaitUninterruptibly();
+                }
+                if (published == written) {
+                    return;
+                }
+                count = (int) (published - written);
+                for (int i = 0; i < count; i++) {
+                    int slot = (int) ((written + i) % messages.length);
+                    batch[i] = messages[slot];
+                    batchToError[i] = toError[slot];
+                    messages[slot] = null;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            for (int i = 0; i < count; i++) {
+                PrintStream out = batchToError[i] ? System.err : System.out;
+                out.println(batch[i]);
+                batch[i] = null;
+            }
+            System.out.flush();
+            System.err.flush();
+
+            lock.lock();
+            try {
+                written += count;
+                notFull.signalAll();
+                drained.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package io.github.satsuki942.util;
+
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Waits on blocking queues without giving up on an interrupt, for the hand-offs between the threads of one
+ * transformation. Their consumers always drain the queues, so a wait cannot hang; an interrupt is restored
+ * once the wait is over, so the caller can still act on it.
+ */
+public final class BlockingQueues {
+
+    private BlockingQueues() {}
+
+    /**
+     * Takes the head of a queue, waiting until one is available.
+     *
+     * @param queue The queue to take from.
+     * @return The head of the queue.
+     */
+    public static <T> T takeUninterruptibly(BlockingQueue<T> queue) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return queue.take();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Adds an element to a queue, waiting until there is room for it.
+     *
+     * @param queue   The queue to add to.
+     * @param element The element to add.
+     */
+    public static <T> void putUninterruptibly(BlockingQueue<T> queue, T element) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    queue.put(element);
+                    return;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,43 +1,162 @@
 package io.github.satsuki942.util;
 
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * A per-class logger with lazily built messages.<p>
+ *
+ * Messages are passed as {@link Supplier}s and only built when their level is enabled, so debug
+ * instrumentation costs a level check when logging is off. Levels are configured per package with
+ * system properties, and enabled messages are written by an {@link AsyncLogSink} off the calling thread.
+ *
+ * <pre>
+ *   -Ddebug=true                                  every level for every class
+ *   -Dlog.level=SUCCESS                           default level
+ *   -Dlog.level.io.github.satsuki942.compiler=DEBUG  level for a package (or class) and its subpackages
+ *   -Dlog.async=false                             write on the calling thread
+ * </pre>
+ */
 public class Logger {
-    public static boolean DEBUG_MODE = false;
+
+    /** Message levels, from the most to the least verbose. */
+    public enum Level { DEBUG, SUCCESS, ERROR, OFF }
+
+    private static final String LEVEL_PROPERTY = "log.level";
+    private static final Map<String, Logger> LOGGERS = new ConcurrentHashMap<>();
+
+    // The default level and the per-package overrides, keyed by package or class name
+    private static volatile Level defaultLevel = Level.OFF;
+    private static volatile Map<String, Level> packageLevels = Map.of();
+    private static volatile AsyncLogSink sink = AsyncLogSink.DIRECT;
+
+    private final String name;
+    private volatile Level threshold;
+
+    private Logger(String name) {
+        this.name = name;
+        this.threshold = resolveLevel(name);
+    }
 
     /**
-     * Outputs a debug message to the console if DEBUG_MODE is enabled.
-     * @param message The message to output
+     * Returns the logger of a class, creating it on first use.
+     * @param owner The class whose messages are logged
+     * @return The shared logger of the class
      */
-    public static void debugLog(String message) {
-        if (DEBUG_MODE) {
-            System.out.println("[LOG]     " + message);
-        }
+    public static Logger get(Class<?> owner) {
+        return LOGGERS.computeIfAbsent(owner.getName(), Logger::new);
     }
 
     /**
-     * Outputs a success message to the console.
-     * @param message The success message to output
+     * (Re)configures the levels and the sink from the given properties, typically {@code System.getProperties()}.
+     * Loggers created earlier pick up their new level.
+     * @param properties The properties holding the {@code debug}, {@code log.level*} and {@code log.async} keys
      */
-    public static void successLog(String message) {
-        if (DEBUG_MODE) {
-            System.out.println("[SUCCESS] " + message);
+    public static synchronized void configure(Properties properties) {
+        Level rootLevel = "true".equalsIgnoreCase(properties.getProperty("debug")) ? Level.DEBUG : Level.OFF;
+        Map<String, Level> levels = new TreeMap<>();
+        for (String key : properties.stringPropertyNames()) {
+            if (key.equals(LEVEL_PROPERTY)) {
+                rootLevel = parseLevel(key, properties.getProperty(key), rootLevel);
+            } else if (key.startsWith(LEVEL_PROPERTY + ".")) {
+                String prefix = key.substring(LEVEL_PROPERTY.length() + 1);
+                levels.put(prefix, parseLevel(key, properties.getProperty(key), Level.OFF));
+            }
+        }
+        defaultLevel = rootLevel;
+        packageLevels = Map.copyOf(levels);
+        LOGGERS.values().forEach(logger -> logger.threshold = resolveLevel(logger.name));
+
+        boolean async = !"false".equalsIgnoreCase(properties.getProperty("log.async"));
+        AsyncLogSink previous = sink;
+        if (async && previous == AsyncLogSink.DIRECT) {
+            sink = AsyncLogSink.start();
+        } else if (!async && previous != AsyncLogSink.DIRECT) {
+            sink = AsyncLogSink.DIRECT;
+            previous.stop();
         }
     }
 
     /**
-     * Outputs an error message to the console.
-     * @param message The error message to output
+     * Blocks until every message logged so far has been written.
+     * Call it before handing the console to another writer, e.g. a child process.
      */
-    public static void errorLog(String message) {
-        if (DEBUG_MODE) {
-            System.err.println("[ERROR]   " + message);
-        }
+    public static void flush() {
+        sink.flush();
     }
 
     /**
-     * Outputs a general log message to the console.
+     * Outputs a general message (e.g. program output banners) regardless of the configured levels.
+     * It goes through the same sink as the leveled messages, so the order of the two is kept.
      * @param message The message to output
      */
     public static void Log(String message) {
-        System.out.println(message);
+        sink.write(false, message);
+    }
+
+    /**
+     * Checks whether messages of a level are written by this logger.
+     * @param level The level to check
+     * @return {@code true} if messages of {@code level} are enabled
+     */
+    public boolean isEnabled(Level level) {
+        return level.compareTo(threshold) >= 0 && level != Level.OFF;
+    }
+
+    /**
+     * Outputs a debug message if DEBUG is enabled for this logger.
+     * @param message Builds the message; not called when the level is disabled
+     */
+    public void debug(Supplier<String> message) {
+        if (isEnabled(Level.DEBUG)) {
+            sink.write(false, "[LOG]     " + message.get());
+        }
+    }
+
+    /**
+     * Outputs a success message if SUCCESS is enabled for this logger.
+     * @param message Builds the message; not called when the level is disabled
+     */
+    public void success(Supplier<String> message) {
+        if (isEnabled(Level.SUCCESS)) {
+            sink.write(false, "[SUCCESS] " + message.get());
+        }
+    }
+
+    /**
+     * Outputs an error message to the error stream if ERROR is enabled for this logger.
+     * @param message Builds the message; not called when the level is disabled
+     */
+    public void error(Supplier<String> message) {
+        if (isEnabled(Level.ERROR)) {
+            sink.write(true, "[ERROR]   " + message.get());
+        }
+    }
+
+    // The level of the longest configured package (or class) prefix of the name
+    private static Level resolveLevel(String className) {
+        Level level = defaultLevel;
+        int matchedLength = -1;
+        for (Map.Entry<String, Level> entry : packageLevels.entrySet()) {
+            String prefix = entry.getKey();
+            boolean matches = className.equals(prefix) || className.startsWith(prefix + ".");
+            if (matches && prefix.length() > matchedLength) {
+                level = entry.getValue();
+                matchedLength = prefix.length();
+            }
+        }
+        return level;
+    }
+
+    private static Level parseLevel(String key, String value, Level fallback) {
+        try {
+            return Level.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Error: invalid value '" + value + "' for " + key + "; using " + fallback);
+            return fallback;
+        }
     }
 }
@@ -2,12 +2,12 @@ package io.github.satsuki942;
 
 import com.github.javaparser.StaticJavaParser;
 import com.github.javaparser.ast.CompilationUnit;
+import io.github.satsuki942.compiler.CompilerSession;
+import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.DynamicTest;
 import org.junit.jupiter.api.TestFactory;
 
-import javax.tools.JavaCompiler;
-import javax.tools.ToolProvider;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
@@ -17,16 +17,24 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class MyLangTransformerTest {
 
-    private final MyLangTransformer transformer = new MyLangTransformer();
     private static final Path SAMPLES_ROOT = Paths.get("src/test/resources/mylang_samples");
     private static final Path EXPECTED_ROOT = Paths.get("src/test/resources/expected_output");
     private static final Path TEMP_BUILD_ROOT = Paths.get("target/test-builds");
 
+    // One warm compiler shared by all test cases
+    private static final CompilerSession COMPILER = new CompilerSession();
+
+    @AfterAll
+    static void closeCompiler() {
+        COMPILER.close();
+    }
+
     @TestFactory
     Stream<DynamicTest> runAllTestCases() throws IOException {
         // 1. Get the root directory for test cases
@@ -56,16 +64,17 @@ public class MyLangTransformerTest {
                 });
     }
 
-    // Condoucts the transpilation, compilation, execution, and output verification for a single test case.
+    // Conducts the transpilation, compilation, execution, and output verification for a single test case.
     private void executeAndVerify(Path inputDir) throws IOException, InterruptedException {
         // --- 1. Transpilation ---
         List<CompilationUnit> sourceAsts = parseDirectory(inputDir);
+        MyLangTransformer transformer = new MyLangTransformer(TransformOptions.load(inputDir));
         List<CompilationUnit> transpiledAsts = transformer.transform(sourceAsts);
 
         // --- 2. Write transpiled Java programs to temporary directory ---
         Path tempBuildDir = TEMP_BUILD_ROOT.resolve(SAMPLES_ROOT.relativize(inputDir));
         Files.createDirectories(tempBuildDir);
-        List<String> javaFilePaths = new ArrayList<>();
+        List<Path> javaFilePaths = new ArrayList<>();
 
         for (CompilationUnit cu : transpiledAsts) {
             String packageName = cu.getPackageDeclaration().map(pd -> pd.getName().asString()).orElse("");
@@ -74,19 +83,20 @@ public class MyLangTransformerTest {
                         .findFirst()
                         .map(type -> type.getNameAsString())
                         .orElse("UnknownClass");
-            
+
             Path packageDir = tempBuildDir.resolve(packageName.replace('.', File.separatorChar));
             Files.createDirectories(packageDir);
             Path outputFile = packageDir.resolve(className + ".java");
-            
+
             Files.writeString(outputFile, cu.toString());
-            javaFilePaths.add(outputFile.toString());
+            javaFilePaths.add(outputFile);
         }
 
         // --- 3. Compilation ---
-        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
-        int compilationResult = compiler.run(null, null, null, javaFilePaths.toArray(new String[0]));
-        Assertions.assertEquals(0, compilationResult, "Compilation failed for test case: " + inputDir);
+        CompilerSession.CompilationResult result = COMPILER.compile(
+                new CompilerSession.CompilationJob(javaFilePaths, List.of(), Set.of()));
+        Assertions.assertTrue(result.isSuccess(),
+                "Compilation failed for test case: " + inputDir + System.lineSeparator() + result.getDiagnostics());
 
         // --- 4. Execution & Output Capture ---
         String mainClassName = "sample.Main";
@@ -131,4 +141,4 @@ public class MyLangTransformerTest {
         }
         return asts;
     }
-}
\ No newline at end of file
+}
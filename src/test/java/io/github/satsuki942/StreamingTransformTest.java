@@ -0,0 +1,70 @@
+package io.github.satsuki942;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import io.github.satsuki942.output.SourceSink;
+import io.github.satsuki942.symboltable.SymbolTable;
+import io.github.satsuki942.symboltable.SymbolTableSnapshot;
+import io.github.satsuki942.util.AstUtil;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.TestFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// The streaming transformation must generate exactly the sources of the in-memory transformation.
+public class StreamingTransformTest {
+
+    private static final Path SAMPLES_ROOT = Paths.get("src/test/resources/mylang_samples");
+
+    @TestFactory
+    Stream<DynamicTest> streamingMatchesInMemoryTransformation() throws IOException {
+        List<Path> testCaseDirs;
+        try (Stream<Path> dirs = Files.walk(SAMPLES_ROOT)) {
+            testCaseDirs = dirs.filter(Files::isDirectory).filter(StreamingTransformTest::hasJavaFiles).collect(Collectors.toList());
+        }
+        return testCaseDirs.stream().map(dir -> DynamicTest.dynamicTest("TestCase: " + SAMPLES_ROOT.relativize(dir), () -> {
+            List<Path> files;
+            try (Stream<Path> paths = Files.list(dir)) {
+                files = paths.filter(p -> p.toString().endsWith(".java")).sorted().collect(Collectors.toList());
+            }
+            // The streaming transformation never sees the whole program, so it cannot eliminate dead code or devirtualize
+            MyLangTransformer transformer = new MyLangTransformer(
+                    TransformOptions.load(dir).setEliminateDeadCode(false).setDevirtualize(false));
+            SymbolTable symbolTable = transformer.analyzeFiles(files);
+
+            Map<String, String> streamed = new TreeMap<>();
+            SourceSink sink = cu -> streamed.put(AstUtil.getPublicClassName(cu), cu.toString());
+            transformer.transformFiles(files, symbolTable, sink);
+
+            List<CompilationUnit> asts = new ArrayList<>();
+            for (Path file : files) {
+                asts.add(StaticJavaParser.parse(file));
+            }
+            // Both STEP1 paths build and merge the same fragments
+            Assertions.assertEquals(SymbolTableSnapshot.encode(transformer.analyze(asts)), SymbolTableSnapshot.encode(symbolTable));
+
+            Map<String, String> inMemory = new TreeMap<>();
+            transformer.transform(asts, symbolTable).forEach(cu -> inMemory.put(AstUtil.getPublicClassName(cu), cu.toString()));
+
+            Assertions.assertEquals(inMemory, streamed);
+        }));
+    }
+
+    private static boolean hasJavaFiles(Path dir) {
+        try (Stream<Path> entries = Files.list(dir)) {
+            return entries.anyMatch(p -> p.toString().endsWith(".java"));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package io.github.satsuki942;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import io.github.satsuki942.symboltable.ClassInfo;
+import io.github.satsuki942.symboltable.SymbolTable;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class SymbolTableBuilderVisitorTest {
+
+    private static final Path SAMPLES_ROOT = Paths.get("src/test/resources/mylang_samples");
+
+    @Test
+    void concurrentBuildMatchesSerialBuild() throws IOException {
+        // Analyze all samples together so that many fragments of the same base name have to be merged
+        List<CompilationUnit> asts = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(SAMPLES_ROOT)) {
+            for (Path file : paths.filter(p -> p.toString().endsWith(".java")).sorted().collect(Collectors.toList())) {
+                asts.add(StaticJavaParser.parse(file));
+            }
+        }
+
+        SymbolTable serial = new SymbolTable();
+        SymbolTableBuilderVisitor visitor = new SymbolTableBuilderVisitor();
+        asts.forEach(cu -> visitor.visit(cu, serial));
+
+        SymbolTable concurrent = SymbolTableBuilderVisitor.buildConcurrently(asts);
+
+        Assertions.assertEquals(describe(serial), describe(concurrent));
+    }
+
+    // -- HELPER METHODS --
+    private static Map<String, String> describe(SymbolTable symbolTable) {
+        Map<String, String> description = new TreeMap<>();
+        for (ClassInfo classInfo : symbolTable.getClasses()) {
+            StringBuilder sb = new StringBuilder().append(classInfo.isVersioned()).append('\n');
+            new TreeMap<>(classInfo.getMethods()).forEach((name, overloads) -> overloads.forEach(m ->
+                sb.append(m.getName()).append(m.getParameterTypes()).append(':').append(m.getReturnType())
+                  .append(':').append(m.getVersion()).append(':').append(new TreeMap<>(m.getVariables())).append('\n')));
+            new TreeMap<>(classInfo.getFields()).forEach((name, fields) -> fields.forEach(f ->
+                sb.append(f.getName()).append(':').append(f.getType()).append(':').append(f.getVersion()).append('\n')));
+            description.put(classInfo.getBaseName(), sb.toString());
+        }
+        return description;
+    }
+}
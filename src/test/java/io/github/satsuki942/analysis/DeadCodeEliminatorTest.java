@@ -0,0 +1,75 @@
+package io.github.satsuki942.analysis;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import io.github.satsuki942.SymbolTableBuilderVisitor;
+import io.github.satsuki942.symboltable.ClassInfo;
+import io.github.satsuki942.symboltable.SymbolTable;
+import io.github.satsuki942.util.AstUtil;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+public class DeadCodeEliminatorTest {
+
+    private static final Path SAMPLE = Paths.get("src/test/resources/mylang_samples/features/prune_01");
+    private static final Path SIDE_EFFECT_SAMPLE = Paths.get("src/test/resources/mylang_samples/features/prune_02");
+
+    @Test
+    void removesUnreachableVersionsAndMethods() throws IOException {
+        List<CompilationUnit> asts = parseSample(SAMPLE);
+        SymbolTable symbolTable = SymbolTableBuilderVisitor.buildConcurrently(asts);
+        DeadCodeEliminator eliminator = new DeadCodeEliminator(asts, symbolTable);
+
+        Assertions.assertTrue(eliminator.isVersionReachable("Shape", "v1"));
+        Assertions.assertFalse(eliminator.isVersionReachable("Shape", "v2"));
+        // Never switched to, but creating it prints a line
+        Assertions.assertTrue(eliminator.isVersionReachable("Shape", "v3"));
+        Assertions.assertTrue(eliminator.isMethodReachable("Shape", "v1", "describe"));
+        Assertions.assertFalse(eliminator.isMethodReachable("Shape", "v1", "unused"));
+        Assertions.assertFalse(eliminator.isMethodReachable("Shape", "v3", "legacy"));
+
+        List<CompilationUnit> versions = asts.stream().filter(AstUtil::isVersioned).collect(Collectors.toList());
+        List<CompilationUnit> pruned = eliminator.prune("Shape", versions);
+        Assertions.assertEquals(List.of("v1", "v3"),
+                pruned.stream().map(cu -> AstUtil.getVersionSuffix(cu).orElse("")).collect(Collectors.toList()));
+
+        ClassInfo shape = eliminator.getPrunedSymbolTable().lookupClass("Shape");
+        Assertions.assertFalse(shape.getMethods().containsKey("perimeter"));
+        Assertions.assertFalse(shape.getFields().containsKey("radius"));
+        Assertions.assertEquals(2, shape.getMethods().get("area").size());
+        // The original symbol table is left untouched
+        Assertions.assertTrue(symbolTable.lookupClass("Shape").getMethods().containsKey("perimeter"));
+    }
+
+    @Test
+    void keepsVersionsWritingOutsideThemselves() throws IOException {
+        List<CompilationUnit> asts = parseSample(SIDE_EFFECT_SAMPLE);
+        DeadCodeEliminator eliminator = new DeadCodeEliminator(asts, SymbolTableBuilderVisitor.buildConcurrently(asts));
+
+        // Never switched to, but creating Item__2__ increments a static field and creating Item__3__ writes an array element
+        Assertions.assertTrue(eliminator.isVersionReachable("Item", "v1"));
+        Assertions.assertTrue(eliminator.isVersionReachable("Item", "v2"));
+        Assertions.assertTrue(eliminator.isVersionReachable("Item", "v3"));
+        Assertions.assertFalse(eliminator.isMethodReachable("Item", "v2", "id"));
+    }
+
+    // -- HELPER METHODS --
+    private static List<CompilationUnit> parseSample(Path sample) throws IOException {
+        List<CompilationUnit> asts = new ArrayList<>();
+        try (Stream<Path> paths = Files.list(sample)) {
+            for (Path file : paths.filter(p -> p.toString().endsWith(".java")).sorted().collect(Collectors.toList())) {
+                asts.add(StaticJavaParser.parse(file));
+            }
+        }
+        return asts;
+    }
+}
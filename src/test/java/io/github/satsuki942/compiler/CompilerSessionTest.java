@@ -0,0 +1,73 @@
+package io.github.satsuki942.compiler;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+
+// Checks how compileAll groups jobs into shared compilation tasks.
+public class CompilerSessionTest {
+
+    @TempDir
+    Path sourceRoot;
+
+    private final CompilerSession session = new CompilerSession();
+
+    @AfterEach
+    void closeSession() {
+        session.close();
+    }
+
+    @Test
+    void nonCollidingJobsShareOneTask() throws IOException {
+        CompilerSession.CompilationJob first = job("first", "Alpha", "public class Alpha {}");
+        CompilerSession.CompilationJob second = job("second", "Beta", "public class Beta {}");
+
+        List<CompilerSession.CompilationResult> results = session.compileAll(List.of(first, second));
+
+        Assertions.assertTrue(results.get(0).isSuccess(), () -> results.get(0).getDiagnostics().toString());
+        Assertions.assertSame(results.get(0), results.get(1), "Non-colliding jobs must be compiled in one task.");
+        Assertions.assertTrue(Files.exists(sourceRoot.resolve("first/Alpha.class")));
+        Assertions.assertTrue(Files.exists(sourceRoot.resolve("second/Beta.class")));
+    }
+
+    @Test
+    void collidingJobsAreCompiledSeparately() throws IOException {
+        CompilerSession.CompilationJob first = job("first", "Alpha", "public class Alpha { int one; }");
+        CompilerSession.CompilationJob second = job("second", "Alpha", "public class Alpha { int two; }");
+
+        List<CompilerSession.CompilationResult> results = session.compileAll(List.of(first, second));
+
+        Assertions.assertTrue(results.get(0).isSuccess(), () -> results.get(0).getDiagnostics().toString());
+        Assertions.assertTrue(results.get(1).isSuccess(), () -> results.get(1).getDiagnostics().toString());
+        Assertions.assertNotSame(results.get(0), results.get(1), "Jobs declaring the same class must not share a task.");
+    }
+
+    @Test
+    void failingSharedTaskFallsBackToOneTaskPerJob() throws IOException {
+        CompilerSession.CompilationJob valid = job("valid", "Alpha", "public class Alpha {}");
+        CompilerSession.CompilationJob broken = job("broken", "Beta", "public class Beta { Missing field; }");
+
+        List<CompilerSession.CompilationResult> results = session.compileAll(List.of(valid, broken));
+
+        Assertions.assertTrue(results.get(0).isSuccess(), "A valid job must not fail because of a job it was batched with.");
+        Assertions.assertTrue(results.get(0).getDiagnostics().isEmpty());
+        Assertions.assertFalse(results.get(1).isSuccess());
+        Assertions.assertTrue(results.get(1).getDiagnostics().stream()
+                .allMatch(d -> d.getSource().getName().endsWith("Beta.java")),
+                "The failing job must report only its own diagnostics.");
+    }
+
+    // -- HELPER METHODS --
+    private CompilerSession.CompilationJob job(String directory, String className, String source) throws IOException {
+        Path file = Files.createDirectories(sourceRoot.resolve(directory)).resolve(className + ".java");
+        Files.writeString(file, source);
+        return new CompilerSession.CompilationJob(List.of(file), List.of(), Set.of(className));
+    }
+}
@@ -0,0 +1,120 @@
+package io.github.satsuki942.compiler;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import io.github.satsuki942.MyLangTransformer;
+import io.github.satsuki942.TransformOptions;
+import io.github.satsuki942.symboltable.DependencyGraph;
+import io.github.satsuki942.symboltable.SymbolTable;
+import io.github.satsuki942.util.AstUtil;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Compiles a multi-class sample along its dependency graph on two threads, as App does with -Dcompile.threads=2,
+// and checks that the program behaves exactly as when compiled in a single task.
+public class ParallelCompilerTest {
+
+    private static final Path SAMPLE_DIR = Paths.get("src/test/resources/mylang_samples/features/constructor_02");
+    private static final Path EXPECTED_FILE = Paths.get("src/test/resources/expected_output/features/constructor_02/expected.txt");
+    private static final Path BUILD_ROOT = Paths.get("target/test-builds/parallel/constructor_02");
+
+    @TempDir
+    Path sourceRoot;
+
+    @Test
+    void twoThreadsMatchTheSingleTaskPath() throws IOException, InterruptedException {
+        List<CompilationUnit> asts = new ArrayList<>();
+        try (Stream<Path> paths = Files.list(SAMPLE_DIR)) {
+            for (Path file : paths.filter(p -> p.toString().endsWith(".java")).sorted().collect(Collectors.toList())) {
+                asts.add(StaticJavaParser.parse(file));
+            }
+        }
+        MyLangTransformer transformer = new MyLangTransformer(TransformOptions.load(SAMPLE_DIR));
+        SymbolTable symbolTable = transformer.analyze(asts);
+        List<CompilationUnit> transformed = transformer.transform(asts, symbolTable);
+
+        // --- 1. Single task ---
+        Path singleDir = BUILD_ROOT.resolve("single");
+        Map<String, Path> singleSources = write(transformed, singleDir);
+        try (CompilerSession session = new CompilerSession()) {
+            CompilerSession.CompilationResult result = session.compile(
+                    new CompilerSession.CompilationJob(List.copyOf(singleSources.values()), List.of(), Set.of()));
+            Assertions.assertTrue(result.isSuccess(), () -> result.getDiagnostics().toString());
+        }
+
+        // --- 2. Two threads along the dependency graph ---
+        Path parallelDir = BUILD_ROOT.resolve("parallel");
+        Map<String, Path> parallelSources = write(transformed, parallelDir);
+        Assertions.assertTrue(symbolTable.getDependencyGraph().getStronglyConnectedComponents().size() > 1,
+                "The sample must split into several groups.");
+        CompilerSession.CompilationResult result = new ParallelCompiler(2)
+                .compile(symbolTable.getDependencyGraph(), parallelSources, parallelDir, List.of());
+        Assertions.assertTrue(result.isSuccess(), () -> result.getDiagnostics().toString());
+
+        // --- 3. Same class files, same behavior ---
+        for (String className : parallelSources.keySet()) {
+            Assertions.assertTrue(Files.exists(parallelDir.resolve("sample").resolve(className + ".class")), className);
+        }
+        String expected = Files.readString(EXPECTED_FILE).trim();
+        Assertions.assertEquals(expected, run(singleDir));
+        Assertions.assertEquals(expected, run(parallelDir));
+    }
+
+    @Test
+    void levelsAfterAFailureAreSkipped() throws IOException {
+        DependencyGraph graph = new DependencyGraph();
+        graph.addClass("Base");
+        graph.addClass("User");
+        graph.addDependency("User", "Base");
+        Map<String, Path> sources = new LinkedHashMap<>();
+        sources.put("Base", source("Base", "public class Base { Missing broken; }"));
+        sources.put("User", source("User", "public class User { Base base; }"));
+
+        CompilerSession.CompilationResult result = new ParallelCompiler(2).compile(graph, sources, sourceRoot, List.of());
+
+        Assertions.assertFalse(result.isSuccess());
+        // User would only report the error of Base again
+        Assertions.assertEquals(1, result.getDiagnostics().size(), () -> result.getDiagnostics().toString());
+        Assertions.assertTrue(result.getDiagnostics().get(0).getSource().getName().endsWith("Base.java"));
+        Assertions.assertFalse(Files.exists(sourceRoot.resolve("User.class")));
+    }
+
+    // -- HELPER METHODS --
+    private static Map<String, Path> write(List<CompilationUnit> units, Path root) throws IOException {
+        Map<String, Path> sources = new LinkedHashMap<>();
+        for (CompilationUnit cu : units) {
+            String className = AstUtil.getPublicClassName(cu);
+            Path packageDir = Files.createDirectories(root.resolve("sample"));
+            Path file = packageDir.resolve(className + ".java");
+            Files.writeString(file, cu.toString());
+            sources.put(className, file);
+        }
+        return sources;
+    }
+
+    private Path source(String className, String text) throws IOException {
+        Path file = sourceRoot.resolve(className + ".java");
+        Files.writeString(file, text);
+        return file;
+    }
+
+    private static String run(Path classpath) throws IOException, InterruptedException {
+        Process process = new ProcessBuilder("java", "-cp", classpath.toString(), "sample.Main").start();
+        String output = new String(process.getInputStream().readAllBytes());
+        Assertions.assertEquals(0, process.waitFor(), "Runtime execution failed.");
+        return output.trim();
+    }
+}
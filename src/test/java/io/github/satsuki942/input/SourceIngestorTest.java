@@ -0,0 +1,75 @@
+package io.github.satsuki942.input;
+
+import com.github.javaparser.ParseProblemException;
+import com.github.javaparser.StaticJavaParser;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Ingests the sample tree concurrently and checks the result against parsing the files one at a time.
+public class SourceIngestorTest {
+
+    private static final Path SAMPLES_ROOT = Paths.get("src/test/resources/mylang_samples");
+    private static final Path BUILD_ROOT = Paths.get("target/test-builds/ingest");
+
+    @Test
+    void ingestsLikeSerialParsingInPathOrder() throws IOException {
+        List<Path> expectedFiles;
+        try (Stream<Path> paths = Files.walk(SAMPLES_ROOT)) {
+            expectedFiles = paths.filter(p -> p.toString().endsWith(".java")).sorted().collect(Collectors.toList());
+        }
+
+        SourceIngestor.IngestionResult result = new SourceIngestor(4).ingest(SAMPLES_ROOT);
+
+        Assertions.assertEquals(expectedFiles, result.getFiles());
+        for (int i = 0; i < expectedFiles.size(); i++) {
+            Path file = expectedFiles.get(i);
+            Assertions.assertEquals(StaticJavaParser.parse(file), result.getCompilationUnits().get(i), file.toString());
+            Assertions.assertEquals(StaticJavaParser.parse(file).getStorage().get().getPath(), result.getCompilationUnits().get(i).getStorage().get().getPath());
+        }
+        Assertions.assertEquals(expectedFiles.stream().mapToLong(SourceIngestorTest::size).sum(), result.getBytes());
+    }
+
+    @Test
+    void largeFilesAreMemoryMapped() throws IOException {
+        Path dir = Files.createDirectories(BUILD_ROOT.resolve("large"));
+        StringBuilder source = new StringBuilder("public class Large {\n");
+        for (int i = 0; source.length() <= SourceIngestor.BUFFER_SIZE; i++) {
+            source.append("    int field").append(i).append(" = ").append(i).append("; // ünïcödé\n");
+        }
+        Files.writeString(dir.resolve("Large.java"), source.append("}\n"));
+        Files.writeString(dir.resolve("Small.java"), "class Small { }\n");
+
+        SourceIngestor.IngestionResult result = new SourceIngestor(1).ingest(dir);
+
+        Assertions.assertEquals(1, result.getMappedFiles());
+        Assertions.assertEquals(StaticJavaParser.parse(dir.resolve("Large.java")), result.getCompilationUnits().get(0));
+        Assertions.assertEquals(StaticJavaParser.parse(dir.resolve("Small.java")), result.getCompilationUnits().get(1));
+    }
+
+    @Test
+    void failuresAreReported() throws IOException {
+        Path dir = Files.createDirectories(BUILD_ROOT.resolve("broken"));
+        Files.writeString(dir.resolve("Broken.java"), "class Broken { void m( }\n");
+
+        Assertions.assertThrows(ParseProblemException.class, () -> new SourceIngestor(2).ingest(dir));
+        Assertions.assertThrows(IOException.class, () -> new SourceIngestor(2).ingest(BUILD_ROOT.resolve("missing")));
+    }
+
+    // -- HELPER METHODS --
+    private static long size(Path file) {
+        try {
+            return Files.size(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
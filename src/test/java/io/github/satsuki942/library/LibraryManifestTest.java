@@ -0,0 +1,93 @@
+package io.github.satsuki942.library;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import io.github.satsuki942.MyLangTransformer;
+import io.github.satsuki942.symboltable.SymbolTable;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+// Transpiles the versioned Point class of features/field_02 as a library, then transpiles and runs
+// its Main against the exported jar only.
+public class LibraryManifestTest {
+
+    private static final Path SAMPLE_DIR = Paths.get("src/test/resources/mylang_samples/features/field_02");
+    private static final Path EXPECTED_FILE = Paths.get("src/test/resources/expected_output/features/field_02/expected.txt");
+    private static final Path BUILD_ROOT = Paths.get("target/test-builds/library/field_02");
+
+    private final MyLangTransformer transformer = new MyLangTransformer();
+
+    @Test
+    void consumerCompilesAgainstExportedLibrary() throws IOException, InterruptedException {
+        // --- 1. Library: transpile, compile and export ---
+        List<CompilationUnit> libraryAsts = List.of(StaticJavaParser.parse(SAMPLE_DIR.resolve("Point__1__.java")));
+        SymbolTable librarySymbols = transformer.analyze(libraryAsts);
+        Path libraryDir = BUILD_ROOT.resolve("lib");
+        List<Path> librarySources = write(transformer.transform(libraryAsts, librarySymbols), libraryDir);
+        Assertions.assertEquals(0, compile(librarySources, null), "Library compilation failed.");
+
+        Path libraryJar = BUILD_ROOT.resolve("point.jar");
+        LibraryManifest.writeJar(libraryJar, libraryDir, librarySources, librarySymbols);
+
+        // --- 2. Consumer: transpile against the manifest only ---
+        List<CompilationUnit> consumerAsts = List.of(StaticJavaParser.parse(SAMPLE_DIR.resolve("Main.java")));
+        SymbolTable consumerSymbols = transformer.analyze(consumerAsts);
+        consumerSymbols.addLibrary(LibraryManifest.load(libraryJar));
+        Assertions.assertNotNull(consumerSymbols.lookupClass("Point"));
+        Assertions.assertNull(consumerSymbols.getClasses().stream()
+                .filter(c -> c.getBaseName().equals("Point")).findAny().orElse(null),
+                "Library classes must not be regenerated by the consumer.");
+
+        Path consumerDir = BUILD_ROOT.resolve("app");
+        List<Path> consumerSources = write(transformer.transform(consumerAsts, consumerSymbols), consumerDir);
+        Assertions.assertEquals(1, consumerSources.size());
+        Assertions.assertEquals(0, compile(consumerSources, libraryJar), "Consumer compilation failed.");
+
+        // --- 3. Run the consumer with the library jar on the classpath ---
+        String classpath = consumerDir.toAbsolutePath() + File.pathSeparator + libraryJar.toAbsolutePath();
+        Process process = new ProcessBuilder("java", "-cp", classpath, "sample.Main").start();
+        String output = new String(process.getInputStream().readAllBytes());
+        Assertions.assertEquals(0, process.waitFor(), "Runtime execution failed.");
+        Assertions.assertEquals(Files.readString(EXPECTED_FILE).trim(), output.trim());
+    }
+
+    // -- HELPER METHODS --
+    private static List<Path> write(List<CompilationUnit> asts, Path root) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (CompilationUnit cu : asts) {
+            String packageName = cu.getPackageDeclaration().map(pd -> pd.getName().asString()).orElse("");
+            Path packageDir = root.resolve(packageName.replace('.', File.separatorChar));
+            Files.createDirectories(packageDir);
+            String className = cu.getTypes().stream()
+                        .filter(type -> type.isPublic() && type.isClassOrInterfaceDeclaration())
+                        .findFirst()
+                        .map(type -> type.getNameAsString())
+                        .orElse("UnknownClass");
+            Path file = packageDir.resolve(className + ".java");
+            Files.writeString(file, cu.toString());
+            files.add(file);
+        }
+        return files;
+    }
+
+    private static int compile(List<Path> sources, Path classpath) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        List<String> args = new ArrayList<>();
+        if (classpath != null) {
+            args.add("-cp");
+            args.add(classpath.toString());
+        }
+        sources.forEach(source -> args.add(source.toString()));
+        return compiler.run(null, null, null, args.toArray(new String[0]));
+    }
+}
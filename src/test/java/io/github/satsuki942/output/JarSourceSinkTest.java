@@ -0,0 +1,71 @@
+package io.github.satsuki942.output;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import io.github.satsuki942.MyLangTransformer;
+import io.github.satsuki942.compiler.CompilerSession;
+import io.github.satsuki942.symboltable.SymbolTable;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Transpiles features/field_02 into a single jar without loose files, runs it, and checks the jar is reproducible.
+public class JarSourceSinkTest {
+
+    private static final Path SAMPLE_DIR = Paths.get("src/test/resources/mylang_samples/features/field_02");
+    private static final Path EXPECTED_FILE = Paths.get("src/test/resources/expected_output/features/field_02/expected.txt");
+    private static final Path BUILD_ROOT = Paths.get("target/test-builds/jar/field_02");
+
+    @Test
+    void sourcesAndClassesAreWrittenIntoOneReproducibleJar() throws IOException, InterruptedException {
+        Path first = build(BUILD_ROOT.resolve("first.jar"));
+        Path second = build(BUILD_ROOT.resolve("second.jar"));
+        Assertions.assertArrayEquals(Files.readAllBytes(first), Files.readAllBytes(second));
+
+        List<String> entries;
+        try (JarFile jar = new JarFile(first.toFile())) {
+            entries = jar.stream().map(JarEntry::getName).collect(Collectors.toList());
+        }
+        Assertions.assertEquals(entries.stream().sorted().collect(Collectors.toList()), entries);
+        Assertions.assertTrue(entries.containsAll(List.of("sample/Main.class", "sample/Main.java", "sample/Point.class", "sample/Point.java")));
+
+        Process process = new ProcessBuilder("java", "-cp", first.toAbsolutePath().toString(), "sample.Main").start();
+        String output = new String(process.getInputStream().readAllBytes());
+        Assertions.assertEquals(0, process.waitFor(), "Runtime execution failed.");
+        Assertions.assertEquals(Files.readString(EXPECTED_FILE).trim(), output.trim());
+    }
+
+    // -- HELPER METHODS --
+    private static Path build(Path jarFile) throws IOException {
+        List<CompilationUnit> asts = new ArrayList<>();
+        try (Stream<Path> paths = Files.list(SAMPLE_DIR)) {
+            for (Path file : paths.filter(p -> p.toString().endsWith(".java")).collect(Collectors.toList())) {
+                asts.add(StaticJavaParser.parse(file));
+            }
+        }
+        MyLangTransformer transformer = new MyLangTransformer();
+        SymbolTable symbolTable = transformer.analyze(asts);
+
+        JarSourceSink sink = new JarSourceSink();
+        for (CompilationUnit cu : transformer.transform(asts, symbolTable)) {
+            sink.accept(cu);
+        }
+        CompilerSession.CompilationResult result;
+        try (CompilerSession session = new CompilerSession()) {
+            result = session.compileInMemory(sink.getSources(), List.of());
+        }
+        Assertions.assertTrue(result.isSuccess(), () -> result.getDiagnostics().toString());
+        sink.writeJar(jarFile, result.getClassFiles());
+        return jarFile;
+    }
+}
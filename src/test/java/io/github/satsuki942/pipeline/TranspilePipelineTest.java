@@ -0,0 +1,95 @@
+package io.github.satsuki942.pipeline;
+
+import com.github.javaparser.ParseProblemException;
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import io.github.satsuki942.MyLangTransformer;
+import io.github.satsuki942.TransformOptions;
+import io.github.satsuki942.output.SourceSink;
+import io.github.satsuki942.util.AstUtil;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DynamicTest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// The pipelined transformation must generate exactly the sources of the in-memory transformation.
+public class TranspilePipelineTest {
+
+    private static final Path SAMPLES_ROOT = Paths.get("src/test/resources/mylang_samples");
+    private static final Path BUILD_ROOT = Paths.get("target/test-builds/pipeline");
+
+    @TestFactory
+    Stream<DynamicTest> pipelineMatchesInMemoryTransformation() throws IOException {
+        List<Path> testCaseDirs;
+        try (Stream<Path> dirs = Files.walk(SAMPLES_ROOT)) {
+            testCaseDirs = dirs.filter(Files::isDirectory).filter(TranspilePipelineTest::hasJavaFiles).collect(Collectors.toList());
+        }
+        return testCaseDirs.stream().map(dir -> DynamicTest.dynamicTest("TestCase: " + SAMPLES_ROOT.relativize(dir), () -> {
+            // Like streaming mode, the pipeline never sees the whole rewritten program
+            TransformOptions options = TransformOptions.load(dir).setEliminateDeadCode(false).setDevirtualize(false);
+
+            Map<String, String> pipelined = new TreeMap<>();
+            SourceSink sink = cu -> pipelined.put(AstUtil.getPublicClassName(cu), cu.toString());
+            TranspilePipeline.Result result = new TranspilePipeline(options, 3).run(dir, List.of(), sink);
+
+            List<CompilationUnit> asts = new ArrayList<>();
+            try (Stream<Path> paths = Files.list(dir)) {
+                for (Path file : paths.filter(p -> p.toString().endsWith(".java")).sorted().collect(Collectors.toList())) {
+                    asts.add(StaticJavaParser.parse(file));
+                }
+            }
+            Map<String, String> inMemory = new TreeMap<>();
+            new MyLangTransformer(options).transform(asts).forEach(cu -> inMemory.put(AstUtil.getPublicClassName(cu), cu.toString()));
+
+            Assertions.assertEquals(inMemory, pipelined);
+            Assertions.assertTrue(result.getSymbolTable().isSealed());
+            Assertions.assertEquals(asts.size(), result.getStages().get(0).getItems());
+            Assertions.assertEquals(inMemory.size(), result.getStages().get(result.getStages().size() - 1).getItems());
+        }));
+    }
+
+    @Test
+    void failuresStopThePipeline() throws IOException {
+        Path broken = Files.createDirectories(BUILD_ROOT.resolve("broken"));
+        Files.writeString(broken.resolve("Broken.java"), "class Broken { void m( }\n");
+        Assertions.assertThrows(ParseProblemException.class,
+                () -> new TranspilePipeline(new TransformOptions(), 2).run(broken, List.of(), cu -> { }));
+
+        Path sample = SAMPLES_ROOT.resolve("features/dedup_01");
+        IOException thrown = Assertions.assertThrows(IOException.class,
+                () -> new TranspilePipeline(new TransformOptions(), 2).run(sample, List.of(), cu -> {
+                    throw new IOException("disk full");
+                }));
+        Assertions.assertEquals("disk full", thrown.getMessage());
+    }
+
+    @Test
+    void wholeProgramOptionsAreReportedAsIgnored() throws IOException {
+        Path sample = SAMPLES_ROOT.resolve("features/dedup_01");
+        TransformOptions options = new TransformOptions().setEliminateDeadCode(true).setDevirtualize(true);
+        TranspilePipeline.Result result = new TranspilePipeline(options, 2).run(sample, List.of(), cu -> { });
+        Assertions.assertEquals(List.of(
+                "Ignored eliminateDeadCode=true: pipeline mode never holds the whole program.",
+                "Ignored devirtualize=true: pipeline mode never holds the whole program."), result.getDiagnostics());
+    }
+
+    // -- HELPER METHODS --
+    private static boolean hasJavaFiles(Path dir) {
+        try (Stream<Path> entries = Files.list(dir)) {
+            return entries.anyMatch(p -> p.toString().endsWith(".java"));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+}
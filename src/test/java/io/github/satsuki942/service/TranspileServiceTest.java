@@ -0,0 +1,141 @@
+package io.github.satsuki942.service;
+
+import io.github.satsuki942.TransformOptions;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.jar.JarFile;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+// Sends projects to a running service concurrently and runs one of the returned jars.
+public class TranspileServiceTest {
+
+    private static final Path SAMPLE_DIR = Paths.get("src/test/resources/mylang_samples/features/dedup_01");
+    private static final Path EXPECTED_FILE = Paths.get("src/test/resources/expected_output/features/dedup_01/expected.txt");
+    private static final Path BUILD_ROOT = Paths.get("target/test-builds/service");
+
+    private static TranspileService service;
+    private static HttpClient client;
+
+    @BeforeAll
+    static void startService() throws IOException {
+        service = TranspileService.start(0);
+        client = HttpClient.newHttpClient();
+    }
+
+    @AfterAll
+    static void stopService() {
+        service.close();
+    }
+
+    @Test
+    void concurrentRequestsAreTranspiledIndependently() throws IOException, InterruptedException {
+        byte[] project = zip(SAMPLE_DIR);
+        List<CompletableFuture<HttpResponse<byte[]>>> responses = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            responses.add(client.sendAsync(post("/transpile", project), HttpResponse.BodyHandlers.ofByteArray()));
+        }
+
+        byte[] first = responses.get(0).join().body();
+        for (CompletableFuture<HttpResponse<byte[]>> response : responses) {
+            Assertions.assertEquals(200, response.join().statusCode());
+            Assertions.assertArrayEquals(first, response.join().body());
+        }
+
+        Path jar = Files.createDirectories(BUILD_ROOT).resolve("dedup_01.jar");
+        Files.write(jar, first);
+        try (JarFile jarFile = new JarFile(jar.toFile())) {
+            Assertions.assertNotNull(jarFile.getEntry("sample/Main.class"));
+            Assertions.assertNotNull(jarFile.getEntry("sample/Greeter.java"));
+            Assertions.assertNotNull(jarFile.getEntry(TranspileService.DIAGNOSTICS_ENTRY));
+        }
+        Process process = new ProcessBuilder(Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-cp", jar.toAbsolutePath().toString(), "sample.Main").start();
+        String output = new String(process.getInputStream().readAllBytes());
+        Assertions.assertEquals(0, process.waitFor(), "Runtime execution failed.");
+        Assertions.assertEquals(Files.readString(EXPECTED_FILE).trim(), output.trim());
+    }
+
+    @Test
+    void invalidProjectsAreRejected() throws IOException, InterruptedException {
+        HttpResponse<String> unparsable = client.send(post("/transpile",
+                zip(Map.of("Broken.java", "class Broken { void m( }"))), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(400, unparsable.statusCode());
+        Assertions.assertTrue(unparsable.body().startsWith("Error: "), unparsable.body());
+
+        HttpResponse<byte[]> uncompilable = client.send(post("/transpile",
+                zip(Map.of("Main.java", "package sample; public class Main { void m() { missing(); } }"))),
+                HttpResponse.BodyHandlers.ofByteArray());
+        Assertions.assertEquals(422, uncompilable.statusCode());
+
+        HttpResponse<String> metrics = client.send(HttpRequest.newBuilder(uri("/metrics")).build(), HttpResponse.BodyHandlers.ofString());
+        Assertions.assertEquals(200, metrics.statusCode());
+        Assertions.assertTrue(metrics.body().matches("requests=\\d+ failures=\\d+ p50=.*ms p90=.*ms p99=.*ms max=.*ms"), metrics.body());
+        Assertions.assertTrue(service.getLatencies().getFailures() >= 2);
+    }
+
+    @Test
+    void droppedPinMarkersAreReportedInTheDiagnostics() {
+        TranspileService.Result result = service.transpile(Map.of(
+                "Counter__1__.java", "package sample; public class Counter__1__ { public int version() { return 1; } }",
+                "Main.java", "package sample; public class Main { public static void main(String[] args) {\n"
+                        + "Counter c = new Counter();\n"
+                        + "{ c.__pinVersion(3); System.out.println(c.version()); } } }"),
+                new TransformOptions());
+
+        Assertions.assertTrue(result.isSuccess(), result.getDiagnostics());
+        Assertions.assertEquals("ERROR Main.java:3: Ignored c.__pinVersion(3): Counter has no version 3.\n", result.getDiagnostics());
+    }
+
+    // -- HELPER METHODS --
+    private static URI uri(String path) {
+        return URI.create("http://localhost:" + service.getPort() + path);
+    }
+
+    private static HttpRequest post(String path, byte[] body) {
+        return HttpRequest.newBuilder(uri(path)).POST(HttpRequest.BodyPublishers.ofByteArray(body)).build();
+    }
+
+    private static byte[] zip(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.list(dir)) {
+            List<Path> files = paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+            Map<String, String> entries = new TreeMap<>();
+            for (Path file : files) {
+                entries.put(file.getFileName().toString(), Files.readString(file));
+            }
+            return zip(entries);
+        }
+    }
+
+    private static byte[] zip(Map<String, String> entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                zip.putNextEntry(new ZipEntry(entry.getKey()));
+                zip.write(entry.getValue().getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+}
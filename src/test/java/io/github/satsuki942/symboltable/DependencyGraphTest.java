@@ -0,0 +1,74 @@
+package io.github.satsuki942.symboltable;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import io.github.satsuki942.MyLangTransformer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+public class DependencyGraphTest {
+
+    @Test
+    void versionedTypesDependOnTheirBaseClass() {
+        DependencyGraph graph = graphOf(
+                "class Point__1__ { int x; }",
+                "class Point__2__ { long x; }",
+                "class Line { private Point__1__ from; java.util.List<Point__2__> to; String name; }");
+
+        Assertions.assertEquals(Set.of("Line", "Point"), graph.getClasses());
+        Assertions.assertEquals(Set.of("Point"), graph.getDependencies("Line"));
+        Assertions.assertEquals(Set.of(), graph.getDependencies("Point__2__"));
+        Assertions.assertEquals(Set.of("Line"), graph.getDependents("Point__2__"));
+    }
+
+    @Test
+    void recordsConstructorParametersAndNewExpressions() {
+        DependencyGraph graph = graphOf(
+                "class Factory { Factory(Config c) { } Object make() { return new Widget__1__(); } }",
+                "class Config { }",
+                "class Widget__1__ { }",
+                "class Unused { }");
+
+        Assertions.assertEquals(Set.of("Config", "Widget"), graph.getDependencies("Factory"));
+        Assertions.assertEquals(Set.of(), graph.getDependents("Unused"));
+    }
+
+    @Test
+    void affectedClassesFollowDependentsTransitively() {
+        DependencyGraph graph = graphOf(
+                "class Point__1__ { }",
+                "class Point__2__ { }",
+                "class Line { Point__1__ from; }",
+                "class Shape { Line edge; }",
+                "class Label { String text; }");
+
+        Assertions.assertEquals(Set.of("Point", "Line", "Shape"), graph.getAffectedClasses("Point__2__"));
+        Assertions.assertEquals(Set.of("Label"), graph.getAffectedClasses("Label"));
+        Assertions.assertEquals(Set.of("Label"), graph.getAffectedClasses("String"));
+    }
+
+    @Test
+    void componentsComeAfterTheirDependencies() {
+        DependencyGraph graph = graphOf(
+                "class Main { public static void main(String[] args) { A a = null; D d = null; } }",
+                "class A { B next; }",
+                "class B { C next; B self() { return this; } }",
+                "class C { A back(B b) { return null; } }",
+                "class D { }");
+
+        Assertions.assertEquals(
+                List.of(List.of("A", "B", "C"), List.of("D"), List.of("Main")),
+                graph.getStronglyConnectedComponents());
+        Assertions.assertEquals(List.of("A", "B", "C", "D", "Main"), graph.getTopologicalOrder());
+    }
+
+    // -- HELPER METHODS --
+    private static DependencyGraph graphOf(String... sources) {
+        List<CompilationUnit> asts = Arrays.stream(sources).map(StaticJavaParser::parse).toList();
+        return new MyLangTransformer().analyze(asts).getDependencyGraph();
+    }
+}
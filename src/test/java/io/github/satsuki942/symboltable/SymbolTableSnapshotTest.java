@@ -0,0 +1,75 @@
+package io.github.satsuki942.symboltable;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import io.github.satsuki942.MyLangTransformer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class SymbolTableSnapshotTest {
+
+    private static final Path SAMPLE_DIR = Paths.get("src/test/resources/mylang_samples/features/constructor_02");
+    private static final Path SNAPSHOT_FILE = Paths.get("target/test-builds/symtab/constructor_02.bin");
+
+    @Test
+    void snapshotRoundTripPreservesAllClasses() throws IOException {
+        SymbolTable original = new MyLangTransformer().analyze(parseDirectory(SAMPLE_DIR));
+
+        Files.createDirectories(SNAPSHOT_FILE.getParent());
+        SymbolTableSnapshot.write(original, SNAPSHOT_FILE);
+        SymbolTable loaded = SymbolTableSnapshot.load(SNAPSHOT_FILE);
+
+        Assertions.assertEquals(original.getClasses().size(), loaded.getClasses().size());
+        for (ClassInfo expected : original.getClasses()) {
+            ClassInfo actual = loaded.lookupClass(expected.getBaseName());
+            Assertions.assertNotNull(actual, "Missing class: " + expected.getBaseName());
+            Assertions.assertEquals(expected.isVersioned(), actual.isVersioned());
+            Assertions.assertEquals(describe(expected), describe(actual));
+        }
+        Assertions.assertNull(loaded.lookupClass("DoesNotExist"));
+    }
+
+    @Test
+    void loadRejectsForeignFiles() throws IOException {
+        Path bogus = SNAPSHOT_FILE.resolveSibling("bogus.bin");
+        Files.createDirectories(bogus.getParent());
+        Files.writeString(bogus, "not a snapshot");
+        Assertions.assertThrows(IOException.class, () -> SymbolTableSnapshot.load(bogus));
+    }
+
+    // -- HELPER METHODS --
+    private static String describe(ClassInfo classInfo) {
+        StringBuilder sb = new StringBuilder();
+        classInfo.getMethods().keySet().stream().sorted().forEach(name -> {
+            for (MethodInfo m : classInfo.getMethods().get(name)) {
+                sb.append(m.getName()).append(':').append(m.getReturnType()).append(':')
+                  .append(m.getParameterTypes()).append(':').append(m.getVersion()).append(':')
+                  .append(new java.util.TreeMap<>(m.getVariables())).append('\n');
+            }
+        });
+        classInfo.getFields().keySet().stream().sorted().forEach(name -> {
+            for (FieldInfo f : classInfo.getFields().get(name)) {
+                sb.append(f.getName()).append(':').append(f.getType()).append(':').append(f.getVersion()).append('\n');
+            }
+        });
+        return sb.toString();
+    }
+
+    private static List<CompilationUnit> parseDirectory(Path dir) throws IOException {
+        List<CompilationUnit> asts = new ArrayList<>();
+        try (Stream<Path> paths = Files.list(dir)) {
+            for (Path file : paths.filter(p -> p.toString().endsWith(".java")).sorted().toList()) {
+                asts.add(StaticJavaParser.parse(file));
+            }
+        }
+        return asts;
+    }
+}
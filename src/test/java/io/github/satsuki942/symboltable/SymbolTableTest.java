@@ -0,0 +1,33 @@
+package io.github.satsuki942.symboltable;
+
+import com.github.javaparser.StaticJavaParser;
+import io.github.satsuki942.MyLangTransformer;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+public class SymbolTableTest {
+
+    @Test
+    void sealedTableIsReadOnly() {
+        SymbolTable symbolTable = new MyLangTransformer().analyze(List.of(
+                StaticJavaParser.parse("class Point__1__ { public int x; int getX() { int y = 0; return x; } }"),
+                StaticJavaParser.parse("class Line { Point__1__ from; }"))).seal();
+
+        Assertions.assertThrows(IllegalStateException.class, () -> symbolTable.addClass(new ClassInfo("Other", false, Map.of(), Map.of())));
+        Assertions.assertThrows(IllegalStateException.class, () -> symbolTable.getDependencyGraph().addDependency("Line", "String"));
+        Assertions.assertThrows(IllegalStateException.class, () -> symbolTable.getDependencyGraph().addClass("Other"));
+
+        ClassInfo point = symbolTable.lookupClass("Point");
+        MethodInfo getX = point.getMethods().get("getX").get(0);
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> point.getMethods().remove("getX"));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> point.getFields().get("x").clear());
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> getX.getParameterTypes().add("int"));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> getX.getVariables().put("z", "int"));
+        // The contents are unchanged
+        Assertions.assertEquals("int", getX.getVariables().get("y"));
+        Assertions.assertEquals(List.of("Point"), List.copyOf(symbolTable.getDependencyGraph().getDependencies("Line")));
+    }
+}
@@ -0,0 +1,47 @@
+package io.github.satsuki942.symboltable;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class VersionedNameTest {
+
+    // The pattern the passes used to match before VersionedName
+    private static final Pattern VERSIONED_CLASS_PATTERN = Pattern.compile("(.+)__(\\d+)__$");
+
+    @Test
+    void parsesLikeTheVersionedClassPattern() {
+        List<String> names = List.of("Test__1__", "Test__12__", "A__3__", "My__Class__2__", "A____1__",
+                "Test", "Test__", "__1__", "Test__x__", "Test__1_", "Test_1__", "", "String");
+        for (String raw : names) {
+            Matcher matcher = VERSIONED_CLASS_PATTERN.matcher(raw);
+            VersionedName name = VersionedName.of(raw);
+            Assertions.assertEquals(matcher.matches(), name.isVersioned(), raw);
+            Assertions.assertEquals(matcher.matches() ? matcher.group(1) : raw, name.getBaseName(), raw);
+            Assertions.assertEquals(matcher.matches() ? matcher.group(2) : "", name.getVersion(), raw);
+        }
+    }
+
+    @Test
+    void versionedNamesAreInternedPerSymbolTable() {
+        SymbolTable symbolTable = new SymbolTable();
+        VersionedName name = symbolTable.versionedName("Counter__2__");
+        Assertions.assertSame(name, symbolTable.versionedName("Counter__2__"));
+        Assertions.assertNotSame(name, new SymbolTable().versionedName("Counter__2__"));
+        Assertions.assertEquals(2, name.getOrdinal());
+        Assertions.assertEquals("v2", name.getVersionSuffix());
+        Assertions.assertEquals("V2", name.getStateSuffix());
+        Assertions.assertEquals("", symbolTable.versionedName("Counter").getVersionSuffix());
+    }
+
+    @Test
+    void outOfRangeVersionsAreNotVersioned() {
+        VersionedName name = VersionedName.of("Foo__99999999999__");
+        Assertions.assertFalse(name.isVersioned());
+        Assertions.assertEquals("Foo__99999999999__", name.getBaseName());
+        Assertions.assertEquals(Integer.MAX_VALUE, VersionedName.of("Foo__2147483647__").getOrdinal());
+    }
+}
@@ -0,0 +1,69 @@
+package io.github.satsuki942.unifiedclassbuilder;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import io.github.satsuki942.symboltable.SymbolTable;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Optional;
+
+// Members depending on the object identity are left out of the pool, together with their callers.
+public class BulkContainerGeneratorTest {
+
+    @Test
+    void membersUsingThisAreLeftOut() {
+        CompilationUnit v1 = parse("Node__1__", "public class Node__1__ { int weight = 1;"
+                + " public Object self() { return this; }"
+                + " public Object viaSelf() { return self(); }"
+                + " public int twice() { return this.weight * 2; } }");
+
+        ClassOrInterfaceDeclaration pool = generate("Node", v1).orElseThrow().getClassByName("NodePool").orElseThrow();
+
+        Assertions.assertEquals(1, pool.getFieldByName("weight").orElseThrow().getVariables().size());
+        Assertions.assertFalse(pool.getMethodsBySignature("twice", "int").isEmpty());
+        Assertions.assertTrue(pool.getMethodsBySignature("self", "int").isEmpty());
+        Assertions.assertTrue(pool.getMethodsBySignature("viaSelf", "int").isEmpty());
+        Assertions.assertFalse(pool.getMethodsBySignature("add").isEmpty());
+    }
+
+    @Test
+    void membersWithInnerClassesAreLeftOut() {
+        CompilationUnit v1 = parse("Task__1__", "public class Task__1__ { int runs;"
+                + " public Runnable anonymous() { return new Runnable() { int runs; public void run() { runs++; } }; }"
+                + " public int local() { class Step { int runs = 2; } return new Step().runs + runs; }"
+                + " public void run() { runs++; } }");
+
+        ClassOrInterfaceDeclaration pool = generate("Task", v1).orElseThrow().getClassByName("TaskPool").orElseThrow();
+
+        Assertions.assertFalse(pool.getMethodsBySignature("run", "int").isEmpty());
+        Assertions.assertTrue(pool.getMethodsBySignature("anonymous", "int").isEmpty());
+        Assertions.assertTrue(pool.getMethodsBySignature("local", "int").isEmpty());
+    }
+
+    @Test
+    void genericOrUntranslatableClassesHaveNoPool() {
+        CompilationUnit generic = parse("Box__1__", "public class Box__1__<T> { T value; }");
+        Assertions.assertTrue(generate("Box", generic).isEmpty());
+
+        CompilationUnit registering = parse("Item__1__", "public class Item__1__ { public Item__1__() { Registry.add(this); } }");
+        Assertions.assertTrue(generate("Item", registering).isEmpty());
+    }
+
+    // -- HELPER METHODS --
+    private static Optional<CompilationUnit> generate(String baseName, CompilationUnit... versions) {
+        ClassOrInterfaceDeclaration target = new CompilationUnit().addClass(baseName);
+        ClassBuildContext context = new ClassBuildContext(baseName, target, List.of(versions));
+        return new BulkContainerGenerator(context, new SymbolTable()).generate();
+    }
+
+    private static CompilationUnit parse(String className, String source) {
+        CompilationUnit cu = StaticJavaParser.parse(source);
+        cu.setStorage(Paths.get(className + ".java").toAbsolutePath(), StandardCharsets.UTF_8);
+        return cu;
+    }
+}
@@ -0,0 +1,64 @@
+package io.github.satsuki942.unifiedclassbuilder;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.List;
+
+// The versions are scanned once; constructors keep the version that declared them first.
+public class ClassBuildContextTest {
+
+    @Test
+    void versionsAndConstructorsAreIndexed() {
+        CompilationUnit v1 = parse("Shape__1__", "public class Shape__1__ { public Shape__1__(int w) { } }");
+        CompilationUnit v2 = parse("Shape__2__", "public class Shape__2__ { public Shape__2__() { } public Shape__2__(int w, int h) { } }");
+        ClassOrInterfaceDeclaration target = new CompilationUnit().addClass("Shape");
+
+        ClassBuildContext context = new ClassBuildContext("Shape", target, List.of(v1, v2));
+
+        Assertions.assertEquals(2, context.getVersionCount());
+        Assertions.assertEquals("v2", context.getVersionName(1).getVersionSuffix());
+        Assertions.assertEquals(1, context.getConstructors(0).size());
+        Assertions.assertEquals(2, context.getConstructors(1).size());
+        Assertions.assertEquals(3, context.getConstructorsBySignature().size());
+        Assertions.assertEquals("v1", context.getConstructorOwner(context.getConstructors(0).get(0)));
+        Assertions.assertEquals("v2", context.getConstructorOwner(context.getConstructors(1).get(1)));
+    }
+
+    @Test
+    void defaultConstructorStartsInLowestVersion() {
+        CompilationUnit v3 = parse("Shape__3__", "public class Shape__3__ { }");
+        CompilationUnit v2 = parse("Shape__2__", "public class Shape__2__ { }");
+
+        ClassBuildContext context = new ClassBuildContext("Shape", null, List.of(v3, v2));
+
+        Assertions.assertTrue(context.getConstructorsBySignature().isEmpty());
+        Assertions.assertEquals("v2", context.getDefaultConstructorOwner());
+    }
+
+    @Test
+    void generatedInnerTypesAreRegistered() {
+        ClassOrInterfaceDeclaration target = new CompilationUnit().addClass("Shape");
+        ClassBuildContext context = new ClassBuildContext("Shape", target, List.of());
+        ClassOrInterfaceDeclaration impl = new ClassOrInterfaceDeclaration().setName("V1_Impl");
+
+        context.addInnerClass(impl);
+
+        Assertions.assertSame(impl, context.getInnerClass("V1_Impl").orElseThrow());
+        Assertions.assertTrue(context.getInnerClass("V2_Impl").isEmpty());
+        Assertions.assertTrue(target.getMembers().contains(impl));
+        Assertions.assertNull(context.getBehaviorInterface());
+    }
+
+    // -- HELPER METHODS --
+    private static CompilationUnit parse(String className, String source) {
+        CompilationUnit cu = StaticJavaParser.parse(source);
+        cu.setStorage(Paths.get(className + ".java").toAbsolutePath(), StandardCharsets.UTF_8);
+        return cu;
+    }
+}
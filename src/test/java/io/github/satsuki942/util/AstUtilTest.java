@@ -0,0 +1,32 @@
+package io.github.satsuki942.util;
+
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.expr.NameExpr;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+public class AstUtilTest {
+
+    @Test
+    void localVariablesAreResolvedByScope() {
+        CompilationUnit cu = StaticJavaParser.parse("class A { int count; int other;"
+                + " void m(int other) {"
+                + "   use(count);"
+                + "   for (int i = 0; i < 2; i++) { int count = 3; use(count); }"
+                + "   use(count);"
+                + "   Runnable r = () -> { use(count); use(other); };"
+                + "   int count = 1;"
+                + "   new Object() { void n() { use(count); } };"
+                + " } }");
+        List<Boolean> locals = cu.findAll(MethodCallExpr.class).stream()
+                .filter(call -> call.getNameAsString().equals("use"))
+                .map(call -> AstUtil.isLocalVariable((NameExpr) call.getArgument(0)))
+                .toList();
+        // Field, loop local, field again, field in a lambda, parameter, enclosing local seen from an anonymous class
+        Assertions.assertEquals(List.of(false, true, false, false, true, true), locals);
+    }
+}
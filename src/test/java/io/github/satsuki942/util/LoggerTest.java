@@ -0,0 +1,70 @@
+package io.github.satsuki942.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LoggerTest {
+
+    @AfterEach
+    void resetConfiguration() {
+        Properties properties = new Properties();
+        properties.setProperty("log.async", "false");
+        Logger.configure(properties);
+    }
+
+    @Test
+    void disabledMessagesAreNeverBuilt() {
+        Properties properties = new Properties();
+        properties.setProperty("log.async", "false");
+        Logger.configure(properties);
+        AtomicInteger built = new AtomicInteger();
+        Logger.get(LoggerTest.class).debug(() -> "call #" + built.incrementAndGet());
+        Logger.get(LoggerTest.class).error(() -> "call #" + built.incrementAndGet());
+        Assertions.assertEquals(0, built.get());
+    }
+
+    @Test
+    void longestPackagePrefixWins() {
+        Logger compiler = Logger.get(io.github.satsuki942.compiler.CompilerSession.class);
+        Logger analysis = Logger.get(io.github.satsuki942.analysis.DeadCodeEliminator.class);
+        Logger app = Logger.get(io.github.satsuki942.App.class);
+
+        Properties properties = new Properties();
+        properties.setProperty("log.level", "ERROR");
+        properties.setProperty("log.level.io.github.satsuki942", "SUCCESS");
+        properties.setProperty("log.level.io.github.satsuki942.compiler", "DEBUG");
+        properties.setProperty("log.async", "false");
+        Logger.configure(properties);
+
+        // Loggers created before the configuration pick up their new level
+        Assertions.assertTrue(compiler.isEnabled(Logger.Level.DEBUG));
+        Assertions.assertFalse(analysis.isEnabled(Logger.Level.DEBUG));
+        Assertions.assertTrue(analysis.isEnabled(Logger.Level.SUCCESS));
+        Assertions.assertTrue(app.isEnabled(Logger.Level.SUCCESS));
+        Assertions.assertFalse(Logger.get(String.class).isEnabled(Logger.Level.SUCCESS));
+        Assertions.assertTrue(Logger.get(String.class).isEnabled(Logger.Level.ERROR));
+    }
+
+    @Test
+    void switchingBackToDirectStopsTheWriterThread() {
+        Properties properties = new Properties();
+        properties.setProperty("log.level", "DEBUG");
+        Logger.configure(properties);
+        Assertions.assertTrue(isWriterRunning());
+        Logger.get(LoggerTest.class).debug(() -> "written by the writer thread");
+
+        properties.setProperty("log.async", "false");
+        properties.setProperty("log.level", "OFF");
+        Logger.configure(properties);
+        Assertions.assertFalse(isWriterRunning());
+    }
+
+    // -- HELPER METHODS --
+    private static boolean isWriterRunning() {
+        return Thread.getAllStackTraces().keySet().stream().anyMatch(thread -> thread.getName().equals("mvo-log-writer"));
+    }
+}
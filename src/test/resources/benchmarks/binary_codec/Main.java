@@ -0,0 +1,91 @@
+package sample;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Benchmark:
+// - binaryCodec=true: __encode/__decode of many unified objects into a heap buffer and a memory-mapped file
+// - The same data written with ObjectOutputStream (reset after every object) and read back with
+//   ObjectInputStream, using the plain Serializable ProfileData
+// Every round prints the times and the encoded size, plus a checksum of the decoded versions.
+public class Main {
+    public static void main(String[] args) throws IOException, ClassNotFoundException {
+        int count = 100_000;
+        Profile[] profiles = new Profile[count];
+        ProfileData[] data = new ProfileData[count];
+        for (int i = 0; i < count; i++) {
+            Profile profile = new Profile("user" + i);
+            profile.visit();
+            profile.score = i;
+            if (i % 2 == 0) {
+                profile.award(i);
+            }
+            profiles[i] = profile;
+            data[i] = new ProfileData(i % 2 == 0 ? 2 : 1, "user" + i, 1, i, i % 2 == 0 ? i : 0);
+        }
+
+        Path file = Files.createTempFile("binary_codec", ".bin");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer heap = ByteBuffer.allocate(64 * count);
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, 64L * count);
+            for (int round = 1; round <= 5; round++) {
+                long checksum = 0;
+
+                long start = System.nanoTime();
+                heap.clear();
+                for (Profile profile : profiles) {
+                    profile.__encode(heap);
+                }
+                int codecSize = heap.position();
+                heap.flip();
+                long encoded = System.nanoTime();
+                while (heap.hasRemaining()) {
+                    checksum += Profile.__decode(heap).version();
+                }
+                long decoded = System.nanoTime();
+
+                mapped.clear();
+                for (Profile profile : profiles) {
+                    profile.__encode(mapped);
+                }
+                mapped.flip();
+                while (mapped.hasRemaining()) {
+                    checksum += Profile.__decode(mapped).version();
+                }
+                long mappedDone = System.nanoTime();
+
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                    for (ProfileData record : data) {
+                        out.writeObject(record);
+                        out.reset();
+                    }
+                }
+                long written = System.nanoTime();
+                try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+                    for (int i = 0; i < count; i++) {
+                        checksum += ((ProfileData) in.readObject()).getVersion();
+                    }
+                }
+                long read = System.nanoTime();
+
+                System.out.println("round " + round + ": codec " + (encoded - start) / 1_000_000 + " ms encode, "
+                    + (decoded - encoded) / 1_000_000 + " ms decode, " + codecSize / count + " B/object; mapped "
+                    + (mappedDone - decoded) / 1_000_000 + " ms; ObjectOutputStream " + (written - mappedDone) / 1_000_000
+                    + " ms write, " + (read - written) / 1_000_000 + " ms read, " + bytes.size() / count
+                    + " B/object (checksum " + checksum + ")");
+            }
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package sample;
+
+import java.io.Serializable;
+
+// The fields of both Profile versions and the current version in a plain Serializable class,
+// the input of the ObjectOutputStream side of the benchmark
+public class ProfileData implements Serializable {
+    private final int version;
+    private final String name;
+    private final int visits;
+    private final boolean active;
+    private final Integer score;
+    private final long points;
+    private final double ratio;
+    private final char grade;
+
+    public ProfileData(int version, String name, int visits, Integer score, long points) {
+        this.version = version;
+        this.name = name;
+        this.visits = visits;
+        this.active = true;
+        this.score = score;
+        this.points = points;
+        this.ratio = points > 0 ? 1.0 : 0.5;
+        this.grade = points > 0 ? 'A' : 'B';
+    }
+
+    public int getVersion() {
+        return version;
+    }
+}
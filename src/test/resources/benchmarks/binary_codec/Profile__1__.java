@@ -0,0 +1,20 @@
+package sample;
+
+public class Profile__1__ {
+    private String name;
+    private int visits;
+    private boolean active = true;
+    public Integer score;
+
+    public Profile__1__(String name) {
+        this.name = name;
+    }
+
+    public void visit() {
+        visits++;
+    }
+
+    public int version() {
+        return 1;
+    }
+}
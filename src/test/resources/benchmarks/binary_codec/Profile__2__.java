@@ -0,0 +1,18 @@
+package sample;
+
+public class Profile__2__ {
+    private String name;
+    private long points;
+    private double ratio = 0.5;
+    private char grade = 'B';
+
+    public void award(int amount) {
+        points += amount;
+        ratio *= 2;
+        grade = 'A';
+    }
+
+    public int version() {
+        return 2;
+    }
+}
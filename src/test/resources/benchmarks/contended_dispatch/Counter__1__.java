@@ -0,0 +1,10 @@
+package sample;
+
+public class Counter__1__ {
+    public int version() {
+        return 1;
+    }
+
+    public void demote() {
+    }
+}
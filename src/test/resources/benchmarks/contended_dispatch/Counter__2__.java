@@ -0,0 +1,10 @@
+package sample;
+
+public class Counter__2__ {
+    public int version() {
+        return 2;
+    }
+
+    public void promote() {
+    }
+}
@@ -0,0 +1,45 @@
+package sample;
+
+// Benchmark:
+// - One unified object shared by several threads
+// - Every thread mostly dispatches on the current version and regularly switches it
+// Run with -Dmvo.concurrency=NONE|VOLATILE|THREAD_LOCAL to compare the emission modes.
+public class Main {
+    public static void main(String[] args) throws InterruptedException {
+        int threadCount = 4;
+        int iterations = 20_000_000;
+        Counter counter = new Counter();
+
+        for (int round = 1; round <= 5; round++) {
+            long[] sums = new long[threadCount];
+            Thread[] workers = new Thread[threadCount];
+            long start = System.nanoTime();
+            for (int t = 0; t < threadCount; t++) {
+                int slot = t;
+                workers[t] = new Thread(() -> {
+                    long sum = 0;
+                    for (int i = 0; i < iterations; i++) {
+                        sum += counter.version();
+                        if ((i & 255) == 0) {
+                            counter.promote();
+                        } else if ((i & 255) == 128) {
+                            counter.demote();
+                        }
+                    }
+                    sums[slot] = sum;
+                });
+                workers[t].start();
+            }
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            long elapsed = System.nanoTime() - start;
+            long total = 0;
+            for (long sum : sums) {
+                total += sum;
+            }
+            System.out.println("round " + round + ": " + (elapsed / 1_000_000) + " ms, "
+                + String.format("%.2f", (double) elapsed / ((long) threadCount * iterations)) + " ns/call (checksum " + total + ")");
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package sample;
+
+import java.nio.ByteBuffer;
+
+// Positive Test:
+// - Binary codec: __encode writes the current version and the fields of every version, __decode restores them
+// - Constructor bodies do not run when decoding; transient fields keep their initializer; heap and direct buffers
+public class Main {
+    public static void main(String[] args) {
+        Profile p = new Profile("ann");
+        p.visit();
+        p.visit();
+        p.score = 42;
+        p.award(100);
+
+        ByteBuffer buffer = ByteBuffer.allocate(128);
+        p.__encode(buffer);
+        System.out.println(buffer.position());
+        buffer.flip();
+        Profile copy = Profile.__decode(buffer);
+        copy.show();
+        copy.visit();
+        copy.show();
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(128);
+        copy.__encode(direct);
+        direct.flip();
+        Profile.__decode(direct).show();
+    }
+}
@@ -0,0 +1,21 @@
+package sample;
+
+public class Profile__1__ {
+    private String name;
+    private int visits;
+    private boolean active = true;
+    public Integer score;
+
+    public Profile__1__(String name) {
+        this.name = name;
+        System.out.println("created " + name);
+    }
+
+    public void visit() {
+        visits++;
+    }
+
+    public void show() {
+        System.out.println("v1 " + name + " " + visits + " " + active + " " + score);
+    }
+}
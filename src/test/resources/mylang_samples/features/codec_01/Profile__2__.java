@@ -0,0 +1,20 @@
+package sample;
+
+public class Profile__2__ {
+    private String name;
+    private long points;
+    private double ratio = 0.5;
+    private char grade = 'B';
+    private transient int cache = 7;
+
+    public void award(int amount) {
+        points += amount;
+        ratio *= 2;
+        grade = 'A';
+        cache++;
+    }
+
+    public void show() {
+        System.out.println("v2 " + name + " " + points + " " + ratio + " " + grade + " " + cache);
+    }
+}
@@ -0,0 +1,22 @@
+package sample;
+
+import java.nio.ByteBuffer;
+
+// Positive Test:
+// - Binary codec on a class without methods defined in several versions: writing b still switches r to v2,
+//   which owns b, because __encode writes the current version
+public class Main {
+    public static void main(String[] args) {
+        Rec r = new Rec();
+        r.b = 5;
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        r.__encode(buffer);
+        System.out.println(buffer.get(0));
+        buffer.flip();
+        Rec copy = Rec.__decode(buffer);
+        copy.a = 1;
+        ByteBuffer again = ByteBuffer.allocate(16);
+        copy.__encode(again);
+        System.out.println(again.get(0));
+    }
+}
@@ -0,0 +1,5 @@
+package sample;
+
+public class Rec__1__ {
+    public int a;
+}
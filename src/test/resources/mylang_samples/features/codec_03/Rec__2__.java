@@ -0,0 +1,5 @@
+package sample;
+
+public class Rec__2__ {
+    public int b;
+}
@@ -0,0 +1,19 @@
+package sample;
+
+// Positive Test:
+// - A unified object shared between threads with a volatile current version
+// - A switch made by one thread is observed by the other
+public class Main {
+    public static void main(String[] args) throws InterruptedException {
+        Counter counter = new Counter();
+
+        Thread worker = new Thread(() -> {
+            counter.upgrade();
+            System.out.println("worker: " + counter.version());
+        });
+        worker.start();
+        worker.join();
+
+        System.out.println("main: " + counter.version());
+    }
+}
@@ -0,0 +1,18 @@
+package sample;
+
+public class Greeter__1__ {
+    private int greeted = 0;
+
+    public String format(String name) {
+        return "Hello, " + name + "!";
+    }
+
+    public int count() {
+        return greeted;
+    }
+
+    public void greet(String name) {
+        greeted++;
+        System.out.println(format(name));
+    }
+}
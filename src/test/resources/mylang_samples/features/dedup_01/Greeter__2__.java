@@ -0,0 +1,23 @@
+package sample;
+
+public class Greeter__2__ {
+    private int greeted = 0;
+
+    // Same implementation as in version 1
+    public String format(String name) {
+        return "Hello, " + name + "!";
+    }
+
+    public int count() {
+        return greeted;
+    }
+
+    public void greet(String name) {
+        greeted += 2;
+        System.out.println("v2 " + this.format(name));
+    }
+
+    public void upgrade() {
+        System.out.println("upgraded");
+    }
+}
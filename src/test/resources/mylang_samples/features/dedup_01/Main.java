@@ -0,0 +1,17 @@
+package sample;
+
+// Positive Test:
+// - Structural deduplication: format() is identical in both versions and uses no state, so it is
+//   emitted once and called from both greet() implementations
+// - count() is identical too, but reads each version's own field, so it is still dispatched
+public class Main {
+    public static void main(String[] args) {
+        Greeter g = new Greeter();
+        g.greet("alice");
+        System.out.println(g.format("bob"));
+        System.out.println(g.count());
+        g.upgrade();
+        g.greet("carol");
+        System.out.println(g.count());
+    }
+}
@@ -0,0 +1,7 @@
+package sample;
+
+public class Counter__1__ {
+    public int version() {
+        return 1;
+    }
+}
@@ -0,0 +1,23 @@
+package sample;
+
+// Positive Test:
+// - Devirtualization: version() is defined in both versions, but the version of c is known after
+//   its construction and after upgrade(), so those calls skip the currentState dispatch
+// - Once c is passed to another method its version is unknown again
+public class Main {
+    public static void main(String[] args) {
+        Counter c = new Counter();
+        System.out.println(c.version());
+        c.upgrade();
+        System.out.println(c.version());
+        for (int i = 0; i < 2; i++) {
+            System.out.println(c.version());
+        }
+        reset(c);
+        System.out.println(c.version());
+    }
+
+    private static void reset(Counter counter) {
+        System.out.println("reset from " + counter.version());
+    }
+}
@@ -0,0 +1,17 @@
+package sample;
+
+// Negative Test:
+// - Devirtualization: a and b refer to the same object, so switching b also switches a.
+//   Once a is assigned to b its version is never known again, and a.version() keeps the dispatch
+public class Main {
+    public static void main(String[] args) {
+        Counter a = new Counter();
+        Counter b = a;
+        a.upgrade();
+        b.downgrade();
+        System.out.println(a.version());
+        a.upgrade();
+        System.out.println(b.version());
+        System.out.println(a.version());
+    }
+}
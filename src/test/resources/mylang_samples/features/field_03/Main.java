@@ -0,0 +1,14 @@
+package sample;
+
+// Positive Test (fieldAccess=INLINE):
+// - Public fields defined in different versions, read and written from outside
+// - A method defined in multiple versions observes whether field accesses switch versions
+public class Main {
+    public static void main(String[] args) {
+        Point p = new Point();
+        p.x = 3;
+        p.y = 7;
+        System.out.println(p.x + p.y);
+        p.describe();
+    }
+}
@@ -0,0 +1,9 @@
+package sample;
+
+public class Point__1__ {
+    public int x;
+
+    public void describe() {
+        System.out.println("v1: x=" + x);
+    }
+}
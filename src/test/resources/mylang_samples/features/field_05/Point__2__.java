@@ -0,0 +1,9 @@
+package sample;
+
+public class Point__2__ {
+    public int y;
+
+    public void describe() {
+        System.out.println("v2: y=" + y);
+    }
+}
@@ -0,0 +1,28 @@
+package sample;
+
+public class Account__1__ {
+    private int balance;
+    public String owner;
+
+    public Account__1__() {
+        this("anonymous");
+    }
+
+    public Account__1__(String owner) {
+        this.owner = owner;
+        balance = 10;
+    }
+
+    public void deposit(int amount) {
+        balance += amount;
+        log("deposit " + amount);
+    }
+
+    public int getBalance() {
+        return balance;
+    }
+
+    private void log(String message) {
+        System.out.println("v1 " + message + " -> " + balance);
+    }
+}
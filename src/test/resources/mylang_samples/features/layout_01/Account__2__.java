@@ -0,0 +1,23 @@
+package sample;
+
+public class Account__2__ {
+    private int balance;
+
+    public Account__2__() {
+        balance = 100;
+    }
+
+    public void deposit(int amount) {
+        int balance = amount * 2;
+        this.balance += balance;
+        log("deposit " + amount);
+    }
+
+    public void audit() {
+        System.out.println("audit " + balance);
+    }
+
+    private void log(String message) {
+        System.out.println("v2 " + message + " -> " + this.balance);
+    }
+}
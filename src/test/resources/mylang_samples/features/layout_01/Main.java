@@ -0,0 +1,16 @@
+package sample;
+
+// Positive Test:
+// - Flattened layout: fields of all versions live in the unified object itself
+// - Colliding private fields, constructor chaining, intra-version calls and a shadowing local
+public class Main {
+    public static void main(String[] args) {
+        Account a = new Account("alice");
+        a.deposit(5);
+        System.out.println(a.getBalance());
+        a.audit();
+        a.deposit(5);
+        a.audit();
+        System.out.println(a.owner);
+    }
+}
@@ -0,0 +1,19 @@
+package sample;
+
+public class Box__1__ {
+    private int size;
+
+    {
+        size = 1;
+    }
+
+    static class Label {
+        static String text() {
+            return "small";
+        }
+    }
+
+    public String describe() {
+        return Label.text() + " " + size;
+    }
+}
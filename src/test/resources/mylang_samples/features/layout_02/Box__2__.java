@@ -0,0 +1,15 @@
+package sample;
+
+public class Box__2__ {
+    private int size = 10;
+
+    static class Label {
+        static String text() {
+            return "large";
+        }
+    }
+
+    public String describe() {
+        return Label.text() + " " + size;
+    }
+}
@@ -0,0 +1,13 @@
+package sample;
+
+// Positive Test:
+// - Flattened layout requested for versions that each declare a nested type Label and use an initializer
+//   block: the class keeps the state-object layout, so both Labels and the initialized field still work
+public class Main {
+    public static void main(String[] args) {
+        Box b = new Box();
+        System.out.println(b.describe());
+        b.__switchToVersion(2);
+        System.out.println(b.describe());
+    }
+}
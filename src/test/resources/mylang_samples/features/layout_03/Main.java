@@ -0,0 +1,15 @@
+package sample;
+
+// Positive Test:
+// - Flattened layout: both versions declare count, hoisted as v1_count and v2_count
+// - A local count declared in a nested block shadows the field only inside that block; the field is renamed after it
+public class Main {
+    public static void main(String[] args) {
+        Meter m = new Meter();
+        System.out.println(m.read());
+        m.reset();
+        System.out.println(m.read());
+        m.add(2);
+        System.out.println(m.read());
+    }
+}
@@ -0,0 +1,27 @@
+package sample;
+
+// Positive Test:
+// - Version block: c.__pinVersion(2) switches c once; upgrade() and report() are v2 methods and are
+//   called without switching again, and version() runs in v2
+// - legacy() only exists in v1, so c is switched to v1 for that call and back to v2 afterwards
+// - A nested block pins c to v1 and hands it back in v2 when it completes
+public class Main {
+    public static void main(String[] args) {
+        Counter c = new Counter();
+        {
+            c.__pinVersion(2);
+            c.upgrade();
+            c.report();
+            System.out.println(c.version());
+            c.legacy();
+            System.out.println(c.version());
+            {
+                c.__pinVersion(1);
+                System.out.println(c.version());
+            }
+            System.out.println(c.version());
+        }
+        c.legacy();
+        System.out.println(c.version());
+    }
+}
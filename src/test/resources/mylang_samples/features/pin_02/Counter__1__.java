@@ -0,0 +1,11 @@
+package sample;
+
+public class Counter__1__ {
+    public int version() {
+        return 1;
+    }
+
+    public void legacy() {
+        System.out.println("legacy");
+    }
+}
@@ -0,0 +1,15 @@
+package sample;
+
+public class Counter__2__ {
+    public int version() {
+        return 2;
+    }
+
+    public void upgrade() {
+        System.out.println("upgraded");
+    }
+
+    public void report() {
+        System.out.println("report");
+    }
+}
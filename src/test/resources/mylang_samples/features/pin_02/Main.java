@@ -0,0 +1,21 @@
+package sample;
+
+// Positive Test:
+// - Version block around a hot loop with devirtualization: c is switched once by c.__pinVersion(2), and
+//   the calls of version() inside the loop are bound to v2's implementation, skipping the currentState dispatch
+// - report() is a v2 method and is called without switching
+public class Main {
+    public static void main(String[] args) {
+        Counter c = new Counter();
+        int sum = 0;
+        {
+            c.__pinVersion(2);
+            for (int i = 0; i < 3; i++) {
+                c.report();
+                sum += c.version();
+            }
+        }
+        System.out.println(sum);
+        System.out.println(c.version());
+    }
+}
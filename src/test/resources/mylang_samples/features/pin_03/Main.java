@@ -0,0 +1,50 @@
+package sample;
+
+// Positive Test:
+// - A nested block pinning c to v1 hands it back in v2 even when it is left by continue inside a loop
+// - A nested block ending in if/else with a return in both branches still compiles and hands c back in v2
+// Negative Test:
+// - c.__pinVersion(3) names a version Counter does not declare, and a __pinVersion call after the first
+//   statements of a block is not a marker; both are reported and dropped, so c is not switched
+public class Main {
+    public static void main(String[] args) {
+        Counter c = new Counter();
+        {
+            c.__pinVersion(2);
+            for (int i = 0; i < 2; i++) {
+                {
+                    c.__pinVersion(1);
+                    System.out.println(c.version());
+                    continue;
+                }
+            }
+            System.out.println(c.version());
+        }
+        System.out.println(peek(c, true));
+        System.out.println(peek(c, false));
+        System.out.println(c.version());
+        {
+            c.__pinVersion(3);
+            System.out.println(c.version());
+        }
+        {
+            System.out.println(c.version());
+            c.__pinVersion(1);
+        }
+        System.out.println(c.version());
+    }
+
+    static int peek(Counter c, boolean negate) {
+        {
+            c.__pinVersion(2);
+            {
+                c.__pinVersion(1);
+                if (negate) {
+                    return -c.version();
+                } else {
+                    return c.version();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package sample;
+
+public class Counter__1__ {
+    public int legacyCount = 3;
+
+    public int version() {
+        return 1;
+    }
+}
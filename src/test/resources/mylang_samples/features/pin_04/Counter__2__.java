@@ -0,0 +1,11 @@
+package sample;
+
+public class Counter__2__ {
+    public int version() {
+        return 2;
+    }
+
+    public void report() {
+        System.out.println("report");
+    }
+}
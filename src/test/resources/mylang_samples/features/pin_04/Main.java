@@ -0,0 +1,35 @@
+package sample;
+
+// Positive Test:
+// - Version block: reading or writing legacyCount goes through an accessor that switches c to v1, which owns it;
+//   the statement is followed by a switch back to v2, so the block keeps running in v2
+// Negative Test:
+// - legacyCount read in an if condition cannot be followed by a switch back, so that block is reported and
+//   dropped, and c is not switched by it
+public class Main {
+    public static void main(String[] args) {
+        Counter c = new Counter();
+        {
+            c.__pinVersion(2);
+            c.report();
+            int n = c.legacyCount;
+            c.report();
+            System.out.println(c.version());
+            c.legacyCount = n + 1;
+            System.out.println(c.version());
+            for (int i = 0; i < 2; i++) {
+                int next = c.legacyCount + i;
+                c.legacyCount = next;
+                System.out.println(c.version());
+            }
+        }
+        System.out.println(c.version());
+        {
+            c.__pinVersion(2);
+            if (c.legacyCount > 0) {
+                System.out.println(c.legacyCount);
+            }
+        }
+        System.out.println(c.version());
+    }
+}
@@ -0,0 +1,27 @@
+package sample;
+
+public class Counter__1__ {
+    private int count;
+    public String label = "c";
+
+    public Counter__1__() {
+        count = 1;
+    }
+
+    public Counter__1__(String label) {
+        this();
+        this.label = label;
+    }
+
+    public void tick() {
+        count++;
+    }
+
+    public int value() {
+        return count;
+    }
+
+    public void describe() {
+        System.out.println(label + " v1 " + count);
+    }
+}
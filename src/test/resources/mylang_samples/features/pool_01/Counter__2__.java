@@ -0,0 +1,25 @@
+package sample;
+
+public class Counter__2__ {
+    private int count;
+    private int step = 10;
+
+    public Counter__2__(int step) {
+        this.step = step;
+    }
+
+    public void tick() {
+        count += step;
+        check();
+    }
+
+    public void reset() {
+        count = 0;
+    }
+
+    private void check() {
+        if (count > 100) {
+            System.out.println("overflow " + count);
+        }
+    }
+}
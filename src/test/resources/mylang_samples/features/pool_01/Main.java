@@ -0,0 +1,39 @@
+package sample;
+
+// Positive Test:
+// - Bulk container: CounterPool stores the fields of both versions in arrays and the versions in a byte array
+// - add(...) per constructor, per-element dispatch, bulk operations, growth beyond the initial capacity and reuse after clear()
+public class Main {
+    public static void main(String[] args) {
+        CounterPool pool = new CounterPool(2);
+        int a = pool.add();
+        int b = pool.add("b");
+        int c = pool.add(5);
+        for (int i = 0; i < 3; i++) {
+            pool.tickAll();
+        }
+        System.out.println(pool.size() + " " + pool.countVersion(1) + " " + pool.countVersion(2));
+        pool.describe(a);
+        pool.describe(b);
+
+        pool.reset(b);
+        pool.tickAll();
+        System.out.println(pool.value(a) + " " + pool.countVersion(2));
+        pool.__set_label(c, "z");
+        pool.describe(c);
+        System.out.println(pool.getVersion(c));
+        pool.switchToVersion(c, 2);
+        pool.tickAll();
+        System.out.println(pool.countVersion(2));
+
+        pool.clear();
+        System.out.println(pool.size());
+        int d = pool.add(200);
+        pool.tick(d);
+        pool.describe(d);
+        System.out.println(d);
+
+        Counter counter = new Counter(200);
+        counter.tick();
+    }
+}
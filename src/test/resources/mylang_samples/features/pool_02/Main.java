@@ -0,0 +1,18 @@
+package sample;
+
+// Positive Test:
+// - Bulk container: both versions declare count, stored as the arrays v1_count and v2_count
+// - A local count declared in a nested block shadows the field only inside that block; the field is translated after it
+public class Main {
+    public static void main(String[] args) {
+        MeterPool pool = new MeterPool();
+        int a = pool.add();
+        int b = pool.add();
+        pool.reset(a);
+        pool.add(b, 2);
+        System.out.println(pool.read(a) + " " + pool.read(b));
+        Meter m = new Meter();
+        m.reset();
+        System.out.println(m.read());
+    }
+}
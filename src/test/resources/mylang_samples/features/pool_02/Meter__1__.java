@@ -0,0 +1,17 @@
+package sample;
+
+public class Meter__1__ {
+    private int count = 5;
+
+    public void reset() {
+        for (int i = 0; i < 2; i++) {
+            int count = 3;
+            System.out.println("local " + count);
+        }
+        count = 0;
+    }
+
+    public int read() {
+        return count;
+    }
+}
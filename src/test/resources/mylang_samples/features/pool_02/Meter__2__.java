@@ -0,0 +1,17 @@
+package sample;
+
+public class Meter__2__ {
+    private int count = 7;
+
+    public void add(int amount) {
+        {
+            int count = amount * 10;
+            System.out.println("local " + count);
+        }
+        count += amount;
+    }
+
+    public int read() {
+        return count;
+    }
+}
@@ -0,0 +1,12 @@
+package sample;
+
+// Positive Test:
+// - Dead code elimination: Shape__2__ is never reached and is removed together with Shape__1__.unused()
+// - Shape__3__ is never reached either, but creating it prints a line, so it is kept
+public class Main {
+    public static void main(String[] args) {
+        Shape s = new Shape(2);
+        System.out.println(s.area());
+        s.describe();
+    }
+}
@@ -0,0 +1,21 @@
+package sample;
+
+public class Shape__1__ {
+    private int size;
+
+    public Shape__1__(int size) {
+        this.size = size;
+    }
+
+    public int area() {
+        return size * size;
+    }
+
+    public void describe() {
+        System.out.println("square of " + size);
+    }
+
+    public void unused() {
+        System.out.println("never called");
+    }
+}
@@ -0,0 +1,13 @@
+package sample;
+
+public class Shape__2__ {
+    public int radius = 1;
+
+    public int area() {
+        return 3 * radius * radius;
+    }
+
+    public int perimeter() {
+        return 6 * radius;
+    }
+}
@@ -0,0 +1,15 @@
+package sample;
+
+public class Shape__3__ {
+    public Shape__3__() {
+        System.out.println("v3 created");
+    }
+
+    public int area() {
+        return 0;
+    }
+
+    public void legacy() {
+        System.out.println("legacy");
+    }
+}
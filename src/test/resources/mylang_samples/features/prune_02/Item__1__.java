@@ -0,0 +1,10 @@
+package sample;
+
+public class Item__1__ {
+    private int uses = 0;
+
+    public String name() {
+        uses++;
+        return "item";
+    }
+}
@@ -0,0 +1,9 @@
+package sample;
+
+public class Item__2__ {
+    private int id = Registry.created++;
+
+    public int id() {
+        return id;
+    }
+}
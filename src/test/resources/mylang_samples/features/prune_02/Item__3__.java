@@ -0,0 +1,15 @@
+package sample;
+
+public class Item__3__ {
+    private String label;
+
+    {
+        String text = "v3";
+        label = text;
+        Registry.log[0] = label;
+    }
+
+    public String label() {
+        return label;
+    }
+}
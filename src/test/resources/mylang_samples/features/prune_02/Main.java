@@ -0,0 +1,13 @@
+package sample;
+
+// Positive Test:
+// - Dead code elimination: Item__2__ and Item__3__ are never switched to, but creating them writes
+//   state outside the version (a static counter and an array element), so they are kept
+public class Main {
+    public static void main(String[] args) {
+        Item item = new Item();
+        System.out.println(item.name());
+        System.out.println(Registry.created);
+        System.out.println(Registry.log[0]);
+    }
+}
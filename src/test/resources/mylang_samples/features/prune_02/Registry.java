@@ -0,0 +1,6 @@
+package sample;
+
+public class Registry {
+    public static int created = 0;
+    public static String[] log = new String[1];
+}
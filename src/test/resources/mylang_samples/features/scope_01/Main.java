@@ -0,0 +1,14 @@
+package sample;
+
+// Positive Test:
+// - Class-wide version scope: switching one object switches every object of the class
+// - The ambiguous method version() is dispatched through a relinked call site
+public class Main {
+    public static void main(String[] args) {
+        Counter a = new Counter();
+        Counter b = new Counter();
+        System.out.println("a: " + a.version() + ", b: " + b.version());
+        a.upgrade();
+        System.out.println("a: " + a.version() + ", b: " + b.version());
+    }
+}